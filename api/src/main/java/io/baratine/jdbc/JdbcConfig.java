@@ -44,6 +44,8 @@ import io.baratine.config.Config;
  * Web.property(jdbcUrl + ".pass", "mypassword");
  * Web.property(jdbcUrl + ".poolSize", "64");
  * Web.property(jdbcUrl + ".testQueryBefore", "SELECT 1");
+ * Web.property(jdbcUrl + ".testIdleTime", "10000");
+ * Web.property(jdbcUrl + ".statementCacheSize", "64");
  *
  * Web.start();
  *
@@ -61,6 +63,12 @@ public class JdbcConfig
   private String _testQueryBefore;
   private String _testQueryAfter;
 
+  // a connection is only tested before use after being idle this long (ms)
+  private long _testIdleTime = 10000;
+
+  // prepared statements cached per connection
+  private int _statementCacheSize = 64;
+
   public static JdbcConfig from(Config config, String id)
     throws Exception
   {
@@ -147,6 +155,30 @@ public class JdbcConfig
     return _testQueryAfter;
   }
 
+  public JdbcConfig testIdleTime(long testIdleTime)
+  {
+    _testIdleTime = testIdleTime;
+
+    return this;
+  }
+
+  public long testIdleTime()
+  {
+    return _testIdleTime;
+  }
+
+  public JdbcConfig statementCacheSize(int statementCacheSize)
+  {
+    _statementCacheSize = statementCacheSize;
+
+    return this;
+  }
+
+  public int statementCacheSize()
+  {
+    return _statementCacheSize;
+  }
+
   @Override
   public String toString()
   {
@@ -29,6 +29,8 @@
 
 package io.baratine.jdbc;
 
+import java.util.List;
+
 import io.baratine.service.Result;
 import io.baratine.service.Service;
 
@@ -109,6 +111,28 @@ public interface JdbcService
   void execute(Result<Integer> result, String sql, Object ... params);
 
 
+  /**
+   * Executes the SQL once for each parameter row as a single JDBC batch in
+   * one transaction, and returns the update count of each row.
+   *
+   * <pre>
+   * <code>
+   * executeBatch(
+   *   (updateCounts, e) -> {
+   *       System.out.println(updateCounts.length);
+   *   },
+   *   "INSERT INTO test VALUES (?, ?)",
+   *   rows
+   * );
+   * </code>
+   * </pre>
+   *
+   * @param result update counts, one per parameter row
+   * @param sql
+   * @param paramsList positional parameters for each row
+   */
+  void executeBatch(Result<int[]> result, String sql, List<Object[]> paramsList);
+
   /**
    * Executes the SQL with the given params and returns the offline ResultSet.
    *
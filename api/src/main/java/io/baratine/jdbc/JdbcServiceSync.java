@@ -29,6 +29,8 @@
 
 package io.baratine.jdbc;
 
+import java.util.List;
+
 /**
  * <p>Synchronous interface for JdbcService, primarily for testing.</p>
  *
@@ -46,6 +48,8 @@ public interface JdbcServiceSync extends JdbcService
 {
   int execute(String sql, Object ... params);
 
+  int[] executeBatch(String sql, List<Object[]> paramsList);
+
   JdbcRowSet query(String sql, Object ... params);
 
   <T> T query(SqlFunction<T> fun);
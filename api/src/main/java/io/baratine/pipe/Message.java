@@ -45,6 +45,12 @@ import java.util.Map;
  */
 public interface Message<T>
 {
+  /**
+   * Header for the message key. Consumers of a pipe receive the messages
+   * of a key in order, because all of them go to the same partition.
+   */
+  String KEY = "key";
+
   /**
    * Method value returns encapsulated message value.
    *
@@ -67,6 +73,15 @@ public interface Message<T>
    */
   Object header(String key);
 
+  /**
+   * Method key returns the partition key of the message, if any.
+   * @return message key or null
+   */
+  default Object key()
+  {
+    return header(KEY);
+  }
+
   /**
    * Create an instance of a MessageBuilder using passed value as an encapsulated
    * Message value.
@@ -89,5 +104,15 @@ public interface Message<T>
   interface MessageBuilder<T> extends Message<T>
   {
     MessageBuilder<T> header(String key, Object value);
+
+    /**
+     * Sets the partition key of the message.
+     * @param key message key
+     * @return this instance of MessageBuilder for chaining calls
+     */
+    default MessageBuilder<T> key(Object key)
+    {
+      return header(KEY, key);
+    }
   }
 }
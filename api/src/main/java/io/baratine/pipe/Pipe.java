@@ -76,6 +76,8 @@ public interface Pipe<T>
 
   public static final int CREDIT_DISABLE = -1;
 
+  public static final long OFFSET_NONE = -1;
+
   /**
    * Supplies the next value. Method will block if no credits are available and
    * remain blocked until the credits are available or until timeout specified
@@ -190,4 +190,18 @@ public interface PipeBroker<T>
    * @param result asynchronous result of type Void, must be ignored.
    */
   void send(T value, Result<Void> result);
+
+  /**
+   * Returns the sequence the next message sent to a durable pipe will
+   * have. A new subscriber can save it as its starting
+   * {@link PipeSub#offset() offset}.
+   * <p>
+   * In-memory pipes return {@code Pipe.OFFSET_NONE}.
+   *
+   * @param result the next message sequence
+   */
+  default void sequence(Result<Long> result)
+  {
+    result.ok(Pipe.OFFSET_NONE);
+  }
 }
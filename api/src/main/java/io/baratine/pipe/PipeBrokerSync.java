@@ -41,4 +41,6 @@ import io.baratine.service.Service;
 public interface PipeBrokerSync<T> extends PipeBroker<T>
 {
   Void send(T value);
+
+  long sequence();
 }
@@ -435,6 +435,8 @@ class PipeStatic<T>
     private Long _credits;
     private Integer _prefetch;
     private Integer _capacity;
+    private long _offset = Pipe.OFFSET_NONE;
+    private boolean _isSteal = true;
     
     private long _sequenceIn;
     
@@ -580,6 +582,34 @@ class PipeStatic<T>
       }
     }
 
+    @Override
+    public PipeSubBuilder<T> offset(long offset)
+    {
+      _offset = offset;
+      
+      return this;
+    }
+
+    @Override
+    public long offset()
+    {
+      return _offset;
+    }
+
+    @Override
+    public PipeSubBuilder<T> steal(boolean isSteal)
+    {
+      _isSteal = isSteal;
+      
+      return this;
+    }
+
+    @Override
+    public boolean steal()
+    {
+      return _isSteal;
+    }
+
     @Override
     public PipeSub<T> chain(Credits flowNext)
     {
@@ -189,6 +189,43 @@ public interface PipeSub<T> extends ResultChain<Void>
     return 0;
   }
 
+  /**
+   * The sequence of the first message to receive from a durable pipe.
+   * <p>
+   * Durable pipes number their messages starting from 0 and deliver them
+   * in sequence order, so a subscriber can resume after a restart from the
+   * offset it last processed. Older messages are read from storage in
+   * batches, as credits allow, before the subscriber receives new messages.
+   * <p>
+   * If {@code OFFSET_NONE} is returned, only new messages are received.
+   * This is the default behavior, and the only one for in-memory pipes.
+   *
+   * @return sequence of the first message
+   */
+  default long offset()
+  {
+    return Pipe.OFFSET_NONE;
+  }
+
+  /**
+   * True if a consumer can take part in work stealing.
+   * <p>
+   * Consumers receive the messages of a key in order from the partition
+   * that owns the key. When a consumer is out of credits and its partition
+   * backs up, an idle consumer can steal the partition. Messages already
+   * delivered to the old owner may still be in progress when the new owner
+   * starts, so stealing relaxes the per-key ordering around the handoff.
+   * <p>
+   * A consumer that returns false neither steals partitions nor loses its
+   * own, keeping strict per-key ordering. Stealing is enabled by default.
+   *
+   * @return true if the consumer can steal and be stolen from
+   */
+  default boolean steal()
+  {
+    return true;
+  }
+
   /**
    * Creates new instance of PipeSubBuilder which uses supplied pipe as a message
    * consumer.
@@ -295,6 +332,23 @@ public interface PipeSub<T> extends ResultChain<Void>
      */
     PipeSubBuilder<T> capacity(int size);
 
+    /**
+     * Specifies the sequence of the first message to receive from a
+     * durable pipe.
+     *
+     * @param offset sequence of the first message
+     * @return this instance of PipeSubBuilder for chaining calls
+     */
+    PipeSubBuilder<T> offset(long offset);
+
+    /**
+     * Enables or disables work stealing for a consumer.
+     *
+     * @param isSteal false to keep strict per-key ordering
+     * @return this instance of PipeSubBuilder for chaining calls
+     */
+    PipeSubBuilder<T> steal(boolean isSteal);
+
     /**
      * @param creditsNext
      * @return
@@ -212,6 +212,15 @@ public interface ServiceRef
      */
     ServiceBuilder workers(int workers);
 
+    /**
+     * Runs the service's workers on virtual threads when the JVM supports
+     * them, for services that block on I/O.
+     *
+     * @param isVirtual true if the workers use virtual threads
+     * @return this instance of ServiceBuilder for chaining configuration calls
+     */
+    ServiceBuilder virtualWorkers(boolean isVirtual);
+
     /**
      * Binds Service to an class representing its api. The api should typically be
      * an interface which.
@@ -56,4 +56,12 @@ public @interface Workers
    * @return size of the pool
    */
   int value() default 0;
+
+  /**
+   * Runs the workers on virtual threads when the JVM supports them,
+   * so blocking calls don't need a large pool of platform threads.
+   *
+   * @return true if the workers use virtual threads
+   */
+  boolean virtual() default false;
 }
@@ -111,4 +111,26 @@ public @interface Asset
    * @return table name
    */
   String value() default "";
+
+  /**
+   * Specifies the write-behind delay in milliseconds. When positive, saves
+   * of an asset within the delay are coalesced into a single storage write.
+   * Loads and vault queries write the pending saves first, so they always
+   * see the latest state.
+   * <p>
+   * Saves not yet written are only recovered after a crash when the vault
+   * has a {@code @Journal}. Without one they are lost, and the vault logs
+   * a warning at startup.
+   *
+   * @return write-behind delay, or 0 to write on every save
+   */
+  long writeDelay() default 0;
+
+  /**
+   * Specifies the maximum number of pending write-behind saves before the
+   * batch is written early.
+   *
+   * @return write-behind batch size
+   */
+  int writeBatch() default 1024;
 }
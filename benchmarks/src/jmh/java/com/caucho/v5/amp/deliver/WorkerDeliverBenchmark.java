@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.amp.deliver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.caucho.v5.amp.spi.ShutdownModeAmp;
+
+/**
+ * Delivery throughput of a queue drained by a single worker
+ * ({@code WorkerDeliverSingleThread}) compared with several workers
+ * sharing the queue ({@code WorkerDeliverMultiThread}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkerDeliverBenchmark
+{
+  private static final int BATCH = 1024;
+  
+  private static final Object VALUE = new Object();
+  
+  @Param({ "1", "4" })
+  private int _workers;
+  
+  private final AtomicLong _delivered = new AtomicLong();
+  
+  private QueueDeliver<Object> _queue;
+  
+  @Setup
+  public void setup()
+  {
+    QueueDeliverBuilderImpl<Object> builder = new QueueDeliverBuilderImpl<>();
+    
+    builder.sizeMax(4 * BATCH);
+    builder.setOutboxContext(this);
+    
+    // one worker builds a WorkerDeliverSingleThread, more build
+    // WorkerDeliverMultiThread workers behind a coordinator
+    _queue = builder.build(()->new CountDeliver(), _workers);
+  }
+  
+  @TearDown
+  public void tearDown()
+  {
+    _queue.shutdown(ShutdownModeAmp.GRACEFUL);
+  }
+  
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void deliver()
+  {
+    QueueDeliver<Object> queue = _queue;
+    
+    long expected = _delivered.get() + BATCH;
+    
+    for (int i = 0; i < BATCH; i++) {
+      while (! queue.offer(VALUE, 0, TimeUnit.MILLISECONDS)) {
+        queue.wake();
+        Thread.yield();
+      }
+    }
+    
+    queue.wake();
+    
+    while (_delivered.get() < expected) {
+      Thread.yield();
+    }
+  }
+  
+  private class CountDeliver implements Deliver<Object>
+  {
+    @Override
+    public void deliver(Object msg, Outbox outbox)
+    {
+      _delivered.incrementAndGet();
+    }
+  }
+}
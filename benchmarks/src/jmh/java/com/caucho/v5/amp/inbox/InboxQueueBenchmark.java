@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.amp.inbox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.caucho.v5.amp.ServicesAmp;
+
+/**
+ * One-way message dispatch through a service's {@code InboxQueue}: a batch
+ * of sends followed by a single query, which is delivered after the sends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InboxQueueBenchmark
+{
+  private static final int BATCH = 1024;
+  
+  private ServicesAmp _services;
+  private CounterSync _counter;
+  
+  @Setup
+  public void setup()
+  {
+    _services = ServicesAmp.newManager().start();
+    
+    _counter = _services.newService(new CounterService()).as(CounterSync.class);
+  }
+  
+  @TearDown
+  public void tearDown()
+  {
+    _services.close();
+  }
+  
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public long send()
+  {
+    CounterSync counter = _counter;
+    
+    for (int i = 0; i < BATCH; i++) {
+      counter.add(1);
+    }
+    
+    return counter.count();
+  }
+  
+  public interface CounterSync
+  {
+    void add(int value);
+    
+    long count();
+  }
+  
+  public static class CounterService
+  {
+    private long _count;
+    
+    public void add(int value)
+    {
+      _count += value;
+    }
+    
+    public long count()
+    {
+      return _count;
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.amp.message;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.caucho.v5.amp.ServicesAmp;
+
+import io.baratine.service.Result;
+
+/**
+ * Query round trips through {@code ServicesAmpImpl}. Both the blocking
+ * call and the multi-argument {@code Result} call are sent as
+ * {@code QueryWithResultMessage_N}.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryMessageBenchmark
+{
+  private static final int BATCH = 1024;
+  
+  private ServicesAmp _services;
+  private AdderSync _adder;
+  
+  @Setup
+  public void setup()
+  {
+    _services = ServicesAmp.newManager().start();
+    
+    _adder = _services.newService(new AdderService()).as(AdderSync.class);
+  }
+  
+  @TearDown
+  public void tearDown()
+  {
+    _services.close();
+  }
+  
+  /**
+   * Latency of a single blocking query.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public int querySync()
+  {
+    return _adder.add(1, 2, 3);
+  }
+  
+  /**
+   * Throughput of pipelined queries completing through their Result.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  @OperationsPerInvocation(BATCH)
+  public void queryResult()
+    throws InterruptedException
+  {
+    CountDownLatch latch = new CountDownLatch(BATCH);
+    
+    Result<Integer> result = Result.of(x->latch.countDown());
+    
+    AdderSync adder = _adder;
+    
+    for (int i = 0; i < BATCH; i++) {
+      adder.add(i, 2, 3, result);
+    }
+    
+    latch.await();
+  }
+  
+  public interface AdderSync
+  {
+    void add(int a, int b, int c, Result<Integer> result);
+    
+    int add(int a, int b, int c);
+  }
+  
+  public static class AdderService
+  {
+    public void add(int a, int b, int c, Result<Integer> result)
+    {
+      result.ok(a + b + c);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.amp.queue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.caucho.v5.amp.deliver.QueueRing;
+
+/**
+ * Offer/poll throughput of the fixed and resizing ring queues, both
+ * uncontended and with a producer and consumer on separate threads.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueueRingBenchmark
+{
+  private static final int BATCH = 256;
+  
+  private static final Object VALUE = new Object();
+  
+  @Param({ "fixed", "resizing" })
+  private String _type;
+  
+  private QueueRing<Object> _queue;
+  
+  @Setup
+  public void setup()
+  {
+    switch (_type) {
+    case "fixed":
+      _queue = new QueueRingFixed<>(1024);
+      break;
+      
+    case "resizing":
+      _queue = new QueueRingResizing<>(16, 1024);
+      break;
+      
+    default:
+      throw new IllegalArgumentException(_type);
+    }
+  }
+  
+  /**
+   * Single thread filling and draining a batch, exercising the resize
+   * path of the resizing queue.
+   */
+  @Benchmark
+  @Group("batch")
+  @OperationsPerInvocation(BATCH)
+  public void offerPollBatch(Blackhole bh)
+  {
+    QueueRing<Object> queue = _queue;
+    
+    for (int i = 0; i < BATCH; i++) {
+      queue.offer(VALUE);
+    }
+    
+    for (int i = 0; i < BATCH; i++) {
+      bh.consume(queue.poll());
+    }
+  }
+  
+  @Benchmark
+  @Group("spsc")
+  @GroupThreads(1)
+  public boolean offer()
+  {
+    return _queue.offer(VALUE);
+  }
+  
+  @Benchmark
+  @Group("spsc")
+  @GroupThreads(1)
+  public Object poll()
+  {
+    return _queue.poll();
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2001-2016 Caucho Technology, Inc.  All rights reserved.
+ * 
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.h3.ser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.caucho.v5.h3.H3;
+import com.caucho.v5.h3.InH3;
+import com.caucho.v5.h3.OutFactoryH3;
+import com.caucho.v5.h3.OutH3;
+
+/**
+ * Object serialization with generated field access compared with the
+ * method handle fields.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerH3JavaBenchmark
+{
+  private static final int BATCH = 100;
+  
+  @Param({ "bytecode", "reflect" })
+  private String _access;
+  
+  private OutFactoryH3 _factory;
+  private OutH3 _out;
+  
+  private Bean _bean;
+  private byte []_batch;
+  
+  @Setup
+  public void setup()
+  {
+    _factory = H3.newOutFactory()
+                 .bytecode("bytecode".equals(_access))
+                 .get();
+    
+    _bean = new Bean();
+    _bean.name = "bean";
+    _bean.flag = true;
+    _bean.count = 17;
+    _bean.id = 1L << 40;
+    _bean.price = 12.5;
+    _bean.child = new Bean();
+    
+    _out = _factory.out(new OutputStreamNull());
+    
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    
+    try (OutH3 out = _factory.out(bos)) {
+      for (int i = 0; i < BATCH; i++) {
+        out.writeObject(_bean);
+      }
+    }
+    
+    _batch = bos.toByteArray();
+  }
+  
+  @TearDown
+  public void close()
+  {
+    _out.close();
+  }
+  
+  @Benchmark
+  public void write()
+  {
+    _out.writeObject(_bean);
+  }
+  
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void read(Blackhole bh)
+    throws IOException
+  {
+    try (InH3 in = _factory.in(new ByteArrayInputStream(_batch))) {
+      for (int i = 0; i < BATCH; i++) {
+        bh.consume(in.readObject());
+      }
+    }
+  }
+  
+  public static class Bean
+  {
+    public String name;
+    public boolean flag;
+    public int count;
+    public long id;
+    public double price;
+    public Bean child;
+  }
+  
+  private static class OutputStreamNull extends OutputStream
+  {
+    @Override
+    public void write(int value)
+    {
+    }
+    
+    @Override
+    public void write(byte []buffer, int offset, int length)
+    {
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package io.baratine.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of building and completing chained results: the {@code then}
+ * chains and the {@code ResultImpl} fork/join.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultBenchmark
+{
+  private int _value;
+  
+  @Benchmark
+  public void of(Blackhole bh)
+  {
+    Result<Integer> result = Result.of(x->bh.consume(x));
+    
+    result.ok(_value++);
+  }
+  
+  @Benchmark
+  public void thenFunction(Blackhole bh)
+  {
+    Result<Integer> result = Result.of(x->bh.consume(x));
+    
+    Result<Integer> chain = result.then(x->x + 1);
+    
+    chain.ok(_value++);
+  }
+  
+  @Benchmark
+  public void thenChain4(Blackhole bh)
+  {
+    Result<Integer> result = Result.of(x->bh.consume(x));
+    
+    Result<Integer> chain = result.then(x->x + 1);
+    chain = chain.then(x->x + 1);
+    chain = chain.then(x->x + 1);
+    chain = chain.then((x,r)->r.ok(x + 1));
+    
+    chain.ok(_value++);
+  }
+  
+  @Benchmark
+  public void forkJoin2(Blackhole bh)
+  {
+    Result<Integer> result = Result.of(x->bh.consume(x));
+    
+    Result.Fork<Integer,Integer> fork = result.fork();
+    
+    Result<Integer> left = fork.branch();
+    Result<Integer> right = fork.branch();
+    
+    fork.join(list->list.get(0) + list.get(1));
+    
+    left.ok(_value++);
+    right.ok(_value);
+  }
+}
@@ -58,6 +58,10 @@ public interface QueueDeliverBuilder<M> // extends MessageOutbox<M>>
   QueueDeliverBuilder<M> multiworkerOffset(int offset);
   
   int multiworkerOffset();
+  
+  QueueDeliverBuilder<M> virtualWorkers(boolean isVirtual);
+  
+  boolean isVirtualWorkers();
 
   QueueDeliver<M> build(Supplier<Deliver<M>> factory, int workers);
   
@@ -56,6 +56,7 @@ public class QueueDeliverBuilderImpl<M> // extends MessageOutbox<M>>
   private int _capacity = -1;
   private boolean _isMultiworker;
   private int _multiworkerOffset = 1;
+  private boolean _isVirtualWorkers;
   
   private Executor _executor; // = ThreadPool.getCurrent();
   //private long _workerIdleTimeout; // = 500L;
@@ -140,6 +141,23 @@ public class QueueDeliverBuilderImpl<M> // extends MessageOutbox<M>>
   {
     return _multiworkerOffset;
   }
+  
+  /**
+   * Runs the workers on virtual threads, for services that block.
+   */
+  @Override
+  public QueueDeliverBuilderImpl<M> virtualWorkers(boolean isVirtual)
+  {
+    _isVirtualWorkers = isVirtual;
+    
+    return this;
+  }
+  
+  @Override
+  public boolean isVirtualWorkers()
+  {
+    return _isVirtualWorkers;
+  }
 
   protected void validateFullBuilder()
   {
@@ -382,8 +400,13 @@ public class QueueDeliverBuilderImpl<M> // extends MessageOutbox<M>>
     if (executor == null) {
       ThreadPool threadPool = ThreadPool.current();
           
-      //executor = threadPool.getThrottleExecutor();
-       executor = threadPool;
+      if (_isVirtualWorkers) {
+        executor = threadPool.virtualExecutor();
+      }
+      else {
+        //executor = threadPool.getThrottleExecutor();
+        executor = threadPool;
+      }
     }
     
     return executor;
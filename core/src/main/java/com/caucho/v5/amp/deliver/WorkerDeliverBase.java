@@ -173,9 +173,17 @@ public abstract class WorkerDeliverBase<M> // extends MessageOutbox<M>>
       
       _stateRef.set(State.ACTIVE);
       
-      ThreadAmp thread = (ThreadAmp) Thread.currentThread();
+      Thread thread = Thread.currentThread();
       /// XXX: check outbox type
-      Outbox outbox = thread.outbox();
+      Outbox outbox;
+      
+      if (thread instanceof ThreadAmp) {
+        outbox = ((ThreadAmp) thread).outbox();
+      }
+      else {
+        // virtual threads bind an outbox for the task
+        outbox = Outbox.current();
+      }
       
       runStarted(outbox, null);
     } catch (Throwable e) {
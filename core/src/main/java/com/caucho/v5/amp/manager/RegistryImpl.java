@@ -43,7 +43,7 @@ import com.caucho.v5.amp.service.ServiceRefLazy;
 import com.caucho.v5.amp.spi.RegistryAmp;
 import com.caucho.v5.amp.spi.ShutdownModeAmp;
 import com.caucho.v5.util.L10N;
-import com.caucho.v5.util.LruCache;
+import com.caucho.v5.util.LruCacheConcurrent;
 
 import io.baratine.service.ResultFuture;
 
@@ -61,7 +61,7 @@ class RegistryImpl implements RegistryAmp
   private final ConcurrentHashMap<String,ServiceRefAmp> _serviceMap
     = new ConcurrentHashMap<>();
   
-  private final LruCache<String,ServiceRefAmp> _cacheServiceMap;
+  private final LruCacheConcurrent<String,ServiceRefAmp> _cacheServiceMap;
   
   public RegistryImpl(ServicesAmp manager)
   {
@@ -70,7 +70,7 @@ class RegistryImpl implements RegistryAmp
     // XXX: need this configurable
     int cacheSize = 1024;
     
-    _cacheServiceMap = new LruCache<>(cacheSize);
+    _cacheServiceMap = new LruCacheConcurrent<>(cacheSize);
   }
 
   @Override
@@ -624,6 +624,7 @@ public class ServicesBuilderImpl implements ServiceManagerBuilderAmp
     private Supplier<? extends T> _supplier;
     private String _address = "";
     private int _workers = -1;
+    private boolean _isVirtualWorkers;
     private boolean _isAddressAuto = true;
     private ServiceRefAmp _ref;
 
@@ -685,6 +686,14 @@ public class ServicesBuilderImpl implements ServiceManagerBuilderAmp
       return this;
     }
 
+    @Override
+    public ServiceBuilder virtualWorkers(boolean isVirtual)
+    {
+      _isVirtualWorkers = isVirtual;
+
+      return this;
+    }
+
     @Override
     public ServiceRef ref()
     {
@@ -718,6 +727,10 @@ public class ServicesBuilderImpl implements ServiceManagerBuilderAmp
         builder.workers(_workers);
       }
 
+      if (_isVirtualWorkers) {
+        builder.virtualWorkers(true);
+      }
+
       _ref = builder.ref();
 
       return _ref;
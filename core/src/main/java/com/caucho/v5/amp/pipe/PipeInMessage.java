@@ -169,6 +169,18 @@ public class PipeInMessage<T>
   }
   */
 
+  @Override
+  public long offset()
+  {
+    return _result.offset();
+  }
+
+  @Override
+  public boolean steal()
+  {
+    return _result.steal();
+  }
+
   @Override
   public void ok(Void onOk)
   {
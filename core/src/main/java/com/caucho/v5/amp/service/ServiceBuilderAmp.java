@@ -47,6 +47,9 @@ public interface ServiceBuilderAmp extends ServiceRef.ServiceBuilder
   @Override
   ServiceBuilderAmp workers(int workers);
   
+  @Override
+  ServiceBuilderAmp virtualWorkers(boolean isVirtual);
+  
   @Override
   ServiceBuilderAmp address(String path);
 
@@ -103,6 +103,8 @@ public class ServiceBuilderImpl<T> implements ServiceBuilderAmp, ServiceConfig
 
   private int _workers = 1;
 
+  private boolean _isVirtualWorkers;
+
   private boolean _isJournal;
 
   private boolean _isAutoStart;
@@ -245,6 +247,7 @@ public class ServiceBuilderImpl<T> implements ServiceBuilderAmp, ServiceConfig
     }
     
     _workers = builder.workers();
+    _isVirtualWorkers = builder.isVirtualWorkers();
     
     _api = builder.api();
     
@@ -436,7 +439,11 @@ public class ServiceBuilderImpl<T> implements ServiceBuilderAmp, ServiceConfig
     Workers workers = serviceClass.getAnnotation(Workers.class);
     
     if (workers != null) {
-      workers(workers.value());
+      if (workers.value() > 0) {
+        workers(workers.value());
+      }
+      
+      virtualWorkers(workers.virtual());
     }
     
     Startup startup = serviceClass.getAnnotation(Startup.class);
@@ -532,6 +539,20 @@ public class ServiceBuilderImpl<T> implements ServiceBuilderAmp, ServiceConfig
     return _workers;
   }
 
+  @Override
+  public ServiceBuilderAmp virtualWorkers(boolean isVirtual)
+  {
+    _isVirtualWorkers = isVirtual;
+
+    return this;
+  }
+  
+  @Override
+  public boolean isVirtualWorkers()
+  {
+    return _isVirtualWorkers;
+  }
+
   @Override
   public ServiceBuilderAmp address(String path)
   {
@@ -1239,6 +1260,8 @@ public class ServiceBuilderImpl<T> implements ServiceBuilderAmp, ServiceConfig
       Supplier<Deliver<MessageAmp>> factory
         = inbox.createDeliverFactory(_stubFactory, config);
       
+      queueBuilder.virtualWorkers(config.isVirtualWorkers());
+      
       if (config.workers() > 0) {
         queueBuilder.multiworker(true);
         //queueBuilder.multiworerOffset(sdf
@@ -51,6 +51,8 @@ public interface ServiceConfig
   
   int workers();
   
+  boolean isVirtualWorkers();
+  
   boolean isPublic();
 
   boolean isAutoStart();
@@ -30,7 +30,6 @@
 package com.caucho.v5.amp.stub;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
@@ -38,8 +37,7 @@ import java.util.logging.Logger;
 import com.caucho.v5.amp.ServiceRefAmp;
 import com.caucho.v5.amp.service.ServiceConfig;
 import com.caucho.v5.amp.spi.StubContainerAmp;
-import com.caucho.v5.util.LruCache;
-import com.caucho.v5.util.LruCache.Entry;
+import com.caucho.v5.util.LruCacheConcurrent;
 
 import io.baratine.service.Result;
 import io.baratine.service.ResultChain;
@@ -58,7 +56,7 @@ public class StubContainerBase implements StubContainerAmp
   
   private String _path;
   
-  private LruCache<String,ServiceRef> _lruCache;
+  private final LruCacheConcurrent<String,ServiceRef> _lruCache;
   
   private final ArrayList<StubAmp> _modifiedList = new ArrayList<>();
   private final ArrayList<StubAmp> _modifiedWorkList = new ArrayList<>();
@@ -76,8 +74,8 @@ public class StubContainerBase implements StubContainerAmp
     _stub = stub;
     _path = path;
     
-    // XXX: needs to be larger and configurable
-    _lruCache = new LruCache<>(4096);
+    // XXX: needs to be configurable
+    _lruCache = new LruCacheConcurrent<>(MAX);
   }
   
   @Override
@@ -115,39 +113,13 @@ public class StubContainerBase implements StubContainerAmp
   @Override
   public ServiceRef addService(String path, ServiceRef serviceRef)
   {
-    synchronized (this) {
-      LruCache<String,ServiceRef> lruCache = getLruCache();
-      
-      return lruCache.putIfNew(path, serviceRef);
-    }
-  }
-  
-  private LruCache<String,ServiceRef> getLruCache()
-  {
-    LruCache<String, ServiceRef> lruCache = _lruCache;
-    
-    if (lruCache.getCapacity() < MAX && _lruCache.size() >= 32) {
-      LruCache<String, ServiceRef> lruCacheNew = new LruCache<>(MAX);
-      
-      Iterator<Entry<String, ServiceRef>> iter = lruCache.iterator();
-      while (iter.hasNext()) {
-        Entry<String,ServiceRef> entry = iter.next();
-        
-        lruCacheNew.put(entry.getKey(), entry.getValue());
-      }
-
-      lruCache = _lruCache = lruCacheNew;
-    }
-    
-    return lruCache;
+    return _lruCache.putIfNew(path, serviceRef);
   }
 
   @Override
   public ServiceRef getService(String path)
   {
-    synchronized (_lruCache) {
-      return _lruCache.get(path);
-    }
+    return _lruCache.get(path);
   }
   
   @Override
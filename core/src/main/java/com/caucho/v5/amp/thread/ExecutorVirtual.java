@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.amp.thread;
+
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.caucho.v5.amp.inbox.OutboxAmpImpl;
+import com.caucho.v5.amp.inbox.OutboxProviderAmp;
+import com.caucho.v5.amp.spi.OutboxAmp;
+
+/**
+ * Executor starting a virtual thread for each task, for workers that
+ * block on I/O like jdbc or file access.
+ *
+ * Virtual threads are looked up reflectively, because the server also
+ * runs on JVMs without them. {@link #isSupported()} is false on those
+ * JVMs and {@link ThreadPoolBase#virtualExecutor()} falls back to the
+ * platform pool.
+ *
+ * Each task runs with its own outbox bound to the virtual thread, which
+ * is flushed before the thread exits, matching ThreadAmp's task loop.
+ */
+public class ExecutorVirtual implements Executor
+{
+  private static final Logger log
+    = Logger.getLogger(ExecutorVirtual.class.getName());
+
+  private static final Method _ofVirtual;
+  private static final Method _name;
+  private static final Method _factory;
+
+  private final String _prefix;
+  private final ThreadFactory _threadFactory;
+
+  private final AtomicLong _startCount = new AtomicLong();
+  private final AtomicLong _endCount = new AtomicLong();
+
+  ExecutorVirtual(String name)
+  {
+    Objects.requireNonNull(name);
+
+    if (! isSupported()) {
+      throw new UnsupportedOperationException(System.getProperty("java.version"));
+    }
+
+    _prefix = "baratine-virtual-" + name + "-";
+
+    try {
+      Object builder = _ofVirtual.invoke(null);
+
+      builder = _name.invoke(builder, _prefix, 0L);
+
+      _threadFactory = (ThreadFactory) _factory.invoke(builder);
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * True if the JVM supports virtual threads.
+   */
+  public static boolean isSupported()
+  {
+    return _factory != null;
+  }
+
+  /**
+   * Number of virtual threads currently running tasks.
+   */
+  public long getThreadActiveCount()
+  {
+    return _startCount.get() - _endCount.get();
+  }
+
+  public long getThreadCreateCountTotal()
+  {
+    return _startCount.get();
+  }
+
+  @Override
+  public void execute(Runnable task)
+  {
+    Objects.requireNonNull(task);
+
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+
+    Thread thread = _threadFactory.newThread(()->runTask(task, loader));
+
+    _startCount.incrementAndGet();
+
+    try {
+      thread.start();
+    } catch (RuntimeException e) {
+      _endCount.incrementAndGet();
+
+      throw e;
+    }
+  }
+
+  private void runTask(Runnable task, ClassLoader loader)
+  {
+    Thread.currentThread().setContextClassLoader(loader);
+
+    try (OutboxAmp outbox
+           = OutboxProviderAmp.currentOrCreateAmp(OutboxAmpImpl::new)) {
+      task.run();
+
+      outbox.flushAndExecuteAll();
+    } catch (Throwable e) {
+      log.log(Level.WARNING, e.toString(), e);
+    } finally {
+      _endCount.incrementAndGet();
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "[" + _prefix + "]";
+  }
+
+  static {
+    Method ofVirtual = null;
+    Method name = null;
+    Method factory = null;
+
+    try {
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+
+      ofVirtual = Thread.class.getMethod("ofVirtual");
+      name = builderClass.getMethod("name", String.class, long.class);
+      factory = builderClass.getMethod("factory");
+
+      // preview jdks have the methods, but throw when called
+      ofVirtual.invoke(null);
+    } catch (Exception e) {
+      log.log(Level.FINEST, e.toString(), e);
+
+      ofVirtual = null;
+      name = null;
+      factory = null;
+    }
+
+    _ofVirtual = ofVirtual;
+    _name = name;
+    _factory = factory;
+  }
+}
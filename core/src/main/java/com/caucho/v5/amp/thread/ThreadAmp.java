@@ -80,14 +80,6 @@ public final class ThreadAmp extends Thread
     return _name;
   }
 
-  /**
-   * Returns the thread id.
-   */
-  public long threadId()
-  {
-    return getId();
-  }
-
   @Override
   public final void interrupt()
   {
@@ -126,6 +126,9 @@ public class ThreadPoolBase implements Executor, RunnableItemScheduler
 
   private int _waitCount;
 
+  private final AtomicReference<Executor> _virtualExecutor
+    = new AtomicReference<>();
+
   public ThreadPoolBase()
   {
     this("system");
@@ -175,6 +178,37 @@ public class ThreadPoolBase implements Executor, RunnableItemScheduler
     _globalThreadPool.set(pool);
   }
 
+  /**
+   * Returns an executor running each task on its own virtual thread,
+   * for workers that block. Falls back to this pool when the JVM
+   * doesn't support virtual threads.
+   */
+  public Executor virtualExecutor()
+  {
+    Executor executor = _virtualExecutor.get();
+
+    if (executor != null) {
+      return executor;
+    }
+
+    if (ExecutorVirtual.isSupported()) {
+      executor = new ExecutorVirtual(_name);
+    }
+    else {
+      log.config(L.l("{0} virtual threads are not supported by JDK {1}, using platform threads",
+                     this, System.getProperty("java.version")));
+
+      executor = this;
+    }
+
+    if (_virtualExecutor.compareAndSet(null, executor)) {
+      return executor;
+    }
+    else {
+      return _virtualExecutor.get();
+    }
+  }
+
   //
   // Configuration properties
   //
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.amp.vault;
+
+/**
+ * Column values of an asset as last loaded from or saved to the vault.
+ *
+ * The driver compares the image with the asset's current values on save,
+ * writing only the changed columns and skipping unmodified assets.
+ *
+ * A save only updates the image after its write succeeds, so the image
+ * never runs ahead of storage. A failed save clears the image, making
+ * the next save a full insert.
+ */
+public class AssetImage
+{
+  private Object []_values;
+
+  // sequence of the last save started
+  private long _saveSequence;
+  // sequence of the save or load that set the values
+  private long _imageSequence;
+
+  /**
+   * The stored column values, or null if the asset has no stored row.
+   */
+  public Object []values()
+  {
+    return _values;
+  }
+
+  /**
+   * Sets the values read from storage, superseding any save in progress.
+   */
+  public void values(Object []values)
+  {
+    _values = values;
+    _imageSequence = _saveSequence;
+  }
+
+  public void clear()
+  {
+    values(null);
+  }
+
+  /**
+   * Starts a save, returning its sequence for the completion.
+   */
+  public long startSave()
+  {
+    return ++_saveSequence;
+  }
+
+  /**
+   * Sets the values after a save's write succeeds, unless a later save
+   * or load already set them.
+   */
+  public void onSave(long sequence, Object []values)
+  {
+    if (_imageSequence < sequence) {
+      _values = values;
+      _imageSequence = sequence;
+    }
+  }
+
+  /**
+   * Clears the values after a save's write fails.
+   */
+  public void onSaveFail(long sequence)
+  {
+    if (_imageSequence < sequence) {
+      _values = null;
+      _imageSequence = sequence;
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "[" + (_values != null) + "]";
+  }
+}
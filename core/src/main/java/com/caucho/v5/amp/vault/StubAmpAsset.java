@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.amp.vault;
+
+import com.caucho.v5.amp.spi.StubContainerAmp;
+import com.caucho.v5.amp.stub.StubAmpBeanChild;
+import com.caucho.v5.amp.stub.StubClass;
+
+/**
+ * Stub for a vault asset, holding the asset's stored image.
+ */
+public class StubAmpAsset extends StubAmpBeanChild
+{
+  private final AssetImage _image = new AssetImage();
+
+  public StubAmpAsset(StubClass stubClass,
+                      Object bean,
+                      String path,
+                      String childPath,
+                      StubContainerAmp container)
+  {
+    super(stubClass, bean, path, childPath, container);
+  }
+
+  public AssetImage image()
+  {
+    return _image;
+  }
+}
@@ -148,6 +148,19 @@ public class StubClassAsset extends StubClass
     }
   }
   
+  /**
+   * The stored image of the asset, if the stub tracks one.
+   */
+  private static AssetImage image(StubAmp stub)
+  {
+    if (stub instanceof StubAmpAsset) {
+      return ((StubAmpAsset) stub).image();
+    }
+    else {
+      return null;
+    }
+  }
+  
   private static class MethodOnLoad extends MethodAmpBase
   {
     private MethodHandle _idGetter;
@@ -176,7 +189,7 @@ public class StubClassAsset extends StubClass
       try {
         Serializable id = (Serializable) _idGetter.invoke(bean);
         
-        ((VaultDriver) _driver).load(id, bean, result);
+        ((VaultDriver) _driver).load(id, bean, image(actor), result);
       } catch (Throwable e) {
         result.fail(e);
       }
@@ -211,11 +224,19 @@ public class StubClassAsset extends StubClass
       try {
         Serializable id = (Serializable) _idGetter.invoke(bean);
         
+        AssetImage image = image(stub);
+        
         if (stub.state().isDelete()) {
           ((VaultDriver) _driver).delete(id, bean, Result.ignore());
+          
+          if (image != null) {
+            image.clear();
+          }
         }
         else {
-          ((VaultDriver) _driver).save(id, bean, Result.ignore());
+          // the driver completes the result when the save is written
+          ((VaultDriver) _driver).save(id, bean, image, result);
+          return;
         }
         
         result.ok(null);
@@ -255,6 +276,12 @@ public class StubClassAsset extends StubClass
         
         ((VaultDriver) _driver).delete(id, bean, Result.ignore());
         
+        AssetImage image = image(stub);
+        
+        if (image != null) {
+          image.clear();
+        }
+        
         result.ok(null);
       } catch (Throwable e) {
         result.fail(e);
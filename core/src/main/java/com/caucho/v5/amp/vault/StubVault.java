@@ -45,7 +45,6 @@ import com.caucho.v5.amp.stub.MethodAmp;
 import com.caucho.v5.amp.stub.MethodAmpBase;
 import com.caucho.v5.amp.stub.StubAmp;
 import com.caucho.v5.amp.stub.StubAmpBean;
-import com.caucho.v5.amp.stub.StubAmpBeanChild;
 import com.caucho.v5.amp.stub.StubClass;
 import com.caucho.v5.convert.ConvertException;
 import com.caucho.v5.util.L10N;
@@ -321,7 +320,7 @@ public class StubVault extends StubClass
 
       StubAmpBean stubBean = (StubAmpBean) stub;
 
-      StubAmp stubChild = new StubAmpBeanChild(_stubClass,
+      StubAmp stubChild = new StubAmpAsset(_stubClass,
                                            bean,
                                            stubBean.name() + "/" + path,
                                            path,
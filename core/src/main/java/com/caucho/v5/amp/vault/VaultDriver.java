@@ -63,6 +63,24 @@ public interface VaultDriver<ID,T>
     result.fail(new UnsupportedOperationException(getClass().getName()));
   }
 
+  /**
+   * Loads the entity, recording the stored values in the image.
+   */
+  default void load(ID id, T entity, AssetImage image,
+                    ResultChain<Boolean> result)
+  {
+    load(id, entity, result);
+  }
+
+  /**
+   * Saves the entity, writing only the values changed since the image.
+   */
+  default void save(ID id, T entity, AssetImage image,
+                    ResultChain<Void> result)
+  {
+    save(id, entity, result);
+  }
+
   default void delete(ID id, T entity, ResultChain<Void> result)
   {
     result.fail(new UnsupportedOperationException(getClass().getName()));
@@ -405,6 +405,16 @@ public class CodeWriterAttribute extends CodeAttribute {
     write(CodeVisitor.DUP);
   }
 
+  public void i2l()
+  {
+    write(CodeVisitor.I2L);
+  }
+
+  public void l2i()
+  {
+    write(CodeVisitor.L2I);
+  }
+
   public void i2b()
   {
     write(CodeVisitor.I2B);
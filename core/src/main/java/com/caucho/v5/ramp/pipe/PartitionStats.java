@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.ramp.pipe;
+
+/**
+ * Snapshot of a consumer partition's counters.
+ */
+public final class PartitionStats
+{
+  private final int _index;
+  
+  private final long _lag;
+  private final long _delivered;
+  private final long _dropped;
+  private final long _stolen;
+  
+  PartitionStats(int index,
+                 long lag,
+                 long delivered,
+                 long dropped,
+                 long stolen)
+  {
+    _index = index;
+    _lag = lag;
+    _delivered = delivered;
+    _dropped = dropped;
+    _stolen = stolen;
+  }
+  
+  public int getIndex()
+  {
+    return _index;
+  }
+  
+  /**
+   * Messages queued in the partition, waiting for consumer credits.
+   */
+  public long getLag()
+  {
+    return _lag;
+  }
+  
+  public long getDelivered()
+  {
+    return _delivered;
+  }
+  
+  /**
+   * Messages dropped because the partition queue was full.
+   */
+  public long getDropped()
+  {
+    return _dropped;
+  }
+  
+  /**
+   * Times an idle consumer took the partition from its owner.
+   */
+  public long getStolen()
+  {
+    return _stolen;
+  }
+  
+  @Override
+  public String toString()
+  {
+    return (getClass().getSimpleName() + "[" + _index
+            + ",lag=" + _lag
+            + ",delivered=" + _delivered
+            + ",dropped=" + _dropped
+            + ",stolen=" + _stolen + "]");
+  }
+}
@@ -29,11 +29,16 @@
 
 package com.caucho.v5.ramp.pipe;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import io.baratine.pipe.Credits.OnAvailable;
+import io.baratine.pipe.Message;
 import io.baratine.pipe.Pipe;
 import io.baratine.pipe.PipeBroker;
 import io.baratine.pipe.PipeSub;
@@ -44,9 +49,29 @@ import io.baratine.service.Result;
 
 /**
  * Implementation of the pipes
+ *
+ * Consumer messages are hashed by their {@link Message#key() key} onto
+ * partitions, each owned by one consumer, so the messages of a key stay
+ * in order. A partition whose owner is out of credits queues its messages,
+ * and an idle consumer can steal the partition once the backlog grows.
+ *
+ * Stealing relaxes the per-key ordering: messages already delivered to the
+ * old owner may still be in progress when the new owner starts. Consumers
+ * that need strict ordering disable stealing with {@link PipeSub#steal()}.
  */
 class PipeNode<T> implements PipeBroker<T>
 {
+  private static final Logger log
+    = Logger.getLogger(PipeNode.class.getName());
+  
+  private static final int PARTITION_COUNT = 16;
+  
+  // queued messages per partition before new messages are dropped
+  private static final int PARTITION_CAPACITY = 1024;
+  
+  // backlog before an idle consumer steals a partition from its owner
+  private static final int STEAL_THRESHOLD = 32;
+  
   //private SchemePipeImpl _scheme;
   private String _address;
   
@@ -57,6 +82,8 @@ class PipeNode<T> implements PipeBroker<T>
   //private ArrayList<BiConsumer<String,Result<Void>>> _onChildList = new ArrayList<>();
   //private ArrayList<Runnable> _pendingInit = new ArrayList<>();
   
+  private final Partition []_partitions;
+  
   private long _sequence;
   
   private StateInit _sendInit = StateInit.NEW;
@@ -66,6 +93,21 @@ class PipeNode<T> implements PipeBroker<T>
     Objects.requireNonNull(address);
 
     _address = address;
+    
+    _partitions = newPartitions(PARTITION_COUNT);
+    
+    for (int i = 0; i < _partitions.length; i++) {
+      _partitions[i] = new Partition(i);
+    }
+  }
+
+  /**
+   * Generic array creation, which Java only allows through a raw array.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private Partition []newPartitions(int count)
+  {
+    return new PipeNode.Partition[count];
   }
 
   @Override
@@ -84,20 +126,80 @@ class PipeNode<T> implements PipeBroker<T>
   @Override
   public void consume(PipeSub<T> consumer)
   {
-    SubscriberNode sub = new SubscriberNode(consumer.pipe());
+    SubscriberNode sub = new SubscriberNode(consumer.pipe(), true,
+                                            consumer.steal());
     
     _consumers.add(sub);
     
     consumer.pipe().credits().onAvailable(sub);
     consumer.ok(null);
     
+    rebalance();
+    
     //init();
   }
   
   private void unsubscribe(SubscriberNode node)
   {
-    _consumers.remove(node);
     _subscribers.remove(node);
+    
+    if (_consumers.remove(node)) {
+      rebalance();
+    }
+  }
+  
+  /**
+   * Assigns the unowned partitions, moving as few partitions as possible
+   * while keeping the consumers within one partition of each other.
+   */
+  private void rebalance()
+  {
+    int size = _consumers.size();
+    
+    for (SubscriberNode node : _consumers) {
+      node._partitionCount = 0;
+    }
+    
+    if (size == 0) {
+      for (Partition partition : _partitions) {
+        partition.owner(null);
+      }
+      
+      return;
+    }
+    
+    int max = (_partitions.length + size - 1) / size;
+    
+    for (Partition partition : _partitions) {
+      SubscriberNode owner = partition.owner();
+      
+      if (owner == null
+          || ! owner.isConsumer()
+          || ! _consumers.contains(owner)
+          || max <= owner._partitionCount) {
+        partition.owner(null);
+      }
+      else {
+        owner._partitionCount++;
+      }
+    }
+    
+    for (Partition partition : _partitions) {
+      if (partition.owner() == null) {
+        SubscriberNode owner = _consumers.get(0);
+        
+        for (SubscriberNode node : _consumers) {
+          if (node._partitionCount < owner._partitionCount) {
+            owner = node;
+          }
+        }
+        
+        partition.owner(owner);
+        owner._partitionCount++;
+      }
+      
+      partition.drain();
+    }
   }
 
   @Override
@@ -160,15 +262,110 @@ class PipeNode<T> implements PipeBroker<T>
     }
     
     long seq = _sequence++;
-    int size = _consumers.size();
     
-    if (size > 0) {
-      int index = (int) (seq % size);
+    if (_consumers.size() > 0) {
+      partition(value, seq).offer(value);
+    }
+  }
+  
+  /**
+   * Partition for the message's key. Messages without a key are spread
+   * round robin.
+   */
+  private Partition partition(T value, long seq)
+  {
+    Object key = null;
+    
+    if (value instanceof Message) {
+      key = ((Message<?>) value).key();
+    }
+    
+    int hash;
+    
+    if (key != null) {
+      hash = key.hashCode() * 0x9e3779b9;
+      hash ^= hash >>> 16;
+    }
+    else {
+      hash = (int) seq;
+    }
+    
+    return _partitions[Math.floorMod(hash, _partitions.length)];
+  }
+  
+  /**
+   * Consumer credits are available: drain its own partitions, then steal
+   * backlogged partitions from consumers without credits.
+   */
+  private void onAvailable(SubscriberNode node)
+  {
+    for (Partition partition : _partitions) {
+      if (partition.owner() == node) {
+        partition.drain();
+      }
+    }
+    
+    if (! node.isSteal()) {
+      return;
+    }
+    
+    for (Partition partition : _partitions) {
+      if (! node.isAvailable()) {
+        return;
+      }
       
-      _consumers.get(index).next(value);
+      if (partition.isStealable()) {
+        partition.steal(node);
+      }
+    }
+  }
+  
+  /**
+   * Steals a backlogged partition for a consumer with credits and no
+   * backlog of its own.
+   */
+  private void stealIdle(Partition partition)
+  {
+    for (SubscriberNode node : _consumers) {
+      if (node != partition.owner()
+          && node.isSteal()
+          && node.isAvailable()
+          && ! isBacklogged(node)) {
+        partition.steal(node);
+        return;
+      }
     }
   }
   
+  private boolean isBacklogged(SubscriberNode node)
+  {
+    for (Partition partition : _partitions) {
+      if (partition.owner() == node && partition.getLag() > 0) {
+        return true;
+      }
+    }
+    
+    return false;
+  }
+  
+  /**
+   * Snapshot of the consumer partitions, for the admin statistics.
+   */
+  List<PartitionStats> getPartitionStats()
+  {
+    ArrayList<PartitionStats> stats = new ArrayList<>();
+    
+    for (Partition partition : _partitions) {
+      stats.add(new PartitionStats(partition._index,
+                                   partition.getLag(),
+                                   partition.getDelivered(),
+                                   partition.getDropped(),
+                                   partition.getStolen()));
+    }
+    
+    return stats;
+  }
+  
   /*
   private boolean init()
   {
@@ -265,19 +462,174 @@ class PipeNode<T> implements PipeBroker<T>
     }
   }
   
+  /**
+   * Consumer partition, delivering its messages in order to its owner.
+   */
+  private class Partition
+  {
+    private final int _index;
+    
+    private SubscriberNode _owner;
+    
+    private final ArrayDeque<T> _queue = new ArrayDeque<>();
+    
+    private long _delivered;
+    private long _dropped;
+    private long _stolen;
+    
+    Partition(int index)
+    {
+      _index = index;
+    }
+    
+    SubscriberNode owner()
+    {
+      return _owner;
+    }
+    
+    void owner(SubscriberNode owner)
+    {
+      _owner = owner;
+    }
+    
+    void offer(T value)
+    {
+      SubscriberNode owner = _owner;
+      
+      if (_queue.isEmpty() && owner != null && owner.isAvailable()) {
+        owner.deliver(value);
+        _delivered++;
+        return;
+      }
+      
+      if (PARTITION_CAPACITY <= _queue.size()) {
+        _dropped++;
+        return;
+      }
+      
+      _queue.add(value);
+      
+      if (isStealable()) {
+        stealIdle(this);
+      }
+    }
+    
+    void drain()
+    {
+      SubscriberNode owner = _owner;
+      
+      while (owner != null && owner.isAvailable() && ! _queue.isEmpty()) {
+        owner.deliver(_queue.poll());
+        _delivered++;
+      }
+    }
+    
+    boolean isStealable()
+    {
+      SubscriberNode owner = _owner;
+      
+      if (owner == null) {
+        return ! _queue.isEmpty();
+      }
+      else {
+        return (owner.isSteal()
+                && STEAL_THRESHOLD <= _queue.size()
+                && ! owner.isAvailable());
+      }
+    }
+    
+    void steal(SubscriberNode node)
+    {
+      SubscriberNode owner = _owner;
+      
+      if (owner != null) {
+        owner._partitionCount--;
+      }
+      
+      _owner = node;
+      node._partitionCount++;
+      _stolen++;
+      
+      if (log.isLoggable(Level.FINER)) {
+        log.finer(PipeNode.this + " partition " + _index
+                  + " stolen with lag " + _queue.size());
+      }
+      
+      drain();
+    }
+    
+    long getLag()
+    {
+      return _queue.size();
+    }
+    
+    long getDelivered()
+    {
+      return _delivered;
+    }
+    
+    long getDropped()
+    {
+      return _dropped;
+    }
+    
+    long getStolen()
+    {
+      return _stolen;
+    }
+  }
+  
   private class SubscriberNode implements OnAvailable
   {
     private Pipe<T> _pipe;
     
+    private final boolean _isConsumer;
+    private final boolean _isSteal;
+    
+    // partitions owned by a consumer
+    private int _partitionCount;
+    
     SubscriberNode(Pipe<T> pipe)
+    {
+      this(pipe, false, false);
+    }
+    
+    SubscriberNode(Pipe<T> pipe, boolean isConsumer, boolean isSteal)
     {
       Objects.requireNonNull(pipe);
       _pipe = pipe;
+      _isConsumer = isConsumer;
+      _isSteal = isSteal;
+    }
+    
+    boolean isConsumer()
+    {
+      return _isConsumer;
+    }
+    
+    boolean isSteal()
+    {
+      return _isSteal;
+    }
+    
+    boolean isAvailable()
+    {
+      Pipe<T> pipe = _pipe;
+      
+      return pipe != null && pipe.credits().available() > 0;
+    }
+    
+    void deliver(T value)
+    {
+      _pipe.next(value);
     }
 
     @Override
     public void available()
     {
+      if (_isConsumer) {
+        onAvailable(this);
+      }
     }
 
     @Override
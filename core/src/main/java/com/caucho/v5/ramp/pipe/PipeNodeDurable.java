@@ -0,0 +1,1024 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.ramp.pipe;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.caucho.v5.amp.ServicesAmp;
+import com.caucho.v5.util.Murmur64;
+
+import io.baratine.db.Cursor;
+import io.baratine.db.DatabaseService;
+import io.baratine.pipe.Credits.OnAvailable;
+import io.baratine.pipe.Pipe;
+import io.baratine.pipe.PipeBroker;
+import io.baratine.pipe.PipePub;
+import io.baratine.pipe.PipeSub;
+import io.baratine.service.Result;
+import io.baratine.service.ResultChain;
+import io.baratine.timer.Timers;
+
+/**
+ * Durable pipe, storing its messages in a database table.
+ *
+ * Each message gets the next sequence and is stored before delivery.
+ * Live delivery waits for the insert, in sequence order, so a replay sees
+ * every message a live subscriber saw. A message whose insert fails is
+ * never delivered.
+ *
+ * A subscriber can resume from an offset: stored messages are read in
+ * batches as the subscriber's credits allow, and once it has caught up
+ * it receives new messages directly. A subscriber that runs out of credits
+ * falls back to reading from storage, so no message is dropped.
+ *
+ * Consumers share a group offset that is stored with the pipe, so
+ * restarted consumers continue where the group left off. Messages below
+ * the stored group offset and every subscriber's position are deleted.
+ *
+ * Messages are only accessed by their full key, since a partial key
+ * scans the whole table. The next sequence is reserved in blocks in a
+ * per-pipe row, so a restart resumes after the reserved block.
+ */
+class PipeNodeDurable<T> implements PipeBroker<T>
+{
+  private static final Logger log
+    = Logger.getLogger(PipeNodeDurable.class.getName());
+
+  private static final String DATABASE = "bardb:///";
+
+  private static final int BATCH_SIZE = 256;
+
+  // consumer offsets written every OFFSET_SYNC live messages
+  private static final int OFFSET_SYNC = 64;
+
+  // delay before a failed consumer read is retried
+  private static final long READ_RETRY = 1000L;
+
+  // sequences reserved by each write of the pipe's sequence row
+  private static final int SEQUENCE_BLOCK = 1024;
+
+  private static final String CREATE_MESSAGE
+    = "create table pipe_message (\n"
+      + "  pipe_id int64,\n"
+      + "  seq int64,\n"
+      + "  value object,\n"
+      + "  primary key (pipe_id, seq)\n"
+      + ")";
+
+  private static final String CREATE_OFFSET
+    = "create table pipe_offset (\n"
+      + "  pipe_id int64,\n"
+      + "  seq int64,\n"
+      + "  primary key (pipe_id)\n"
+      + ")";
+
+  private static final String CREATE_SEQUENCE
+    = "create table pipe_sequence (\n"
+      + "  pipe_id int64,\n"
+      + "  seq int64,\n"
+      + "  low int64,\n"
+      + "  primary key (pipe_id)\n"
+      + ")";
+
+  private static final String SQL_INSERT
+    = "insert into pipe_message (pipe_id, seq, value) values (?, ?, ?)";
+
+  private static final String SQL_GET
+    = "select seq, value from pipe_message where pipe_id = ? and seq = ?";
+
+  private static final String SQL_DELETE
+    = "delete from pipe_message where pipe_id = ? and seq = ?";
+
+  // only for pipes stored before the sequence row, since it's a scan
+  private static final String SQL_MAX
+    = "select max(seq) from pipe_message where pipe_id = ?";
+
+  private static final String SQL_SEQUENCE_LOAD
+    = "select seq, low from pipe_sequence where pipe_id = ?";
+
+  private static final String SQL_SEQUENCE_SAVE
+    = "insert into pipe_sequence (pipe_id, seq, low) values (?, ?, ?)";
+
+  private static final String SQL_OFFSET_LOAD
+    = "select seq from pipe_offset where pipe_id = ?";
+
+  private static final String SQL_OFFSET_SAVE
+    = "insert into pipe_offset (pipe_id, seq) values (?, ?)";
+
+  private final String _address;
+  private final long _pipeId;
+
+  private DatabaseService _db;
+  private Timers _timers;
+
+  private StateInit _init = StateInit.NEW;
+  private final ArrayList<PendingInit> _pendingInit = new ArrayList<>();
+
+  // sequence of the next message
+  private long _sequence;
+
+  // sequence of the first message not yet stored; earlier messages are
+  // readable from storage and were delivered live
+  private long _sequenceStored;
+
+  // messages are only stored below the reserved sequence
+  private long _sequenceReserved;
+  private long _sequenceReserving;
+  private boolean _isReserving;
+
+  // sequence of the first retained message; earlier ones are deleted
+  private long _sequenceLow;
+  private boolean _isTrimming;
+
+  // messages waiting for their insert, in sequence order
+  private final ArrayDeque<PendingMessage<T>> _pendingStore = new ArrayDeque<>();
+
+  // messages waiting for the sequence reservation before their insert
+  private final ArrayDeque<PendingMessage<T>> _pendingReserve = new ArrayDeque<>();
+
+  private final ArrayList<SubscriberDurable> _subscribers = new ArrayList<>();
+
+  private final ConsumerGroup _consumers = new ConsumerGroup();
+
+  PipeNodeDurable(String address)
+  {
+    Objects.requireNonNull(address);
+
+    _address = address;
+    _pipeId = Murmur64.generate(Murmur64.SEED, address);
+  }
+
+  @Override
+  public void subscribe(PipeSub<T> subscriber)
+  {
+    if (! init(()->subscribe(subscriber), subscriber)) {
+      return;
+    }
+
+    SubscriberDurable sub = new SubscriberDurable(subscriber.pipe());
+
+    _subscribers.add(sub);
+
+    subscriber.pipe().credits().onAvailable(sub);
+    subscriber.ok(null);
+
+    sub.start(subscriber.offset());
+  }
+
+  @Override
+  public void consume(PipeSub<T> consumer)
+  {
+    if (! init(()->consume(consumer), consumer)) {
+      return;
+    }
+
+    ConsumerNode node = new ConsumerNode(consumer.pipe());
+
+    consumer.pipe().credits().onAvailable(node);
+    consumer.ok(null);
+
+    _consumers.add(node, consumer.offset());
+  }
+
+  @Override
+  public void publish(PipePub<T> publisher)
+  {
+    if (! init(()->publish(publisher), publisher)) {
+      return;
+    }
+
+    publisher.ok(new PublisherNode());
+  }
+
+  @Override
+  public void send(T value, Result<Void> result)
+  {
+    if (! init(()->send(value, result), result)) {
+      return;
+    }
+
+    append(value, result.then(x->null));
+  }
+
+  @Override
+  public void sequence(Result<Long> result)
+  {
+    if (! init(()->sequence(result), result)) {
+      return;
+    }
+
+    result.ok(_sequence);
+  }
+
+  /**
+   * Stores the message, delivering it to the live subscribers once it
+   * and every earlier message are stored.
+   */
+  private void append(T value, Result<Object> result)
+  {
+    PendingMessage<T> msg = new PendingMessage<>(_sequence++, value, result);
+
+    _pendingStore.add(msg);
+
+    if (msg.sequence() < _sequenceReserved) {
+      store(msg);
+    }
+    else {
+      _pendingReserve.add(msg);
+      reserve();
+    }
+  }
+
+  private void store(PendingMessage<T> msg)
+  {
+    _db.exec(SQL_INSERT, (x,exn)->onStore(msg, exn),
+             _pipeId, msg.sequence(), msg.value());
+  }
+
+  /**
+   * Reserves the next block of sequences, so a restart never reuses the
+   * sequence of a stored message.
+   */
+  private void reserve()
+  {
+    if (_isReserving) {
+      return;
+    }
+
+    _isReserving = true;
+
+    long reserved = _sequence + SEQUENCE_BLOCK;
+
+    _sequenceReserving = reserved;
+
+    saveSequence((x,exn)->onReserve(reserved, exn));
+  }
+
+  private void onReserve(long reserved, Throwable exn)
+  {
+    _isReserving = false;
+
+    if (exn != null) {
+      // the waiting messages fail, and the next message retries
+      while (! _pendingReserve.isEmpty()) {
+        onStore(_pendingReserve.poll(), exn);
+      }
+
+      return;
+    }
+
+    _sequenceReserved = Math.max(_sequenceReserved, reserved);
+
+    while (! _pendingReserve.isEmpty()
+           && _pendingReserve.peek().sequence() < _sequenceReserved) {
+      store(_pendingReserve.poll());
+    }
+
+    if (! _pendingReserve.isEmpty()) {
+      reserve();
+    }
+  }
+
+  /**
+   * Saves the reserved sequence and the retention low mark.
+   */
+  private void saveSequence(Result<Object> result)
+  {
+    long reserved = Math.max(_sequenceReserved, _sequenceReserving);
+
+    _db.exec(SQL_SEQUENCE_SAVE, result, _pipeId, reserved, _sequenceLow);
+  }
+
+  private void onStore(PendingMessage<T> msg, Throwable exn)
+  {
+    if (exn != null) {
+      log.log(Level.FINE, this + " store failed: " + exn, exn);
+
+      msg.onStore(false);
+      msg.result().fail(exn);
+    }
+    else {
+      msg.onStore(true);
+      msg.result().ok(null);
+    }
+
+    while (! _pendingStore.isEmpty() && _pendingStore.peek().isDone()) {
+      PendingMessage<T> head = _pendingStore.poll();
+
+      _sequenceStored = head.sequence() + 1;
+
+      if (head.isStored()) {
+        deliver(head.sequence(), head.value());
+      }
+    }
+  }
+
+  private void deliver(long seq, T value)
+  {
+    for (SubscriberDurable sub : _subscribers) {
+      sub.onSend(seq, value);
+    }
+
+    _consumers.onSend(seq, value);
+  }
+
+  /**
+   * Reads the stored messages in [min, max), ordered by sequence.
+   *
+   * Each message is a full-key lookup, since a range on the sequence
+   * would scan the table. Sequences of failed inserts are missing.
+   */
+  private void readRange(long min,
+                         long max,
+                         Result<Map<Long,T>> result)
+  {
+    Result.Fork<Cursor,Map<Long,T>> fork = result.fork();
+
+    for (long seq = min; seq < max; seq++) {
+      _db.findOne(SQL_GET, fork.branch(), _pipeId, seq);
+    }
+
+    fork.join(list->toMap(list));
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<Long,T> toMap(Iterable<Cursor> iter)
+  {
+    TreeMap<Long,T> map = new TreeMap<>();
+
+    if (iter != null) {
+      for (Cursor cursor : iter) {
+        if (cursor != null) {
+          map.put(cursor.getLong(1), (T) cursor.getObject(2));
+        }
+      }
+    }
+
+    return map;
+  }
+
+  /**
+   * Deletes the messages below the stored consumer offset that every
+   * subscriber has passed, a batch at a time.
+   */
+  private void trim()
+  {
+    if (_isTrimming) {
+      return;
+    }
+
+    long retain = _consumers.storedOffset();
+
+    if (retain < 0) {
+      return;
+    }
+
+    for (SubscriberDurable sub : _subscribers) {
+      retain = Math.min(retain, sub.next());
+    }
+
+    if (retain <= _sequenceLow) {
+      return;
+    }
+
+    long max = Math.min(retain, _sequenceLow + BATCH_SIZE);
+
+    _isTrimming = true;
+
+    Result<Void> result = (x,exn)->onTrim(max, exn);
+    Result.Fork<Object,Void> fork = result.fork();
+
+    for (long seq = _sequenceLow; seq < max; seq++) {
+      _db.exec(SQL_DELETE, fork.branch(), _pipeId, seq);
+    }
+
+    fork.join(list->null);
+  }
+
+  private void onTrim(long max, Throwable exn)
+  {
+    _isTrimming = false;
+
+    if (exn != null) {
+      // the next stored offset retries
+      log.log(Level.FINE, this + " trim failed: " + exn, exn);
+      return;
+    }
+
+    _sequenceLow = max;
+
+    saveSequence(Result.ignore());
+
+    trim();
+  }
+
+  /**
+   * Recovers the sequence and the consumer offset from storage before
+   * the first request. Returns false if the task is pending on the init.
+   *
+   * If the recovery fails, the pending requests fail and the next request
+   * retries, because a guessed sequence would overwrite stored messages.
+   */
+  private boolean init(Runnable task, ResultChain<?> result)
+  {
+    if (_init == StateInit.INIT) {
+      return true;
+    }
+
+    _pendingInit.add(new PendingInit(task, result));
+
+    if (_init == StateInit.NEW) {
+      _init = StateInit.INITIALIZING;
+
+      ServicesAmp services = ServicesAmp.current();
+
+      _db = services.service(DATABASE).as(DatabaseService.class);
+      _timers = services.service("timer:").as(Timers.class);
+
+      // the tables usually exist already, so create failures are expected
+      _db.exec(CREATE_MESSAGE, Result.ignore());
+      _db.exec(CREATE_OFFSET, Result.ignore());
+      _db.exec(CREATE_SEQUENCE, Result.ignore());
+
+      _db.findOne(SQL_SEQUENCE_LOAD, (c,exn)->onInitSequence(c, exn), _pipeId);
+    }
+
+    return false;
+  }
+
+  private void onInitSequence(Cursor cursor, Throwable exn)
+  {
+    if (exn != null) {
+      onInitFail(exn);
+      return;
+    }
+
+    if (cursor == null) {
+      // pipes without a sequence row scan once for their last message
+      _db.findOne(SQL_MAX, (c,e)->onInitMax(c, e), _pipeId);
+      return;
+    }
+
+    // the unused part of the reserved block is skipped
+    _sequence = cursor.getLong(1);
+    _sequenceLow = cursor.getLong(2);
+
+    initOffset();
+  }
+
+  private void onInitMax(Cursor cursor, Throwable exn)
+  {
+    if (exn != null) {
+      onInitFail(exn);
+      return;
+    }
+
+    Object max = cursor != null ? cursor.getObject(1) : null;
+
+    if (max instanceof Number) {
+      _sequence = ((Number) max).longValue() + 1;
+    }
+    else {
+      _sequence = 0;
+    }
+
+    _sequenceLow = 0;
+    _sequenceReserving = _sequence;
+
+    saveSequence((x,e)->{
+      if (e != null) {
+        onInitFail(e);
+      }
+      else {
+        initOffset();
+      }
+    });
+  }
+
+  private void initOffset()
+  {
+    _sequenceStored = _sequence;
+    _sequenceReserved = _sequence;
+
+    _db.findOne(SQL_OFFSET_LOAD, (c,e)->onInitOffset(c, e), _pipeId);
+  }
+
+  private void onInitOffset(Cursor cursor, Throwable exn)
+  {
+    if (exn != null) {
+      onInitFail(exn);
+      return;
+    }
+
+    if (cursor != null) {
+      _consumers.offset(cursor.getLong(1));
+    }
+
+    _init = StateInit.INIT;
+
+    ArrayList<PendingInit> pending = new ArrayList<>(_pendingInit);
+    _pendingInit.clear();
+
+    for (PendingInit init : pending) {
+      init.run();
+    }
+
+    trim();
+  }
+
+  private void onInitFail(Throwable exn)
+  {
+    log.log(Level.FINE, this + " init failed: " + exn, exn);
+
+    _init = StateInit.NEW;
+
+    ArrayList<PendingInit> pending = new ArrayList<>(_pendingInit);
+    _pendingInit.clear();
+
+    for (PendingInit init : pending) {
+      init.fail(exn);
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "[" + _address + "]";
+  }
+
+  private class PublisherNode implements Pipe<T>
+  {
+    @Override
+    public void next(T value)
+    {
+      append(value, Result.ignore());
+    }
+
+    @Override
+    public void close()
+    {
+    }
+
+    @Override
+    public void fail(Throwable exn)
+    {
+      log.fine(this + " publisher failed: " + exn);
+    }
+  }
+
+  /**
+   * Subscriber receiving every message from its offset.
+   */
+  private class SubscriberDurable implements OnAvailable
+  {
+    private final Pipe<T> _pipe;
+
+    // sequence of the next message for the subscriber
+    private long _next;
+
+    private boolean _isLive;
+    private boolean _isReading;
+
+    SubscriberDurable(Pipe<T> pipe)
+    {
+      Objects.requireNonNull(pipe);
+
+      _pipe = pipe;
+    }
+
+    long next()
+    {
+      return _next;
+    }
+
+    void start(long offset)
+    {
+      // deleted messages are skipped
+      if (offset >= 0) {
+        offset = Math.max(offset, _sequenceLow);
+      }
+
+      if (offset < 0) {
+        _next = _sequenceStored;
+        _isLive = true;
+      }
+      else if (_sequenceStored <= offset) {
+        _next = offset;
+        _isLive = true;
+      }
+      else {
+        _next = offset;
+        read();
+      }
+    }
+
+    void onSend(long seq, T value)
+    {
+      if (! _isLive || seq < _next) {
+        return;
+      }
+
+      if (_pipe.credits().available() > 0) {
+        _pipe.next(value);
+        _next = seq + 1;
+      }
+      else {
+        // lagging subscribers catch up from storage
+        _isLive = false;
+      }
+    }
+
+    @Override
+    public void available()
+    {
+      if (! _isLive) {
+        read();
+      }
+    }
+
+    @Override
+    public void cancel()
+    {
+      _subscribers.remove(this);
+    }
+
+    private void read()
+    {
+      if (_isReading) {
+        return;
+      }
+
+      if (_sequenceStored <= _next) {
+        _isLive = true;
+        return;
+      }
+
+      int credits = Math.min(_pipe.credits().available(), BATCH_SIZE);
+
+      if (credits <= 0) {
+        return;
+      }
+
+      long max = Math.min(_next + credits, _sequenceStored);
+
+      _isReading = true;
+
+      readRange(_next, max, (map,exn)->onRead(map, exn, max));
+    }
+
+    private void onRead(Map<Long,T> map, Throwable exn, long max)
+    {
+      _isReading = false;
+
+      if (exn != null) {
+        log.log(Level.FINE, exn.toString(), exn);
+        _pipe.fail(exn);
+        return;
+      }
+
+      for (T value : map.values()) {
+        _pipe.next(value);
+      }
+
+      _next = max;
+
+      read();
+    }
+  }
+
+  /**
+   * Consumers sharing the messages of the pipe, with a stored offset.
+   */
+  private class ConsumerGroup
+  {
+    private final ArrayList<ConsumerNode> _nodes = new ArrayList<>();
+
+    // sequence of the next message for the group
+    private long _next;
+    private long _savedNext;
+
+    // offset confirmed in storage, or -1 before the first save
+    private long _storedNext = -1;
+
+    private boolean _isLive;
+    private boolean _isReading;
+
+    private int _index;
+
+    void offset(long offset)
+    {
+      _next = offset;
+      _savedNext = offset;
+      _storedNext = offset;
+    }
+
+    /**
+     * The stored offset, unless the group has moved back before it.
+     */
+    long storedOffset()
+    {
+      if (_storedNext < 0) {
+        return -1;
+      }
+
+      return Math.min(_storedNext, _next);
+    }
+
+    void add(ConsumerNode node, long offset)
+    {
+      _nodes.add(node);
+
+      if (offset >= 0) {
+        _next = Math.max(Math.min(offset, _sequenceStored), _sequenceLow);
+        _isLive = false;
+        saveOffset(true);
+      }
+
+      read();
+    }
+
+    void remove(ConsumerNode node)
+    {
+      _nodes.remove(node);
+
+      if (_nodes.isEmpty()) {
+        _isLive = false;
+      }
+    }
+
+    void onSend(long seq, T value)
+    {
+      if (! _isLive) {
+        return;
+      }
+
+      Pipe<T> pipe = nextPipe();
+
+      if (pipe != null) {
+        pipe.next(value);
+        _next = seq + 1;
+        saveOffset(false);
+      }
+      else {
+        _isLive = false;
+      }
+    }
+
+    /**
+     * Next consumer with credits, round robin.
+     */
+    private Pipe<T> nextPipe()
+    {
+      int size = _nodes.size();
+
+      for (int i = 0; i < size; i++) {
+        ConsumerNode node = _nodes.get(_index++ % size);
+
+        if (node.pipe().credits().available() > 0) {
+          return node.pipe();
+        }
+      }
+
+      return null;
+    }
+
+    private int credits()
+    {
+      int credits = 0;
+
+      for (ConsumerNode node : _nodes) {
+        credits += Math.max(0, node.pipe().credits().available());
+      }
+
+      return credits;
+    }
+
+    void read()
+    {
+      if (_isReading || _nodes.isEmpty()) {
+        return;
+      }
+
+      if (_sequenceStored <= _next) {
+        _isLive = true;
+        return;
+      }
+
+      int credits = Math.min(credits(), BATCH_SIZE);
+
+      if (credits <= 0) {
+        return;
+      }
+
+      long max = Math.min(_next + credits, _sequenceStored);
+
+      _isReading = true;
+
+      readRange(_next, max, (map,exn)->onRead(map, exn, max));
+    }
+
+    private void onRead(Map<Long,T> map, Throwable exn, long max)
+    {
+      _isReading = false;
+
+      if (exn != null) {
+        log.log(Level.FINE, exn.toString(), exn);
+
+        // retry later, because consumers with credits won't signal again
+        _timers.runAfter(h->read(), READ_RETRY, TimeUnit.MILLISECONDS,
+                         Result.ignore());
+        return;
+      }
+
+      long next = max;
+
+      for (Map.Entry<Long,T> entry : map.entrySet()) {
+        Pipe<T> pipe = nextPipe();
+
+        if (pipe == null) {
+          next = entry.getKey();
+          break;
+        }
+
+        pipe.next(entry.getValue());
+      }
+
+      _next = next;
+      saveOffset(true);
+
+      read();
+    }
+
+    private void saveOffset(boolean isForce)
+    {
+      if (_next == _savedNext) {
+        return;
+      }
+
+      if (isForce || OFFSET_SYNC <= _next - _savedNext) {
+        _savedNext = _next;
+
+        long next = _next;
+
+        _db.exec(SQL_OFFSET_SAVE, (x,exn)->onSaveOffset(next, exn),
+                 _pipeId, next);
+      }
+    }
+
+    private void onSaveOffset(long next, Throwable exn)
+    {
+      if (exn != null) {
+        log.log(Level.FINE, exn.toString(), exn);
+        return;
+      }
+
+      _storedNext = next;
+
+      trim();
+    }
+  }
+
+  private class ConsumerNode implements OnAvailable
+  {
+    private final Pipe<T> _pipe;
+
+    ConsumerNode(Pipe<T> pipe)
+    {
+      Objects.requireNonNull(pipe);
+
+      _pipe = pipe;
+    }
+
+    Pipe<T> pipe()
+    {
+      return _pipe;
+    }
+
+    @Override
+    public void available()
+    {
+      _consumers.read();
+    }
+
+    @Override
+    public void cancel()
+    {
+      _consumers.remove(this);
+    }
+  }
+
+  /**
+   * Request waiting for the init, failed if the init fails.
+   */
+  private static class PendingInit
+  {
+    private final Runnable _task;
+    private final ResultChain<?> _result;
+
+    PendingInit(Runnable task, ResultChain<?> result)
+    {
+      _task = task;
+      _result = result;
+    }
+
+    void run()
+    {
+      _task.run();
+    }
+
+    void fail(Throwable exn)
+    {
+      _result.fail(exn);
+    }
+  }
+
+  /**
+   * Message waiting for its insert before live delivery.
+   */
+  private static class PendingMessage<T>
+  {
+    private final long _sequence;
+    private final T _value;
+    private final Result<Object> _result;
+
+    private boolean _isDone;
+    private boolean _isStored;
+
+    PendingMessage(long sequence, T value, Result<Object> result)
+    {
+      _sequence = sequence;
+      _value = value;
+      _result = result;
+    }
+
+    long sequence()
+    {
+      return _sequence;
+    }
+
+    T value()
+    {
+      return _value;
+    }
+
+    Result<Object> result()
+    {
+      return _result;
+    }
+
+    void onStore(boolean isStored)
+    {
+      _isDone = true;
+      _isStored = isStored;
+    }
+
+    boolean isDone()
+    {
+      return _isDone;
+    }
+
+    boolean isStored()
+    {
+      return _isStored;
+    }
+  }
+
+  private enum StateInit {
+    NEW,
+    INITIALIZING,
+    INIT;
+  }
+}
@@ -29,11 +29,15 @@
 
 package com.caucho.v5.ramp.pipe;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.caucho.v5.util.L10N;
 
+import io.baratine.pipe.PipeBroker;
 import io.baratine.service.OnLookup;
 import io.baratine.service.Result;
 import io.baratine.service.Service;
@@ -48,7 +52,9 @@ public class SchemePipeImpl
     
   private String _address = "pipe://";
   
-  private ConcurrentHashMap<String,PipeNode<?>> _pipeMap
+  private final boolean _isDurable;
+  
+  private ConcurrentHashMap<String,PipeBroker<?>> _pipeMap
     = new ConcurrentHashMap<>();
   
   public SchemePipeImpl()
@@ -57,10 +63,19 @@ public class SchemePipeImpl
   }
   
   public SchemePipeImpl(String address)
+  {
+    this(address, false);
+  }
+  
+  /**
+   * @param isDurable pipes store their messages and can be resumed
+   */
+  public SchemePipeImpl(String address, boolean isDurable)
   {
     Objects.requireNonNull(address);
     
     _address = address;
+    _isDurable = isDurable;
   }
   
   public String getName()
@@ -80,17 +95,22 @@ public class SchemePipeImpl
     return value;
   }
 
-  public PipeNode<?> lookupPath(String path)
+  public PipeBroker<?> lookupPath(String path)
   {
     return lookupPipeNode(path);
   }
   
-  private PipeNode<?> lookupPipeNode(String path)
+  private PipeBroker<?> lookupPipeNode(String path)
   {
-    PipeNode<?> pipe = _pipeMap.get(path);
+    PipeBroker<?> pipe = _pipeMap.get(path);
     
     if (pipe == null) {
-      pipe = new PipeNode(path);
+      if (_isDurable) {
+        pipe = new PipeNodeDurable<>(path);
+      }
+      else {
+        pipe = new PipeNode<>(path);
+      }
     
       _pipeMap.putIfAbsent(path, pipe);
       
@@ -100,6 +120,24 @@ public class SchemePipeImpl
     return pipe;
   }
 
+  /**
+   * Partition statistics for the pipes with consumers, sorted by address.
+   */
+  public Map<String,List<PartitionStats>> getPartitionStats()
+  {
+    TreeMap<String,List<PartitionStats>> stats = new TreeMap<>();
+    
+    for (Map.Entry<String,PipeBroker<?>> entry : _pipeMap.entrySet()) {
+      if (entry.getValue() instanceof PipeNode) {
+        PipeNode<?> pipe = (PipeNode<?>) entry.getValue();
+        
+        stats.put(entry.getKey(), pipe.getPartitionStats());
+      }
+    }
+    
+    return stats;
+  }
+
   /*
   public void onChild(String parent, String child, Result<Void> result)
   {
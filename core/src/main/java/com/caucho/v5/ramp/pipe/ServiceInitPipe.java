@@ -67,6 +67,12 @@ public class ServiceInitPipe implements ServiceInitializer
            .address("pipe:")
            .start();
     
+    SchemePipeImpl pipeDurableScheme = new SchemePipeImpl("pipe-durable:", true);
+    
+    builder.service(pipeDurableScheme)
+           .address("pipe-durable:")
+           .start();
+    
     InjectorBuilder injector = builder.injector();
     
     
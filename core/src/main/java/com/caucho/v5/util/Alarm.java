@@ -30,6 +30,7 @@
 package com.caucho.v5.util;
 
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.logging.Level;
@@ -54,6 +55,7 @@ public class Alarm implements EnvLoaderListener, Runnable
   
   private static AtomicReferenceFieldUpdater<Alarm,Alarm> _nextUpdater;
   private static AtomicLongFieldUpdater<Alarm> _wakeTimeUpdater;
+  private static AtomicIntegerFieldUpdater<Alarm> _bucketUpdater;
 
   // private static final AlarmThread _alarmThread;
   private static final CoordinatorThread _coordinatorThread;
@@ -79,6 +81,7 @@ public class Alarm implements EnvLoaderListener, Runnable
   */
   
   private volatile Alarm _next;
+  private Alarm _prev;
   private volatile long _wakeTime;
   
   private AlarmListener _listener;
@@ -88,7 +91,7 @@ public class Alarm implements EnvLoaderListener, Runnable
   private boolean _isPriority = true;
 
   // private int _heapIndex = 0;
-  private int _bucket = -1;
+  private volatile int _bucket = -1;
 
   private volatile boolean _isRunning;
   
@@ -346,6 +349,11 @@ public class Alarm implements EnvLoaderListener, Runnable
     _bucket = bucket;
   }
   
+  boolean setBucket(int prevBucket, int bucket)
+  {
+    return _bucketUpdater.compareAndSet(this, prevBucket, bucket);
+  }
+  
   void setHeapIndex(int index)
   {
     // _heapIndex = index;
@@ -365,6 +373,16 @@ public class Alarm implements EnvLoaderListener, Runnable
   {
     _next = next;
   }
+  
+  Alarm getPrev()
+  {
+    return _prev;
+  }
+  
+  void setPrev(Alarm prev)
+  {
+    _prev = prev;
+  }
 
   /**
    * Return the alarm's listener.
@@ -689,6 +707,8 @@ public class Alarm implements EnvLoaderListener, Runnable
       = AtomicReferenceFieldUpdater.newUpdater(Alarm.class, Alarm.class, "_next");
     _wakeTimeUpdater
       = AtomicLongFieldUpdater.newUpdater(Alarm.class, "_wakeTime");
+    _bucketUpdater
+      = AtomicIntegerFieldUpdater.newUpdater(Alarm.class, "_bucket");
 
     // _systemLoader = systemLoader;
     _systemLoader = loader;
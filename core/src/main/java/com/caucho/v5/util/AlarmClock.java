@@ -40,26 +40,46 @@ import com.caucho.v5.amp.thread.ThreadPool;
  * an objects to schedule a timeout without creating a new thread.
  *
  * <p>A separate thread periodically tests the queue for alarms ready.
+ *
+ * <p>Alarms are kept in a hierarchical timing wheel. The first level has
+ * one slot per millisecond, and each higher level has slots spanning a
+ * full turn of the level below. An alarm is placed in the lowest level
+ * that covers its delay and cascades down as the clock reaches its slot.
+ * Each slot has its own lock, so queue and dequeue are O(1) and only
+ * contend on the same slot.
  */
 public class AlarmClock {
   private static final Logger log
     = Logger.getLogger(AlarmClock.class.getName());
-  private static final int CLOCK_PERIOD = 60 * 1000;
   private static final int CLOCK_NEXT = 5 * 1000;
-  private static final int CLOCK_INTERVAL = 1;
   
-  private Alarm []_clockArray = new Alarm[CLOCK_PERIOD];
+  private static final int []LEVEL_SHIFT = { 0, 10, 16, 22 };
+  private static final int []LEVEL_SIZE = { 1024, 64, 64, 64 };
+  private static final int []LEVEL_OFFSET = { 0, 1024, 1088, 1152 };
+  private static final int LEVELS = LEVEL_SHIFT.length;
+  private static final int SLOT_COUNT = 1216;
+  
+  private final Slot []_slots = new Slot[SLOT_COUNT];
   
   private AtomicLong _now = new AtomicLong();
   private AtomicLong _nextAlarmTime = new AtomicLong();
   
   private final ArrayList<Alarm> _currentAlarms = new ArrayList<Alarm>();
   
-  private long _lastTime;
+  // alarms drained from a slot, only used by the extracting thread
+  private final ArrayList<Alarm> _drainAlarms = new ArrayList<Alarm>();
   
-  private Object _lock = new Object();
+  private long _wheelTime;
+  private long _lastTime;
   
   private ThreadPool _threadPool = ThreadPool.current();
+  
+  public AlarmClock()
+  {
+    for (int i = 0; i < _slots.length; i++) {
+      _slots[i] = new Slot();
+    }
+  }
 
   /**
    * Queue the alarm for wakeup.
@@ -88,12 +108,7 @@ public class AlarmClock {
     }
     
     if (oldWakeTime > 0) {
-      if (! dequeueImpl(alarm)) {
-        /*
-        System.out.println("FAIL: " + oldWakeTime + " " + wakeTime
-                           + " " + alarm);
-                           */
-      }
+      dequeueImpl(alarm);
     }
     
     if (wakeTime <= 0) {
@@ -108,26 +123,16 @@ public class AlarmClock {
       return true;
     }
     
-    synchronized (_lock) {
-      if (alarm.getBucket() >= 0) {
-        return false;
-      }
-      
-      int bucket = getBucket(wakeTime);
-      alarm.setBucket(bucket);
-    
-      Alarm top = _clockArray[bucket];
-      alarm.setNext(top);
-      _clockArray[bucket] = alarm;
+    if (! insert(alarm, wakeTime, now)) {
+      return false;
     }
     
-    now = _now.get();
-    
-    long nextWakeTime = alarm.getWakeTime();
-    
-    if (nextWakeTime != wakeTime || wakeTime < now) {
+    // the clock may have passed the slot while inserting
+    if (wakeTime <= _now.get()) {
       dequeueImpl(alarm);
       queueCurrent(alarm);
+      
+      return true;
     }
     
     return isEarliest;
@@ -142,88 +147,78 @@ public class AlarmClock {
   
   void dequeue(Alarm alarm)
   {
-    // long oldWakeTime = alarm.getAndSetWakeTime(0);
-    // long oldWakeTime = alarm.getAndSetWakeTime(0);
     alarm.setWakeTime(0);
     
-    if (alarm.getBucket() >= 0)
+    if (alarm.getBucket() >= 0) {
       dequeueImpl(alarm);
+    }
   }
   
-  private boolean dequeueImpl(Alarm alarm)
+  /**
+   * Links the alarm into the slot for its wake time. Returns false if the
+   * alarm is already queued.
+   */
+  private boolean insert(Alarm alarm, long wakeTime, long now)
   {
-     synchronized (_lock) {
-      int bucket = alarm.getBucket();
-      Alarm next = alarm.getNext();
-      
-      alarm.setBucket(-1);
-      alarm.setNext(null);
-      
-      if (bucket < 0)
+    int bucket = getBucket(wakeTime, now);
+    Slot slot = _slots[bucket];
+    
+    synchronized (slot) {
+      if (! alarm.setBucket(-1, bucket)) {
         return false;
+      }
       
-      Alarm head = _clockArray[bucket];
+      Alarm head = slot._head;
       
-      if (head == null)
-        return false;
+      alarm.setPrev(null);
+      alarm.setNext(head);
       
-      if (head == alarm) {
-        _clockArray[bucket] = next;
-        return true;
+      if (head != null) {
+        head.setPrev(alarm);
       }
       
-      Alarm prev = head;
-      Alarm ptr = prev.getNext();
-
-      while (ptr != null) {
-        if (ptr == alarm) {
-          prev.setNext(next);
-          return true;
-        }
-        
-        prev = ptr;
-        ptr = ptr.getNext();
-      }
+      slot._head = alarm;
     }
     
-    return false;
+    return true;
   }
   
-  private Alarm extractNextAlarm(int bucket, long time, boolean isTest)
+  private boolean dequeueImpl(Alarm alarm)
   {
-    if (_clockArray[bucket] == null) {
-      return null;
+    int bucket = alarm.getBucket();
+    
+    if (bucket < 0) {
+      return false;
     }
     
-    synchronized (_lock) {
-      Alarm ptr = _clockArray[bucket];
-      Alarm prev = null;
+    Slot slot = _slots[bucket];
+    
+    synchronized (slot) {
+      // the bucket only changes under the slot's lock
+      if (alarm.getBucket() != bucket) {
+        return false;
+      }
       
-      while (ptr != null) {
-        Alarm next = ptr.getNext();
-        
-        long wakeTime = ptr.getWakeTime();
-        
-        if (wakeTime <= time) {
-          ptr.setNext(null);
-          ptr.setBucket(-1);
-          
-          if (prev != null) {
-            prev.setNext(next);
-          }
-          else {
-            _clockArray[bucket] = next;
-          }
-          
-          return ptr;
-        }
-        
-        prev = ptr;
-        ptr = next;
+      Alarm prev = alarm.getPrev();
+      Alarm next = alarm.getNext();
+      
+      if (prev != null) {
+        prev.setNext(next);
+      }
+      else {
+        slot._head = next;
       }
+      
+      if (next != null) {
+        next.setPrev(prev);
+      }
+      
+      alarm.setPrev(null);
+      alarm.setNext(null);
+      alarm.setBucket(-1);
     }
     
-    return null;
+    return true;
   }
 
   /**
@@ -231,7 +226,7 @@ public class AlarmClock {
    */
   public long extractAlarm(long now, boolean isTest)
   {
-    long lastTime = _now.getAndSet(now);
+    _now.set(now);
     
     long nextTime = _nextAlarmTime.get();
 
@@ -241,28 +236,28 @@ public class AlarmClock {
     
     _nextAlarmTime.set(now + CLOCK_NEXT);
     
-    int delta;
-    
-    delta = (int) (now - lastTime) / CLOCK_INTERVAL;
-    
-    delta = Math.min(delta, CLOCK_PERIOD);
-
-    Alarm alarm;
-    
-    int bucket = getBucket(lastTime);
+    long wheelTime = _wheelTime;
     
-    for (int i = 0; i <= delta; i++) {
-      // long time = lastTime + i;
-
-      while ((alarm = extractNextAlarm(bucket, now, isTest)) != null) {
-        dispatch(alarm, now, isTest);
-      }
+    if (wheelTime < now) {
+      _wheelTime = now;
       
-      bucket = (bucket + 1) % CLOCK_PERIOD;
+      // higher levels first, so cascaded alarms are handled by the
+      // lower levels in the same pass
+      for (int level = LEVELS - 1; level >= 0; level--) {
+        int shift = LEVEL_SHIFT[level];
+        long tick = wheelTime >> shift;
+        long count = Math.min((now >> shift) - tick, LEVEL_SIZE[level]);
+        
+        for (long i = 1; i <= count; i++) {
+          extractSlot(level, tick + i, now, isTest);
+        }
+      }
     }
     
+    Alarm alarm;
+    
     while ((alarm = extractNextCurrentAlarm()) != null) {
-      dispatch(alarm, now, isTest);
+      fire(alarm, now, isTest);
     }
     
     long next = updateNextAlarmTime(now);
@@ -272,6 +267,64 @@ public class AlarmClock {
     return next;
   }
   
+  /**
+   * Drains a slot, dispatching expired alarms and cascading the rest to
+   * lower levels.
+   */
+  private void extractSlot(int level, long tick, long now, boolean isTest)
+  {
+    Slot slot = _slots[LEVEL_OFFSET[level]
+                       + (int) (tick & (LEVEL_SIZE[level] - 1))];
+    
+    if (slot._head == null) {
+      return;
+    }
+    
+    ArrayList<Alarm> drain = _drainAlarms;
+    
+    synchronized (slot) {
+      Alarm ptr = slot._head;
+      slot._head = null;
+      
+      while (ptr != null) {
+        Alarm next = ptr.getNext();
+        
+        ptr.setPrev(null);
+        ptr.setNext(null);
+        ptr.setBucket(-1);
+        
+        drain.add(ptr);
+        
+        ptr = next;
+      }
+    }
+    
+    for (int i = 0; i < drain.size(); i++) {
+      fire(drain.get(i), now, isTest);
+    }
+    
+    drain.clear();
+  }
+  
+  /**
+   * Dispatches an expired alarm, or requeues one that is not yet due.
+   */
+  private void fire(Alarm alarm, long now, boolean isTest)
+  {
+    long wakeTime = alarm.getWakeTime();
+    
+    if (wakeTime <= 0) {
+      // dequeued
+      return;
+    }
+    else if (now < wakeTime) {
+      insert(alarm, wakeTime, now);
+    }
+    else if (alarm.setWakeTime(wakeTime, 0)) {
+      dispatch(alarm, wakeTime, isTest);
+    }
+  }
+  
   private Alarm extractNextCurrentAlarm()
   {
     if (_currentAlarms.size() == 0)
@@ -287,45 +340,56 @@ public class AlarmClock {
     }
   }
   
+  /**
+   * Lowers the next alarm time to the first occupied slot.
+   */
   private long updateNextAlarmTime(long now)
   {
     long nextTime = _nextAlarmTime.get();
+    long time = nextTime;
     
-    long delta = Math.min(nextTime - now, CLOCK_PERIOD);
-
-    for (int i = 0; i < delta; i++) {
-      long time = now + i;
-      
-      if (nextTime < time)
-        return nextTime;
+    for (int level = 0; level < LEVELS; level++) {
+      int shift = LEVEL_SHIFT[level];
+      int size = LEVEL_SIZE[level];
+      long tick = now >> shift;
       
-      int bucket = getBucket(time);
-      
-      if (_clockArray[bucket] != null) {
-        // Alarm alarm = _clockArray[bucket];
+      for (int i = 1; i < size; i++) {
+        long slotTime = (tick + i) << shift;
+        
+        if (time <= slotTime) {
+          break;
+        }
+        
+        int bucket = LEVEL_OFFSET[level] + (int) ((tick + i) & (size - 1));
         
-        while (time < nextTime) {
-          if (_nextAlarmTime.compareAndSet(nextTime, time))
-            return time;
-          
-          nextTime = _nextAlarmTime.get();
+        if (_slots[bucket]._head != null) {
+          time = slotTime;
+          break;
         }
       }
     }
     
+    while (time < nextTime) {
+      if (_nextAlarmTime.compareAndSet(nextTime, time)) {
+        return time;
+      }
+      
+      nextTime = _nextAlarmTime.get();
+    }
+    
     return nextTime;
   }
   
-  private void dispatch(Alarm alarm, long now, boolean isTest)
+  private void dispatch(Alarm alarm, long wakeTime, boolean isTest)
   {
     boolean isStressTest = false;
     
+    long now;
+    
     if (isStressTest)
       now = CurrentTime.getExactTime();
     else
       now = CurrentTime.currentTime();
-    
-    long wakeTime = alarm.getAndSetWakeTime(0);
 
     long delta = now - wakeTime;
 
@@ -359,9 +423,29 @@ public class AlarmClock {
     }
   }
   
-  private int getBucket(long time)
+  /**
+   * Returns the slot for the wake time: the lowest level whose span
+   * covers the delay, indexed by the wake time's tick in that level.
+   */
+  private static int getBucket(long wakeTime, long now)
   {
-    return (int) ((time + CLOCK_INTERVAL - 1) / CLOCK_INTERVAL % CLOCK_PERIOD);
+    int level = 0;
+    
+    for (; level < LEVELS - 1; level++) {
+      int shift = LEVEL_SHIFT[level];
+      
+      if ((wakeTime >> shift) - (now >> shift) < LEVEL_SIZE[level]) {
+        break;
+      }
+    }
+    
+    int shift = LEVEL_SHIFT[level];
+    int size = LEVEL_SIZE[level];
+    
+    // beyond the top level, park in its last slot and requeue from there
+    long tick = Math.min(wakeTime >> shift, (now >> shift) + size - 1);
+    
+    return LEVEL_OFFSET[level] + (int) (tick & (size - 1));
   }
 
   /**
@@ -378,17 +462,21 @@ public class AlarmClock {
   {
     _now.set(0);
     _nextAlarmTime.set(0);
+    _wheelTime = 0;
     
-    synchronized (_lock) {
+    synchronized (_currentAlarms) {
       _currentAlarms.clear();
+    }
     
-      for (int i = CLOCK_PERIOD - 1; i >= 0; i--) {
-        Alarm alarm = _clockArray[i];
-        _clockArray[i] = null;
+    for (Slot slot : _slots) {
+      synchronized (slot) {
+        Alarm alarm = slot._head;
+        slot._head = null;
       
         while (alarm != null) {
           Alarm next = alarm.getNext();
           alarm.setNext(null);
+          alarm.setPrev(null);
           alarm.setBucket(-1);
           alarm.setWakeTime(alarm.getWakeTime(), 0);
           alarm = next;
@@ -402,4 +490,9 @@ public class AlarmClock {
   {
     return getClass().getSimpleName();
   }
+  
+  private static final class Slot
+  {
+    private volatile Alarm _head;
+  }
 }
@@ -0,0 +1,943 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent fixed length cache with a segmented LRU replacement policy,
+ * API-compatible with {@link LruCache}.
+ *
+ * <p>Lookups go directly to a shared concurrent hash map and never lock.
+ * The LRU order is kept per segment, each with its own lock and its own
+ * share of the capacity. A hit is recorded in the segment's lossy read
+ * buffer, which is drained into the LRU lists by the next writer or by
+ * a reader that wins the segment's try-lock.
+ *
+ * <p>Like LruCache, each segment keeps a once-seen and a seen-twice list,
+ * so a scan of new keys can't flush the frequently used entries.
+ */
+public class LruCacheConcurrent<K,V>
+{
+  private static final Object NULL = new Object();
+
+  private static final int SEGMENT_MAX = 64;
+  private static final int SEGMENT_MIN_CAPACITY = 16;
+
+  private static final int READ_BUFFER_SIZE = 32;
+  private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+  private static final int READ_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+
+  private final int _capacity;
+
+  private final ConcurrentHashMap<Object,CacheItem<K,V>> _map;
+
+  private final Segment<K,V> []_segments;
+  private final int _segmentMask;
+
+  // rotates removeTail() across the segments
+  private final AtomicInteger _tailSegment = new AtomicInteger();
+
+  private volatile boolean _isEnableListeners = true;
+  private volatile boolean _isEnableStatistics;
+
+  private final LongAdder _hitCount = new LongAdder();
+  private final LongAdder _missCount = new LongAdder();
+  private final LongAdder _evictionCount = new LongAdder();
+
+  /**
+   * Create the LRU cache with a specific capacity.
+   *
+   * @param initialCapacity maximum number of entries in the cache
+   */
+  public LruCacheConcurrent(int initialCapacity)
+  {
+    this(initialCapacity, false);
+  }
+
+  /**
+   * Create the LRU cache with a specific capacity.
+   *
+   * @param initialCapacity maximum number of entries in the cache
+   * @param isStatistics true if hit and miss counts are gathered
+   */
+  public LruCacheConcurrent(int initialCapacity, boolean isStatistics)
+  {
+    _capacity = Math.max(1, initialCapacity);
+
+    int segmentCount = 1;
+
+    int cpus = Runtime.getRuntime().availableProcessors();
+
+    while (segmentCount < SEGMENT_MAX
+           && segmentCount < 2 * cpus
+           && 2 * SEGMENT_MIN_CAPACITY * segmentCount <= _capacity) {
+      segmentCount *= 2;
+    }
+
+    _segments = newSegments(segmentCount);
+    _segmentMask = segmentCount - 1;
+
+    for (int i = 0; i < segmentCount; i++) {
+      int segmentCapacity = _capacity / segmentCount;
+
+      if (i < _capacity % segmentCount) {
+        segmentCapacity++;
+      }
+
+      _segments[i] = new Segment<>(Math.max(1, segmentCapacity));
+    }
+
+    _map = new ConcurrentHashMap<>(Math.min(_capacity, 1024), 0.75f,
+                                   segmentCount);
+
+    _isEnableStatistics = isStatistics;
+  }
+
+  /**
+   * Disable the listeners
+   */
+  public void setEnableListeners(boolean isEnable)
+  {
+    _isEnableListeners = isEnable;
+  }
+
+  public void setEnableStatistics(boolean isEnable)
+  {
+    _isEnableStatistics = isEnable;
+  }
+
+  /**
+   * Returns the current number of entries in the cache.
+   */
+  public int size()
+  {
+    return _map.size();
+  }
+
+  /**
+   * Returns the LRU cache capacity
+   */
+  public int getCapacity()
+  {
+    return _capacity;
+  }
+
+  /**
+   * Clears the cache
+   */
+  public void clear()
+  {
+    ArrayList<CacheListener> listeners = null;
+
+    for (Segment<K,V> segment : _segments) {
+      segment.lock();
+
+      try {
+        for (CacheItem<K,V> item = segment.first();
+             item != null;
+             item = segment.first()) {
+          _map.remove(item._key, item);
+          segment.unlink(item);
+
+          V value = item._value;
+
+          if (_isEnableListeners) {
+            if (value instanceof SyncCacheListener) {
+              ((SyncCacheListener) value).syncRemoveEvent();
+            }
+
+            if (value instanceof CacheListener) {
+              if (listeners == null) {
+                listeners = new ArrayList<>();
+              }
+
+              listeners.add((CacheListener) value);
+            }
+          }
+        }
+
+        segment.clearReads();
+      } finally {
+        segment.unlock();
+      }
+    }
+
+    if (listeners != null) {
+      for (int i = listeners.size() - 1; i >= 0; i--) {
+        listeners.get(i).removeEvent();
+      }
+    }
+  }
+
+  /**
+   * Get an item from the cache and make it most recently used.
+   *
+   * @param key key to lookup the item
+   * @return the matching object in the cache
+   */
+  public V get(K key)
+  {
+    Object okey = key;
+    if (okey == null) {
+      okey = NULL;
+    }
+
+    CacheItem<K,V> item = _map.get(okey);
+
+    if (item == null) {
+      if (_isEnableStatistics) {
+        _missCount.increment();
+      }
+
+      return null;
+    }
+
+    if (_isEnableStatistics) {
+      _hitCount.increment();
+    }
+
+    item._segment.recordRead(item);
+
+    return item._value;
+  }
+
+  /**
+   * Puts a new item in the cache.  If the cache is full, remove the
+   * LRU item.
+   *
+   * @param key key to store data
+   * @param value value to be stored
+   *
+   * @return old value stored under the key
+   */
+  public V put(K key, V value)
+  {
+    return compareAndPut(null, key, value, false);
+  }
+
+  /**
+   * Puts a new item in the cache.  If the cache is full, remove the
+   * LRU item.
+   *
+   * @param key key to store data
+   * @param value value to be stored
+   *
+   * @return the value actually stored
+   */
+  public V putIfNew(K key, V value)
+  {
+    V oldValue = compareAndPut(null, key, value, true);
+
+    if (oldValue != null) {
+      return oldValue;
+    }
+    else {
+      return value;
+    }
+  }
+
+  /**
+   * Puts a new item in the cache if the current value matches oldValue.
+   *
+   * @param key the key
+   * @param value the new value
+   * @param testValue the value to test against the current
+   *
+   * @return true if the put succeeds
+   */
+  public boolean compareAndPut(V testValue, K key, V value)
+  {
+    V result = compareAndPut(testValue, key, value, true);
+
+    return testValue == result;
+  }
+
+  /**
+   * Puts a new item in the cache, evicting from the key's segment
+   * if the segment is over its capacity.
+   */
+  private V compareAndPut(V testValue, K key, V value, boolean isCompare)
+  {
+    Object okey = key;
+    if (okey == null) {
+      okey = NULL;
+    }
+
+    Segment<K,V> segment = segment(okey);
+
+    V oldValue = null;
+    ArrayList<V> evictList = null;
+
+    segment.lock();
+
+    try {
+      segment.drainReads();
+
+      CacheItem<K,V> item = _map.get(okey);
+
+      if (item != null) {
+        oldValue = item._value;
+
+        if (isCompare && testValue != oldValue) {
+          return oldValue;
+        }
+
+        segment.promote(item);
+
+        item._value = value;
+
+        if (value == oldValue) {
+          oldValue = null;
+        }
+
+        if (_isEnableListeners && oldValue instanceof SyncCacheListener) {
+          ((SyncCacheListener) oldValue).syncRemoveEvent();
+        }
+      }
+      else {
+        if (isCompare && testValue != null) {
+          return null;
+        }
+
+        item = new CacheItem<>(okey, value, segment);
+
+        segment.addFirst(item);
+        _map.put(okey, item);
+
+        while (segment._capacity < segment._size1 + segment._size2) {
+          CacheItem<K,V> tail = segment.tail();
+
+          if (tail == null || tail == item) {
+            break;
+          }
+
+          V tailValue = evict(segment, tail);
+
+          if (evictList == null) {
+            evictList = new ArrayList<>();
+          }
+
+          evictList.add(tailValue);
+        }
+      }
+    } finally {
+      segment.unlock();
+    }
+
+    if (evictList != null) {
+      for (V evictValue : evictList) {
+        removeEvent(evictValue);
+      }
+    }
+
+    removeEvent(oldValue);
+
+    return oldValue;
+  }
+
+  /**
+   * Remove the least recently used item in the next non-empty segment.
+   */
+  public boolean removeTail()
+  {
+    int offset = _tailSegment.getAndIncrement();
+
+    for (int i = 0; i < _segments.length; i++) {
+      Segment<K,V> segment = _segments[(offset + i) & _segmentMask];
+
+      if (removeTail(segment, false)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Remove the last item in the LRU from the longest list of the
+   * largest segment.
+   *
+   * For functions like Cache disk space, this is a better solution
+   * than the strict LRU removal.
+   */
+  public boolean removeLongestTail()
+  {
+    Segment<K,V> longest = null;
+
+    for (Segment<K,V> segment : _segments) {
+      if (longest == null
+          || longest._size1 + longest._size2
+             < segment._size1 + segment._size2) {
+        longest = segment;
+      }
+    }
+
+    return removeTail(longest, true);
+  }
+
+  private boolean removeTail(Segment<K,V> segment, boolean isLongest)
+  {
+    V value;
+
+    segment.lock();
+
+    try {
+      segment.drainReads();
+
+      CacheItem<K,V> tail;
+
+      if (isLongest) {
+        tail = segment._size1 <= segment._size2 ? segment._tail2
+                                                : segment._tail1;
+      }
+      else {
+        tail = segment.tail();
+      }
+
+      if (tail == null) {
+        return false;
+      }
+
+      value = evict(segment, tail);
+    } finally {
+      segment.unlock();
+    }
+
+    removeEvent(value);
+
+    return true;
+  }
+
+  /**
+   * Evicts an item from the segment. Called with the segment locked.
+   */
+  private V evict(Segment<K,V> segment, CacheItem<K,V> item)
+  {
+    V value = item._value;
+
+    if (value instanceof LruListener) {
+      ((LruListener) value).lruEvent();
+    }
+
+    _map.remove(item._key, item);
+    segment.unlink(item);
+
+    _evictionCount.increment();
+
+    if (_isEnableListeners && value instanceof SyncCacheListener) {
+      ((SyncCacheListener) value).syncRemoveEvent();
+    }
+
+    return value;
+  }
+
+  /**
+   * Removes an item from the cache
+   *
+   * @param key the key to remove
+   *
+   * @return the value removed
+   */
+  public V remove(K key)
+  {
+    Object okey = key;
+    if (okey == null) {
+      okey = NULL;
+    }
+
+    Segment<K,V> segment = segment(okey);
+
+    V value = null;
+
+    segment.lock();
+
+    try {
+      CacheItem<K,V> item = _map.remove(okey);
+
+      if (item != null) {
+        segment.unlink(item);
+
+        value = item._value;
+      }
+
+      if (_isEnableListeners && value instanceof SyncCacheListener) {
+        ((SyncCacheListener) value).syncRemoveEvent();
+      }
+    } finally {
+      segment.unlock();
+    }
+
+    removeEvent(value);
+
+    return value;
+  }
+
+  private void removeEvent(V value)
+  {
+    if (_isEnableListeners && value instanceof CacheListener) {
+      ((CacheListener) value).removeEvent();
+    }
+  }
+
+  private Segment<K,V> segment(Object key)
+  {
+    int hash = key.hashCode();
+
+    hash ^= (hash >>> 16);
+    hash *= 0x85ebca6b;
+    hash ^= (hash >>> 13);
+
+    return _segments[hash & _segmentMask];
+  }
+
+  /**
+   * Returns the keys stored in the cache
+   */
+  public Iterator<K> keys()
+  {
+    return new KeyIterator<>(_map.values().iterator());
+  }
+
+  /**
+   * Returns the keys stored in the cache. The old iterator is not reused.
+   */
+  public Iterator<K> keys(Iterator<K> oldIter)
+  {
+    return keys();
+  }
+
+  /**
+   * Returns the values in the cache
+   */
+  public Iterable<V> valueIterable()
+  {
+    return ()->values();
+  }
+
+  /**
+   * Returns the values in the cache
+   */
+  public Iterator<V> values()
+  {
+    return new ValueIterator<>(_map.values().iterator());
+  }
+
+  /**
+   * Returns the values in the cache. The old iterator is not reused.
+   */
+  public Iterator<V> values(Iterator<V> oldIter)
+  {
+    return values();
+  }
+
+  /**
+   * Generic array creation, which Java only allows through a raw array.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static <K,V> Segment<K,V> []newSegments(int count)
+  {
+    return new Segment[count];
+  }
+
+  /**
+   * Returns the entries
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public Iterator<LruCache.Entry<K,V>> iterator()
+  {
+    return (Iterator) _map.values().iterator();
+  }
+
+  /**
+   * Returns the hit count.
+   */
+  public long getHitCount()
+  {
+    return _hitCount.sum();
+  }
+
+  /**
+   * Returns the miss count.
+   */
+  public long getMissCount()
+  {
+    return _missCount.sum();
+  }
+
+  /**
+   * Returns the number of entries removed to make room for new entries.
+   */
+  public long getEvictionCount()
+  {
+    return _evictionCount.sum();
+  }
+
+  @Override
+  public String toString()
+  {
+    return (getClass().getSimpleName()
+            + "[" + size() + "/" + _capacity
+            + ",segments=" + _segments.length + "]");
+  }
+
+  /**
+   * An LRU segment: the once-seen and seen-twice lists for its share of
+   * the keys, and the buffer of reads not yet applied to the lists.
+   *
+   * The lists are only changed with the segment locked.
+   */
+  @SuppressWarnings("serial")
+  static final class Segment<K,V> extends ReentrantLock
+  {
+    private final int _capacity;
+    // once-seen items are preferred for eviction above this size
+    private final int _capacity1;
+
+    // lru timeout reduces lru updates for the most used items
+    private final int _lruTimeout;
+
+    // counts lru updates, rolling over at 0x3fffffff
+    private volatile int _lruCounter;
+
+    private volatile int _size1;
+    private CacheItem<K,V> _head1;
+    private CacheItem<K,V> _tail1;
+
+    private volatile int _size2;
+    private CacheItem<K,V> _head2;
+    private CacheItem<K,V> _tail2;
+
+    private final AtomicReferenceArray<CacheItem<K,V>> _readBuffer
+      = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong _readWrite = new AtomicLong();
+    private volatile long _readDrain;
+
+    Segment(int capacity)
+    {
+      _capacity = capacity;
+      _capacity1 = capacity / 2;
+
+      if (capacity > 32) {
+        _lruTimeout = capacity / 8;
+      }
+      else {
+        _lruTimeout = 1;
+      }
+    }
+
+    /**
+     * Records a cache hit without taking the lock. Recently promoted
+     * items are skipped, and a full buffer overwrites older reads.
+     */
+    void recordRead(CacheItem<K,V> item)
+    {
+      if (item._hitCount > 1) {
+        int delta = (_lruCounter - item._lruCounter) & 0x3fffffff;
+
+        if (delta <= _lruTimeout) {
+          return;
+        }
+      }
+
+      long index = _readWrite.getAndIncrement();
+
+      _readBuffer.lazySet((int) index & READ_BUFFER_MASK, item);
+
+      if (READ_DRAIN_THRESHOLD <= index - _readDrain && tryLock()) {
+        try {
+          drainReads();
+        } finally {
+          unlock();
+        }
+      }
+    }
+
+    /**
+     * Applies the buffered reads to the LRU lists. Called with the
+     * segment locked.
+     */
+    void drainReads()
+    {
+      long write = _readWrite.get();
+
+      if (write == _readDrain) {
+        return;
+      }
+
+      for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+        CacheItem<K,V> item = _readBuffer.getAndSet(i, null);
+
+        if (item != null) {
+          promote(item);
+        }
+      }
+
+      _readDrain = write;
+    }
+
+    void clearReads()
+    {
+      for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+        _readBuffer.set(i, null);
+      }
+
+      _readDrain = _readWrite.get();
+    }
+
+    /**
+     * Adds a new item to the head of the once-seen list.
+     */
+    void addFirst(CacheItem<K,V> item)
+    {
+      _lruCounter = (_lruCounter + 1) & 0x3fffffff;
+      item._lruCounter = _lruCounter;
+
+      item._nextLru = _head1;
+      if (_head1 != null) {
+        _head1._prevLru = item;
+      }
+      _head1 = item;
+
+      if (_tail1 == null) {
+        _tail1 = item;
+      }
+
+      _size1++;
+    }
+
+    /**
+     * Moves an item to the head of the seen-twice list.
+     */
+    void promote(CacheItem<K,V> item)
+    {
+      int hitCount = item._hitCount;
+
+      if (hitCount <= 0) {
+        // removed before the buffered read was applied
+        return;
+      }
+
+      _lruCounter = (_lruCounter + 1) & 0x3fffffff;
+      item._lruCounter = _lruCounter;
+
+      if (hitCount > 1 && item == _head2) {
+        return;
+      }
+
+      unlink(item);
+
+      item._hitCount = 2;
+
+      item._nextLru = _head2;
+      if (_head2 != null) {
+        _head2._prevLru = item;
+      }
+      _head2 = item;
+
+      if (_tail2 == null) {
+        _tail2 = item;
+      }
+
+      _size2++;
+    }
+
+    /**
+     * Removes an item from its LRU list and marks it as removed.
+     */
+    void unlink(CacheItem<K,V> item)
+    {
+      int hitCount = item._hitCount;
+
+      if (hitCount <= 0) {
+        return;
+      }
+
+      CacheItem<K,V> prevLru = item._prevLru;
+      CacheItem<K,V> nextLru = item._nextLru;
+
+      item._prevLru = null;
+      item._nextLru = null;
+      item._hitCount = -1;
+
+      if (hitCount == 1) {
+        if (prevLru != null) {
+          prevLru._nextLru = nextLru;
+        }
+        else {
+          _head1 = nextLru;
+        }
+
+        if (nextLru != null) {
+          nextLru._prevLru = prevLru;
+        }
+        else {
+          _tail1 = prevLru;
+        }
+
+        _size1--;
+      }
+      else {
+        if (prevLru != null) {
+          prevLru._nextLru = nextLru;
+        }
+        else {
+          _head2 = nextLru;
+        }
+
+        if (nextLru != null) {
+          nextLru._prevLru = prevLru;
+        }
+        else {
+          _tail2 = prevLru;
+        }
+
+        _size2--;
+      }
+    }
+
+    /**
+     * Returns the eviction candidate: the oldest once-seen item if that
+     * list is over half the capacity, otherwise the oldest seen-twice item.
+     */
+    CacheItem<K,V> tail()
+    {
+      CacheItem<K,V> tail = null;
+
+      if (_capacity1 <= _size1) {
+        tail = _tail1;
+      }
+
+      if (tail == null) {
+        tail = _tail2;
+      }
+
+      if (tail == null) {
+        tail = _tail1;
+      }
+
+      return tail;
+    }
+
+    CacheItem<K,V> first()
+    {
+      return _head1 != null ? _head1 : _head2;
+    }
+  }
+
+  /**
+   * A cache item
+   */
+  static final class CacheItem<K,V> implements LruCache.Entry<K,V>
+  {
+    final Object _key;
+    final Segment<K,V> _segment;
+
+    volatile V _value;
+
+    // list fields are guarded by the segment lock
+    CacheItem<K,V> _prevLru;
+    CacheItem<K,V> _nextLru;
+
+    // 1 in the once-seen list, 2 in the seen-twice list, -1 if removed
+    volatile int _hitCount = 1;
+    volatile int _lruCounter;
+
+    CacheItem(Object key, V value, Segment<K,V> segment)
+    {
+      _key = key;
+      _value = value;
+      _segment = segment;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public K getKey()
+    {
+      return _key != NULL ? (K) _key : null;
+    }
+
+    @Override
+    public V getValue()
+    {
+      return _value;
+    }
+  }
+
+  private static class KeyIterator<K,V> implements Iterator<K>
+  {
+    private final Iterator<CacheItem<K,V>> _iter;
+
+    KeyIterator(Iterator<CacheItem<K,V>> iter)
+    {
+      _iter = iter;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      return _iter.hasNext();
+    }
+
+    @Override
+    public K next()
+    {
+      return _iter.next().getKey();
+    }
+  }
+
+  private static class ValueIterator<K,V> implements Iterator<V>
+  {
+    private final Iterator<CacheItem<K,V>> _iter;
+
+    ValueIterator(Iterator<CacheItem<K,V>> iter)
+    {
+      _iter = iter;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      return _iter.hasNext();
+    }
+
+    @Override
+    public V next()
+    {
+      return _iter.next().getValue();
+    }
+  }
+}
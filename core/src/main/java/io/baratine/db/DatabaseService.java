@@ -29,6 +29,7 @@ package io.baratine.db;
 
 import com.caucho.v5.amp.spi.MethodRef;
 
+import io.baratine.pipe.PipeSub;
 import io.baratine.service.Cancel;
 import io.baratine.service.Result;
 import io.baratine.service.Service;
@@ -77,6 +78,20 @@ public interface DatabaseService
   
   ResultStreamBuilder<Cursor> find(String sql, Object ...param);
   
+  /**
+   * Streams the results of a select query into the subscriber's pipe.
+   * Rows are read from the table only as the subscriber grants credits.
+   *
+   * On a clustered table each pod still answers with its complete list of
+   * matching keys, which the caller merges before streaming. Only the row
+   * reads follow the subscriber's credits in that case.
+   *
+   * @param sql the select query to execute
+   * @param result subscriber receiving the rows
+   * @param param optional parameters for the select query
+   */
+  void findPipe(String sql, PipeSub<Cursor> result, Object ...param);
+  
   ResultStreamBuilder<Cursor> findLocal(String sql, Object ...param);
   
   void findAllLocal(String sql, Result<Iterable<Cursor>> cursor, Object ...param);
@@ -37,6 +37,7 @@ import com.caucho.v5.amp.ServicesAmp;
 import com.caucho.v5.amp.spi.ShutdownModeAmp;
 import com.caucho.v5.bartender.BartenderSystem;
 import com.caucho.v5.bartender.proc.ProcKraken;
+import com.caucho.v5.bartender.proc.ProcPipes;
 import com.caucho.v5.bartender.proc.ProcPods;
 import com.caucho.v5.bartender.proc.ProcRoot;
 import com.caucho.v5.bartender.proc.ProcServers;
@@ -198,6 +199,11 @@ public class BartenderFileSystem extends SubSystemBase
                                              .as(FileServiceBind.class);
     
     bind("/proc/temp-store", procTemp);
+    
+    FileServiceBind procPipes = rampManager.newService(new ProcPipes())
+                                           .as(FileServiceBind.class);
+    
+    bind("/proc/pipes", procPipes);
   }
   
   private void bind(String path, FileServiceBind bind)
@@ -46,6 +46,7 @@ import com.caucho.v5.amp.remote.OutAmp;
 import com.caucho.v5.amp.remote.OutAmpFactory;
 import com.caucho.v5.amp.spi.ShutdownModeAmp;
 import com.caucho.v5.ramp.hamp.InHamp;
+import com.caucho.v5.ramp.hamp.OutHamp;
 
 import io.baratine.service.ServiceRef;
 
@@ -125,6 +126,23 @@ public class LinkHamp extends ClientAmpBase implements Runnable
   }
   
 
+  /**
+   * Enables write coalescing for the link. Messages are flushed when the
+   * outbox drains or the writer's byte or time threshold is reached.
+   */
+  public void setCoalesce(boolean isCoalesce)
+  {
+    _out.setCoalesce(isCoalesce);
+  }
+  
+  /**
+   * The link's writer, for its coalescing thresholds and flush counters.
+   */
+  public OutHamp getOutHamp()
+  {
+    return _out.getWriter();
+  }
+
   public String getAddress()
   {
     return _address;
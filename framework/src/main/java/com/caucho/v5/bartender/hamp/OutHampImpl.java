@@ -101,6 +101,20 @@ class OutHampImpl implements OutAmp
   }
   */
   
+  /**
+   * Enables write coalescing, flushing the stream when the outbox drains
+   * instead of after each message.
+   */
+  void setCoalesce(boolean isCoalesce)
+  {
+    _hampWriter.setCoalesce(isCoalesce);
+  }
+  
+  OutHamp getWriter()
+  {
+    return _hampWriter;
+  }
+  
   @Override
   public boolean isUp()
   {
@@ -255,7 +269,7 @@ class OutHampImpl implements OutAmp
   {
     try {
       if (_os != null) {
-        _os.flush();
+        _hampWriter.flush();
       }
     } catch (Exception e) {
       e.printStackTrace();
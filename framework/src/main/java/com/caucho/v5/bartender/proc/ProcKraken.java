@@ -35,6 +35,8 @@ import com.caucho.v5.baratine.ServiceApi;
 import com.caucho.v5.bartender.BartenderSystem;
 import com.caucho.v5.bartender.files.FileServiceBind;
 import com.caucho.v5.io.WriteStream;
+import com.caucho.v5.kraken.KrakenSystem;
+import com.caucho.v5.kraken.table.QueryCacheKraken;
 
 import io.baratine.files.BfsFileSync;
 import io.baratine.service.OnActive;
@@ -114,8 +116,22 @@ public class ProcKraken extends ProcFileBase
   protected boolean fillRead(WriteStream out)
     throws IOException
   {
-    out.println("[");
-    out.println("]");
+    out.print("{");
+    
+    KrakenSystem krakenSystem = KrakenSystem.current();
+    
+    if (krakenSystem != null) {
+      QueryCacheKraken queryCache
+        = krakenSystem.getTableManager().getQueryCache();
+      
+      out.print("\n  \"query-cache\" : {");
+      out.print("\n    \"size\" : " + queryCache.getSize());
+      out.print(",\n    \"hit\" : " + queryCache.getHitCount());
+      out.print(",\n    \"miss\" : " + queryCache.getMissCount());
+      out.print("\n  }");
+    }
+    
+    out.println("\n}");
     
     return true;
   }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.bartender.proc;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import com.caucho.v5.amp.ServiceRefAmp;
+import com.caucho.v5.baratine.ServiceApi;
+import com.caucho.v5.http.pod.PodApp;
+import com.caucho.v5.http.pod.PodAppHandle;
+import com.caucho.v5.http.pod.PodContainer;
+import com.caucho.v5.http.pod.PodManagerApp;
+import com.caucho.v5.io.WriteStream;
+import com.caucho.v5.ramp.pipe.PartitionStats;
+import com.caucho.v5.ramp.pipe.SchemePipeImpl;
+
+import io.baratine.files.BfsFileSync;
+
+/**
+ * /proc/pipes
+ */
+@ServiceApi(BfsFileSync.class)
+public class ProcPipes extends ProcFileBase
+{
+  public ProcPipes()
+  {
+    super("/pipes");
+  }
+
+  @Override
+  protected boolean fillRead(WriteStream out)
+    throws IOException
+  {
+    PodContainer podContainer = PodContainer.getCurrent();
+    
+    if (podContainer == null) {
+      out.println("[]");
+      return true;
+    }
+    
+    out.print("[");
+    
+    boolean isFirstPod = true;
+    for (PodAppHandle handle : podContainer.getPodAppHandles()) {
+      PodManagerApp podManagerApp = handle.getDeployInstance();
+      
+      if (! (podManagerApp instanceof PodApp)) {
+        continue;
+      }
+      
+      PodApp podApp = (PodApp) podManagerApp;
+      
+      if (! isFirstPod) {
+        out.print(",");
+      }
+      isFirstPod = false;
+      
+      out.println("\n{ \"pod\" : \"" + podApp.getId() + "\",");
+        
+      out.print("  \"pipes\" : [");
+      boolean isFirstPipe = true;
+      for (ServiceRefAmp service : podApp.getAmpManager().registry().getServices()) {
+        if (! (service.stub().bean() instanceof SchemePipeImpl)) {
+          continue;
+        }
+        
+        SchemePipeImpl scheme = (SchemePipeImpl) service.stub().bean();
+        
+        for (Map.Entry<String,List<PartitionStats>> entry
+               : scheme.getPartitionStats().entrySet()) {
+          if (! isFirstPipe) {
+            out.print(",");
+          }
+          isFirstPipe = false;
+          
+          out.println("\n  { \"pipe\" : \"" + entry.getKey() + "\",");
+          
+          fillPartitions(out, entry.getValue());
+          
+          out.print("  }");
+        }
+      }
+
+      out.println("]");
+      out.print("}");
+    }
+    
+    out.println("]");
+    
+    return true;
+  }
+  
+  private void fillPartitions(WriteStream out, List<PartitionStats> stats)
+    throws IOException
+  {
+    out.print("    \"partitions\" : [");
+    
+    boolean isFirst = true;
+    for (PartitionStats partition : stats) {
+      if (! isFirst) {
+        out.print(",");
+      }
+      isFirst = false;
+      
+      out.print("\n    { \"index\" : " + partition.getIndex());
+      out.print(", \"lag\" : " + partition.getLag());
+      out.print(", \"delivered\" : " + partition.getDelivered());
+      out.print(", \"dropped\" : " + partition.getDropped());
+      out.print(", \"stolen\" : " + partition.getStolen() + " }");
+    }
+    
+    out.println("]");
+  }
+}
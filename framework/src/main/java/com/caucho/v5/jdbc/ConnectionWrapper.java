@@ -45,6 +45,7 @@ import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Struct;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -58,9 +59,49 @@ public class ConnectionWrapper implements Connection
 
   private List<Statement> _openStatementList = new ArrayList<Statement>();
 
+  private StatementCache _statementCache;
+
   public ConnectionWrapper(Connection conn)
+  {
+    this(conn, 0);
+  }
+
+  public ConnectionWrapper(Connection conn, int statementCacheSize)
   {
     _conn = conn;
+
+    if (statementCacheSize > 0) {
+      _statementCache = new StatementCache(statementCacheSize);
+    }
+  }
+
+  /**
+   * Returns a prepared statement for the sql, reusing a statement cached
+   * from an earlier call on this connection. Cached statements stay open
+   * until they are evicted or the connection is closed, so callers must
+   * not close them.
+   */
+  public PreparedStatement prepareCached(String sql) throws SQLException
+  {
+    StatementCache cache = _statementCache;
+
+    if (cache == null) {
+      return null;
+    }
+
+    PreparedStatement stmt = cache.get(sql);
+
+    if (stmt != null) {
+      stmt.clearParameters();
+
+      return stmt;
+    }
+
+    stmt = _conn.prepareStatement(sql);
+
+    cache.put(sql, stmt);
+
+    return stmt;
   }
 
   public void closeStatements()
@@ -139,6 +180,16 @@ public class ConnectionWrapper implements Connection
   @Override
   public void close() throws SQLException
   {
+    StatementCache cache = _statementCache;
+
+    if (cache != null) {
+      for (PreparedStatement stmt : cache.values()) {
+        IoUtil.close(stmt);
+      }
+
+      cache.clear();
+    }
+
     _conn.close();
   }
 
@@ -426,4 +477,33 @@ public class ConnectionWrapper implements Connection
   {
     return getClass().getSimpleName() + "[" + _conn + "]";
   }
+
+  /**
+   * LRU of prepared statements by sql, closing statements on eviction.
+   */
+  @SuppressWarnings("serial")
+  private static class StatementCache
+    extends LinkedHashMap<String,PreparedStatement>
+  {
+    private final int _capacity;
+
+    StatementCache(int capacity)
+    {
+      super(16, 0.75f, true);
+
+      _capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String,PreparedStatement> entry)
+    {
+      if (size() <= _capacity) {
+        return false;
+      }
+
+      IoUtil.close(entry.getValue());
+
+      return true;
+    }
+  }
 }
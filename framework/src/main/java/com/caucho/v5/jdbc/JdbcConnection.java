@@ -34,11 +34,13 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.caucho.v5.io.IoUtil;
+import com.caucho.v5.util.CurrentTime;
 
 import io.baratine.jdbc.JdbcRowSet;
 import io.baratine.jdbc.SqlBiFunction;
@@ -61,8 +63,21 @@ public class JdbcConnection
   private String _testQueryBefore;
   private String _testQueryAfter;
 
+  private long _testIdleTime;
+  private int _statementCacheSize;
+
+  // last time the connection was known to work
+  private long _lastValidTime;
+
   public static JdbcConnection create(int id, String url, Properties props,
                                       String testQueryBefore, String testQueryAfter)
+  {
+    return create(id, url, props, testQueryBefore, testQueryAfter, 0, 0);
+  }
+
+  public static JdbcConnection create(int id, String url, Properties props,
+                                      String testQueryBefore, String testQueryAfter,
+                                      long testIdleTime, int statementCacheSize)
   {
     JdbcConnection conn = new JdbcConnection();
 
@@ -77,6 +92,9 @@ public class JdbcConnection
     conn._testQueryBefore = testQueryBefore;
     conn._testQueryAfter = testQueryAfter;
 
+    conn._testIdleTime = testIdleTime;
+    conn._statementCacheSize = statementCacheSize;
+
     return conn;
   }
 
@@ -118,7 +136,9 @@ public class JdbcConnection
 
     Connection conn = DriverManager.getConnection(_url, _props);
 
-    _conn = new ConnectionWrapper(conn);
+    _conn = new ConnectionWrapper(conn, _statementCacheSize);
+
+    _lastValidTime = CurrentTime.currentTime();
   }
 
   public void execute(Result<WrappedValue<Integer>> result, String sql, Object ... params)
@@ -132,6 +152,20 @@ public class JdbcConnection
     queryImpl(result, fun, params);
   }
 
+  public void executeBatch(Result<WrappedValue<int[]>> result,
+                           String sql,
+                           List<Object[]> paramsList)
+  {
+    if (_logger.isLoggable(Level.FINER)) {
+      _logger.log(Level.FINER, "batch: id=" + _id + ", sql=" + toDebugSafe(sql)
+                               + ", rows=" + paramsList.size());
+    }
+
+    BatchFunction fun = new BatchFunction(sql, paramsList);
+
+    queryImpl(result, fun);
+  }
+
   public void query(Result<WrappedValue<JdbcRowSet>> result, String sql, Object ... params)
   {
     if (_logger.isLoggable(Level.FINER)) {
@@ -179,6 +213,8 @@ public class JdbcConnection
 
       fun.close();
 
+      _lastValidTime = CurrentTime.currentTime();
+
       testQueryAfter();
     }
     catch (Exception e) {
@@ -212,6 +248,8 @@ public class JdbcConnection
 
       fun.close();
 
+      _lastValidTime = CurrentTime.currentTime();
+
       testQueryAfter();
     }
     catch (Exception e) {
@@ -254,10 +292,26 @@ public class JdbcConnection
     }
   }
 
+  /**
+   * Prepares the sql through the connection's statement cache when it has
+   * one. Returns null for an uncached connection.
+   */
+  private static PreparedStatement prepareCached(Connection conn, String sql)
+    throws SQLException
+  {
+    if (conn instanceof ConnectionWrapper) {
+      return ((ConnectionWrapper) conn).prepareCached(sql);
+    }
+    else {
+      return null;
+    }
+  }
+
   public static class ExecuteBiFunction implements SqlBiFunction<Integer> {
     private String _sql;
 
     private PreparedStatement _stmt;
+    private boolean _isCached;
 
     public ExecuteBiFunction(String sql)
     {
@@ -266,7 +320,12 @@ public class JdbcConnection
 
     public Integer applyWithException(Connection conn, Object ... params) throws SQLException
     {
-      _stmt = conn.prepareStatement(_sql);
+      _stmt = prepareCached(conn, _sql);
+      _isCached = _stmt != null;
+
+      if (_stmt == null) {
+        _stmt = conn.prepareStatement(_sql);
+      }
 
       if (params != null) {
         for (int i = 0; i < params.length; i++) {
@@ -282,7 +341,63 @@ public class JdbcConnection
     @Override
     public void close()
     {
-      IoUtil.close(_stmt);
+      if (! _isCached) {
+        IoUtil.close(_stmt);
+      }
+    }
+  }
+
+  public static class BatchFunction implements SqlFunction<int[]> {
+    private String _sql;
+    private List<Object[]> _paramsList;
+
+    private PreparedStatement _stmt;
+    private boolean _isCached;
+
+    public BatchFunction(String sql, List<Object[]> paramsList)
+    {
+      _sql = sql;
+      _paramsList = paramsList;
+    }
+
+    public int[] applyWithException(Connection conn) throws SQLException
+    {
+      _stmt = prepareCached(conn, _sql);
+      _isCached = _stmt != null;
+
+      if (_stmt == null) {
+        _stmt = conn.prepareStatement(_sql);
+      }
+
+      for (Object []params : _paramsList) {
+        if (params != null) {
+          for (int i = 0; i < params.length; i++) {
+            _stmt.setObject(i + 1, params[i]);
+          }
+        }
+
+        _stmt.addBatch();
+      }
+
+      try {
+        return _stmt.executeBatch();
+      } finally {
+        _stmt.clearBatch();
+      }
+    }
+
+    @Override
+    public void close()
+    {
+      if (! _isCached) {
+        IoUtil.close(_stmt);
+      }
+    }
+
+    @Override
+    public String toString()
+    {
+      return getClass().getSimpleName() + "[" + toDebugSafe(_sql) + "]";
     }
   }
 
@@ -290,6 +405,7 @@ public class JdbcConnection
     private String _sql;
 
     private PreparedStatement _stmt;
+    private boolean _isCached;
 
     public QueryBiFunction(String sql)
     {
@@ -298,7 +414,12 @@ public class JdbcConnection
 
     public JdbcRowSet applyWithException(Connection conn, Object ... params) throws SQLException
     {
-      _stmt = conn.prepareStatement(_sql);
+      _stmt = prepareCached(conn, _sql);
+      _isCached = _stmt != null;
+
+      if (_stmt == null) {
+        _stmt = conn.prepareStatement(_sql);
+      }
 
       if (params != null) {
         for (int i = 0; i < params.length; i++) {
@@ -311,15 +432,21 @@ public class JdbcConnection
 
       ResultSet rs = _stmt.getResultSet();
 
-      JdbcRowSet jdbcRs = JdbcRowSet.create(rs, updateCount);
+      try {
+        JdbcRowSet jdbcRs = JdbcRowSet.create(rs, updateCount);
 
-      return jdbcRs;
+        return jdbcRs;
+      } finally {
+        IoUtil.close(rs);
+      }
     }
 
     @Override
     public void close()
     {
-      IoUtil.close(_stmt);
+      if (! _isCached) {
+        IoUtil.close(_stmt);
+      }
     }
 
     @Override
@@ -331,6 +458,11 @@ public class JdbcConnection
 
   private void testQueryBefore()
   {
+    // a connection used recently is assumed valid, skipping the round trip
+    if (CurrentTime.currentTime() - _lastValidTime < _testIdleTime) {
+      return;
+    }
+
     if (_testQueryBefore == null) {
       testIsValid();
 
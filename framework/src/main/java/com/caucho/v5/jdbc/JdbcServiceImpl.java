@@ -32,6 +32,7 @@ package com.caucho.v5.jdbc;
 import java.sql.ResultSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Properties;
 import java.util.function.Function;
 import java.util.function.Supplier;
@@ -104,7 +105,8 @@ public class JdbcServiceImpl implements JdbcService
     }
 
     Supplier<JdbcConnection> supplier
-      = new ConnectionSupplier(_jdbcConfig.url(), props, _jdbcConfig.testQueryBefore(), _jdbcConfig.testQueryAfter());
+      = new ConnectionSupplier(_jdbcConfig.url(), props, _jdbcConfig.testQueryBefore(), _jdbcConfig.testQueryAfter(),
+                               _jdbcConfig.testIdleTime(), _jdbcConfig.statementCacheSize());
 
     ServiceBuilder builder = Services.current().newService(JdbcConnection.class, supplier);
     ServiceRef ref = builder.workers(_jdbcConfig.poolSize()).start();
@@ -124,6 +126,18 @@ public class JdbcServiceImpl implements JdbcService
     _conn.execute(qResult, sql, params);
   }
 
+  @Override
+  public void executeBatch(Result<int[]> result, String sql, List<Object[]> paramsList)
+  {
+    if (_logger.isLoggable(Level.FINER)) {
+      _logger.log(Level.FINER, "batch: " + toDebugSafe(sql));
+    }
+
+    QueryResult<int[]> qResult = new QueryResult<>(result, sql);
+
+    _conn.executeBatch(qResult, sql, paramsList);
+  }
+
   @Override
   public void query(Result<JdbcRowSet> result, String sql, Object ... params)
   {
@@ -201,22 +215,30 @@ public class JdbcServiceImpl implements JdbcService
     private String _testQueryBefore;
     private String _testQueryAfter;
 
+    private long _testIdleTime;
+    private int _statementCacheSize;
+
     private int _count;
 
     public ConnectionSupplier(String url, Properties props,
-                              String testQueryBefore, String testQueryAfter)
+                              String testQueryBefore, String testQueryAfter,
+                              long testIdleTime, int statementCacheSize)
     {
       _url = url;
       _props = props;
 
       _testQueryBefore = testQueryBefore;
       _testQueryAfter = testQueryAfter;
+
+      _testIdleTime = testIdleTime;
+      _statementCacheSize = statementCacheSize;
     }
 
     public JdbcConnection get()
     {
       return JdbcConnection.create(_count++, _url, _props,
-                                   _testQueryBefore, _testQueryAfter);
+                                   _testQueryBefore, _testQueryAfter,
+                                   _testIdleTime, _statementCacheSize);
     }
   }
 
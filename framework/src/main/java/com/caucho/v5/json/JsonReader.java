@@ -30,11 +30,21 @@
 package com.caucho.v5.json;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 
 public interface JsonReader
 {
   void init(Reader reader);
 
+  /**
+   * Initialize with a UTF-8 encoded byte stream.
+   */
+  void init(InputStream is);
+
   <T> T readObject(Class<T> cls) throws IOException;
+
+  default void close()
+  {
+  }
 }
@@ -30,12 +30,18 @@
 package com.caucho.v5.json;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 
 public interface JsonWriter
 {
   void init(Writer writer);
 
+  /**
+   * Initialize with a byte stream, writing UTF-8.
+   */
+  void init(OutputStream os);
+
   void write(Object value) throws IOException;
 
   void flush() throws IOException;
@@ -29,13 +29,19 @@
 
 package com.caucho.v5.json.io;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
 
+import com.caucho.v5.io.ReadStream;
+import com.caucho.v5.io.TempBufferData;
+import com.caucho.v5.io.TempBuffers;
 import com.caucho.v5.json.ser.JsonException;
 import com.caucho.v5.util.L10N;
-import com.caucho.v5.vfs.VfsOld;
 
 public class InJsonImpl implements InJson
 {
@@ -56,6 +62,20 @@ public class InJsonImpl implements InJson
 
   private BigDecimal _bigDecimalValue;
 
+  // UTF-8 byte source
+  private ReadStream _rs;
+  private InputStream _inputStream;
+  private TempBufferData _tempBuffer;
+
+  private byte []_buffer;
+  private int _bufferOffset;
+  private int _bufferLength;
+
+  private char []_charBuffer = new char[64];
+
+  private KeysJson<?> _keys;
+  private Object _keyValue;
+
   protected InJsonImpl()
   {
   }
@@ -65,21 +85,56 @@ public class InJsonImpl implements InJson
     init(is);
   }
 
-  /*
   public InJsonImpl(InputStream is)
   {
-    init(Vfs.openRead(is).getReader());
+    init(is);
   }
-  */
 
   public void init(Reader is)
   {
+    freeBuffer();
+
     _is = is;
 
     _line = 1;
     _offset = 0;
   }
 
+  /**
+   * Initialize with a UTF-8 byte stream. A ReadStream is parsed in place
+   * from its own buffer.
+   */
+  public void init(InputStream is)
+  {
+    Objects.requireNonNull(is);
+
+    freeBuffer();
+
+    _is = null;
+
+    if (is instanceof ReadStream) {
+      ReadStream rs = (ReadStream) is;
+
+      _rs = rs;
+      _buffer = rs.buffer();
+      _bufferOffset = rs.offset();
+      _bufferLength = rs.length();
+    }
+    else {
+      _inputStream = is;
+      _tempBuffer = TempBuffers.allocate();
+      _buffer = _tempBuffer.buffer();
+      _bufferOffset = 0;
+      _bufferLength = 0;
+    }
+
+    _peek = 0;
+    _event = null;
+
+    _line = 1;
+    _offset = 0;
+  }
+
   @Override
   public final boolean hasNext()
   {
@@ -116,6 +171,39 @@ public class InJsonImpl implements InJson
     return event;
   }
 
+  /**
+   * Returns the next event, matching a KEY_NAME against the precomputed
+   * keys. The matched value is returned by getKeyValue().
+   */
+  public final Event next(KeysJson<?> keys)
+  {
+    Event event = _event;
+    _event = null;
+
+    _keyValue = null;
+
+    if (event == null) {
+      _keys = keys;
+      event = scanNext();
+      _keys = null;
+    }
+
+    if (event == Event.KEY_NAME && _keyValue == null) {
+      _keyValue = keys.get(_stringValue);
+    }
+
+    return event;
+  }
+
+  /**
+   * Returns the value of the key matched by next(KeysJson), or null for
+   * an unknown key.
+   */
+  public final Object getKeyValue()
+  {
+    return _keyValue;
+  }
+
   @Override
   public final String getString()
   {
@@ -250,9 +338,18 @@ public class InJsonImpl implements InJson
 
   private String parseString()
   {
+    if (_buffer != null && _peek <= 0) {
+      String value = parseStringAscii();
+
+      if (value != null) {
+        return value;
+      }
+    }
+
     int ch;
 
-    StringBuilder sb = new StringBuilder();
+    char []cBuf = _charBuffer;
+    int len = 0;
 
     while ((ch = read()) >= 0 && ch != '"') {
       if (ch == '\\') {
@@ -260,31 +357,154 @@ public class InJsonImpl implements InJson
 
         switch (ch) {
         case 'r':
-          sb.append('\r');
+          ch = '\r';
           break;
         case 'n':
-          sb.append('\n');
+          ch = '\n';
           break;
         case 't':
-          sb.append('\t');
+          ch = '\t';
           break;
         case 'f':
-          sb.append('\f');
+          ch = '\f';
+          break;
+        case 'b':
+          ch = '\b';
+          break;
+        case 'u':
+          ch = parseHex();
           break;
         default:
-          sb.append((char) ch);
+          break;
         }
+
+        if (ch < 0) {
+          break;
+        }
+      }
+      else if (ch >= 0x80 && _buffer != null) {
+        ch = readUtf8(ch);
+      }
+
+      if (cBuf.length <= len + 1) {
+        _charBuffer = cBuf = Arrays.copyOf(cBuf, 2 * cBuf.length);
+      }
+
+      if (ch < 0x10000) {
+        cBuf[len++] = (char) ch;
       }
       else {
-        sb.append((char) ch);
+        cBuf[len++] = Character.highSurrogate(ch);
+        cBuf[len++] = Character.lowSurrogate(ch);
       }
     }
 
     if (ch < 0) {
-      throw new RuntimeException(this + " closing '\"' expected at <EOF>");
+      throw error(L.l("closing '\"' expected at end of file"));
+    }
+
+    return new String(cBuf, 0, len);
+  }
+
+  /**
+   * Parses an unescaped ASCII string directly from the byte buffer,
+   * returning the precomputed name when the string matches a known key.
+   * Returns null if the string needs the general parser.
+   */
+  private String parseStringAscii()
+  {
+    byte []buffer = _buffer;
+    int start = _bufferOffset;
+    int end = _bufferLength;
+
+    int hash = 0;
+
+    for (int i = start; i < end; i++) {
+      int ch = buffer[i];
+
+      if (ch == '"') {
+        int len = i - start;
+
+        _bufferOffset = i + 1;
+        _offset += len + 1;
+
+        KeysJson<?> keys = _keys;
+
+        if (keys != null) {
+          int slot = keys.find(buffer, start, len, hash);
+
+          if (slot >= 0) {
+            _keyValue = keys.value(slot);
+
+            return keys.name(slot);
+          }
+        }
+
+        return new String(buffer, start, len, StandardCharsets.ISO_8859_1);
+      }
+      else if (ch == '\\' || ch < 0) {
+        return null;
+      }
+
+      hash = 31 * hash + ch;
+    }
+
+    return null;
+  }
+
+  private int parseHex()
+  {
+    int value = 0;
+
+    for (int i = 0; i < 4; i++) {
+      int ch = read();
+
+      if ('0' <= ch && ch <= '9') {
+        value = 16 * value + ch - '0';
+      }
+      else if ('a' <= ch && ch <= 'f') {
+        value = 16 * value + ch - 'a' + 10;
+      }
+      else if ('A' <= ch && ch <= 'F') {
+        value = 16 * value + ch - 'A' + 10;
+      }
+      else {
+        throw error(L.l("Unexpected character 0x{0} '{1}' while parsing JSON \\u escape",
+                        Integer.toHexString(ch),
+                        String.valueOf((char) ch)));
+      }
     }
 
-    return sb.toString();
+    return value;
+  }
+
+  /**
+   * Decodes a multi-byte UTF-8 sequence starting with ch.
+   */
+  private int readUtf8(int ch)
+  {
+    if ((ch & 0xe0) == 0xc0) {
+      int ch2 = read();
+
+      return ((ch & 0x1f) << 6) | (ch2 & 0x3f);
+    }
+    else if ((ch & 0xf0) == 0xe0) {
+      int ch2 = read();
+      int ch3 = read();
+
+      return ((ch & 0x0f) << 12) | ((ch2 & 0x3f) << 6) | (ch3 & 0x3f);
+    }
+    else if ((ch & 0xf8) == 0xf0) {
+      int ch2 = read();
+      int ch3 = read();
+      int ch4 = read();
+
+      return (((ch & 0x07) << 18) | ((ch2 & 0x3f) << 12)
+              | ((ch3 & 0x3f) << 6) | (ch4 & 0x3f));
+    }
+    else {
+      return 0xfffd;
+    }
   }
 
   private void parseNumberValue(int sign, long value)
@@ -317,38 +537,68 @@ public class InJsonImpl implements InJson
 
   private void parseDouble(int sign, long value, int ch)
   {
-    StringBuilder sb = new StringBuilder();
+    char []cBuf = _charBuffer;
+    int len = 0;
 
     if (sign < 0) {
-      sb.append('-');
+      cBuf[len++] = '-';
     }
 
-    sb.append(value);
-    sb.append((char) ch);
+    len = printLong(cBuf, len, value);
+    cBuf[len++] = (char) ch;
 
     while ((ch = read()) >= 0) {
       switch (ch) {
       case '0': case '1': case '2': case '3': case '4':
       case '5': case '6': case '7': case '8': case '9':
-        sb.append((char) ch);
-        break;
-
       case '+': case '-':
       case '.': case 'e': case 'E':
-        sb.append((char) ch);
+        if (cBuf.length <= len) {
+          _charBuffer = cBuf = Arrays.copyOf(cBuf, 2 * cBuf.length);
+        }
+
+        cBuf[len++] = (char) ch;
         break;
 
       default:
         _peek = ch;
 
         _isInt = false;
-        _bigDecimalValue = new BigDecimal(sb.toString());
+        _bigDecimalValue = new BigDecimal(cBuf, 0, len);
         return;
       }
     }
 
     _isInt = false;
-    _bigDecimalValue = new BigDecimal(sb.toString());
+    _bigDecimalValue = new BigDecimal(cBuf, 0, len);
+  }
+
+  /**
+   * Prints the integral digits of a number into the char buffer.
+   */
+  private static int printLong(char []cBuf, int len, long value)
+  {
+    if (value < 0) {
+      String digits = String.valueOf(value);
+      digits.getChars(0, digits.length(), cBuf, len);
+
+      return len + digits.length();
+    }
+
+    int start = len;
+
+    do {
+      cBuf[len++] = (char) ('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+
+    for (int i = start, j = len - 1; i < j; i++, j--) {
+      char tmp = cBuf[i];
+      cBuf[i] = cBuf[j];
+      cBuf[j] = tmp;
+    }
+
+    return len;
   }
 
   private Event peekKey()
@@ -375,15 +625,25 @@ public class InJsonImpl implements InJson
     try {
       int ch = _peek;
 
-      if (ch <= 0) {
-        ch = _is.read();
-
-        _offset++;
+      if (ch > 0) {
+        _peek = -1;
 
         return ch;
       }
+      else if (_buffer != null) {
+        if (_bufferOffset < _bufferLength || fillBuffer()) {
+          _offset++;
+
+          return _buffer[_bufferOffset++] & 0xff;
+        }
+        else {
+          return -1;
+        }
+      }
       else {
-        _peek = -1;
+        ch = _is.read();
+
+        _offset++;
 
         return ch;
       }
@@ -392,6 +652,70 @@ public class InJsonImpl implements InJson
     }
   }
 
+  private boolean fillBuffer()
+    throws IOException
+  {
+    ReadStream rs = _rs;
+
+    if (rs != null) {
+      rs.offset(_bufferLength);
+
+      int len = rs.fillBuffer();
+
+      _buffer = rs.buffer();
+      _bufferOffset = rs.offset();
+      _bufferLength = rs.length();
+
+      return len > 0;
+    }
+
+    InputStream is = _inputStream;
+
+    if (is == null) {
+      return false;
+    }
+
+    int len = is.read(_buffer, 0, _buffer.length);
+
+    _bufferOffset = 0;
+    _bufferLength = Math.max(len, 0);
+
+    return len > 0;
+  }
+
+  /**
+   * Returns unread bytes to a ReadStream and releases the temp buffer.
+   */
+  private void freeBuffer()
+  {
+    ReadStream rs = _rs;
+    _rs = null;
+
+    if (rs != null) {
+      int offset = _bufferOffset;
+
+      // a peeked delimiter is always the last byte read
+      if (_peek > 0 && offset > 0) {
+        offset--;
+        _peek = -1;
+      }
+
+      rs.offset(offset);
+    }
+
+    TempBufferData tempBuffer = _tempBuffer;
+    _tempBuffer = null;
+
+    if (tempBuffer != null) {
+      tempBuffer.free();
+    }
+
+    _inputStream = null;
+    _buffer = null;
+    _bufferOffset = 0;
+    _bufferLength = 0;
+  }
+
   private JsonException error(String msg)
   {
     return new JsonParsingException(":" + _line + ":" + _offset + ": " + msg);
@@ -400,6 +724,7 @@ public class InJsonImpl implements InJson
   @Override
   public void close()
   {
+    freeBuffer();
   }
 
   @Override
@@ -30,6 +30,7 @@
 package com.caucho.v5.json.io;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.lang.reflect.Type;
 
@@ -53,7 +54,7 @@ public class JsonReaderImpl extends InJsonImpl implements AutoCloseable, JsonRea
 
   public JsonReaderImpl()
   {
-    this(null, new JsonFactory());
+    this((Reader) null, new JsonFactory());
   }
 
   public JsonReaderImpl(Reader is)
@@ -68,6 +69,13 @@ public class JsonReaderImpl extends InJsonImpl implements AutoCloseable, JsonRea
     _factory = factory;
   }
 
+  public JsonReaderImpl(InputStream is, JsonFactory factory)
+  {
+    super(is);
+
+    _factory = factory;
+  }
+
   //Added this hack to be able to read object, assume it will get ripped out later.
   public void setPeek(char peek)
   {
@@ -346,6 +354,8 @@ public class JsonReaderImpl extends InJsonImpl implements AutoCloseable, JsonRea
   {
     Reader is = _is;
     _is = null;
+
+    super.close();
   }
 
   @Override
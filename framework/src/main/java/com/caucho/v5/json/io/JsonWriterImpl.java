@@ -29,6 +29,7 @@
 
 package com.caucho.v5.json.io;
 
+import java.io.OutputStream;
 import java.io.Writer;
 import java.util.Objects;
 
@@ -73,6 +74,13 @@ public class JsonWriterImpl extends OutJsonImpl implements JsonWriter
     init(out);
   }
 
+  public JsonWriterImpl(OutputStream out, JsonFactory factory)
+  {
+    this(factory);
+
+    init(out);
+  }
+
   public JsonWriterImpl(Writer os)
   {
     this();
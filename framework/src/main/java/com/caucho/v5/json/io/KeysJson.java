@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.json.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Precomputed UTF-8 keys for matching JSON object keys without
+ * allocating a String for each key.
+ */
+public final class KeysJson<V>
+{
+  private final byte [][]_keys;
+  private final String []_names;
+  private final Object []_values;
+  private final int _mask;
+
+  public KeysJson(Map<String,? extends V> map)
+  {
+    int size = 8;
+
+    while (size < 2 * map.size()) {
+      size *= 2;
+    }
+
+    _keys = new byte[size][];
+    _names = new String[size];
+    _values = new Object[size];
+    _mask = size - 1;
+
+    for (Map.Entry<String,? extends V> entry : map.entrySet()) {
+      String name = entry.getKey();
+      byte []key = name.getBytes(StandardCharsets.UTF_8);
+
+      int slot = hash(key, 0, key.length) & _mask;
+
+      while (_keys[slot] != null) {
+        slot = (slot + 1) & _mask;
+      }
+
+      _keys[slot] = key;
+      _names[slot] = name;
+      _values[slot] = entry.getValue();
+    }
+  }
+
+  /**
+   * Hash of the key bytes, matching the incremental hash computed by
+   * the parser while it scans a string.
+   */
+  static int hash(byte []buffer, int offset, int length)
+  {
+    int hash = 0;
+
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + buffer[offset + i];
+    }
+
+    return hash;
+  }
+
+  /**
+   * Returns the slot matching the key bytes, or -1.
+   */
+  int find(byte []buffer, int offset, int length, int hash)
+  {
+    byte [][]keys = _keys;
+    int mask = _mask;
+
+    for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+      byte []key = keys[slot];
+
+      if (key == null) {
+        return -1;
+      }
+
+      if (key.length == length && isMatch(key, buffer, offset)) {
+        return slot;
+      }
+    }
+  }
+
+  private static boolean isMatch(byte []key, byte []buffer, int offset)
+  {
+    for (int i = key.length - 1; i >= 0; i--) {
+      if (key[i] != buffer[offset + i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  String name(int slot)
+  {
+    return _names[slot];
+  }
+
+  @SuppressWarnings("unchecked")
+  V value(int slot)
+  {
+    return (V) _values[slot];
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(String name)
+  {
+    if (name == null) {
+      return null;
+    }
+
+    byte []key = name.getBytes(StandardCharsets.UTF_8);
+
+    int slot = find(key, 0, key.length, hash(key, 0, key.length));
+
+    return slot >= 0 ? (V) _values[slot] : null;
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "[" + (_mask + 1) + "]";
+  }
+}
@@ -30,9 +30,13 @@
 package com.caucho.v5.json.io;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.util.Objects;
 
+import com.caucho.v5.io.OutputStreamWithBuffer;
+import com.caucho.v5.io.TempBufferData;
+import com.caucho.v5.io.TempBuffers;
 import com.caucho.v5.json.value.JsonValue;
 import com.caucho.v5.vfs.WriteStreamOld;
 
@@ -55,12 +59,22 @@ public class OutJsonImpl implements OutJson
   private static final char []TRUE = new char[] { 't', 'r', 'u', 'e' };
   private static final char []FALSE = new char[] { 'f', 'a', 'l', 's', 'e' };
 
+  private static final byte []EMPTY = new byte[0];
+
   private Writer _os;
   
   private StateJsonOut _state = StateJsonOut.FIRST;
   
   private char []_cBuf = new char[64];
   private int _cOffset;
+
+  // UTF-8 byte sink
+  private OutputStream _out;
+  private OutputStreamWithBuffer _outBuf;
+  private TempBufferData _tempBuffer;
+
+  private byte []_bBuf;
+  private int _bOffset;
   
   public OutJsonImpl()
   {
@@ -83,17 +97,48 @@ public class OutJsonImpl implements OutJson
    */
   public void init(Writer os)
   {
+    freeBuffer();
+
     _os = os;
 
     _state = StateJsonOut.FIRST;
   }
+
+  /**
+   * Initialize the output with a byte stream, writing UTF-8. A stream
+   * with an accessible buffer is written in place.
+   */
+  public void init(OutputStream os)
+  {
+    Objects.requireNonNull(os);
+
+    freeBuffer();
+
+    _os = null;
+    _out = os;
+
+    if (os instanceof OutputStreamWithBuffer) {
+      _outBuf = (OutputStreamWithBuffer) os;
+      _bBuf = EMPTY;
+    }
+    else {
+      _tempBuffer = TempBuffers.allocate();
+      _bBuf = _tempBuffer.buffer();
+    }
+
+    _bOffset = 0;
+
+    _state = StateJsonOut.FIRST;
+  }
   
   /**
    * Initialize the output with a new underlying stream.
    */
   public void init()
   {
-    Objects.requireNonNull(_os);
+    if (_out == null) {
+      Objects.requireNonNull(_os);
+    }
     
     _state = StateJsonOut.FIRST;
   }
@@ -158,7 +203,7 @@ public class OutJsonImpl implements OutJson
   {
     _state = _state.write(this);
     
-    writeStringValue(String.valueOf(value));
+    writeLongValue(value);
 
     return this;
   }
@@ -168,7 +213,7 @@ public class OutJsonImpl implements OutJson
   {
     _state = _state.write(this);
     
-    writeStringValue(String.valueOf(value));
+    writeLongValue(value);
 
     return this;
   }
@@ -258,6 +303,11 @@ public class OutJsonImpl implements OutJson
   
   private void write(char []buffer, int offset, int length)
   {
+    if (_bBuf != null) {
+      printUtf8(buffer, offset, length);
+      return;
+    }
+
     char []cBuf = _cBuf;
     int cOffset = _cOffset;
     int cLength = cBuf.length;
@@ -291,6 +341,13 @@ public class OutJsonImpl implements OutJson
       write(NULL, 0, 4);
       return;
     }
+
+    if (_bBuf != null) {
+      write('"');
+      printUtf8(v, true);
+      write('"');
+      return;
+    }
     
     int sLength = v.length();
     
@@ -308,14 +365,6 @@ public class OutJsonImpl implements OutJson
   private void escapeChar(char ch)
   {
     switch (ch) {
-    case 0:
-      write('\\');
-      write('u');
-      write('0');
-      write('0');
-      write('0');
-      write('0');
-      break;
     case '\n':
       write('\\');
       write('n');
@@ -345,13 +394,68 @@ public class OutJsonImpl implements OutJson
       write('"');
       break;
     default:
-      write(ch);
+      if (ch < 0x20) {
+        write('\\');
+        write('u');
+        write('0');
+        write('0');
+        write(hex(ch >> 4));
+        write(hex(ch));
+      }
+      else {
+        write(ch);
+      }
       break;
     }
   }
 
+  private static char hex(int d)
+  {
+    d &= 0xf;
+
+    return (char) (d < 10 ? '0' + d : 'a' + d - 10);
+  }
+
+  private void writeLongValue(long value)
+  {
+    if (_bBuf == null || value == Long.MIN_VALUE) {
+      writeStringValue(String.valueOf(value));
+      return;
+    }
+
+    require(20);
+
+    byte []bBuf = _bBuf;
+    int offset = _bOffset;
+
+    if (value < 0) {
+      bBuf[offset++] = '-';
+      value = -value;
+    }
+
+    int start = offset;
+
+    do {
+      bBuf[offset++] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+
+    for (int i = start, j = offset - 1; i < j; i++, j--) {
+      byte tmp = bBuf[i];
+      bBuf[i] = bBuf[j];
+      bBuf[j] = tmp;
+    }
+
+    _bOffset = offset;
+  }
+
   private void writeStringValue(String s)
   {
+    if (_bBuf != null) {
+      printUtf8(s, false);
+      return;
+    }
+
     int len = s.length();
 
     for (int i = 0; i < len; i++) {
@@ -361,8 +465,23 @@ public class OutJsonImpl implements OutJson
     }
   }
   
+  /**
+   * Writes a single character, which is always ASCII in byte mode.
+   */
   private void write(char ch)
   {
+    byte []bBuf = _bBuf;
+
+    if (bBuf != null) {
+      if (bBuf.length <= _bOffset) {
+        nextBuffer(1);
+        bBuf = _bBuf;
+      }
+
+      bBuf[_bOffset++] = (byte) ch;
+      return;
+    }
+
     char []cBuf = _cBuf;
     int cOffset = _cOffset;
     
@@ -382,8 +501,144 @@ public class OutJsonImpl implements OutJson
     _cOffset = cOffset;
   }
 
+  /**
+   * Encodes a string as UTF-8, escaping JSON string characters when
+   * isEscape is set.
+   */
+  private void printUtf8(String v, boolean isEscape)
+  {
+    int len = v.length();
+
+    for (int i = 0; i < len; i++) {
+      char ch = v.charAt(i);
+
+      if (ch < 0x80) {
+        if (isEscape && (ch < 0x20 || ch == '"' || ch == '\\')) {
+          escapeChar(ch);
+        }
+        else {
+          write(ch);
+        }
+      }
+      else if (Character.isHighSurrogate(ch) && i + 1 < len
+               && Character.isLowSurrogate(v.charAt(i + 1))) {
+        printUtf8(Character.toCodePoint(ch, v.charAt(++i)));
+      }
+      else {
+        printUtf8(ch);
+      }
+    }
+  }
+
+  private void printUtf8(char []buffer, int offset, int length)
+  {
+    int end = offset + length;
+
+    for (; offset < end; offset++) {
+      char ch = buffer[offset];
+
+      if (ch < 0x80) {
+        write(ch);
+      }
+      else if (Character.isHighSurrogate(ch) && offset + 1 < end
+               && Character.isLowSurrogate(buffer[offset + 1])) {
+        printUtf8(Character.toCodePoint(ch, buffer[++offset]));
+      }
+      else {
+        printUtf8(ch);
+      }
+    }
+  }
+
+  private void printUtf8(int ch)
+  {
+    require(4);
+
+    byte []bBuf = _bBuf;
+    int offset = _bOffset;
+
+    if (ch < 0x800) {
+      bBuf[offset++] = (byte) (0xc0 + (ch >> 6));
+      bBuf[offset++] = (byte) (0x80 + (ch & 0x3f));
+    }
+    else if (ch < 0x10000) {
+      bBuf[offset++] = (byte) (0xe0 + (ch >> 12));
+      bBuf[offset++] = (byte) (0x80 + ((ch >> 6) & 0x3f));
+      bBuf[offset++] = (byte) (0x80 + (ch & 0x3f));
+    }
+    else {
+      bBuf[offset++] = (byte) (0xf0 + (ch >> 18));
+      bBuf[offset++] = (byte) (0x80 + ((ch >> 12) & 0x3f));
+      bBuf[offset++] = (byte) (0x80 + ((ch >> 6) & 0x3f));
+      bBuf[offset++] = (byte) (0x80 + (ch & 0x3f));
+    }
+
+    _bOffset = offset;
+  }
+
+  private void require(int length)
+  {
+    if (_bBuf.length - _bOffset < length) {
+      nextBuffer(length);
+    }
+  }
+
+  private void nextBuffer(int length)
+  {
+    try {
+      OutputStreamWithBuffer outBuf = _outBuf;
+
+      if (outBuf != null) {
+        byte []buffer;
+
+        if (_bBuf == EMPTY) {
+          buffer = outBuf.buffer();
+        }
+        else {
+          buffer = outBuf.nextBuffer(_bOffset);
+        }
+
+        int offset = outBuf.offset();
+
+        if (buffer.length - offset < length) {
+          buffer = outBuf.nextBuffer(offset);
+          offset = outBuf.offset();
+        }
+
+        _bBuf = buffer;
+        _bOffset = offset;
+      }
+      else {
+        _out.write(_bBuf, 0, _bOffset);
+        _bOffset = 0;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void freeBuffer()
+  {
+    TempBufferData tempBuffer = _tempBuffer;
+    _tempBuffer = null;
+
+    if (tempBuffer != null) {
+      tempBuffer.free();
+    }
+
+    _out = null;
+    _outBuf = null;
+    _bBuf = null;
+    _bOffset = 0;
+  }
+
   public void flush()
   {
+    if (_bBuf != null) {
+      flushBuffer();
+      return;
+    }
+
     int cOffset = _cOffset;
     
     if (cOffset > 0) {
@@ -399,10 +654,38 @@ public class OutJsonImpl implements OutJson
     }
   }
 
+  /**
+   * Returns the written bytes to the underlying stream. A buffered stream
+   * is re-read on the next write, since others may write to it.
+   */
+  private void flushBuffer()
+  {
+    try {
+      OutputStreamWithBuffer outBuf = _outBuf;
+
+      if (outBuf != null) {
+        if (_bBuf != EMPTY) {
+          outBuf.offset(_bOffset);
+
+          _bBuf = EMPTY;
+          _bOffset = 0;
+        }
+      }
+      else if (_bOffset > 0) {
+        _out.write(_bBuf, 0, _bOffset);
+        _bOffset = 0;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   @Override
   public void close()
   {
     flush();
+
+    freeBuffer();
   }
 
   @Override
@@ -57,6 +57,7 @@ import com.caucho.v5.json.JsonTransient;
 import com.caucho.v5.json.io.InJson.Event;
 import com.caucho.v5.json.io.JsonReaderImpl;
 import com.caucho.v5.json.io.JsonWriterImpl;
+import com.caucho.v5.json.io.KeysJson;
 
 public class JavaSerializerJson<T> extends JsonObjectSerializerBase<Object>
 {
@@ -71,6 +72,7 @@ public class JavaSerializerJson<T> extends JsonObjectSerializerBase<Object>
   private JsonField<T,?> []_fields;
   private HashMap<String,JsonField<T,?>> _fieldMap
     = new HashMap<>();
+  private KeysJson<JsonField<T,?>> _keys;
   
   private Constructor<?> _ctor;
 
@@ -115,6 +117,8 @@ public class JavaSerializerJson<T> extends JsonObjectSerializerBase<Object>
       for (JsonField<T,?> field : _fields) {
         _fieldMap.put(field.name(), field);
       }
+      
+      _keys = new KeysJson<>(_fieldMap);
     } catch (RuntimeException e) {
       throw e;
     } catch (Exception e) {
@@ -253,9 +257,9 @@ public class JavaSerializerJson<T> extends JsonObjectSerializerBase<Object>
 
     case START_OBJECT:
     {
-      Object bean = create();
+      T bean = newBean();
 
-      in.parseBeanMap(bean, this);
+      readFields(in, bean);
 
       return bean;
     }
@@ -275,6 +279,46 @@ public class JavaSerializerJson<T> extends JsonObjectSerializerBase<Object>
     }
   }
 
+  /**
+   * Reads the object's fields, matching keys against the precomputed
+   * field keys.
+   */
+  private void readFields(JsonReaderImpl in, T bean)
+  {
+    Event event;
+
+    while ((event = in.next(_keys)) == Event.KEY_NAME) {
+      JsonField<T,?> jsonField = keyField(in);
+
+      if (jsonField != null) {
+        jsonField.read(in, bean);
+      }
+      else {
+        skipField(in);
+      }
+    }
+
+    if (event != Event.END_OBJECT) {
+      throw error("unexpected token: {0} while parsing {1}", 
+                  event, _type.rawClass()); 
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private T newBean()
+  {
+    return (T) create();
+  }
+
+  /**
+   * Returns the field matched by the last key, or null for an unknown key.
+   */
+  @SuppressWarnings("unchecked")
+  private JsonField<T,?> keyField(JsonReaderImpl in)
+  {
+    return (JsonField<T,?>) in.getKeyValue();
+  }
+
   @Override
   public void readField(JsonReaderImpl in, Object bean, String fieldName)
   {
@@ -284,12 +328,16 @@ public class JavaSerializerJson<T> extends JsonObjectSerializerBase<Object>
       jsonField.read(in, bean);
     }
     else {
-      // skip
-      try {
-        in.readObject();
-      } catch (Exception e) {
-        log.log(Level.FINER, e.toString(), e);
-      }
+      skipField(in);
+    }
+  }
+
+  private void skipField(JsonReaderImpl in)
+  {
+    try {
+      in.readObject();
+    } catch (Exception e) {
+      log.log(Level.FINER, e.toString(), e);
     }
   }
 
@@ -29,6 +29,8 @@
 
 package com.caucho.v5.json.ser;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.Writer;
 import java.lang.reflect.Method;
@@ -418,12 +420,28 @@ public class JsonFactory
     return out;
   }
 
+  public JsonWriterImpl out(OutputStream os)
+  {
+    JsonWriterImpl out = new JsonWriterImpl(this);
+    
+    out.init(os);
+    
+    return out;
+  }
+
   public JsonReaderImpl in(StringReader is)
   {
     JsonReaderImpl in = new JsonReaderImpl(is, this);
     
     return in;
   }
+
+  public JsonReaderImpl in(InputStream is)
+  {
+    JsonReaderImpl in = new JsonReaderImpl(is, this);
+    
+    return in;
+  }
   
   private class SerializerClassValue extends ClassValue<SerializerJson<?>>
   {
@@ -354,6 +354,33 @@ public class ClusterServiceKrakenImpl implements ClusterServiceKraken
     }
   }
   
+  /**
+   * Find the partial group or top rows of a select, merged by the caller.
+   */
+  @Override
+  public void findAllReduce(Result<Iterable<Object[]>> result,
+                            byte []tableKey,
+                            String sql, 
+                            Object[] args)
+  {
+    try {
+      TableKraken table = _tableManager.getTable(tableKey);
+      
+      if (table == null) {
+        throw new QueryException(L.l("'{0}' is an unknown table.",
+                                     Hex.toShortHex(tableKey)));
+      }
+      
+      QueryBuilderKraken builder = QueryParserKraken.parse(_tableManager, sql);
+      
+      QueryKraken query = builder.build();
+      
+      query.findAllLocalReduce(result, args);
+    } catch (Throwable e) {
+      result.fail(e);
+    }
+  }
+  
   //
   // watch
   //
@@ -459,6 +486,51 @@ public class ClusterServiceKrakenImpl implements ClusterServiceKraken
     // start reciprocating update request
     // tablePod.startRequestUpdates();
   }
+
+  /**
+   * Returns the hash tree leaves when the requester's root differs.
+   */
+  @Override
+  public void requestHashTree(byte []tableKey,
+                              int podIndex,
+                              long rootHash,
+                              Result<long[]> result)
+  {
+    TablePod tablePod = _clientKraken.getTable(tableKey);
+    
+    if (tablePod == null) {
+      // unknown table, so there's nothing to diff against
+      result.ok(null);
+      return;
+    }
+    
+    tablePod.getHashTreeFromLocal(podIndex, rootHash, result);
+  }
+
+  /**
+   * Sends the rows in the ranges where the requester's tree differs.
+   */
+  @Override
+  public void requestRangeUpdates(String from,
+                                  byte []tableKey,
+                                  int podIndex,
+                                  int []ranges,
+                                  Result<Boolean> cont)
+  {
+    if (log.isLoggable(Level.FINEST)) {
+      log.finest("CacheRequestRangeUpdates " + from + " shard=" + podIndex
+                 + " ranges=" + ranges.length);
+    }
+    
+    TablePod tablePod = _clientKraken.getTable(tableKey);
+    
+    if (tablePod == null) {
+      cont.ok(true);
+      return;
+    }
+    
+    tablePod.getRangeUpdatesFromLocal(podIndex, ranges, cont);
+  }
   
   //
   // time update
@@ -325,11 +325,6 @@ public final class TablePodImpl implements TablePod
       return;
     }
 
-    long now = CurrentTime.currentTime();
-    
-    long startupLastUpdateTime = _table.getStartupLastUpdateTime();
-    long delta = startupLastUpdateTime - now - 30 * 60000L;
-
     ClusterServiceKraken proxy = podNode.getProxy(index);
     // System.out.println("PROX: " + proxy + " " + podNode + " " + _serverSelf.getDisplayName());
     if (proxy == null) {
@@ -348,8 +343,32 @@ public final class TablePodImpl implements TablePod
                                      e->podNodeState.onStartupFailed(index, e));
     //_shardState.onStartupCompleted(_server);
 
-    proxy.requestStartupUpdates(_serverSelf.getId(), _table.getKey(),
-                                podNode.index(), delta, cb);
+    // compare hash trees, so only the divergent key ranges are sent
+    _table.getHashTree().root(cb.then((rootHash,r)->
+      proxy.requestHashTree(_table.getKey(), podNode.index(), rootHash,
+                            r.then((leaves,r1)->onHashTree(proxy, podNode, leaves, r1)))));
+  }
+  
+  private void onHashTree(ClusterServiceKraken proxy,
+                          TablePodNode podNode,
+                          long []leaves,
+                          Result<Boolean> result)
+  {
+    if (leaves == null) {
+      // roots match, so the replica is already current
+      result.ok(true);
+      return;
+    }
+    
+    _table.getHashTree().diff(leaves, result.then((ranges,r)->{
+      if (ranges.length == 0) {
+        r.ok(true);
+        return;
+      }
+    
+      proxy.requestRangeUpdates(_serverSelf.getId(), _table.getKey(),
+                                podNode.index(), ranges, r);
+    }));
   }
   
   private TablePodNode getNode(byte []key)
@@ -478,6 +497,22 @@ public final class TablePodImpl implements TablePod
     //rowNode.invoke(new GetStreamContext(_table.getKey(), key, result));
   }
 
+  @Override
+  public void findAllReduce(Result<Iterable<Object[]>> result, 
+                            ServerBartender server, 
+                            String sql, 
+                            Object []args)
+  {
+    ClusterServiceKraken proxy = getNode(server);
+
+    if (proxy == null) {
+      result.ok(null);
+      return;
+    }
+    
+    proxy.findAllReduce(result, getTable().getTableKey(), sql, args);
+  }
+
   /**
    * Distributed update table. All owning nodes will get a request. 
    */
@@ -678,6 +713,25 @@ public final class TablePodImpl implements TablePod
                                 result);
   }
   
+  @Override
+  public void getHashTreeFromLocal(int podIndex,
+                                   long rootHash,
+                                   Result<long[]> result)
+  {
+    getTable().getHashTree().leaves(rootHash, result);
+  }
+
+  @Override
+  public void getRangeUpdatesFromLocal(int podIndex,
+                                       int []ranges,
+                                       Result<Boolean> result)
+  {
+    getKelpBacking().getRangeUpdates(getTable(),
+                                     podIndex,
+                                     ranges,
+                                     result);
+  }
+
   private void onPodUpdate(PodBartender pod)
   {
     if (! pod.getId().equals(_podKraken.getPodBartender().getId())) {
@@ -43,6 +43,7 @@ import io.baratine.db.Cursor;
 import io.baratine.db.CursorPrepareSync;
 import io.baratine.db.DatabaseService;
 import io.baratine.db.DatabaseWatch;
+import io.baratine.pipe.PipeSub;
 import io.baratine.service.Cancel;
 import io.baratine.service.Result;
 import io.baratine.service.Service;
@@ -165,6 +166,19 @@ public class DatabaseServiceRamp implements DatabaseService
     throw new IllegalStateException(getClass().getName());
   }
   
+  /**
+   * Queries the database, streaming values to a pipe as credits allow.
+   * 
+   * @param sql the select query for the search
+   * @param result subscriber for the result rows
+   * @param args arguments to the sql
+   */
+  @Override
+  public void findPipe(String sql, PipeSub<Cursor> result, Object ...args)
+  {
+    _kraken.findPipe(sql, args, result);
+  }
+  
   /**
    * Queries the database, returning values to a result sink.
    * 
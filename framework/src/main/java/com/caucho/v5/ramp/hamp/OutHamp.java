@@ -45,6 +45,7 @@ import com.caucho.v5.bartender.pod.PodRef;
 import com.caucho.v5.h3.H3;
 import com.caucho.v5.h3.OutFactoryH3;
 import com.caucho.v5.h3.OutH3;
+import com.caucho.v5.util.CurrentTime;
 
 import io.baratine.stream.ResultStream;
 
@@ -58,9 +59,21 @@ public class OutHamp
   
   private Level _level = Level.FINEST;
   
+  private OutputStream _os;
+  private OutputStreamCount _osCount;
   private OutH3 _out;
   //private HessianDebugOutputStream _dOut;
   
+  private boolean _isCoalesce;
+  private int _coalesceBytes = 64 * 1024;
+  private long _coalesceTimeout = 5;
+  
+  private int _pendingMessages;
+  private long _pendingStartTime;
+  
+  private long _messageCount;
+  private long _flushCount;
+  
   private int _methodCacheIndex;
   private HashMap<MethodKey,Integer> _methodCache = new HashMap<>(256);
   private MethodKey []_methodCacheRing = new MethodKey[256];
@@ -102,7 +115,80 @@ public class OutHamp
     
     _out.initPacket(os);
     */
-    _out = _serializer.out(os);
+    
+    // the H3 writer and its class definitions live as long as the stream 
+    if (os == _os && _out != null) {
+      return;
+    }
+    
+    OutH3 oldOut = _out;
+    
+    if (oldOut != null) {
+      oldOut.close();
+    }
+    
+    _os = os;
+    _osCount = new OutputStreamCount(os);
+    _out = _serializer.out(_osCount);
+  }
+  
+  /**
+   * Coalesces written messages, flushing the stream when the outbox
+   * calls flush() or when the byte or time threshold is reached, instead
+   * of after each message.
+   */
+  public void setCoalesce(boolean isCoalesce)
+  {
+    _isCoalesce = isCoalesce;
+  }
+  
+  public boolean isCoalesce()
+  {
+    return _isCoalesce;
+  }
+  
+  /**
+   * Pending bytes that force a flush in coalescing mode.
+   */
+  public void setCoalesceBytes(int bytes)
+  {
+    _coalesceBytes = bytes;
+  }
+  
+  /**
+   * Pending time in milliseconds that forces a flush in coalescing mode.
+   */
+  public void setCoalesceTimeout(long timeout)
+  {
+    _coalesceTimeout = timeout;
+  }
+  
+  /**
+   * Number of messages completed with flushBuffer().
+   */
+  public long getMessageCount()
+  {
+    return _messageCount;
+  }
+  
+  /**
+   * Number of stream flushes that wrote pending messages.
+   */
+  public long getFlushCount()
+  {
+    return _flushCount;
+  }
+  
+  public double getMessagesPerFlush()
+  {
+    long flushCount = _flushCount;
+    
+    if (flushCount > 0) {
+      return (double) _messageCount / flushCount;
+    }
+    else {
+      return 0;
+    }
   }
 
   //
@@ -140,7 +226,7 @@ public class OutHamp
       writeMethod(out, address, methodName, podCaller);
       writeArgs(out, args);
 
-      // XXX: out.flushBuffer();
+      out.flush();
     } catch (Throwable e) {
       log.log(Level.WARNING, e.toString(), e);
       
@@ -184,7 +270,7 @@ public class OutHamp
       writeMethod(out, address, methodName, podCaller);
       writeArgs(out, args);
     
-      // XXX: out.flushBuffer();
+      out.flush();
     } catch (Throwable e) {
       log.log(Level.WARNING, e.toString(), e);
       
@@ -225,8 +311,7 @@ public class OutHamp
 
       out.writeObject(value);
 
-      // XXX: out.flushBuffer();
-      // out.flush();
+      out.flush();
     } catch (Throwable e) {
       log.log(Level.WARNING, e.toString(), e);
       
@@ -273,7 +358,7 @@ public class OutHamp
       out.writeString(error.getMessage());
       out.writeObject(error.getDetail());
 
-      // XXX: out.flushBuffer();
+      out.flush();
     } catch (Throwable e) {
       log.log(Level.WARNING, e.toString(), e);
       
@@ -320,7 +405,6 @@ public class OutHamp
 
     writeArgs(out, args);
     
-    //out.flushBuffer();
     out.flush();
   }
   
@@ -364,7 +448,6 @@ public class OutHamp
       out.writeObject(exn);
       out.writeBoolean(isComplete);
       
-      //out.flushBuffer();
       out.flush();
     } catch (Throwable e) {
       log.log(Level.WARNING, e.toString(), e);
@@ -402,7 +485,6 @@ public class OutHamp
       out.writeString(addressFrom);
       out.writeLong(qId);
 
-      //out.flushBuffer();
       out.flush();
     } catch (Throwable e) {
       log.log(Level.WARNING, e.toString(), e);
@@ -441,7 +523,6 @@ public class OutHamp
     out.writeString(error.getMessage());
     out.writeObject(error.getDetail());
 
-    //out.flushBuffer();
     out.flush();
   }
   
@@ -604,24 +685,53 @@ public class OutHamp
     }
   }
 
+  /**
+   * Completes a message. The stream is flushed unless coalescing is
+   * enabled and the pending messages are below the thresholds.
+   */
   public void flushBuffer()
     throws IOException
   {
     OutH3 out = _out;
 
-    if (out != null) {
-      //out.flushBuffer();
-      out.flush();
+    if (out == null) {
+      return;
+    }
+    
+    out.flush();
+    
+    _messageCount++;
+    
+    if (_pendingMessages++ == 0) {
+      _pendingStartTime = CurrentTime.currentTime();
+    }
+    
+    if (! _isCoalesce
+        || _coalesceBytes <= _osCount.getPending()
+        || _pendingStartTime + _coalesceTimeout <= CurrentTime.currentTime()) {
+      flush();
     }
   }
 
+  /**
+   * Flushes the stream, typically when the outbox has drained.
+   */
   public void flush()
     throws IOException
   {
     OutH3 out = _out;
 
-    if (out != null) {
-      out.flush();
+    if (out == null) {
+      return;
+    }
+    
+    out.flush();
+    
+    if (_pendingMessages > 0 || _osCount.getPending() > 0) {
+      _flushCount++;
+      _pendingMessages = 0;
+      
+      _osCount.flush();
     }
   }
 
@@ -633,6 +743,9 @@ public class OutHamp
     try {
       OutH3 out = _out;
       _out = null;
+      _os = null;
+      _osCount = null;
+      _pendingMessages = 0;
 
       if (out != null) {
         out.close();
@@ -648,6 +761,56 @@ public class OutHamp
     return getClass().getSimpleName() + "[]";
   }
   
+  /**
+   * Counts the bytes written since the last flush.
+   */
+  private static class OutputStreamCount extends OutputStream
+  {
+    private final OutputStream _os;
+    private long _pending;
+    
+    OutputStreamCount(OutputStream os)
+    {
+      _os = os;
+    }
+    
+    long getPending()
+    {
+      return _pending;
+    }
+    
+    @Override
+    public void write(int value)
+      throws IOException
+    {
+      _os.write(value);
+      _pending++;
+    }
+    
+    @Override
+    public void write(byte []buffer, int offset, int length)
+      throws IOException
+    {
+      _os.write(buffer, offset, length);
+      _pending += length;
+    }
+    
+    @Override
+    public void flush()
+      throws IOException
+    {
+      _pending = 0;
+      _os.flush();
+    }
+    
+    @Override
+    public void close()
+      throws IOException
+    {
+      _os.close();
+    }
+  }
+  
   static class MethodKey {
     private String _address;
     private String _method;
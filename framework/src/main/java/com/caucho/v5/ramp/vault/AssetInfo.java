@@ -29,16 +29,20 @@
 
 package com.caucho.v5.ramp.vault;
 
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import io.baratine.db.Cursor;
@@ -51,6 +55,9 @@ import com.caucho.v5.amp.vault.StateAsset;
 import com.caucho.v5.convert.bean.FieldBase;
 import com.caucho.v5.convert.bean.FieldNull;
 import com.caucho.v5.convert.bean.FieldObject;
+import com.caucho.v5.h3.H3;
+import com.caucho.v5.h3.OutFactoryH3;
+import com.caucho.v5.h3.OutH3;
 import com.caucho.v5.inject.AnnotationLiteral;
 import com.caucho.v5.inject.type.TypeRef;
 import com.caucho.v5.kraken.info.TableInfo;
@@ -87,6 +94,10 @@ class AssetInfo<ID,T>
   private String _addressPrefix;
 
   private int _saveColumns;
+  private String []_saveColumnNames;
+  private int _saveIdIndex = -1;
+  
+  private OutFactoryH3 _serializer;
 
   private boolean _isSolo;
 
@@ -375,6 +386,7 @@ class AssetInfo<ID,T>
     
     boolean isDocument = false;
     int saveColumns = 0;
+    ArrayList<String> columnNames = new ArrayList<>();
 
     for (int i = 0; i < fields.length; i++) {
       FieldInfo<T,?> field = getFields()[i];
@@ -384,7 +396,12 @@ class AssetInfo<ID,T>
         continue;
       }
 
+      if (field.isId()) {
+        _saveIdIndex = saveColumns;
+      }
+
       saveColumns++;
+      columnNames.add(field.columnName());
       head.append(field.columnName());
 
       tail.append('?');
@@ -396,6 +413,7 @@ class AssetInfo<ID,T>
     
     if (isDocument) {
       saveColumns++;
+      columnNames.add("__doc");
       head.append("__doc");
       tail.append("?");
     }
@@ -404,6 +422,7 @@ class AssetInfo<ID,T>
     head.append(tail);
     
     _saveColumns = saveColumns;
+    _saveColumnNames = columnNames.toArray(new String[columnNames.size()]);
 
     return head.toString();
   }
@@ -498,6 +517,140 @@ class AssetInfo<ID,T>
     return values;
   }
 
+  /**
+   * Update of the changed save columns, keyed by the id column.
+   */
+  String updateSql(BitSet columns)
+  {
+    StringBuilder sql = new StringBuilder();
+    
+    sql.append("update ").append(tableName()).append(" set ");
+    
+    boolean isFirst = true;
+    
+    for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+      if (isFirst) {
+        isFirst = false;
+      }
+      else {
+        sql.append(", ");
+      }
+      
+      sql.append(_saveColumnNames[i]).append(" = ?");
+    }
+    
+    sql.append(" where ").append(_saveColumnNames[_saveIdIndex]).append(" = ?");
+    
+    return sql.toString();
+  }
+  
+  /**
+   * Parameters for the update, matching {@link #updateSql(BitSet)}.
+   */
+  Object []updateValues(BitSet columns, Object []values)
+  {
+    Object []params = new Object[columns.cardinality() + 1];
+    
+    int j = 0;
+    for (int i = columns.nextSetBit(0); i >= 0; i = columns.nextSetBit(i + 1)) {
+      params[j++] = values[i];
+    }
+    
+    params[j] = values[_saveIdIndex];
+    
+    return params;
+  }
+  
+  /**
+   * Columns whose save values differ from the stored image. The id column
+   * is never included, because a changed id is a different row.
+   */
+  BitSet diff(Object []image, Object []snapshot)
+  {
+    BitSet columns = new BitSet(snapshot.length);
+    
+    for (int i = 0; i < snapshot.length; i++) {
+      if (i != _saveIdIndex && ! snapshotEquals(image[i], snapshot[i])) {
+        columns.set(i);
+      }
+    }
+    
+    return columns;
+  }
+  
+  boolean isIdChanged(Object []image, Object []snapshot)
+  {
+    return (_saveIdIndex < 0
+            || ! snapshotEquals(image[_saveIdIndex], snapshot[_saveIdIndex]));
+  }
+  
+  /**
+   * Copies save values into a stored image. Immutable values are kept,
+   * and other values are serialized, so in-place changes to a mutable
+   * field or document are detected on the next save.
+   */
+  Object []snapshot(Object []values)
+  {
+    Object []snapshot = new Object[values.length];
+    
+    for (int i = 0; i < values.length; i++) {
+      snapshot[i] = snapshotValue(values[i]);
+    }
+    
+    return snapshot;
+  }
+  
+  private Object snapshotValue(Object value)
+  {
+    if (value == null
+        || value instanceof String
+        || value instanceof Number
+        || value instanceof Boolean
+        || value instanceof Character
+        || value instanceof Enum) {
+      return value;
+    }
+    else if (value instanceof byte[]) {
+      return ((byte []) value).clone();
+    }
+    
+    try {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      
+      try (OutH3 out = serializer().out(bos)) {
+        out.writeObject(value);
+      }
+      
+      return new ImageValue(bos.toByteArray());
+    } catch (Exception e) {
+      log.log(Level.FINER, e.toString(), e);
+      
+      // unserializable values are always treated as modified
+      return new Object();
+    }
+  }
+  
+  private static boolean snapshotEquals(Object a, Object b)
+  {
+    if (a instanceof byte[] && b instanceof byte[]) {
+      return Arrays.equals((byte[]) a, (byte[]) b);
+    }
+    else {
+      return Objects.equals(a, b);
+    }
+  }
+  
+  private OutFactoryH3 serializer()
+  {
+    OutFactoryH3 serializer = _serializer;
+    
+    if (serializer == null) {
+      _serializer = serializer = H3.newOutFactory().get();
+    }
+    
+    return serializer;
+  }
+
   public Object getValue(int index, T bean)
   {
     Object value = _fields[index].getValue(bean);
@@ -802,6 +955,18 @@ class AssetInfo<ID,T>
     {
       return _name;
     }
+
+    @Override
+    public long writeDelay()
+    {
+      return 0;
+    }
+
+    @Override
+    public int writeBatch()
+    {
+      return 1024;
+    }
   }
 
   private static class ColumnLiteral extends AnnotationLiteral<ColumnVault>
@@ -838,4 +1003,30 @@ class AssetInfo<ID,T>
     _primitiveWrappers.put(float.class, Float.class);
     _primitiveWrappers.put(double.class, Double.class);
   }
+
+  /**
+   * Serialized image of a mutable value.
+   */
+  private static final class ImageValue
+  {
+    private final byte []_data;
+    
+    ImageValue(byte []data)
+    {
+      _data = data;
+    }
+    
+    @Override
+    public int hashCode()
+    {
+      return Arrays.hashCode(_data);
+    }
+    
+    @Override
+    public boolean equals(Object o)
+    {
+      return (o instanceof ImageValue
+              && Arrays.equals(_data, ((ImageValue) o)._data));
+    }
+  }
 }
@@ -30,9 +30,11 @@
 package com.caucho.v5.ramp.vault;
 
 import java.lang.reflect.Method;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -41,6 +43,7 @@ import javax.inject.Inject;
 
 import io.baratine.db.Cursor;
 import io.baratine.db.DatabaseServiceSync;
+import io.baratine.service.Journal;
 import io.baratine.service.Result;
 import io.baratine.service.ResultChain;
 import io.baratine.service.Service;
@@ -52,6 +55,7 @@ import io.baratine.vault.Vault;
 
 import com.caucho.v5.amp.ServiceRefAmp;
 import com.caucho.v5.amp.ServicesAmp;
+import com.caucho.v5.amp.vault.AssetImage;
 import com.caucho.v5.amp.vault.MethodVault;
 import com.caucho.v5.amp.vault.VaultDriver;
 import com.caucho.v5.amp.vault.VaultDriverBase;
@@ -87,6 +91,11 @@ public class VaultDriverDataImpl<ID, T>
   private String _loadSql;
   private String _saveSql;
   private String _deleteSql;
+  
+  private final ConcurrentHashMap<BitSet,String> _updateSqlMap
+    = new ConcurrentHashMap<>();
+  
+  private VaultWriteBehind<ID> _writeBehind;
 
   private IdReader<ID> _idReader;
   private ServicesAmp _services;
@@ -153,6 +162,19 @@ public class VaultDriverDataImpl<ID, T>
     _saveSql = _entityInfo.saveSql();
     _loadSql = _entityInfo.loadSql();
     _deleteSql = _entityInfo.deleteSql();
+    
+    if (table != null && table.writeDelay() > 0) {
+      if (getAnnotation(_vaultClass, Journal.class) == null
+          && getAnnotation(_entityClass, Journal.class) == null) {
+        log.warning(L.l("{0} has a write delay without @Journal."
+                        + " Saves pending at a crash will be lost.",
+                        _entityClass.getName()));
+      }
+      
+      _writeBehind = new VaultWriteBehind<>(this,
+                                            table.writeDelay(),
+                                            table.writeBatch());
+    }
   }
   
   AssetInfo<ID,T> entityInfo()
@@ -168,6 +190,13 @@ public class VaultDriverDataImpl<ID, T>
 
   @Override
   public void load(ID id, T entity, ResultChain<Boolean> result)
+  {
+    load(id, entity, null, result);
+  }
+  
+  @Override
+  public void load(ID id, T entity, AssetImage image,
+                   ResultChain<Boolean> result)
   {
     if (log.isLoggable(Level.FINER)) {
       log.finer(L.l("loading entity {0} for id {1}",
@@ -175,19 +204,23 @@ public class VaultDriverDataImpl<ID, T>
                     id));
     }
     
+    if (_writeBehind != null) {
+      _writeBehind.flush(id);
+    }
+    
     if (_entityInfo.isSolo()) {
       id = (ID) new Integer(1);
     }
 
     _db.findOne(_loadSql,
-                result.then(c -> onLoad(c, entity)),
+                result.then(c -> onLoad(c, entity, image)),
                 _entityInfo.id().toParam(id));
   }
 
   /**
    * Fills the entity on load complete.
    */
-  private boolean onLoad(Cursor cursor, T entity)
+  private boolean onLoad(Cursor cursor, T entity, AssetImage image)
   {
     if (cursor == null) {
       if (log.isLoggable(Level.FINEST)) {
@@ -195,11 +228,19 @@ public class VaultDriverDataImpl<ID, T>
       }
       
       _entityInfo.loadFail(entity);
+      
+      if (image != null) {
+        image.clear();
+      }
 
       return false;
     }
     else {
       _entityInfo.load(cursor, entity);
+      
+      if (image != null) {
+        image.values(_entityInfo.snapshot(_entityInfo.saveValues(entity)));
+      }
 
       if (log.isLoggable(Level.FINER)) {
         log.finer("loaded " + entity);
@@ -211,20 +252,89 @@ public class VaultDriverDataImpl<ID, T>
 
   @Override
   public void save(ID id, T entity, ResultChain<Void> result)
+  {
+    save(id, entity, null, result);
+  }
+
+  /**
+   * Saves the entity. With a stored image, only the changed columns are
+   * updated, and an unchanged entity isn't written at all. The image
+   * is updated when the write succeeds, and cleared if it fails.
+   */
+  @Override
+  public void save(ID id, T entity, AssetImage image,
+                   ResultChain<Void> result)
   {
     if (_entityInfo.isDeleting(entity)) {
       delete(id, entity, result);
+      
+      if (image != null) {
+        image.clear();
+      }
       return;
     }
     
-    if (log.isLoggable(Level.FINER)) {
-      log.finer("saving entity " + entity);
-    }
-
     Object[] values = _entityInfo.saveValues(entity);
-    _db.exec(_saveSql, Result.ignore(), values);
     
-    result.ok(null);
+    // null columns is a full insert
+    BitSet columns = null;
+    
+    if (image != null) {
+      Object []snapshot = _entityInfo.snapshot(values);
+      Object []imageValues = image.values();
+    
+      if (imageValues != null
+          && ! _entityInfo.isIdChanged(imageValues, snapshot)) {
+        columns = _entityInfo.diff(imageValues, snapshot);
+      }
+      
+      result = new ResultImage(result, image, image.startSave(), snapshot);
+    }
+    
+    if (columns != null && columns.isEmpty()) {
+      if (log.isLoggable(Level.FINEST)) {
+        log.finest("unmodified entity " + entity);
+      }
+    }
+    else if (log.isLoggable(Level.FINER)) {
+      log.finer("saving entity " + entity
+                + (columns != null ? " " + columns : ""));
+    }
+    
+    if (_writeBehind != null) {
+      _writeBehind.save(id, columns, values, result);
+    }
+    else {
+      ResultChain<Void> resultSave = result;
+      
+      writeSave(columns, values, (x,exn)->{
+        if (exn != null) {
+          resultSave.fail(exn);
+        }
+        else {
+          resultSave.ok(null);
+        }
+      });
+    }
+  }
+  
+  /**
+   * Writes a save to storage, either the full row or the changed columns.
+   */
+  void writeSave(BitSet columns, Object []values, Result<Object> result)
+  {
+    if (columns == null) {
+      _db.exec(_saveSql, result, values);
+    }
+    else if (columns.isEmpty()) {
+      result.ok(null);
+    }
+    else {
+      String sql = _updateSqlMap.computeIfAbsent(columns,
+                                                 _entityInfo::updateSql);
+      
+      _db.exec(sql, result, _entityInfo.updateValues(columns, values));
+    }
   }
 
   @Override
@@ -234,6 +344,10 @@ public class VaultDriverDataImpl<ID, T>
       log.finer("deleting entity " + entity);
     }
 
+    if (_writeBehind != null) {
+      _writeBehind.remove(id);
+    }
+    
     _db.exec(_deleteSql, Result.ignore(), _entityInfo.id().toParam(id));
     
     _entityInfo.delete(entity);
@@ -249,6 +363,7 @@ public class VaultDriverDataImpl<ID, T>
                       Object[] params, 
                       Result<Cursor> result)
   {
+    flushWriteBehind();
     
     _db.findOne(sql, result, params);
   }
@@ -261,8 +376,20 @@ public class VaultDriverDataImpl<ID, T>
                       Object[] params, 
                       Result<Iterable<Cursor>> result)
   {
+    flushWriteBehind();
+    
     _db.findAll(sql, result, params);
   }
+  
+  /**
+   * Writes the pending saves before a query, so it sees them.
+   */
+  private void flushWriteBehind()
+  {
+    if (_writeBehind != null) {
+      _writeBehind.flush();
+    }
+  }
 
   /*
   @Override
@@ -540,6 +667,8 @@ public class VaultDriverDataImpl<ID, T>
         sql.append(" and ");
     }
 
+    flushWriteBehind();
+    
     _db.findAll(sql.toString(),
                 stream.of((i, r) -> readObjects(i, r)),
                 values);
@@ -753,6 +882,44 @@ public class VaultDriverDataImpl<ID, T>
   }
   */
 
+  /**
+   * Updates the asset image when the save's write completes.
+   */
+  private static class ResultImage extends Result.Wrapper<Void,Void>
+  {
+    private final AssetImage _image;
+    private final long _sequence;
+    private final Object []_snapshot;
+
+    ResultImage(ResultChain<Void> result,
+                AssetImage image,
+                long sequence,
+                Object []snapshot)
+    {
+      super(result);
+
+      _image = image;
+      _sequence = sequence;
+      _snapshot = snapshot;
+    }
+
+    @Override
+    public void ok(Void value)
+    {
+      _image.onSave(_sequence, _snapshot);
+
+      delegate().ok(value);
+    }
+
+    @Override
+    public void fail(Throwable exn)
+    {
+      _image.onSaveFail(_sequence);
+
+      delegate().fail(exn);
+    }
+  }
+
   /*
   private class NullResourceMethod implements MethodVault
   {
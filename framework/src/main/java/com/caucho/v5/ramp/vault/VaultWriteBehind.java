@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.ramp.vault;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.caucho.v5.amp.message.MessageAmpBase;
+import com.caucho.v5.amp.spi.InboxAmp;
+import com.caucho.v5.amp.spi.OutboxAmp;
+import com.caucho.v5.amp.stub.StubAmp;
+import com.caucho.v5.util.Alarm;
+import com.caucho.v5.util.AlarmListener;
+import com.caucho.v5.util.L10N;
+
+import io.baratine.service.ResultChain;
+
+/**
+ * Write-behind for vault saves. Saves of an asset are coalesced by id and
+ * written after the delay or when the pending count reaches the batch size.
+ *
+ * The save results complete only after the storage write, so the save
+ * checkpoint, and the truncation of the asset's journal, waits for the
+ * flush. Flushes run in the vault's inbox, like the saves themselves.
+ */
+class VaultWriteBehind<ID>
+{
+  private static final L10N L = new L10N(VaultWriteBehind.class);
+  private static final Logger log
+    = Logger.getLogger(VaultWriteBehind.class.getName());
+
+  private final VaultDriverDataImpl<ID,?> _driver;
+  private final long _delay;
+  private final int _batchSize;
+
+  private final LinkedHashMap<ID,PendingSave> _pending = new LinkedHashMap<>();
+
+  private InboxAmp _inbox;
+  private final Alarm _alarm;
+  private volatile boolean _isFlushQueued;
+
+  VaultWriteBehind(VaultDriverDataImpl<ID,?> driver,
+                   long delay,
+                   int batchSize)
+  {
+    _driver = driver;
+    _delay = delay;
+    _batchSize = Math.max(1, batchSize);
+
+    _alarm = new Alarm(new FlushListener());
+  }
+
+  /**
+   * Adds a save to the pending batch.
+   *
+   * @param columns changed save columns, or null for a full insert
+   */
+  void save(ID id,
+            BitSet columns,
+            Object []values,
+            ResultChain<Void> result)
+  {
+    PendingSave pending = _pending.get(id);
+
+    if (pending == null) {
+      if (columns != null && columns.isEmpty()) {
+        result.ok(null);
+        return;
+      }
+
+      if (_inbox == null) {
+        OutboxAmp outbox = OutboxAmp.current();
+
+        _inbox = outbox != null ? outbox.inbox() : null;
+      }
+
+      if (_inbox == null) {
+        // outside of a service, there's no inbox to flush in
+        _driver.writeSave(columns, values, (x,exn)->{
+          if (exn != null) {
+            result.fail(exn);
+          }
+          else {
+            result.ok(null);
+          }
+        });
+        return;
+      }
+
+      pending = new PendingSave();
+      _pending.put(id, pending);
+    }
+
+    pending.add(columns, values, result);
+
+    if (_batchSize <= _pending.size()) {
+      flush();
+    }
+    else if (! _isFlushQueued) {
+      _isFlushQueued = true;
+      _alarm.runAfter(_delay);
+    }
+  }
+
+  /**
+   * Writes any pending save for the id, before it's read from storage.
+   */
+  void flush(ID id)
+  {
+    PendingSave pending = _pending.remove(id);
+
+    if (pending != null) {
+      pending.write();
+    }
+  }
+
+  /**
+   * Drops any pending save for a deleted asset.
+   */
+  void remove(ID id)
+  {
+    PendingSave pending = _pending.remove(id);
+
+    if (pending != null) {
+      pending.complete(null);
+    }
+  }
+
+  /**
+   * Writes all pending saves.
+   */
+  void flush()
+  {
+    _isFlushQueued = false;
+
+    if (_pending.isEmpty()) {
+      return;
+    }
+
+    if (log.isLoggable(Level.FINER)) {
+      log.finer(L.l("flushing {0} vault saves for {1}",
+                    _pending.size(), _driver));
+    }
+
+    Iterator<PendingSave> iter = _pending.values().iterator();
+
+    while (iter.hasNext()) {
+      PendingSave pending = iter.next();
+      iter.remove();
+
+      pending.write();
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return (getClass().getSimpleName()
+            + "[" + _driver + ",delay=" + _delay + "]");
+  }
+
+  /**
+   * Coalesced saves for a single asset.
+   */
+  private class PendingSave
+  {
+    private BitSet _columns = new BitSet();
+    private Object []_values;
+    private boolean _isInsert;
+
+    private final ArrayList<ResultChain<Void>> _results = new ArrayList<>();
+
+    void add(BitSet columns, Object []values, ResultChain<Void> result)
+    {
+      if (columns == null) {
+        _isInsert = true;
+      }
+      else {
+        _columns.or(columns);
+      }
+
+      _values = values;
+      _results.add(result);
+    }
+
+    void write()
+    {
+      if (! _isInsert && _columns.isEmpty()) {
+        complete(null);
+        return;
+      }
+
+      _driver.writeSave(_isInsert ? null : _columns,
+                        _values,
+                        (x,exn)->complete(exn));
+    }
+
+    void complete(Throwable exn)
+    {
+      for (ResultChain<Void> result : _results) {
+        if (exn != null) {
+          result.fail(exn);
+        }
+        else {
+          result.ok(null);
+        }
+      }
+
+      _results.clear();
+    }
+  }
+
+  /**
+   * Queues the flush in the vault's inbox when the delay expires.
+   */
+  private class FlushListener implements AlarmListener
+  {
+    @Override
+    public void handleAlarm(Alarm alarm)
+    {
+      InboxAmp inbox = _inbox;
+
+      if (inbox != null) {
+        inbox.offerAndWake(new FlushMessage(inbox), 0);
+      }
+    }
+  }
+
+  private class FlushMessage extends MessageAmpBase
+  {
+    private final InboxAmp _inboxTarget;
+
+    FlushMessage(InboxAmp inbox)
+    {
+      _inboxTarget = inbox;
+    }
+
+    @Override
+    public InboxAmp inboxTarget()
+    {
+      return _inboxTarget;
+    }
+
+    @Override
+    public void invoke(InboxAmp inbox, StubAmp stub)
+    {
+      flush();
+    }
+  }
+}
@@ -60,7 +60,10 @@ public class WebServerFactoryBaratine implements WebServerFactory
     });
     
     builder.init(()->{
-      KrakenSystem.createAndAddSystem(builder.serverSelf());
+      KrakenSystem kraken = KrakenSystem.createAndAddSystem(builder.serverSelf());
+      
+      kraken.setLeafCacheSize(builder.config().get("kraken.leaf-cache-size",
+                                                   long.class, 0L));
     });
     
     builder.init(()->{
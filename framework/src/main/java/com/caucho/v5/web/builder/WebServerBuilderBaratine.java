@@ -86,7 +86,10 @@ public class WebServerBuilderBaratine extends WebServerBuilderImpl
     });
 
     builder.init(()->{
-      KrakenSystem.createAndAddSystem(builder.serverSelf());
+      KrakenSystem kraken = KrakenSystem.createAndAddSystem(builder.serverSelf());
+      
+      kraken.setLeafCacheSize(builder.config().get("kraken.leaf-cache-size",
+                                                   long.class, 0L));
     });
 
     builder.init(()->{
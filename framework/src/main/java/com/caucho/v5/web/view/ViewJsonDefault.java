@@ -28,7 +28,6 @@
 
 package com.caucho.v5.web.view;
 
-import java.io.Writer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -78,25 +77,27 @@ public class ViewJsonDefault implements ViewResolver<Object>
     }
 
     try {
-      Writer writer = req.writer();
-
       String callback = req.query("callback");
 
+      JsonWriter jsonWriter = _jsonEngine.newWriter();
+
       if (callback != null) {
         req.type("application/javascript");
 
         req.write(callback);
         req.write("(");
+
+        jsonWriter.init(req.writer());
       }
       else {
         req.type("application/json");
+
+        // JSON is always UTF-8, so skip the response writer
+        jsonWriter.init(req.output());
       }
 
       // req.header("Access-Control-Allow-Origin", "*");
 
-      JsonWriter jsonWriter = _jsonEngine.newWriter();
-
-      jsonWriter.init(writer);
       jsonWriter.write(value);
       jsonWriter.flush();
 
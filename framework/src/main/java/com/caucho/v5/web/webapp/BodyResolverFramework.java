@@ -31,8 +31,6 @@ package com.caucho.v5.web.webapp;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
 
 import javax.inject.Inject;
 
@@ -69,16 +67,17 @@ public class BodyResolverFramework extends BodyResolverBase
     if (contentType.equals("application/json")) {
       InputStream is = request.inputStream();
 
-      try {
-        Reader reader = new InputStreamReader(is, "utf-8");
+      JsonReader jsonReader = _jsonEngine.newReader();
 
-        JsonReader jsonReader = _jsonEngine.newReader();
-        jsonReader.init(reader);
+      try {
+        jsonReader.init(is);
 
         return jsonReader.readObject(type);
 
       } catch (IOException e) {
         throw new BodyException(e);
+      } finally {
+        jsonReader.close();
       }
     }
 
@@ -43,5 +43,11 @@ public interface H3
     OutFactoryH3 get();
 
     OutFactoryBuilderH3 graph(boolean isGraph);
+    
+    /**
+     * Generates bytecode field access for serialized classes when
+     * possible. Defaults to true.
+     */
+    OutFactoryBuilderH3 bytecode(boolean isBytecode);
   }
 }
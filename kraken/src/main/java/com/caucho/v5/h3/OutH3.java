@@ -102,6 +102,10 @@ public interface OutH3 extends Closeable
   
   <T> void writeObject(T object, SerializerH3<T> serializer);
   
+  /**
+   * Writes the buffered data to the output stream. The stream itself is
+   * not flushed.
+   */
   default void flush() {}
   
   @Override
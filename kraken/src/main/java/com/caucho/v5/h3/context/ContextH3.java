@@ -45,4 +45,9 @@ public interface ContextH3
   SerializerH3Amp<?> define(ClassInfoH3 info);
 
   void initSerializers(ArrayList<SerializerH3Amp<?>> serArray);
+  
+  /**
+   * True if serializers may generate bytecode field access.
+   */
+  boolean isBytecode();
 }
@@ -47,15 +47,30 @@ public class ContextH3Impl implements ContextH3
   private SerializerFactoryH3 _factory;
   
   private int _typeSequence = ConstH3.PREDEF_TYPE;
+  
+  private final boolean _isBytecode;
 
   public ContextH3Impl()
+  {
+    this(true);
+  }
+
+  public ContextH3Impl(boolean isBytecode)
   {
     //Objects.requireNonNull(factory);
     
+    _isBytecode = isBytecode;
+    
     _factory = new SerializerFactoryH3Impl();
     
     _factory.initSerializers(_serArray);
   }
+  
+  @Override
+  public boolean isBytecode()
+  {
+    return _isBytecode;
+  }
 
   @Override
   public void initSerializers(ArrayList<SerializerH3Amp<?>> serArray)
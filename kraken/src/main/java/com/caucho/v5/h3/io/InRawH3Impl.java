@@ -153,6 +153,9 @@ public class InRawH3Impl implements InRawH3
     int ch = read();
     
     switch (ch) {
+    case ConstH3.NULL:
+      return null;
+      
     case 0x80: case 0x81: case 0x82: case 0x83: 
     case 0x84: case 0x85: case 0x86: case 0x87:
     case 0x88: case 0x89: case 0x8a: case 0x8b:
@@ -27,6 +27,7 @@ import com.caucho.v5.h3.OutFactoryH3;
 public class OutFactoryBuilderH3Impl implements OutFactoryBuilderH3
 {
   private boolean _isGraph;
+  private boolean _isBytecode = true;
   
   @Override
   public OutFactoryBuilderH3 graph(boolean isGraph)
@@ -41,6 +42,19 @@ public class OutFactoryBuilderH3Impl implements OutFactoryBuilderH3
     return _isGraph;
   }
   
+  @Override
+  public OutFactoryBuilderH3 bytecode(boolean isBytecode)
+  {
+    _isBytecode = isBytecode;
+    
+    return this;
+  }
+  
+  public boolean isBytecode()
+  {
+    return _isBytecode;
+  }
+  
   @Override
   public OutFactoryH3 get()
   {
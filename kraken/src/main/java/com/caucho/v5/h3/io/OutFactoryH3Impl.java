@@ -50,12 +50,14 @@ public class OutFactoryH3Impl implements OutFactoryH3
 {
   private static final L10N L = new L10N(OutFactoryH3Impl.class);
   
-  private ContextH3Impl _context = new ContextH3Impl();
+  private ContextH3Impl _context;
   private boolean _isGraph;
   
   OutFactoryH3Impl(OutFactoryBuilderH3Impl builder)
   {
     _isGraph = builder.isGraph();
+    
+    _context = new ContextH3Impl(builder.isBytecode());
   }
   
   /**
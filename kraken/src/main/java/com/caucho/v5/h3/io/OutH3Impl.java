@@ -200,9 +200,14 @@ class OutH3Impl implements OutH3
     serializer.writeObject(_out, objIndex, object, this);
   }
   
+  @Override
   public void flush()
   {
-    //_out.flush();
+    OutRawH3 out = _out;
+    
+    if (out != null) {
+      out.flush();
+    }
   }
   
   @Override
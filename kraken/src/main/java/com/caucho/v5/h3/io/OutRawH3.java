@@ -72,6 +72,12 @@ public interface OutRawH3 extends Closeable
   void writeGraph();
   
   void writeRef(int ref);
+  
+  /**
+   * Writes the buffered data to the underlying stream without flushing
+   * the stream.
+   */
+  void flush();
 
   @Override
   void close();
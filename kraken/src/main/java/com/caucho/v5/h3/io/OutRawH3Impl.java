@@ -328,6 +328,8 @@ public class OutRawH3Impl implements OutRawH3
       throw new H3ExceptionOut(e);
     }
   }
+  
+  @Override
   public void flush()
   {
     try {
@@ -0,0 +1,454 @@
+/*
+ * Copyright (c) 2001-2016 Caucho Technology, Inc.  All rights reserved.
+ * 
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.h3.ser;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.caucho.v5.bytecode.JavaClass;
+import com.caucho.v5.bytecode.JavaClassLoader;
+import com.caucho.v5.bytecode.JavaMethod;
+import com.caucho.v5.bytecode.attr.CodeWriterAttribute;
+import com.caucho.v5.h3.OutH3;
+import com.caucho.v5.h3.io.InH3Amp;
+import com.caucho.v5.h3.io.InRawH3;
+import com.caucho.v5.h3.io.OutRawH3;
+import com.caucho.v5.loader.DynamicClassLoader;
+import com.caucho.v5.loader.ProxyClassLoader;
+
+/**
+ * Generates a {@link CodecH3Java} for a serialized class, reading and
+ * writing the fields with direct getfield and putfield.
+ * 
+ * Public classes with public fields are generated in a child loader.
+ * Package-private fields are supported when the class was loaded by a
+ * DynamicClassLoader, which can define the codec in the class's own
+ * package. Otherwise, or for private or final fields, no codec is
+ * generated and the serializer uses its method handles.
+ */
+class CodecGeneratorH3Java
+{
+  private static final Logger log
+    = Logger.getLogger(CodecGeneratorH3Java.class.getName());
+  
+  private static final ClassValue<CodecH3Java> _codecMap
+    = new ClassValue<CodecH3Java>() {
+      @Override
+      protected CodecH3Java computeValue(Class<?> type)
+      {
+        return new CodecGeneratorH3Java(type).generate();
+      }
+    };
+  
+  private final Class<?> _type;
+  private final List<Field> _fields;
+  
+  private CodecGeneratorH3Java(Class<?> type)
+  {
+    _type = type;
+    _fields = SerializerH3Java.fields(type);
+  }
+  
+  /**
+   * Returns the generated codec for the type, or null if the type's
+   * fields can't be accessed from generated code.
+   */
+  static CodecH3Java codec(Class<?> type)
+  {
+    return _codecMap.get(type);
+  }
+  
+  private CodecH3Java generate()
+  {
+    ClassLoader loader = _type.getClassLoader();
+    
+    if (loader == null || _type.getName().startsWith("java")) {
+      return null;
+    }
+    
+    boolean isPublic = isPublic();
+    
+    if (! isPublic && ! (loader instanceof DynamicClassLoader)) {
+      return null;
+    }
+    
+    if (! isAccessible(isPublic)) {
+      return null;
+    }
+    
+    try {
+      String thisClassName = _type.getName().replace('.', '/') + "__H3Codec";
+      String cleanName = thisClassName.replace('/', '.');
+      
+      Class<?> codecClass;
+      
+      if (isPublic) {
+        ProxyClassLoader proxyLoader = new ProxyClassLoader(loader);
+        
+        codecClass = proxyLoader.loadClass(cleanName, generate(loader, thisClassName));
+      }
+      else {
+        codecClass = loadClass(cleanName, loader);
+        
+        if (codecClass == null) {
+          DynamicClassLoader dynLoader = (DynamicClassLoader) loader;
+          
+          codecClass = dynLoader.loadClass(cleanName, generate(loader, thisClassName));
+        }
+      }
+      
+      return (CodecH3Java) codecClass.newInstance();
+    } catch (Throwable e) {
+      log.log(Level.FINER, _type.getName() + ": " + e.toString(), e);
+      
+      return null;
+    }
+  }
+  
+  private Class<?> loadClass(String className, ClassLoader loader)
+  {
+    try {
+      return Class.forName(className, false, loader);
+    } catch (ClassNotFoundException e) {
+      log.log(Level.ALL, e.toString(), e);
+      
+      return null;
+    }
+  }
+  
+  /**
+   * True if the class and its constructor and fields are all public.
+   */
+  private boolean isPublic()
+  {
+    for (Class<?> cl = _type; cl != null; cl = cl.getEnclosingClass()) {
+      if (! Modifier.isPublic(cl.getModifiers())) {
+        return false;
+      }
+    }
+    
+    Constructor<?> ctor = constructor();
+    
+    if (ctor == null || ! Modifier.isPublic(ctor.getModifiers())) {
+      return false;
+    }
+    
+    for (Field field : _fields) {
+      if (! Modifier.isPublic(field.getModifiers())
+          || ! Modifier.isPublic(field.getDeclaringClass().getModifiers())) {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  /**
+   * True if generated code can read and write all the fields. Non-public
+   * members must be in the type's own package and loader.
+   */
+  private boolean isAccessible(boolean isPublic)
+  {
+    if (_type.isMemberClass() && ! Modifier.isStatic(_type.getModifiers())) {
+      return false;
+    }
+    
+    Constructor<?> ctor = constructor();
+    
+    if (ctor == null || Modifier.isPrivate(ctor.getModifiers())) {
+      return false;
+    }
+    
+    for (Field field : _fields) {
+      int modifiers = field.getModifiers();
+      
+      if (Modifier.isPrivate(modifiers) || Modifier.isFinal(modifiers)) {
+        return false;
+      }
+      
+      if (! isPublic && ! isSamePackage(field.getDeclaringClass())) {
+        return false;
+      }
+      
+      if (! isSupported(field.getType())) {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  private boolean isSamePackage(Class<?> cl)
+  {
+    return (cl.getClassLoader() == _type.getClassLoader()
+            && packageName(cl).equals(packageName(_type)));
+  }
+  
+  private static String packageName(Class<?> cl)
+  {
+    String name = cl.getName();
+    int p = name.lastIndexOf('.');
+    
+    return p > 0 ? name.substring(0, p) : "";
+  }
+  
+  private static boolean isSupported(Class<?> type)
+  {
+    if (! type.isPrimitive()) {
+      return true;
+    }
+    
+    // char fields are boxed by the serializer
+    return ! char.class.equals(type);
+  }
+  
+  private Constructor<?> constructor()
+  {
+    for (Constructor<?> ctor : _type.getDeclaredConstructors()) {
+      if (ctor.getParameterTypes().length == 0) {
+        return ctor;
+      }
+    }
+    
+    return null;
+  }
+  
+  private byte []generate(ClassLoader loader, String thisClassName)
+    throws Exception
+  {
+    JavaClassLoader jLoader = new JavaClassLoader(loader);
+
+    JavaClass jClass = new JavaClass(jLoader);
+    
+    jClass.setAccessFlags(Modifier.PUBLIC);
+    jClass.setWrite(true);
+
+    jClass.setMajor(51);
+    jClass.setMinor(0);
+    
+    jClass.setThisClass(thisClassName);
+    jClass.setSuperClass(Object.class.getName().replace('.', '/'));
+    jClass.addInterface(CodecH3Java.class.getName().replace('.', '/'));
+    
+    createConstructor(jClass);
+    createNewInstance(jClass);
+    createWrite(jClass);
+    createRead(jClass);
+    
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    
+    jClass.write(bos);
+    
+    bos.close();
+    
+    return bos.toByteArray();
+  }
+  
+  private void createConstructor(JavaClass jClass)
+  {
+    JavaMethod ctor = jClass.createMethod("<init>", void.class);
+    ctor.setAccessFlags(Modifier.PUBLIC);
+
+    CodeWriterAttribute code = ctor.createCodeWriter();
+    code.setMaxLocals(1);
+    code.setMaxStack(1);
+    
+    code.pushObjectVar(0);
+    code.invokespecial(Object.class, "<init>", void.class);
+    
+    code.addReturn();
+    code.close();
+  }
+  
+  private void createNewInstance(JavaClass jClass)
+  {
+    JavaMethod method = jClass.createMethod("newInstance", Object.class);
+    method.setAccessFlags(Modifier.PUBLIC|Modifier.FINAL);
+
+    CodeWriterAttribute code = method.createCodeWriter();
+    code.setMaxLocals(1);
+    code.setMaxStack(2);
+    
+    code.newInstance(_type);
+    code.dup();
+    code.invokespecial(_type, "<init>", void.class);
+    
+    code.addObjectReturn();
+    code.close();
+  }
+  
+  /**
+   * write(OutRawH3 os, Object bean, OutH3 out)
+   */
+  private void createWrite(JavaClass jClass)
+  {
+    JavaMethod method = jClass.createMethod("write", void.class,
+                                            OutRawH3.class,
+                                            Object.class,
+                                            OutH3.class);
+    method.setAccessFlags(Modifier.PUBLIC|Modifier.FINAL);
+
+    CodeWriterAttribute code = method.createCodeWriter();
+    code.setMaxLocals(4);
+    code.setMaxStack(4);
+    
+    for (Field field : _fields) {
+      Class<?> type = field.getType();
+      
+      if (type.isPrimitive() || String.class.equals(type)) {
+        code.pushObjectVar(1);
+      }
+      else {
+        code.pushObjectVar(3);
+      }
+      
+      code.pushObjectVar(2);
+      code.cast(_type);
+      getField(code, field);
+      
+      if (String.class.equals(type)) {
+        code.invokeInterface(OutRawH3.class, "writeString", void.class,
+                             String.class);
+      }
+      else if (boolean.class.equals(type)) {
+        code.invokeInterface(OutRawH3.class, "writeBoolean", void.class,
+                             boolean.class);
+      }
+      else if (byte.class.equals(type)
+               || short.class.equals(type)
+               || int.class.equals(type)) {
+        code.i2l();
+        code.invokeInterface(OutRawH3.class, "writeLong", void.class,
+                             long.class);
+      }
+      else if (long.class.equals(type)) {
+        code.invokeInterface(OutRawH3.class, "writeLong", void.class,
+                             long.class);
+      }
+      else if (float.class.equals(type)) {
+        code.invokeInterface(OutRawH3.class, "writeFloat", void.class,
+                             float.class);
+      }
+      else if (double.class.equals(type)) {
+        code.invokeInterface(OutRawH3.class, "writeDouble", void.class,
+                             double.class);
+      }
+      else {
+        code.invokeInterface(OutH3.class, "writeObject", void.class,
+                             Object.class);
+      }
+    }
+    
+    code.addReturn();
+    code.close();
+  }
+  
+  /**
+   * read(Object bean, InRawH3 is, InH3Amp in)
+   */
+  private void createRead(JavaClass jClass)
+  {
+    JavaMethod method = jClass.createMethod("read", void.class,
+                                            Object.class,
+                                            InRawH3.class,
+                                            InH3Amp.class);
+    method.setAccessFlags(Modifier.PUBLIC|Modifier.FINAL);
+
+    CodeWriterAttribute code = method.createCodeWriter();
+    code.setMaxLocals(4);
+    code.setMaxStack(4);
+    
+    for (Field field : _fields) {
+      Class<?> type = field.getType();
+      
+      code.pushObjectVar(1);
+      code.cast(_type);
+      
+      if (String.class.equals(type)) {
+        code.pushObjectVar(2);
+        code.invokeInterface(InRawH3.class, "readString", String.class);
+      }
+      else if (boolean.class.equals(type)) {
+        code.pushObjectVar(2);
+        code.invokeInterface(InRawH3.class, "readBoolean", boolean.class);
+      }
+      else if (byte.class.equals(type)) {
+        code.pushObjectVar(2);
+        code.invokeInterface(InRawH3.class, "readLong", long.class);
+        code.l2i();
+        code.i2b();
+      }
+      else if (short.class.equals(type)) {
+        code.pushObjectVar(2);
+        code.invokeInterface(InRawH3.class, "readLong", long.class);
+        code.l2i();
+        code.i2s();
+      }
+      else if (int.class.equals(type)) {
+        code.pushObjectVar(2);
+        code.invokeInterface(InRawH3.class, "readLong", long.class);
+        code.l2i();
+      }
+      else if (long.class.equals(type)) {
+        code.pushObjectVar(2);
+        code.invokeInterface(InRawH3.class, "readLong", long.class);
+      }
+      else if (float.class.equals(type)) {
+        code.pushObjectVar(2);
+        code.invokeInterface(InRawH3.class, "readFloat", float.class);
+      }
+      else if (double.class.equals(type)) {
+        code.pushObjectVar(2);
+        code.invokeInterface(InRawH3.class, "readDouble", double.class);
+      }
+      else {
+        code.pushObjectVar(3);
+        code.invokeInterface(InH3Amp.class, "readObject", Object.class);
+        
+        if (! Object.class.equals(type)) {
+          code.cast(type);
+        }
+      }
+      
+      putField(code, field);
+    }
+    
+    code.addReturn();
+    code.close();
+  }
+  
+  private void getField(CodeWriterAttribute code, Field field)
+  {
+    code.getField(field.getDeclaringClass().getName().replace('.', '/'),
+                  field.getName(),
+                  field.getType());
+  }
+  
+  private void putField(CodeWriterAttribute code, Field field)
+  {
+    code.putField(field.getDeclaringClass().getName().replace('.', '/'),
+                  field.getName(),
+                  field.getType());
+  }
+}
@@ -25,7 +25,9 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicReference;
@@ -57,6 +59,8 @@ public class SerializerH3Java<T> extends SerializerH3Base<T>
   private MethodHandle _ctor;
   private FieldSerBase[] _fields;
   
+  private CodecH3Java _codec;
+  
   SerializerH3Java(Class<T> type, ContextH3 context)
   {
     _type = type;
@@ -101,6 +105,13 @@ public class SerializerH3Java<T> extends SerializerH3Base<T>
   {
     os.writeObject(defIndex);
     
+    CodecH3Java codec = _codec;
+    
+    if (codec != null) {
+      codec.write(os, object, out);
+      return;
+    }
+    
     for (FieldSerBase field : _fields) {
       field.write(os, object, out);
     }
@@ -118,16 +129,21 @@ public class SerializerH3Java<T> extends SerializerH3Base<T>
     
     _ctor = introspectConstructor();
 
-    TreeMap<String,FieldSerBase> fieldMap = new TreeMap<>();
+    List<Field> fields = fields(_type);
+    
+    _fields = new FieldSerBase[fields.size()];
 
     try {
-      introspectFields(fieldMap, _type);
+      for (int i = 0; i < _fields.length; i++) {
+        _fields[i] = introspectField(fields.get(i));
+      }
     } catch (Exception e) {
       throw new IllegalStateException(e);
     }
-
-    _fields = new FieldSerBase[fieldMap.size()];
-    fieldMap.values().toArray(_fields);
+    
+    if (context.isBytecode()) {
+      _codec = CodecGeneratorH3Java.codec(_type);
+    }
 
     FieldInfoH3[] fieldInfo = new FieldInfoH3[_fields.length];
 
@@ -160,15 +176,25 @@ public class SerializerH3Java<T> extends SerializerH3Base<T>
                                 _type.getName()));
   }
   
-  private void introspectFields(Map<String,FieldSerBase> fieldMap,
-                                Class<?> type)
-    throws IllegalAccessException
+  /**
+   * Returns the serialized fields of the type, sorted by name.
+   */
+  static List<Field> fields(Class<?> type)
+  {
+    TreeMap<String,Field> fieldMap = new TreeMap<>();
+    
+    fields(fieldMap, type);
+    
+    return new ArrayList<>(fieldMap.values());
+  }
+  
+  private static void fields(Map<String,Field> fieldMap, Class<?> type)
   {
     if (type == null) {
       return;
     }
     
-    introspectFields(fieldMap, type.getSuperclass());
+    fields(fieldMap, type.getSuperclass());
     
     for (Field field : type.getDeclaredFields()) {
       if (Modifier.isStatic(field.getModifiers())) {
@@ -179,24 +205,26 @@ public class SerializerH3Java<T> extends SerializerH3Base<T>
         continue;
       }
       
-      FieldSerBase fieldSer;
-      
-      Class<?> fieldType = field.getType();
-      
-      field.setAccessible(true);
-      MethodHandle fieldGet = MethodHandles.lookup().unreflectGetter(field);
-      MethodHandle fieldSet = MethodHandles.lookup().unreflectSetter(field);
-      
-      FieldProvider provider = _fieldMap.get(fieldType);
-      
-      if (provider != null) {
-        fieldSer = provider.apply(field, fieldGet, fieldSet);
-      }
-      else {
-        fieldSer = new FieldSerObject(field, fieldGet, fieldSet);
-      }
-
-      fieldMap.put(fieldSer.name(), fieldSer);
+      fieldMap.put(field.getName(), field);
+    }
+  }
+  
+  private FieldSerBase introspectField(Field field)
+    throws IllegalAccessException
+  {
+    Class<?> fieldType = field.getType();
+    
+    field.setAccessible(true);
+    MethodHandle fieldGet = MethodHandles.lookup().unreflectGetter(field);
+    MethodHandle fieldSet = MethodHandles.lookup().unreflectSetter(field);
+    
+    FieldProvider provider = _fieldMap.get(fieldType);
+    
+    if (provider != null) {
+      return provider.apply(field, fieldGet, fieldSet);
+    }
+    else {
+      return new FieldSerObject(field, fieldGet, fieldSet);
     }
   }
 
@@ -206,6 +234,19 @@ public class SerializerH3Java<T> extends SerializerH3Base<T>
   @Override
   public T readObject(InRawH3 is, InH3Amp in)
   {
+    CodecH3Java codec = _codec;
+    
+    if (codec != null) {
+      // the codec is generated for _type, so the cast always succeeds
+      T bean = _type.cast(codec.newInstance());
+      
+      in.ref(bean);
+      
+      codec.read(bean, is, in);
+      
+      return bean;
+    }
+    
     T bean = newInstance();
     
     in.ref(bean);
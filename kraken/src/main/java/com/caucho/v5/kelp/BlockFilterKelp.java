@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kelp;
+
+import java.util.Objects;
+import java.util.function.Predicate;
+
+import com.caucho.v5.kelp.query.ColumnFilterKelp;
+import com.caucho.v5.kelp.query.EnvKelp;
+
+/**
+ * Block-at-a-time column filter for scans.
+ * 
+ * The filter is evaluated for all rows of a block at once, and the
+ * resulting bitmap is checked for each row the scan resolves from the
+ * block. Since the scan merges rows across the blocks of a page, recent
+ * blocks are cached.
+ */
+class BlockFilterKelp
+{
+  private static final int CACHE_SIZE = 8;
+  
+  private final EnvKelp _env;
+  private final ColumnFilterKelp _filter;
+  private final Row _row;
+  
+  private final BlockLeaf []_blocks = new BlockLeaf[CACHE_SIZE];
+  private final int []_rowHeads = new int[CACHE_SIZE];
+  private final long [][]_bits = new long[CACHE_SIZE][];
+  
+  private final int []_offsets;
+  
+  private int _lastIndex;
+  private int _nextIndex;
+  
+  BlockFilterKelp(TableKelp table, EnvKelp env)
+  {
+    Objects.requireNonNull(env);
+    Objects.requireNonNull(env.columnFilter());
+    
+    _env = env;
+    _filter = env.columnFilter();
+    _row = table.row();
+    
+    _offsets = new int[BlockLeaf.BLOCK_SIZE / _row.length() + 1];
+  }
+  
+  /**
+   * Returns a block filter for a query predicate with fixed-width column
+   * terms, or null.
+   */
+  static BlockFilterKelp create(TableKelp table, Predicate<RowCursor> predicate)
+  {
+    if (! (predicate instanceof EnvKelp)) {
+      return null;
+    }
+    
+    EnvKelp env = (EnvKelp) predicate;
+    
+    if (env.columnFilter() == null) {
+      return null;
+    }
+    
+    return new BlockFilterKelp(table, env);
+  }
+  
+  /**
+   * Tests the cursor's row against the query predicate. A row accepted
+   * by the block bitmap only evaluates the residual expression.
+   */
+  boolean test(RowCursor cursor)
+  {
+    BlockLeaf block = cursor.leafBlock();
+    
+    if (block == null || ! cursor.isData()) {
+      return _env.test(cursor);
+    }
+    
+    int ptr = cursor.leafRowOffset();
+    int index = find(block, ptr);
+    
+    long []bits = _bits[index];
+    
+    if ((bits[ptr >> 6] & (1L << ptr)) == 0) {
+      return false;
+    }
+    
+    return _env.testResidual(cursor);
+  }
+  
+  private int find(BlockLeaf block, int ptr)
+  {
+    int index = _lastIndex;
+    
+    if (_blocks[index] != block) {
+      for (index = 0; index < CACHE_SIZE; index++) {
+        if (_blocks[index] == block) {
+          break;
+        }
+      }
+    }
+    
+    if (index == CACHE_SIZE) {
+      index = _nextIndex;
+      _nextIndex = (index + 1) % CACHE_SIZE;
+      
+      _blocks[index] = block;
+      _rowHeads[index] = Integer.MAX_VALUE;
+      
+      if (_bits[index] == null) {
+        _bits[index] = new long[BlockLeaf.BLOCK_SIZE / 64];
+      }
+    }
+    
+    if (ptr < _rowHeads[index]) {
+      _rowHeads[index] = block.filter(_filter, _row, _offsets, _bits[index]);
+    }
+    
+    _lastIndex = index;
+    
+    return index;
+  }
+  
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "[" + _filter + "]";
+  }
+}
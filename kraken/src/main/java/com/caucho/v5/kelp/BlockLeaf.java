@@ -32,9 +32,11 @@ package com.caucho.v5.kelp;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Set;
 
 import com.caucho.v5.io.IoUtil;
+import com.caucho.v5.kelp.query.ColumnFilterKelp;
 import com.caucho.v5.util.BitsUtil;
 import com.caucho.v5.util.Hex;
 import com.caucho.v5.util.L10N;
@@ -445,7 +447,12 @@ class BlockLeaf
       minCmp = minCursor.compareKeyRow(_buffer, pivotOffset);
       
       if (minCmp == 0) {
-        return fillMatch(pivotOffset, resultCursor);
+        // a newer version of the same key from an earlier block wins
+        if (! isMatch || resultCursor.compareKeyRow(_buffer, pivotOffset) > 0) {
+          fillMatch(pivotOffset, resultCursor);
+        }
+        
+        return true;
       }
       else if (minCmp > 0) {
         length = pivot;
@@ -479,6 +486,52 @@ class BlockLeaf
     return true;
   }
 
+  /**
+   * Evaluates the column filter for all rows in the block, setting the
+   * bits for the matching row offsets.
+   * 
+   * Rows are only appended below the row head, so the bits remain valid
+   * for offsets at or above the returned row head.
+   * 
+   * @return the row head when the filter was evaluated
+   */
+  int filter(ColumnFilterKelp filter, Row row, int []offsets, long []bits)
+  {
+    int rowHead = _rowHead;
+    int rowLength = row.length();
+    int removeLength = row.removeLength();
+    
+    byte []buffer = _buffer;
+    
+    Arrays.fill(bits, 0);
+    
+    int count = 0;
+    int ptr = rowHead;
+    
+    while (ptr < BLOCK_SIZE) {
+      int code = buffer[ptr] & CODE_MASK;
+      
+      switch (code) {
+      case INSERT:
+      case INSERT_DEAD:
+        offsets[count++] = ptr;
+        ptr += rowLength;
+        break;
+        
+      case REMOVE:
+        ptr += removeLength;
+        break;
+        
+      default:
+        throw new IllegalStateException(this + " " + ptr + " code:" + code);
+      }
+    }
+    
+    filter.testBatch(buffer, offsets, count, bits);
+    
+    return rowHead;
+  }
+
   /**
    * Returns the first key in the block.
    * 
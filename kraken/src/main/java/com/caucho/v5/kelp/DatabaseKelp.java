@@ -84,6 +84,8 @@ public class DatabaseKelp
   private final int _blobInlineMax;
   private final long _memoryMax;
   
+  private final LeafCacheKelp _leafCache;
+  
   private final int _deltaLeafMax;
   private final int _deltaTreeMax;
   
@@ -133,6 +135,13 @@ public class DatabaseKelp
     _blobInlineMax = builder.getBlobInlineMax();
     _blobPageSizeMax = builder.getBlobPageSizeMax();
     _memoryMax = builder.getMemorySize();
+    
+    if (builder.getLeafCacheSize() > 0) {
+      _leafCache = new LeafCacheKelp(builder.getLeafCacheSize());
+    }
+    else {
+      _leafCache = null;
+    }
     _deltaLeafMax = builder.getDeltaLeafMax();
     _deltaTreeMax = builder.getDeltaTreeMax();
     
@@ -154,6 +163,7 @@ public class DatabaseKelp
     SegmentKelpBuilder segmentBuilder = new SegmentKelpBuilder();
     segmentBuilder.path(path);
     segmentBuilder.services(_rampManager);
+    segmentBuilder.compressor(builder.getCompressor());
     
     int lastSize = _segmentSizeMin;
     
@@ -322,6 +332,14 @@ public class DatabaseKelp
     return _memoryMax;
   }
   
+  /**
+   * The off-heap leaf cache, or null if disabled.
+   */
+  public LeafCacheKelp getLeafCache()
+  {
+    return _leafCache;
+  }
+  
   public long getMemorySize()
   {
     long size = 0;
@@ -33,10 +33,13 @@ import static com.caucho.v5.kelp.DatabaseKelp.BLOCK_SIZE;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Objects;
 
 import com.caucho.v5.amp.Amp;
 import com.caucho.v5.amp.ServicesAmp;
 import com.caucho.v5.config.ConfigException;
+import com.caucho.v5.kelp.io.CompressorKelp;
+import com.caucho.v5.kelp.io.CompressorLz;
 import com.caucho.v5.store.temp.TempStore;
 import com.caucho.v5.store.temp.TempStoreBuilder;
 import com.caucho.v5.util.L10N;
@@ -70,6 +73,7 @@ public class DatabaseKelpBuilder
   
   private int _deltaMax = 16;
   private long _memorySize = 4 * 1024 * 1024;
+  private long _leafCacheSize;
   
   private ServicesAmp _rampManager;
 
@@ -85,6 +89,8 @@ public class DatabaseKelpBuilder
   private boolean _isValidate = false; // true;
 
   private TempStore _tempStore;
+  
+  private CompressorKelp _compressor = new CompressorLz();
 
   public DatabaseKelpBuilder()
   {
@@ -350,6 +356,26 @@ public class DatabaseKelpBuilder
     return _memorySize;
   }
   
+  /**
+   * Size of the off-heap leaf cache. Zero disables the cache.
+   */
+  public DatabaseKelpBuilder leafCacheSize(long size)
+  {
+    if (size < 0) {
+      throw new IllegalArgumentException(L.l("{0} is an invalid leaf cache size",
+                                             size));
+    }
+    
+    _leafCacheSize = size;
+    
+    return this;
+  }
+  
+  public long getLeafCacheSize()
+  {
+    return _leafCacheSize;
+  }
+  
   public DatabaseKelpBuilder services(ServicesAmp manager)
   {
     _rampManager = manager;
@@ -398,6 +424,23 @@ public class DatabaseKelpBuilder
     return _isValidate;
   }
 
+  /**
+   * Compression codec for page data in new segments.
+   */
+  public DatabaseKelpBuilder compressor(CompressorKelp compressor)
+  {
+    Objects.requireNonNull(compressor);
+    
+    _compressor = compressor;
+    
+    return this;
+  }
+  
+  public CompressorKelp getCompressor()
+  {
+    return _compressor;
+  }
+
   public DatabaseKelpBuilder tempStore(TempStore tempStore)
   {
     _tempStore = tempStore;
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kelp;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Objects;
+
+/**
+ * Off-heap cache of leaf checkpoints.
+ * 
+ * When the memory gc drops a leaf from the heap, the next load can copy
+ * the decoded checkpoint from the cache instead of reading and
+ * decompressing the segment. Only the hot leaves need to live on the heap.
+ * 
+ * The memory is a set of direct-buffer slabs split into fixed slots. Each
+ * entry is a chain of slots, and eviction is a clock sweep over the slots.
+ */
+public class LeafCacheKelp
+{
+  static final int SLOT_SIZE = 4 * 1024;
+  private static final int SLAB_SIZE = 1024 * 1024;
+  private static final int SLAB_SLOTS = SLAB_SIZE / SLOT_SIZE;
+  
+  private final ByteBuffer []_slabs;
+  
+  private final Entry []_slotOwner;
+  private final int []_slotNext;
+  
+  private final HashMap<Key,Entry> _entryMap = new HashMap<>();
+  
+  private int _freeHead;
+  private int _freeCount;
+  
+  private int _clock;
+  
+  private long _hitCount;
+  private long _missCount;
+  
+  LeafCacheKelp(long size)
+  {
+    int slabCount = (int) Math.max(1, size / SLAB_SIZE);
+    
+    _slabs = new ByteBuffer[slabCount];
+    
+    int slotCount = slabCount * SLAB_SLOTS;
+    
+    _slotOwner = new Entry[slotCount];
+    _slotNext = new int[slotCount];
+    
+    for (int i = 0; i < slotCount; i++) {
+      _slotNext[i] = i + 1;
+    }
+    
+    _slotNext[slotCount - 1] = -1;
+    
+    _freeHead = 0;
+    _freeCount = slotCount;
+  }
+  
+  /**
+   * The off-heap capacity in bytes.
+   */
+  public long getCapacity()
+  {
+    return (long) _slabs.length * SLAB_SIZE;
+  }
+  
+  public synchronized int getEntryCount()
+  {
+    return _entryMap.size();
+  }
+  
+  public synchronized long getHitCount()
+  {
+    return _hitCount;
+  }
+  
+  public synchronized long getMissCount()
+  {
+    return _missCount;
+  }
+  
+  /**
+   * Returns a heap copy of the cached checkpoint, or null.
+   * 
+   * @param address the file address of the checkpoint
+   * @param sequence the sequence of the checkpoint's segment
+   */
+  synchronized byte []get(long address, long sequence)
+  {
+    Entry entry = _entryMap.get(new Key(address, sequence));
+    
+    if (entry == null) {
+      _missCount++;
+      
+      return null;
+    }
+    
+    _hitCount++;
+    
+    entry._isUsed = true;
+    
+    byte []data = new byte[entry._length];
+    
+    int slot = entry._slot;
+    
+    for (int pos = 0; pos < data.length; pos += SLOT_SIZE) {
+      int sublen = Math.min(SLOT_SIZE, data.length - pos);
+      
+      ByteBuffer slab = slab(slot);
+      slab.position(slabOffset(slot));
+      slab.get(data, pos, sublen);
+      
+      slot = _slotNext[slot];
+    }
+    
+    return data;
+  }
+  
+  /**
+   * Caches the decoded checkpoint for a leaf stub.
+   */
+  synchronized void put(long address, long sequence, byte []data, int length)
+  {
+    int slots = (length + SLOT_SIZE - 1) / SLOT_SIZE;
+    
+    // large entries would flush the cache
+    if (slots == 0 || _slotOwner.length < 4 * slots) {
+      return;
+    }
+    
+    Key key = new Key(address, sequence);
+    
+    Entry oldEntry = _entryMap.get(key);
+    
+    if (oldEntry != null) {
+      oldEntry._isUsed = true;
+      return;
+    }
+    
+    while (_freeCount < slots) {
+      evict();
+    }
+    
+    Entry entry = new Entry(key, length, _freeHead);
+    
+    int slot = -1;
+    
+    for (int pos = 0; pos < length; pos += SLOT_SIZE) {
+      slot = _freeHead;
+      _freeHead = _slotNext[slot];
+      _freeCount--;
+      
+      _slotOwner[slot] = entry;
+      
+      int sublen = Math.min(SLOT_SIZE, length - pos);
+      
+      ByteBuffer slab = slab(slot);
+      slab.position(slabOffset(slot));
+      slab.put(data, pos, sublen);
+    }
+    
+    _slotNext[slot] = -1;
+    
+    _entryMap.put(key, entry);
+  }
+  
+  /**
+   * Advances the clock, freeing the first entry that has not been used
+   * since the last sweep.
+   */
+  private void evict()
+  {
+    int slotCount = _slotOwner.length;
+    
+    for (int i = 0; i < 2 * slotCount; i++) {
+      int slot = _clock;
+      _clock = (slot + 1) % slotCount;
+      
+      Entry entry = _slotOwner[slot];
+      
+      if (entry == null || entry._slot != slot) {
+        continue;
+      }
+      
+      if (entry._isUsed) {
+        entry._isUsed = false;
+      }
+      else {
+        remove(entry);
+        return;
+      }
+    }
+    
+    throw new IllegalStateException(toString());
+  }
+  
+  private void remove(Entry entry)
+  {
+    _entryMap.remove(entry._key);
+    
+    int slot = entry._slot;
+    
+    while (slot >= 0) {
+      int next = _slotNext[slot];
+      
+      _slotOwner[slot] = null;
+      _slotNext[slot] = _freeHead;
+      _freeHead = slot;
+      _freeCount++;
+      
+      slot = next;
+    }
+  }
+  
+  private ByteBuffer slab(int slot)
+  {
+    int index = slot / SLAB_SLOTS;
+    
+    ByteBuffer slab = _slabs[index];
+    
+    if (slab == null) {
+      slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+      _slabs[index] = slab;
+    }
+    
+    return slab;
+  }
+  
+  private static int slabOffset(int slot)
+  {
+    return (slot % SLAB_SLOTS) * SLOT_SIZE;
+  }
+  
+  @Override
+  public String toString()
+  {
+    return (getClass().getSimpleName()
+            + "[" + (getCapacity() / 1024) + "k"
+            + ",free=" + _freeCount + "]");
+  }
+  
+  private static final class Key
+  {
+    private final long _address;
+    private final long _sequence;
+    
+    Key(long address, long sequence)
+    {
+      _address = address;
+      _sequence = sequence;
+    }
+    
+    @Override
+    public int hashCode()
+    {
+      return Long.hashCode(_address) * 65521 + Long.hashCode(_sequence);
+    }
+    
+    @Override
+    public boolean equals(Object o)
+    {
+      if (! (o instanceof Key)) {
+        return false;
+      }
+      
+      Key key = (Key) o;
+      
+      return _address == key._address && _sequence == key._sequence;
+    }
+  }
+  
+  private static final class Entry
+  {
+    private final Key _key;
+    private final int _length;
+    private final int _slot;
+    
+    private boolean _isUsed;
+    
+    Entry(Key key, int length, int slot)
+    {
+      Objects.requireNonNull(key);
+      
+      _key = key;
+      _length = length;
+      _slot = slot;
+    }
+  }
+}
@@ -30,7 +30,6 @@
 package com.caucho.v5.kelp;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 
 import com.caucho.v5.baratine.InService;
@@ -112,14 +111,13 @@ class PageBlobStub extends PageBlob
   @Override
   int read(int pageOffset, byte[] buffer, int offset, int length)
   {
+    // blobs are written uncompressed
     try (InSegment sIs = _segment.openRead()) {
-      try (InputStream zIs = sIs.inCompress(getOffset(), getLength())) {
-        zIs.skip(pageOffset);
+      sIs.setPosition(getOffset() + pageOffset);
 
-        int sublen = zIs.read(buffer, offset, length);
+      int sublen = sIs.read(buffer, offset, length);
       
-        return sublen;
-      }
+      return sublen;
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
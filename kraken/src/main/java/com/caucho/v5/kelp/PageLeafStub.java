@@ -29,11 +29,14 @@
 
 package com.caucho.v5.kelp;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
 
 import com.caucho.v5.baratine.InService;
+import com.caucho.v5.io.IoUtil;
 import com.caucho.v5.io.ReadStream;
 import com.caucho.v5.kelp.segment.InSegment;
 import com.caucho.v5.kelp.segment.SegmentKelp;
@@ -196,7 +199,7 @@ class PageLeafStub extends PageLeaf
       
         //is.setPosition(_offset);
 
-        try (InputStream zIs = sIn.inCompress(_offset, _length)) {
+        try (InputStream zIs = openCheckpoint(table, sIn)) {
           leaf = PageLeafImpl.readCheckpointFull(table,
                                                  pageActor,
                                                  zIs,
@@ -238,6 +241,40 @@ class PageLeafStub extends PageLeaf
     }
   }
 
+  /**
+   * Opens the full checkpoint, going through the off-heap leaf cache
+   * when it's enabled.
+   */
+  private InputStream openCheckpoint(TableKelp table, InSegment sIn)
+    throws IOException
+  {
+    LeafCacheKelp cache = table.database().getLeafCache();
+    
+    if (cache == null) {
+      return sIn.inCompress(_offset, _length);
+    }
+    
+    // segment sequences are not unique, so the key includes the address
+    long address = _segment.getAddress() + _offset;
+    long sequence = _segment.getSequence();
+    
+    byte []data = cache.get(address, sequence);
+    
+    if (data == null) {
+      ByteArrayOutputStream bos = new ByteArrayOutputStream(_length);
+      
+      try (InputStream zIs = sIn.inCompress(_offset, _length)) {
+        IoUtil.copy(zIs, bos);
+      }
+      
+      data = bos.toByteArray();
+      
+      cache.put(address, sequence, data, data.length);
+    }
+    
+    return new ByteArrayInputStream(data);
+  }
+
   @Override
   void loadKeys(TableKelp table)
   {
@@ -245,24 +282,39 @@ class PageLeafStub extends PageLeaf
       return;
     }
     
+    // the keys are the start of the full checkpoint, which may be compressed
     try (InSegment sIn = table.openReader(_segment)) {
-      ReadStream is = sIn.in();
-  
-      is.position(_offset);
-
-      byte []minKey = new byte[table.getKeyLength()];
-      byte []maxKey = new byte[table.getKeyLength()];
+      try (InputStream is = sIn.inCompress(_offset, _length)) {
+        byte []minKey = new byte[table.getKeyLength()];
+        byte []maxKey = new byte[table.getKeyLength()];
       
-      is.readAll(minKey, 0, minKey.length);
-      is.readAll(maxKey, 0, maxKey.length);
+        readAll(is, minKey);
+        readAll(is, maxKey);
       
-      _minKey = minKey;
-      _maxKey = maxKey;
+        _minKey = minKey;
+        _maxKey = maxKey;
+      }
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
   }
 
+  private static void readAll(InputStream is, byte []buffer)
+    throws IOException
+  {
+    int offset = 0;
+    
+    while (offset < buffer.length) {
+      int sublen = is.read(buffer, offset, buffer.length - offset);
+      
+      if (sublen < 0) {
+        throw new IOException("unexpected end of leaf checkpoint");
+      }
+      
+      offset += sublen;
+    }
+  }
+
   @Override
   boolean isSwappable()
   {
@@ -33,6 +33,7 @@ import io.baratine.service.Result;
 import io.baratine.service.Service;
 
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 
 import com.caucho.v5.amp.Direct;
 import com.caucho.v5.io.StreamSource;
@@ -88,6 +89,15 @@ public interface PageService
                    @Service BackupKelp backup,
                    Result<Boolean> cont);
   
+  /**
+   * Sums the row hashes in a range, including removed rows, on the
+   * table's thread.
+   */
+  void hashRange(RowCursor min,
+                 RowCursor max,
+                 ToLongFunction<RowCursor> rowHash,
+                 Result<Long> result);
+  
   //
   // checkpoint
   //
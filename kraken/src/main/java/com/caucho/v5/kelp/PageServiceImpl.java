@@ -44,6 +44,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -67,7 +68,7 @@ import com.caucho.v5.util.ConcurrentArrayList;
 import com.caucho.v5.util.CurrentTime;
 import com.caucho.v5.util.Hex;
 import com.caucho.v5.util.L10N;
-import com.caucho.v5.util.LruCache;
+import com.caucho.v5.util.LruCacheConcurrent;
 
 /**
  * Actor responsible for managing the page tables.
@@ -111,7 +112,8 @@ public class PageServiceImpl implements PageService
   
   private Lifecycle _lifecycle = new Lifecycle();
   
-  private LruCache<Integer,Page> _updateLru = new LruCache<>(1024);
+  private LruCacheConcurrent<Integer,Page> _updateLru
+    = new LruCacheConcurrent<>(1024);
   
   PageServiceImpl(TableKelp table,
                    JournalStore jbs)
@@ -349,6 +351,26 @@ public class PageServiceImpl implements PageService
     result.ok(count);
   }
   
+  @Override
+  public void hashRange(RowCursor min,
+                        RowCursor max,
+                        ToLongFunction<RowCursor> rowHash,
+                        Result<Long> result)
+  {
+    long hash = 0;
+    
+    RangeIteratorKelp iter;
+    iter = new RangeIteratorKelp(_table, min, max, PredicateTrue.TRUE);
+    iter.setData(false);
+    
+    while (iter.hasNext()) {
+      // order-independent sum, so peers match regardless of layout
+      hash += rowHash.applyAsLong(iter.next());
+    }
+    
+    result.ok(hash);
+  }
+  
   @Override
   public void replace(RowCursor cursor,
                       EnvKelp envKelp,
@@ -46,6 +46,7 @@ class RangeIteratorKelp implements Iterator<RowCursor>
   private final RowCursor _min;
   private final RowCursor _max;
   private final Predicate<RowCursor> _predicate;
+  private final BlockFilterKelp _blockFilter;
   
   private final RowCursor _indexCursor;
   private final RowCursor _cursor;
@@ -70,6 +71,7 @@ class RangeIteratorKelp implements Iterator<RowCursor>
     _max = max;
     
     _predicate = predicate;
+    _blockFilter = BlockFilterKelp.create(table, predicate);
     
     _indexCursor = _table.cursor();
     _cursor = _table.cursor();
@@ -119,7 +121,7 @@ class RangeIteratorKelp implements Iterator<RowCursor>
       _indexCursor.setKey(_cursor);
 
 
-      if ((! _isData || _cursor.isData()) && _predicate.test(_cursor)) {
+      if ((! _isData || _cursor.isData()) && test(_cursor)) {
         _isValid = true;
 
         return true;
@@ -127,6 +129,19 @@ class RangeIteratorKelp implements Iterator<RowCursor>
     }
   }
 
+  /**
+   * Tests the row, using the block filter's bitmap when available.
+   */
+  private boolean test(RowCursor cursor)
+  {
+    if (_blockFilter != null) {
+      return _blockFilter.test(cursor);
+    }
+    else {
+      return _predicate.test(cursor);
+    }
+  }
+
   @Override
   public RowCursor next()
   {
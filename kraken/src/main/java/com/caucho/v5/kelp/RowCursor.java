@@ -344,6 +344,16 @@ public final class RowCursor
     _leafBlock = leafBlock;
     _leafRowOffset = rowOffset;
   }
+  
+  BlockLeaf leafBlock()
+  {
+    return _leafBlock;
+  }
+  
+  int leafRowOffset()
+  {
+    return _leafRowOffset;
+  }
 
   public final InputStream openInputStream(int index)
   {
@@ -43,6 +43,7 @@ class StreamKelp
   private final RowCursor _min;
   private final RowCursor _max;
   private final Predicate<RowCursor> _predicate;
+  private final BlockFilterKelp _blockFilter;
   
   private final MapKelp _map;
   
@@ -68,6 +69,7 @@ class StreamKelp
     _max = max;
     
     _predicate = predicate;
+    _blockFilter = BlockFilterKelp.create(table, predicate);
     _map = map;
     
     _indexCursor = _table.cursor();
@@ -102,7 +104,7 @@ class StreamKelp
 
       _indexCursor.setKey(_cursor);
 
-      if ((! _isData || _cursor.isData()) && _predicate.test(_cursor)) {
+      if ((! _isData || _cursor.isData()) && test(_cursor)) {
         _map.onRow(_cursor);
       }
       
@@ -111,4 +113,17 @@ class StreamKelp
     
     return false;
   }
+  
+  /**
+   * Tests the row, using the block filter's bitmap when available.
+   */
+  private boolean test(RowCursor cursor)
+  {
+    if (_blockFilter != null) {
+      return _blockFilter.test(cursor);
+    }
+    else {
+      return _predicate.test(cursor);
+    }
+  }
 }
@@ -34,6 +34,7 @@ import java.nio.file.Path;
 import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 
 import com.caucho.v5.amp.ServicesAmp;
 import com.caucho.v5.amp.spi.ShutdownModeAmp;
@@ -516,6 +517,17 @@ public class TableKelp
     _tableService.removeRange(min, max, predicate, backup, cont);
   }
 
+  /**
+   * Sums the row hashes in a range on the table's thread.
+   */
+  public void hashRange(RowCursor min,
+                        RowCursor max,
+                        ToLongFunction<RowCursor> rowHash,
+                        Result<Long> result)
+  {
+    getTableService().hashRange(min, max, rowHash, result);
+  }
+  
   public PredicateKelp parseQuery(String sql)
   {
     QueryParserKelp parser = new QueryParserKelp(this);
@@ -402,7 +402,7 @@ public class TableWriterServiceImpl
     InStore sIn = _store.openRead(segment.getAddress(), 
                                   segment.length());
     
-    return new InSegment(sIn, segment.extent(), compressor());
+    return new InSegment(sIn, segment.extent(), segment.compressor());
   }
   
   /**
@@ -46,9 +46,23 @@ import com.caucho.v5.util.FreeList;
  */
 public class CompressorDeflate implements CompressorKelp
 {
+  public static final int CODE = 1;
+  
   private FreeList<Inflater> _freeInflater = new FreeList<>(64);
   private FreeList<Deflater> _freeDeflater = new FreeList<>(64);
   
+  @Override
+  public int code()
+  {
+    return CODE;
+  }
+  
+  @Override
+  public boolean isCompress()
+  {
+    return true;
+  }
+  
   @Override
   public OutputStream out(WriteStream os) throws IOException
   {
@@ -46,4 +46,9 @@ public interface CompressorKelp
   InputStream in(ReadStream is, long offset, int length) throws IOException;
 
   default boolean isCompress() { return false; }
+  
+  /**
+   * Code recorded in the segment footer, selecting the codec for reads.
+   */
+  default int code() { return CompressorNull.CODE; }
 }
@@ -0,0 +1,549 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kelp.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import com.caucho.v5.io.ReadStream;
+import com.caucho.v5.io.WriteStream;
+import com.caucho.v5.util.BitsUtil;
+import com.caucho.v5.util.FreeList;
+
+/**
+ * Fast LZ compression, using the LZ4 block encoding.
+ * 
+ * The stream is split into independent chunks:
+ * 
+ * <pre>
+ * chunk:
+ *   i16 - raw length
+ *   i16 - data length (equal to raw length for uncompressed chunks)
+ *   byte[data length] - data
+ * </pre>
+ */
+public class CompressorLz implements CompressorKelp
+{
+  public static final int CODE = 2;
+  
+  private static final int CHUNK_SIZE = 16 * 1024;
+  private static final int CHUNK_HEADER = 4;
+  
+  private static final int HASH_BITS = 12;
+  
+  private static final int MIN_MATCH = 4;
+  private static final int MAX_OFFSET = 0xffff;
+  
+  // LZ4 requires the final bytes to be literals
+  private static final int LAST_LITERALS = 5;
+  private static final int MATCH_LIMIT = 12;
+  
+  private final FreeList<Buffers> _freeBuffers = new FreeList<>(64);
+  
+  @Override
+  public int code()
+  {
+    return CODE;
+  }
+  
+  @Override
+  public boolean isCompress()
+  {
+    return true;
+  }
+  
+  @Override
+  public OutputStream out(WriteStream os) throws IOException
+  {
+    return new OutLz(os, allocateBuffers());
+  }
+  
+  @Override
+  public InputStream in(ReadStream is, long offset, int length) throws IOException
+  {
+    return new InLz(is, allocateBuffers(), offset, length);
+  }
+  
+  private Buffers allocateBuffers()
+  {
+    Buffers buffers = _freeBuffers.allocate();
+    
+    if (buffers == null) {
+      buffers = new Buffers();
+    }
+    
+    return buffers;
+  }
+  
+  private void freeBuffers(Buffers buffers)
+  {
+    _freeBuffers.free(buffers);
+  }
+  
+  /**
+   * Compresses the source into the destination.
+   * 
+   * @return the compressed length, or -1 if the data doesn't compress
+   */
+  static int compress(byte []src, int srcLength, 
+                      byte []dst, 
+                      int []hashTable)
+  {
+    // only compressed data smaller than the source is useful
+    int dstMax = srcLength - 1;
+    
+    if (srcLength <= MATCH_LIMIT) {
+      return -1;
+    }
+    
+    Arrays.fill(hashTable, -1);
+    
+    int matchLimit = srcLength - LAST_LITERALS;
+    int ipLimit = srcLength - MATCH_LIMIT;
+    
+    int anchor = 0;
+    int ip = 0;
+    int op = 0;
+    
+    while (ip < ipLimit) {
+      int seq = readInt(src, ip);
+      int hash = hash(seq);
+      
+      int ref = hashTable[hash];
+      hashTable[hash] = ip;
+      
+      if (ref < 0 
+          || MAX_OFFSET < ip - ref
+          || readInt(src, ref) != seq) {
+        ip++;
+        continue;
+      }
+      
+      int matchLength = MIN_MATCH;
+      
+      while (ip + matchLength < matchLimit
+             && src[ref + matchLength] == src[ip + matchLength]) {
+        matchLength++;
+      }
+      
+      op = writeSequence(dst, op, dstMax,
+                         src, anchor, ip - anchor,
+                         ip - ref, matchLength);
+      
+      if (op < 0) {
+        return -1;
+      }
+      
+      ip += matchLength;
+      anchor = ip;
+    }
+    
+    return writeLiterals(dst, op, dstMax, src, anchor, srcLength - anchor);
+  }
+  
+  private static int writeSequence(byte []dst, int op, int dstMax,
+                                   byte []src, int anchor, int literalLength,
+                                   int offset, int matchLength)
+  {
+    int tokenOffset = op;
+    
+    op = writeLiterals(dst, op, dstMax, src, anchor, literalLength);
+    
+    if (op < 0 || dstMax < op + 2 + 1 + matchLength / 255) {
+      return -1;
+    }
+    
+    dst[op++] = (byte) offset;
+    dst[op++] = (byte) (offset >> 8);
+    
+    int length = matchLength - MIN_MATCH;
+    
+    if (length < 15) {
+      dst[tokenOffset] |= (byte) length;
+    }
+    else {
+      dst[tokenOffset] |= (byte) 15;
+      
+      op = writeLength(dst, op, length - 15);
+    }
+    
+    return op;
+  }
+  
+  private static int writeLiterals(byte []dst, int op, int dstMax,
+                                   byte []src, int anchor, int length)
+  {
+    if (dstMax < op + 1 + length + length / 255 + 1) {
+      return -1;
+    }
+    
+    if (length < 15) {
+      dst[op++] = (byte) (length << 4);
+    }
+    else {
+      dst[op++] = (byte) (15 << 4);
+      
+      op = writeLength(dst, op, length - 15);
+    }
+    
+    System.arraycopy(src, anchor, dst, op, length);
+    
+    return op + length;
+  }
+  
+  private static int writeLength(byte []dst, int op, int length)
+  {
+    for (; 255 <= length; length -= 255) {
+      dst[op++] = (byte) 255;
+    }
+    
+    dst[op++] = (byte) length;
+    
+    return op;
+  }
+  
+  /**
+   * Decompresses the source into the destination.
+   * 
+   * @return the decompressed length
+   */
+  static int decompress(byte []src, int srcLength, byte []dst)
+    throws IOException
+  {
+    int ip = 0;
+    int op = 0;
+    
+    try {
+      while (ip < srcLength) {
+        int token = src[ip++] & 0xff;
+        
+        int literalLength = token >> 4;
+        
+        if (literalLength == 15) {
+          int ch;
+          
+          do {
+            ch = src[ip++] & 0xff;
+            literalLength += ch;
+          } while (ch == 255);
+        }
+        
+        System.arraycopy(src, ip, dst, op, literalLength);
+        ip += literalLength;
+        op += literalLength;
+        
+        if (srcLength <= ip) {
+          break;
+        }
+        
+        int offset = (src[ip] & 0xff) + ((src[ip + 1] & 0xff) << 8);
+        ip += 2;
+        
+        int matchLength = token & 0xf;
+        
+        if (matchLength == 15) {
+          int ch;
+          
+          do {
+            ch = src[ip++] & 0xff;
+            matchLength += ch;
+          } while (ch == 255);
+        }
+        
+        matchLength += MIN_MATCH;
+        
+        int ref = op - offset;
+        
+        if (ref < 0 || offset == 0) {
+          throw new IOException("invalid lz offset " + offset + " at " + op);
+        }
+        
+        // byte copy because the match may overlap the output
+        for (int i = 0; i < matchLength; i++) {
+          dst[op++] = dst[ref++];
+        }
+      }
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("corrupted lz data", e);
+    }
+    
+    return op;
+  }
+  
+  private static int readInt(byte []buffer, int offset)
+  {
+    return ((buffer[offset] & 0xff) << 24
+            | (buffer[offset + 1] & 0xff) << 16
+            | (buffer[offset + 2] & 0xff) << 8
+            | (buffer[offset + 3] & 0xff));
+  }
+  
+  private static int hash(int seq)
+  {
+    return (seq * -1640531535) >>> (32 - HASH_BITS);
+  }
+  
+  private static final class Buffers
+  {
+    private final byte []_raw = new byte[CHUNK_SIZE];
+    private final byte []_data = new byte[CHUNK_SIZE];
+    private final byte []_header = new byte[CHUNK_HEADER];
+    private final int []_hashTable = new int[1 << HASH_BITS];
+  }
+  
+  private class OutLz extends OutputStream
+  {
+    private WriteStream _os;
+    private Buffers _buffers;
+    private byte []_buffer;
+    private int _offset;
+    
+    OutLz(WriteStream os, Buffers buffers)
+    {
+      _os = os;
+      _buffers = buffers;
+      _buffer = buffers._raw;
+    }
+    
+    @Override
+    public void write(int ch)
+      throws IOException
+    {
+      if (_buffer.length <= _offset) {
+        writeChunk();
+      }
+      
+      _buffer[_offset++] = (byte) ch;
+    }
+    
+    @Override
+    public void write(byte []buffer, int offset, int length)
+      throws IOException
+    {
+      while (length > 0) {
+        byte []tBuffer = _buffer;
+        int tOffset = _offset;
+        
+        int sublen = Math.min(length, tBuffer.length - tOffset);
+        
+        System.arraycopy(buffer, offset, tBuffer, tOffset, sublen);
+        _offset = tOffset + sublen;
+        offset += sublen;
+        length -= sublen;
+        
+        if (length > 0) {
+          writeChunk();
+        }
+      }
+    }
+    
+    @Override
+    public void flush()
+      throws IOException
+    {
+      writeChunk();
+    }
+    
+    private void writeChunk()
+      throws IOException
+    {
+      int rawLength = _offset;
+      
+      if (rawLength == 0) {
+        return;
+      }
+      
+      Buffers buffers = _buffers;
+      byte []header = buffers._header;
+      
+      int dataLength = compress(buffers._raw, rawLength,
+                                buffers._data, buffers._hashTable);
+      
+      BitsUtil.writeInt16(header, 0, rawLength);
+      
+      if (dataLength > 0) {
+        BitsUtil.writeInt16(header, 2, dataLength);
+        
+        _os.write(header, 0, header.length);
+        _os.write(buffers._data, 0, dataLength);
+      }
+      else {
+        BitsUtil.writeInt16(header, 2, rawLength);
+        
+        _os.write(header, 0, header.length);
+        _os.write(buffers._raw, 0, rawLength);
+      }
+      
+      _offset = 0;
+    }
+    
+    @Override
+    public void close()
+      throws IOException
+    {
+      Buffers buffers = _buffers;
+      
+      if (buffers == null) {
+        return;
+      }
+      
+      writeChunk();
+      
+      _buffers = null;
+      _buffer = null;
+      
+      freeBuffers(buffers);
+    }
+  }
+  
+  private class InLz extends InputStream
+  {
+    private ReadStream _is;
+    private int _rawLength;
+    
+    private Buffers _buffers;
+    private byte []_buffer;
+    private int _offset;
+    private int _length;
+    
+    InLz(ReadStream is, Buffers buffers, long offset, int length)
+      throws IOException
+    {
+      _is = is;
+      _buffers = buffers;
+      _buffer = buffers._raw;
+      
+      _is.position(offset);
+      _rawLength = length;
+    }
+    
+    @Override
+    public int read()
+      throws IOException
+    {
+      if (_length <= _offset) {
+        if (! fill()) {
+          return -1;
+        }
+      }
+      
+      return _buffer[_offset++] & 0xff;
+    }
+    
+    @Override
+    public int read(byte []buffer, int offset, int length)
+      throws IOException
+    {
+      int tOffset = _offset;
+      int tLength = _length;
+      
+      if (tLength <= tOffset) {
+        if (! fill()) {
+          return -1;
+        }
+        
+        tOffset = _offset;
+        tLength = _length;
+      }
+      
+      int sublen = Math.min(length, tLength - tOffset);
+      
+      System.arraycopy(_buffer, tOffset, buffer, offset, sublen);
+      
+      _offset = tOffset + sublen;
+      
+      return sublen;
+    }
+    
+    private boolean fill()
+      throws IOException
+    {
+      if (_rawLength <= 0 || _buffers == null) {
+        return false;
+      }
+      
+      Buffers buffers = _buffers;
+      byte []header = buffers._header;
+      
+      if (_is.readAll(header, 0, header.length) != header.length) {
+        return false;
+      }
+      
+      int rawLength = BitsUtil.readInt16(header, 0);
+      int dataLength = BitsUtil.readInt16(header, 2);
+      
+      if (CHUNK_SIZE < rawLength || rawLength < dataLength) {
+        throw new IOException("invalid lz chunk raw=" + rawLength
+                              + " data=" + dataLength);
+      }
+      
+      _rawLength -= header.length + dataLength;
+      
+      if (dataLength == rawLength) {
+        if (_is.readAll(buffers._raw, 0, rawLength) != rawLength) {
+          return false;
+        }
+      }
+      else {
+        if (_is.readAll(buffers._data, 0, dataLength) != dataLength) {
+          return false;
+        }
+        
+        int length = decompress(buffers._data, dataLength, buffers._raw);
+        
+        if (length != rawLength) {
+          throw new IOException("invalid lz chunk length=" + length
+                                + " expected=" + rawLength);
+        }
+      }
+      
+      _offset = 0;
+      _length = rawLength;
+      
+      return true;
+    }
+    
+    @Override
+    public void close()
+      throws IOException
+    {
+      Buffers buffers = _buffers;
+      _buffers = null;
+      _buffer = null;
+      _length = 0;
+      _offset = 0;
+      
+      if (buffers != null) {
+        freeBuffers(buffers);
+      }
+    }
+  }
+}
@@ -41,6 +41,8 @@ import com.caucho.v5.io.WriteStream;
  */
 public class CompressorNull implements CompressorKelp
 {
+  public static final int CODE = 0;
+  
   @Override
   public OutputStream out(WriteStream os) throws IOException
   {
@@ -52,6 +54,74 @@ public class CompressorNull implements CompressorKelp
   {
     is.position(offset);
     
-    return is;
+    return new InNull(is, length);
+  }
+  
+  /**
+   * Reads the entry from the segment stream without closing it, because
+   * the caller continues to read delta entries from the same stream.
+   */
+  private static class InNull extends InputStream
+  {
+    private final ReadStream _is;
+    private int _length;
+    
+    InNull(ReadStream is, int length)
+    {
+      _is = is;
+      _length = length;
+    }
+    
+    @Override
+    public int read()
+      throws IOException
+    {
+      if (_length <= 0) {
+        return -1;
+      }
+      
+      int ch = _is.read();
+      
+      if (ch >= 0) {
+        _length--;
+      }
+      
+      return ch;
+    }
+    
+    @Override
+    public int read(byte []buffer, int offset, int length)
+      throws IOException
+    {
+      if (_length <= 0) {
+        return -1;
+      }
+      
+      int sublen = _is.read(buffer, offset, Math.min(length, _length));
+      
+      if (sublen > 0) {
+        _length -= sublen;
+      }
+      
+      return sublen;
+    }
+    
+    @Override
+    public long skip(long n)
+      throws IOException
+    {
+      long sublen = _is.skip(Math.min(n, _length));
+      
+      if (sublen > 0) {
+        _length -= sublen;
+      }
+      
+      return sublen;
+    }
+    
+    @Override
+    public void close()
+    {
+    }
   }
 }
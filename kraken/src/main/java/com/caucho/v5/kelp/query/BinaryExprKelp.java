@@ -45,6 +45,21 @@ public class BinaryExprKelp extends ExprKelp
     _right = right;
   }
   
+  BinaryOpKelp op()
+  {
+    return _op;
+  }
+  
+  ExprKelp left()
+  {
+    return _left;
+  }
+  
+  ExprKelp right()
+  {
+    return _right;
+  }
+  
   @Override
   public boolean evalBoolean(EnvKelp cxt)
   {
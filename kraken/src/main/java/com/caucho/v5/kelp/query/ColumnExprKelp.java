@@ -48,6 +48,11 @@ public class ColumnExprKelp extends ExprKelp
     _column = column;
   }
 
+  Column column()
+  {
+    return _column;
+  }
+
   @Override
   public Object eval(EnvKelp cxt)
   {
@@ -0,0 +1,462 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kelp.query;
+
+import java.util.ArrayList;
+
+import com.caucho.v5.kelp.Column;
+
+/**
+ * Comparisons of fixed-width columns against query constants, evaluated
+ * directly on row bytes.
+ *
+ * The filter is split from the top-level AND terms of a where expression,
+ * so a row failing it is rejected before its object columns are scanned.
+ * Comparisons follow {@link BinaryOpKelp}.
+ */
+public final class ColumnFilterKelp
+{
+  private final Column []_columns;
+  private final BinaryOpKelp []_ops;
+  private final boolean []_isDouble;
+  private final long []_longValues;
+  private final double []_doubleValues;
+  
+  private long []_longScratch;
+  private double []_doubleScratch;
+  
+  private ColumnFilterKelp(Column []columns,
+                           BinaryOpKelp []ops,
+                           boolean []isDouble,
+                           long []longValues,
+                           double []doubleValues)
+  {
+    _columns = columns;
+    _ops = ops;
+    _isDouble = isDouble;
+    _longValues = longValues;
+    _doubleValues = doubleValues;
+  }
+  
+  /**
+   * Tests the row at the offset.
+   */
+  public boolean test(byte []buffer, int rowOffset)
+  {
+    Column []columns = _columns;
+    
+    for (int i = 0; i < columns.length; i++) {
+      if (_isDouble[i]) {
+        double value = getDouble(columns[i], buffer, rowOffset);
+        
+        if (! compare(_ops[i], value, _doubleValues[i])) {
+          return false;
+        }
+      }
+      else {
+        long value = getLong(columns[i], buffer, rowOffset);
+        
+        if (! compare(_ops[i], value, _longValues[i])) {
+          return false;
+        }
+      }
+    }
+    
+    return true;
+  }
+  
+  /**
+   * Tests a batch of rows, one term at a time. Each term extracts its
+   * column for all rows still matching, then compares in a tight loop.
+   * 
+   * @param buffer the block buffer
+   * @param rowOffsets offsets of the rows to test
+   * @param count number of rows
+   * @param bits bitmap indexed by row offset, set for matching rows
+   */
+  public void testBatch(byte []buffer, int []rowOffsets, int count, long []bits)
+  {
+    long []longs = _longScratch;
+    double []doubles = _doubleScratch;
+    
+    if (longs == null || longs.length < count) {
+      longs = _longScratch = new long[count];
+      doubles = _doubleScratch = new double[count];
+    }
+    
+    int []offsets = rowOffsets;
+    
+    for (int i = 0; i < _columns.length && count > 0; i++) {
+      Column column = _columns[i];
+      BinaryOpKelp op = _ops[i];
+      
+      int tail = 0;
+      
+      if (_isDouble[i]) {
+        for (int j = 0; j < count; j++) {
+          doubles[j] = getDouble(column, buffer, offsets[j]);
+        }
+        
+        double value = _doubleValues[i];
+        
+        for (int j = 0; j < count; j++) {
+          if (compare(op, doubles[j], value)) {
+            offsets[tail++] = offsets[j];
+          }
+        }
+      }
+      else {
+        for (int j = 0; j < count; j++) {
+          longs[j] = getLong(column, buffer, offsets[j]);
+        }
+        
+        long value = _longValues[i];
+        
+        for (int j = 0; j < count; j++) {
+          if (compare(op, longs[j], value)) {
+            offsets[tail++] = offsets[j];
+          }
+        }
+      }
+      
+      count = tail;
+    }
+    
+    for (int j = 0; j < count; j++) {
+      int offset = offsets[j];
+      
+      bits[offset >> 6] |= 1L << offset;
+    }
+  }
+  
+  private static long getLong(Column column, byte []buffer, int rowOffset)
+  {
+    switch (column.type()) {
+    case INT16:
+    case INT32:
+      return column.getInt(buffer, rowOffset);
+      
+    case DOUBLE:
+      return (long) column.getDouble(buffer, rowOffset);
+      
+    default:
+      return column.getLong(buffer, rowOffset);
+    }
+  }
+  
+  private static double getDouble(Column column, byte []buffer, int rowOffset)
+  {
+    switch (column.type()) {
+    case INT16:
+    case INT32:
+      return column.getInt(buffer, rowOffset);
+      
+    case INT64:
+      return column.getLong(buffer, rowOffset);
+      
+    default:
+      return column.getDouble(buffer, rowOffset);
+    }
+  }
+  
+  private static boolean compare(BinaryOpKelp op, long a, long b)
+  {
+    switch (op) {
+    case EQ:
+      return a == b;
+    case NE:
+      return a != b;
+    case LT:
+      return a < b;
+    case LE:
+      return a <= b;
+    case GT:
+      return a > b;
+    case GE:
+      return a >= b;
+    default:
+      throw new IllegalStateException(String.valueOf(op));
+    }
+  }
+  
+  private static boolean compare(BinaryOpKelp op, double a, double b)
+  {
+    switch (op) {
+    case EQ:
+      return a == b;
+    case LT:
+      return a < b;
+    case GT:
+      return a > b;
+    default:
+      throw new IllegalStateException(String.valueOf(op));
+    }
+  }
+  
+  @Override
+  public String toString()
+  {
+    StringBuilder sb = new StringBuilder();
+    
+    sb.append(getClass().getSimpleName()).append("[");
+    
+    for (int i = 0; i < _columns.length; i++) {
+      if (i > 0) {
+        sb.append(",");
+      }
+      
+      sb.append(_columns[i].name()).append(" ").append(_ops[i]).append(" ");
+      
+      if (_isDouble[i]) {
+        sb.append(_doubleValues[i]);
+      }
+      else {
+        sb.append(_longValues[i]);
+      }
+    }
+    
+    return sb.append("]").toString();
+  }
+  
+  /**
+   * The unbound filter split from a where expression. The operands are
+   * literals or query parameters, bound for each query execution.
+   */
+  static final class Program
+  {
+    private final Column []_columns;
+    private final BinaryOpKelp []_ops;
+    private final ExprKelp []_operands;
+    private final ExprKelp _residual;
+    
+    private Program(ArrayList<Term> terms, ExprKelp residual)
+    {
+      int size = terms.size();
+      
+      _columns = new Column[size];
+      _ops = new BinaryOpKelp[size];
+      _operands = new ExprKelp[size];
+      
+      for (int i = 0; i < size; i++) {
+        Term term = terms.get(i);
+        
+        _columns[i] = term._column;
+        _ops[i] = term._op;
+        _operands[i] = term._operand;
+      }
+      
+      _residual = residual;
+    }
+    
+    /**
+     * Splits the top-level AND terms of the expression, returning null if
+     * no term compares a fixed-width column with a constant.
+     */
+    static Program compile(ExprKelp expr)
+    {
+      ArrayList<ExprKelp> conjuncts = new ArrayList<>();
+      
+      split(expr, conjuncts);
+      
+      ArrayList<Term> terms = new ArrayList<>();
+      ExprKelp residual = null;
+      
+      for (ExprKelp conjunct : conjuncts) {
+        Term term = Term.create(conjunct);
+        
+        if (term != null) {
+          terms.add(term);
+        }
+        else if (residual == null) {
+          residual = conjunct;
+        }
+        else {
+          residual = new BinaryExprKelp(BinaryOpKelp.AND, residual, conjunct);
+        }
+      }
+      
+      if (terms.isEmpty()) {
+        return null;
+      }
+      
+      return new Program(terms, residual);
+    }
+    
+    private static void split(ExprKelp expr, ArrayList<ExprKelp> conjuncts)
+    {
+      if (expr instanceof BinaryExprKelp) {
+        BinaryExprKelp binary = (BinaryExprKelp) expr;
+        
+        if (binary.op() == BinaryOpKelp.AND) {
+          split(binary.left(), conjuncts);
+          split(binary.right(), conjuncts);
+          return;
+        }
+      }
+      
+      conjuncts.add(expr);
+    }
+    
+    /**
+     * Expression for the terms not in the filter, or null if the filter
+     * is the whole expression.
+     */
+    ExprKelp residual()
+    {
+      return _residual;
+    }
+    
+    /**
+     * Binds the operands for a query. Returns null if an operand isn't a
+     * number, leaving the full expression to decide.
+     */
+    ColumnFilterKelp bind(EnvKelp env)
+    {
+      int size = _columns.length;
+      
+      boolean []isDouble = new boolean[size];
+      long []longValues = new long[size];
+      double []doubleValues = new double[size];
+      
+      for (int i = 0; i < size; i++) {
+        Object value = _operands[i].eval(env);
+        
+        if (! (value instanceof Number)) {
+          return null;
+        }
+        
+        Number number = (Number) value;
+        
+        // EQ, LT and GT compare as doubles when either side is a double
+        switch (_ops[i]) {
+        case EQ:
+        case LT:
+        case GT:
+          isDouble[i] = (_columns[i].type() == Column.ColumnType.DOUBLE
+                         || value instanceof Double);
+          break;
+          
+        default:
+          break;
+        }
+        
+        longValues[i] = number.longValue();
+        doubleValues[i] = number.doubleValue();
+      }
+      
+      return new ColumnFilterKelp(_columns, _ops, isDouble,
+                                  longValues, doubleValues);
+    }
+  }
+  
+  private static final class Term
+  {
+    private final Column _column;
+    private final BinaryOpKelp _op;
+    private final ExprKelp _operand;
+    
+    private Term(Column column, BinaryOpKelp op, ExprKelp operand)
+    {
+      _column = column;
+      _op = op;
+      _operand = operand;
+    }
+    
+    static Term create(ExprKelp expr)
+    {
+      if (! (expr instanceof BinaryExprKelp)) {
+        return null;
+      }
+      
+      BinaryExprKelp binary = (BinaryExprKelp) expr;
+      BinaryOpKelp op = binary.op();
+      
+      switch (op) {
+      case EQ: case NE: case LT: case LE: case GT: case GE:
+        break;
+        
+      default:
+        return null;
+      }
+      
+      ExprKelp left = binary.left();
+      ExprKelp right = binary.right();
+      
+      if (isColumn(left) && isConstant(right)) {
+        return new Term(((ColumnExprKelp) left).column(), op, right);
+      }
+      else if (isConstant(left) && isColumn(right)) {
+        return new Term(((ColumnExprKelp) right).column(), reverse(op), left);
+      }
+      else {
+        return null;
+      }
+    }
+    
+    private static boolean isColumn(ExprKelp expr)
+    {
+      if (! (expr instanceof ColumnExprKelp)) {
+        return false;
+      }
+      
+      switch (((ColumnExprKelp) expr).column().type()) {
+      case INT16:
+      case INT32:
+      case INT64:
+      case DOUBLE:
+        return true;
+        
+      default:
+        return false;
+      }
+    }
+    
+    private static boolean isConstant(ExprKelp expr)
+    {
+      return (expr instanceof LiteralExprKelp
+              || expr instanceof ParamExprKelp);
+    }
+    
+    private static BinaryOpKelp reverse(BinaryOpKelp op)
+    {
+      switch (op) {
+      case LT:
+        return BinaryOpKelp.GT;
+      case LE:
+        return BinaryOpKelp.GE;
+      case GT:
+        return BinaryOpKelp.LT;
+      case GE:
+        return BinaryOpKelp.LE;
+      default:
+        return op;
+      }
+    }
+  }
+}
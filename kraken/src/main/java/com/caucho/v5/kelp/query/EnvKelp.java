@@ -57,6 +57,10 @@ public class EnvKelp implements PredicateKelp // , Hessian2Constants
   private final ExprKelp _expr;
   private final Object []_values;
   
+  private final ColumnFilterKelp.Program _filterProgram;
+  private final ColumnFilterKelp _filter;
+  private final ExprKelp _residual;
+  
   private Object []_args;
   
   private PathMapHessian _topPathMap;
@@ -84,6 +88,10 @@ public class EnvKelp implements PredicateKelp // , Hessian2Constants
     _expr = expr;
     
     _values = new Object[valueLength];
+    
+    _filterProgram = ColumnFilterKelp.Program.compile(expr);
+    _filter = null;
+    _residual = expr;
   }
   
   public EnvKelp(EnvKelp query, Object []args)
@@ -92,6 +100,23 @@ public class EnvKelp implements PredicateKelp // , Hessian2Constants
     _expr = query._expr;
     _values = new Object[query._values.length];
     _args = args;
+    
+    _filterProgram = query._filterProgram;
+    
+    ColumnFilterKelp filter = null;
+    
+    if (_filterProgram != null) {
+      filter = _filterProgram.bind(this);
+    }
+    
+    if (filter != null) {
+      _filter = filter;
+      _residual = _filterProgram.residual();
+    }
+    else {
+      _filter = null;
+      _residual = _expr;
+    }
   }
   
   public EnvKelp(Object []args)
@@ -100,6 +125,10 @@ public class EnvKelp implements PredicateKelp // , Hessian2Constants
     _expr = null;
     _values = new Object[0];
     _args = args;
+    
+    _filterProgram = null;
+    _filter = null;
+    _residual = null;
   }
   
   public Object []getArgs()
@@ -113,6 +142,15 @@ public class EnvKelp implements PredicateKelp // , Hessian2Constants
   }
   
   
+  /**
+   * Filter for the fixed-width column terms of the expression, or null
+   * if the expression has none.
+   */
+  public ColumnFilterKelp columnFilter()
+  {
+    return _filter;
+  }
+  
   public RowCursor getCursor()
   {
     return _cursor;
@@ -139,8 +177,10 @@ public class EnvKelp implements PredicateKelp // , Hessian2Constants
   }
 
   
-  @Override
-  public boolean test(RowCursor cursor)
+  /**
+   * Fills the path values for the cursor without testing the expression.
+   */
+  public void fill(RowCursor cursor)
   {
     Arrays.fill(_values, null);
     
@@ -149,8 +189,34 @@ public class EnvKelp implements PredicateKelp // , Hessian2Constants
     for (PathKelp path : _paths) {
       path.scan(this, _values, cursor);
     }
-
-    return _expr.evalBoolean(this);
+  }
+  
+  @Override
+  public boolean test(RowCursor cursor)
+  {
+    ColumnFilterKelp filter = _filter;
+    
+    // reject on the fixed-width columns before scanning the object paths
+    if (filter != null && ! filter.test(cursor.buffer(), 0)) {
+      _cursor = cursor;
+      
+      return false;
+    }
+    
+    return testResidual(cursor);
+  }
+  
+  /**
+   * Tests a row already accepted by the column filter, evaluating only
+   * the residual expression.
+   */
+  public boolean testResidual(RowCursor cursor)
+  {
+    fill(cursor);
+    
+    ExprKelp residual = _residual;
+    
+    return residual == null || residual.evalBoolean(this);
   }
   
   public boolean matchHessian(InputStream is)
@@ -79,6 +79,8 @@ public class OutSegment extends StreamImpl implements AutoCloseable
   private static final int FOOTER_SIZE = 8;
   private static final int FOOTER_OFFSET = BLOCK_SIZE - FOOTER_SIZE;
   
+  static final int FOOTER_COMPRESS_OFFSET = FOOTER_OFFSET + 3;
+  
   private TableWriterServiceImpl _readWrite;
   private final SegmentKelp _segment;
   
@@ -143,11 +145,11 @@ public class OutSegment extends StreamImpl implements AutoCloseable
     _indexTempBuf = TempBuffer.createLarge();
     _indexBuffer = _indexTempBuf.buffer();
 
+    _compressor = segment.compressor();
+    
     _indexAddress = _segment.length() - BLOCK_SIZE;
     fillHeader();
     
-    _compressor = readWrite.compressor();
-    
     _sOut = _readWrite.openWrite(segment.extent());
   }
 
@@ -655,8 +657,9 @@ public class OutSegment extends StreamImpl implements AutoCloseable
   
   /**
    * <pre>
-   * u8 type = 0
+   * i16 entry tail
    * u8 isCont
+   * u8 compression code
    * </pre>
    */
   private int fillFooter(byte []buffer, 
@@ -670,6 +673,9 @@ public class OutSegment extends StreamImpl implements AutoCloseable
     buffer[offset] = (byte) (isCont ? 1 : 0);
     offset++;
     
+    buffer[offset] = (byte) _compressor.code();
+    offset++;
+    
     return offset;
   }
   
@@ -36,6 +36,7 @@ import com.caucho.v5.io.TempBuffer;
 import com.caucho.v5.kelp.PageServiceImpl;
 import com.caucho.v5.kelp.TableKelp;
 import com.caucho.v5.kelp.TableWriterServiceImpl.LoadCallback;
+import com.caucho.v5.kelp.io.CompressorKelp;
 import com.caucho.v5.store.io.InStore;
 import com.caucho.v5.util.BitsUtil;
 import com.caucho.v5.util.Hex;
@@ -65,6 +66,8 @@ public class SegmentKelp
   private final SegmentServiceImpl _segmentActor;
   // private final TableWriterServiceImpl _writerActor;
   
+  private final CompressorKelp _compressor;
+  
   private int _writeTail;
   
   private State _state = State.INIT;
@@ -74,10 +77,12 @@ public class SegmentKelp
   SegmentKelp(SegmentExtent extent,
               long sequence,
               byte []tableKey,
-              SegmentServiceImpl segmentActor)
+              SegmentServiceImpl segmentActor,
+              CompressorKelp compressor)
   {
     Objects.requireNonNull(extent);
     Objects.requireNonNull(tableKey);
+    Objects.requireNonNull(compressor);
     
     _extent = extent;
     _sequence = sequence;
@@ -86,6 +91,8 @@ public class SegmentKelp
     
     _segmentActor = segmentActor;
     // _writerActor = tableWriterActor;
+    
+    _compressor = compressor;
   }
 
   public SegmentExtent extent()
@@ -112,6 +119,14 @@ public class SegmentKelp
   {
     return _sequence;
   }
+  
+  /**
+   * Compression codec for the segment's pages.
+   */
+  public CompressorKelp compressor()
+  {
+    return _compressor;
+  }
 
   public boolean isTable(byte[] tableKey)
   {
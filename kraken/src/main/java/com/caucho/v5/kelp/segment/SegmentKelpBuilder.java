@@ -31,6 +31,7 @@ package com.caucho.v5.kelp.segment;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Objects;
 
 import com.caucho.v5.amp.ServicesAmp;
 import com.caucho.v5.kelp.io.CompressorKelp;
@@ -50,6 +51,8 @@ public class SegmentKelpBuilder
 
   private ServicesAmp _ampManager;
   
+  private CompressorKelp _compressor = new CompressorNull();
+  
   public SegmentKelpBuilder create(boolean isCreate)
   {
     _isCreate = isCreate;
@@ -108,10 +111,22 @@ public class SegmentKelpBuilder
     return _ampManager;
   }
 
+  /**
+   * Compression for new segments. Existing segments are read with the
+   * codec recorded in their footer.
+   */
+  public SegmentKelpBuilder compressor(CompressorKelp compressor)
+  {
+    Objects.requireNonNull(compressor);
+    
+    _compressor = compressor;
+    
+    return this;
+  }
+
   public CompressorKelp compressor()
   {
-    //return new CompressorDeflate();
-    return new CompressorNull();
+    return _compressor;
   }
   
   public SegmentServiceImpl build()
@@ -46,7 +46,10 @@ import com.caucho.v5.io.ReadStream;
 import com.caucho.v5.io.TempBuffer;
 import com.caucho.v5.io.TempOutputStream;
 import com.caucho.v5.kelp.TableKelp;
+import com.caucho.v5.kelp.io.CompressorDeflate;
 import com.caucho.v5.kelp.io.CompressorKelp;
+import com.caucho.v5.kelp.io.CompressorLz;
+import com.caucho.v5.kelp.io.CompressorNull;
 import com.caucho.v5.store.io.InStore;
 import com.caucho.v5.store.io.OutStore;
 import com.caucho.v5.store.io.StoreBuilder;
@@ -138,6 +141,7 @@ public class SegmentServiceImpl
   // private long _storeChunkSize;
   private ServicesAmp _ampManager;
   private CompressorKelp _compressor;
+  private final CompressorKelp []_compressorMap = new CompressorKelp[256];
 
   /**
    * Creates a new store.
@@ -208,6 +212,42 @@ public class SegmentServiceImpl
   {
     return _compressor;
   }
+  
+  /**
+   * Returns the codec for a segment footer's compression code.
+   */
+  private CompressorKelp compressor(int code)
+  {
+    if (code == _compressor.code()) {
+      return _compressor;
+    }
+    
+    CompressorKelp compressor = _compressorMap[code];
+    
+    if (compressor == null) {
+      switch (code) {
+      case CompressorNull.CODE:
+        compressor = new CompressorNull();
+        break;
+        
+      case CompressorDeflate.CODE:
+        compressor = new CompressorDeflate();
+        break;
+        
+      case CompressorLz.CODE:
+        compressor = new CompressorLz();
+        break;
+        
+      default:
+        throw new IllegalStateException(L.l("Unknown segment compression code {0}",
+                                            code));
+      }
+      
+      _compressorMap[code] = compressor;
+    }
+    
+    return compressor;
+  }
     
   /**
    * Creates the store.
@@ -924,7 +964,10 @@ public class SegmentServiceImpl
       System.arraycopy(buffer, offset, tableKey, 0, TABLE_KEY_SIZE);
       offset += TABLE_KEY_SIZE;
       
-      SegmentKelp segment = new SegmentKelp(extent, seq, tableKey, this);
+      int code = buffer[OutSegment.FOOTER_COMPRESS_OFFSET] & 0xff;
+      
+      SegmentKelp segment = new SegmentKelp(extent, seq, tableKey, this,
+                                            compressor(code));
       segment.setLoaded();
 
       if (seq > 0) {
@@ -958,7 +1001,7 @@ public class SegmentServiceImpl
       extent = allocateSegment(segmentMeta);
     }
     
-    segment = new SegmentKelp(extent, sequence, tableKey, this);
+    segment = new SegmentKelp(extent, sequence, tableKey, this, _compressor);
     segment.writing();
     
     segmentMeta.addLoaded(segment);
@@ -1076,7 +1119,11 @@ public class SegmentServiceImpl
   
   InSegment openRead(SegmentKelp segment)
   {
-    return openRead(segment.extent());
+    SegmentExtent extent = segment.extent();
+    
+    InStore sIn = _store.openRead(extent.address(), extent.length());
+    
+    return new InSegment(sIn, extent, segment.compressor());
   }
 
   public InSegment openRead(SegmentExtent extent)
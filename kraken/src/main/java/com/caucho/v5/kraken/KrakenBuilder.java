@@ -46,6 +46,7 @@ public interface KrakenBuilder
   void services(ServicesAmp currentManager);
   void serverSelf(ServerBartender serverSelf);
   void tempStore(TempStore tempStore);
+  void leafCacheSize(long size);
   
   Kraken get();
 
@@ -119,6 +119,14 @@ public class KrakenSystem extends SubSystemBase
   {
     // _krakenManager.setMemoryMax(memoryMax);
   }
+  
+  /**
+   * Sets the off-heap leaf cache size before the system starts.
+   */
+  public void setLeafCacheSize(long size)
+  {
+    _builder.leafCacheSize(size);
+  }
 
   public KrakenImpl getTableManager()
   {
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kraken.query;
+
+import com.caucho.v5.kelp.query.ExprBuilderKelp;
+
+/**
+ * Aggregate function in a select result, like COUNT(*) or SUM(x).
+ *
+ * The row expression evaluates the argument for each matching row, and
+ * the query's reduce step folds the row values into an accumulator per
+ * group.
+ */
+abstract public class AggregateExpr extends ExprKraken
+{
+  private final ExprKraken _arg;
+  
+  protected AggregateExpr(ExprKraken arg)
+  {
+    _arg = arg;
+  }
+  
+  /**
+   * The argument expression, or null for COUNT(*).
+   */
+  public ExprKraken getArg()
+  {
+    return _arg;
+  }
+  
+  /**
+   * Creates a new accumulator for a group.
+   */
+  abstract Accumulator accumulator();
+
+  @Override
+  public ExprBuilderKelp buildKelp(QueryBuilderKraken builder)
+  {
+    if (_arg != null) {
+      return _arg.buildKelp(builder);
+    }
+    else {
+      return builder.getBuilderKelp().literal(Boolean.TRUE);
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "[" + (_arg != null ? _arg : "*") + "]";
+  }
+  
+  /**
+   * Per-group state for an aggregate.
+   */
+  abstract static class Accumulator
+  {
+    /**
+     * Adds a row value. Null values are ignored by all aggregates except
+     * COUNT(*).
+     */
+    abstract void add(Object value);
+    
+    abstract Object result();
+    
+    /**
+     * Returns the partial state of a pod's rows for a cluster query.
+     */
+    Object partial()
+    {
+      return result();
+    }
+    
+    /**
+     * Merges the partial state of another pod's rows.
+     */
+    void merge(Object partial)
+    {
+      add(partial);
+    }
+  }
+}
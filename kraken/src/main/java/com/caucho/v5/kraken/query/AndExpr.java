@@ -32,6 +32,7 @@ import java.util.ArrayList;
 import java.util.Set;
 import java.util.TreeSet;
 
+import com.caucho.v5.kelp.Column;
 import com.caucho.v5.kelp.RowCursor;
 import com.caucho.v5.kelp.query.BinaryOpKelp;
 import com.caucho.v5.kelp.query.ExprBuilderKelp;
@@ -123,6 +124,20 @@ public class AndExpr extends ExprKraken
     }
   }
 
+  @Override
+  public ExprKraken getIndexExpr(Column column)
+  {
+    for (ExprKraken expr : _exprs) {
+      ExprKraken indexExpr = expr.getIndexExpr(column);
+      
+      if (indexExpr != null) {
+        return indexExpr;
+      }
+    }
+    
+    return null;
+  }
+
   @Override
   public ExprBuilderKelp buildKelp(QueryBuilderKraken builder)
   {
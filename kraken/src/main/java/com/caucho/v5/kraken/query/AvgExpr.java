@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kraken.query;
+
+/**
+ * AVG(expr)
+ */
+public class AvgExpr extends AggregateExpr
+{
+  public AvgExpr(ExprKraken arg)
+  {
+    super(arg);
+  }
+  
+  @Override
+  Accumulator accumulator()
+  {
+    return new AvgAccumulator();
+  }
+  
+  private static class AvgAccumulator extends Accumulator
+  {
+    private double _sum;
+    private long _count;
+    
+    @Override
+    void add(Object value)
+    {
+      if (value != null) {
+        _sum += SumExpr.toNumber(value).doubleValue();
+        _count++;
+      }
+    }
+    
+    @Override
+    Object result()
+    {
+      if (_count > 0) {
+        return _sum / _count;
+      }
+      else {
+        return null;
+      }
+    }
+    
+    @Override
+    Object partial()
+    {
+      return new double[] { _sum, _count };
+    }
+    
+    @Override
+    void merge(Object partial)
+    {
+      double []state = (double []) partial;
+      
+      _sum += state[0];
+      _count += (long) state[1];
+    }
+  }
+}
@@ -111,6 +111,28 @@ public class BinaryExpr extends ExprKraken
     return null;
   }
   
+  @Override
+  public ExprKraken getIndexExpr(Column column)
+  {
+    if (_op != BinaryOp.EQ) {
+      return null;
+    }
+    
+    if (_left instanceof ColumnExpr
+        && ((ColumnExpr) _left).getColumn() == column
+        && _right.isConstant()) {
+      return _right;
+    }
+    
+    if (_right instanceof ColumnExpr
+        && ((ColumnExpr) _right).getColumn() == column
+        && _left.isConstant()) {
+      return _left;
+    }
+    
+    return null;
+  }
+  
   /*
   @Override
   public ExprKraken bindKey(QueryBuilderKraken builder)
@@ -50,6 +50,13 @@ public class ColumnExpr extends ExprKraken
   {
     return _column;
   }
+  
+  @Override
+  public String columnName()
+  {
+    return _column.name();
+  }
+  
   //
   // builder methods
   //
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kraken.query;
+
+import java.util.Objects;
+
+import com.caucho.v5.kelp.Column;
+import com.caucho.v5.kraken.table.IndexKraken;
+import com.caucho.v5.kraken.table.KrakenImpl;
+import com.caucho.v5.kraken.table.TableKraken;
+import com.caucho.v5.util.L10N;
+
+import io.baratine.service.Result;
+
+/**
+ * Builds a CREATE INDEX query.
+ * 
+ * The index is stored as a table named "table$index", keyed by an entry
+ * type, the index value and the primary key. Reverse entries hold each
+ * row's current index value. Its create SQL is saved in the meta table
+ * like any other table, so the index is restored with the database.
+ */
+public class CreateIndexQueryBuilder extends QueryBuilderKraken
+{
+  private static final L10N L = new L10N(CreateIndexQueryBuilder.class);
+  
+  private final KrakenImpl _tableManager;
+  private final String _tableName;
+  private final String _indexName;
+  private final String _columnName;
+  
+  public CreateIndexQueryBuilder(KrakenImpl tableManager,
+                                 String sql,
+                                 String tableName,
+                                 String indexName,
+                                 String columnName)
+  {
+    super(sql);
+    
+    Objects.requireNonNull(tableManager);
+    Objects.requireNonNull(tableName);
+    Objects.requireNonNull(indexName);
+    Objects.requireNonNull(columnName);
+    
+    _tableManager = tableManager;
+    _tableName = tableName;
+    _indexName = indexName;
+    _columnName = columnName;
+  }
+  
+  @Override
+  public boolean isTableLoaded()
+  {
+    return _tableManager.getTable(_tableName) != null;
+  }
+  
+  @Override
+  public String getTableName()
+  {
+    return _tableName;
+  }
+  
+  @Override
+  public void build(Result<QueryKraken> result)
+  {
+    TableKraken table = _tableManager.getTable(_tableName);
+    
+    if (table != null) {
+      result.ok(build(table));
+    }
+    else {
+      _tableManager.loadTable(_tableName, result.then(t->build(t)));
+    }
+  }
+  
+  private QueryKraken build(TableKraken table)
+  {
+    if (table == null) {
+      throw new QueryException(L.l("'{0}' is an unknown table\n  {1}",
+                                   _tableName, sql()));
+    }
+    
+    Column column = table.getColumn(_columnName);
+    
+    if (column == null) {
+      throw new QueryException(L.l("'{0}' is an unknown column of '{1}'\n  {2}",
+                                   _columnName, _tableName, sql()));
+    }
+    
+    if (! IndexKraken.isIndexable(column)) {
+      throw new QueryException(L.l("'{0}' with type {1} cannot be indexed\n  {2}",
+                                   _columnName, column.type(), sql()));
+    }
+    
+    int keyLength = table.getTableKelp().getKeyLength();
+    
+    String sql = ("create table " + _tableName + "$" + _indexName + " ("
+                  + IndexKraken.TYPE_COLUMN + " bytes(1), "
+                  + IndexKraken.VALUE_COLUMN
+                  + " bytes(" + IndexKraken.VALUE_LENGTH + "), "
+                  + IndexKraken.KEY_COLUMN + " bytes(" + keyLength + "), "
+                  + IndexKraken.CURRENT_COLUMN
+                  + " bytes(" + IndexKraken.VALUE_LENGTH + "), "
+                  + "primary key (" + IndexKraken.TYPE_COLUMN
+                  + ", " + IndexKraken.VALUE_COLUMN
+                  + ", " + IndexKraken.KEY_COLUMN + "))"
+                  + " with index_table '" + _tableName + "',"
+                  + " index_column '" + _columnName + "'");
+    
+    return QueryParserKraken.parse(_tableManager, sql).build();
+  }
+  
+  @Override
+  public String toString()
+  {
+    return (getClass().getSimpleName()
+            + "[" + _indexName + "," + _tableName + "," + _columnName + "]");
+  }
+}
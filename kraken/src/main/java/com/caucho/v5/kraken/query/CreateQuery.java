@@ -52,6 +52,12 @@ public class CreateQuery extends QueryKraken
     _tableBuilder = tableBuilder;
   }
 
+  @Override
+  public boolean isCacheable()
+  {
+    return false;
+  }
+
   @Override
   public void exec(Result<Object> result,
                    Object ...params)
@@ -74,6 +74,10 @@ public class CreateQueryBuilder extends QueryBuilderKraken
       case "class":
         buildScheme(value);
         break;
+        
+      case "index_table":
+        buildIndex(value, _propMap.get("index_column"));
+        break;
       }
     }
     
@@ -150,6 +154,16 @@ public class CreateQueryBuilder extends QueryBuilderKraken
     }
   }
   
+  private void buildIndex(String tableName, String columnName)
+  {
+    if (columnName == null) {
+      throw new QueryException(L.l("index_table '{0}' requires an index_column\n  {1}",
+                                   tableName, sql()));
+    }
+    
+    _factory.setIndex(tableName, columnName);
+  }
+  
   private void buildScheme(String value)
   {
     Objects.requireNonNull(value);
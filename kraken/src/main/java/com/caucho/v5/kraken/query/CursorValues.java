@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kraken.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import io.baratine.db.BlobReader;
+import io.baratine.db.Cursor;
+
+/**
+ * Cursor over values copied from a row, used for sorted and aggregated
+ * results, where the underlying row is no longer current.
+ */
+class CursorValues implements Cursor
+{
+  private final Object []_values;
+  private final int _columnCount;
+  
+  private final long _version;
+  private final long _updateTime;
+  private final long _timeout;
+  
+  CursorValues(Object []values,
+               int columnCount,
+               long version,
+               long updateTime,
+               long timeout)
+  {
+    _values = values;
+    _columnCount = columnCount;
+    
+    _version = version;
+    _updateTime = updateTime;
+    _timeout = timeout;
+  }
+
+  /**
+   * Copies the current values of a live cursor, so the copy stays valid
+   * after the scan advances the underlying row.
+   */
+  static CursorValues copy(Cursor cursor)
+  {
+    int columnCount = cursor.getColumnCount();
+
+    Object []values = new Object[columnCount];
+
+    for (int i = 0; i < columnCount; i++) {
+      values[i] = cursor.getObject(i + 1);
+    }
+
+    return new CursorValues(values,
+                            columnCount,
+                            cursor.getVersion(),
+                            cursor.getUpdateTime(),
+                            cursor.getTimeout());
+  }
+
+  Object getValue(int index)
+  {
+    return _values[index];
+  }
+  
+  /**
+   * Returns the values followed by the version, update time and timeout,
+   * for a pod's partial result.
+   */
+  Object []toPartial()
+  {
+    Object []partial = Arrays.copyOf(_values, _values.length + 3);
+    
+    partial[_values.length] = _version;
+    partial[_values.length + 1] = _updateTime;
+    partial[_values.length + 2] = _timeout;
+    
+    return partial;
+  }
+  
+  @Override
+  public long getVersion()
+  {
+    return _version;
+  }
+  
+  @Override
+  public long getUpdateTime()
+  {
+    return _updateTime;
+  }
+  
+  @Override
+  public long getTimeout()
+  {
+    return _timeout;
+  }
+  
+  @Override
+  public int getInt(int index)
+  {
+    return (int) getLong(index);
+  }
+  
+  @Override
+  public long getLong(int index)
+  {
+    Object value = _values[index - 1];
+    
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    }
+    else if (value instanceof Boolean) {
+      return Boolean.TRUE.equals(value) ? 1 : 0;
+    }
+    else if (value instanceof String) {
+      return Long.parseLong((String) value);
+    }
+    else {
+      return 0;
+    }
+  }
+  
+  @Override
+  public double getDouble(int index)
+  {
+    Object value = _values[index - 1];
+    
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    else if (value instanceof String) {
+      return Double.parseDouble((String) value);
+    }
+    else {
+      return 0;
+    }
+  }
+  
+  @Override
+  public String getString(int index)
+  {
+    Object value = _values[index - 1];
+    
+    if (value != null) {
+      return String.valueOf(value);
+    }
+    else {
+      return null;
+    }
+  }
+  
+  @Override
+  public Object getObject(int index)
+  {
+    return _values[index - 1];
+  }
+  
+  @Override
+  public byte []getBytes(int index)
+  {
+    Object value = _values[index - 1];
+    
+    if (value instanceof byte[]) {
+      return (byte []) value;
+    }
+    else {
+      return null;
+    }
+  }
+  
+  @Override
+  public InputStream getInputStream(int index)
+  {
+    byte []value = getBytes(index);
+    
+    if (value != null) {
+      return new ByteArrayInputStream(value);
+    }
+    else {
+      return null;
+    }
+  }
+  
+  @Override
+  public BlobReader getBlobReader(int index)
+  {
+    throw new UnsupportedOperationException(getClass().getName());
+  }
+
+  @Override
+  public int getColumnCount()
+  {
+    return _columnCount;
+  }
+
+  @Override
+  public String toString()
+  {
+    return (getClass().getSimpleName()
+            + Arrays.asList(_values).subList(0, _columnCount));
+  }
+}
@@ -32,6 +32,7 @@ import java.io.InputStream;
 import java.util.Set;
 
 import com.caucho.v5.config.ConfigException;
+import com.caucho.v5.kelp.Column;
 import com.caucho.v5.kelp.RowCursor;
 import com.caucho.v5.kelp.query.EnvKelp;
 import com.caucho.v5.kelp.query.ExprBuilderKelp;
@@ -195,6 +196,24 @@ public class ExprKraken
     return null;
   }
 
+  /**
+   * Returns the constant expression assigned to an indexed column, e.g.
+   * the param in "email=?", or null if the column is not assigned.
+   */
+  public ExprKraken getIndexExpr(Column column)
+  {
+    return null;
+  }
+
+  /**
+   * Returns the table column name for a plain column reference, or null
+   * for any other expression.
+   */
+  public String columnName()
+  {
+    return null;
+  }
+
   public ExprKraken bind(QueryBuilderKraken builder)
   {
     return this;
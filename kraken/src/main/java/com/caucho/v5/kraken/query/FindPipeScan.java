@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kraken.query;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.baratine.db.Cursor;
+import io.baratine.pipe.Credits.OnAvailable;
+import io.baratine.pipe.Pipe;
+
+/**
+ * Credit-driven scan of a select result into a pipe.
+ *
+ * Rows are pulled from the lazy table iterator only while the subscriber
+ * has credits. When the credits run out the scan suspends, and resumes
+ * from the same position when the pipe's reader grants more credits.
+ */
+class FindPipeScan implements OnAvailable
+{
+  private static final Logger log
+    = Logger.getLogger(FindPipeScan.class.getName());
+
+  private final Pipe<Cursor> _pipe;
+  private Iterator<Cursor> _iter;
+
+  private boolean _isActive;
+  private boolean _isWake;
+
+  FindPipeScan(Pipe<Cursor> pipe, Iterable<Cursor> iterable)
+  {
+    Objects.requireNonNull(pipe);
+
+    _pipe = pipe;
+
+    if (iterable != null) {
+      _iter = iterable.iterator();
+    }
+    else {
+      _iter = Collections.emptyIterator();
+    }
+  }
+
+  @Override
+  public void available()
+  {
+    // outFull() may call back while the scan is filling the pipe
+    if (_isActive) {
+      _isWake = true;
+      return;
+    }
+
+    _isActive = true;
+
+    try {
+      scan();
+    } finally {
+      _isActive = false;
+    }
+  }
+
+  private void scan()
+  {
+    Iterator<Cursor> iter = _iter;
+
+    if (iter == null) {
+      return;
+    }
+
+    try {
+      while (true) {
+        _isWake = false;
+
+        while (_pipe.credits().available() > 0) {
+          if (! iter.hasNext()) {
+            _iter = null;
+            _pipe.close();
+            return;
+          }
+
+          Cursor cursor = iter.next();
+
+          if (cursor instanceof CursorKraken) {
+            // the table iterator reuses its row cursor
+            cursor = CursorValues.copy(cursor);
+          }
+
+          _pipe.next(cursor);
+        }
+
+        if (! _isWake) {
+          return;
+        }
+      }
+    } catch (Throwable e) {
+      log.log(Level.FINER, e.toString(), e);
+
+      _iter = null;
+      _pipe.fail(e);
+    }
+  }
+
+  @Override
+  public void cancel()
+  {
+    _iter = null;
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "[" + _pipe + "]";
+  }
+}
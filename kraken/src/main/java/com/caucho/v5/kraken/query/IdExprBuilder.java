@@ -48,6 +48,12 @@ public class IdExprBuilder extends ExprKraken
   {
     _name = name;
   }
+  @Override
+  public String columnName()
+  {
+    return _name;
+  }
+  
   //
   // builder methods
   //
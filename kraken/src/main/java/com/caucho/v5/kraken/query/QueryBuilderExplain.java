@@ -114,6 +114,30 @@ public class QueryBuilderExplain extends QueryBuilderKraken
     getDelegate().setResults(resultArray);
   }
 
+  @Override
+  public void setGroupBy(ExprKraken []groupBy)
+  {
+    getDelegate().setGroupBy(groupBy);
+  }
+
+  @Override
+  public void setOrderBy(ExprKraken []orderBy, boolean []isAscending)
+  {
+    getDelegate().setOrderBy(orderBy, isAscending);
+  }
+
+  @Override
+  public void setLimit(long limit)
+  {
+    getDelegate().setLimit(limit);
+  }
+
+  @Override
+  public void setOffset(long offset)
+  {
+    getDelegate().setOffset(offset);
+  }
+
   /**
    * @param whereExpr
    */
@@ -116,6 +116,26 @@ public class QueryBuilderKraken
   {
     throw new UnsupportedOperationException(getClass().getName());
   }
+
+  public void setGroupBy(ExprKraken []groupBy)
+  {
+    throw new UnsupportedOperationException(getClass().getName());
+  }
+
+  public void setOrderBy(ExprKraken []orderBy, boolean []isAscending)
+  {
+    throw new UnsupportedOperationException(getClass().getName());
+  }
+
+  public void setLimit(long limit)
+  {
+    throw new UnsupportedOperationException(getClass().getName());
+  }
+
+  public void setOffset(long offset)
+  {
+    throw new UnsupportedOperationException(getClass().getName());
+  }
   
 
   public void setLocal(int node)
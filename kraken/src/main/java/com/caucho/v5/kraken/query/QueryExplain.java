@@ -93,6 +93,20 @@ public class QueryExplain extends QueryKraken
       plan += "\n  local: true";
       
     }
+    
+    if (_select.getIndex() != null) {
+      plan += "\n  index: " + _select.getIndex().getName();
+    }
+    
+    SelectReduce reduce = _select.getReduce();
+    
+    if (reduce != null && reduce.isGroup()) {
+      plan += "\n  group: hash";
+    }
+    
+    if (reduce != null && reduce.isOrder()) {
+      plan += "\n  order: " + (reduce.getLimit() >= 0 ? "top-k" : "sort");
+    }
     if (_select.isStaticNode()) {
       plan += "\n  static node: true";
       
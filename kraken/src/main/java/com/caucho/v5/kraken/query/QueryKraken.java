@@ -31,6 +31,8 @@ package com.caucho.v5.kraken.query;
 import io.baratine.db.Cursor;
 import io.baratine.db.CursorPrepareSync;
 import io.baratine.db.DatabaseWatch;
+import io.baratine.pipe.Pipe;
+import io.baratine.pipe.PipeSub;
 import io.baratine.service.Cancel;
 import io.baratine.service.Result;
 import io.baratine.service.ResultFuture;
@@ -90,6 +92,15 @@ public class QueryKraken
   }
   */
 
+  /**
+   * True if the built query can be reused for later executions of
+   * the same SQL.
+   */
+  public boolean isCacheable()
+  {
+    return true;
+  }
+
   public boolean isStaticNode()
   {
     // TODO Auto-generated method stub
@@ -170,11 +181,48 @@ public class QueryKraken
     }
   }
 
+  /**
+   * Streams the selected rows to the subscriber's pipe, scanning only as
+   * far as the subscriber's credits allow.
+   *
+   * A clustered select buffers the merged pod keys at the caller, so only
+   * the row reads are credit-driven there.
+   */
+  public void findPipe(PipeSub<Cursor> result, Object []args)
+  {
+    findAll(Result.of(iter->fillPipe(result, iter),
+                      e->result.fail(e)),
+            args);
+  }
+
+  private void fillPipe(PipeSub<Cursor> result,
+                        Iterable<Cursor> iter)
+  {
+    try {
+      Pipe<Cursor> pipe = result.pipe();
+
+      pipe.credits().onAvailable(new FindPipeScan(pipe, iter));
+      result.ok(null);
+    } catch (Throwable e) {
+      result.fail(e);
+    }
+  }
+
   public void findAllLocalKeys(Result<Iterable<byte[]>> result, Object []args)
   {
     throw new UnsupportedOperationException(getClass().getName());
   }
 
+  /**
+   * Returns the partial GROUP BY or ORDER BY result of the local rows, which
+   * the caller of a cluster query merges with the other pods' results.
+   */
+  public void findAllLocalReduce(Result<Iterable<Object[]>> result,
+                                 Object []args)
+  {
+    throw new UnsupportedOperationException(getClass().getName());
+  }
+
   public void fillKey(RowCursor cursor, Object []args)
   {
     throw new UnsupportedOperationException(getClass().getName());
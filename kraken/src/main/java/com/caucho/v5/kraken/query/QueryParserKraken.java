@@ -71,6 +71,10 @@ public class QueryParserKraken {
   private QueryBuilderKraken _query;
   //private AndExpr _andExpr;
   
+  // true while parsing select results, where aggregates are allowed
+  private boolean _isAggregate;
+  private int _aggregateCount;
+  
   private QueryBuilderKelp _queryBuilderKelp;
   private KrakenImpl _tableManager;
   
@@ -311,6 +315,7 @@ public class QueryParserKraken {
     
     Token tailToken = token;
     int tailOffset = _parseIndex;
+    String tailLexeme = _lexeme;
 
     _token = startToken;
     _parseIndex = startOffset;
@@ -328,6 +333,7 @@ public class QueryParserKraken {
 
     _token = tailToken;
     _parseIndex = tailOffset;
+    _lexeme = tailLexeme;
 
     token = scanToken();
     
@@ -407,11 +413,14 @@ public class QueryParserKraken {
     
     Token tailToken = token;
     int tailOffset = _parseIndex;
+    String tailLexeme = _lexeme;
 
     _token = startToken;
     _parseIndex = startOffset;
     _lexeme = startLexeme;
 
+    _isAggregate = true;
+    
     ExprKraken expr = parseSelectExpr();
 
     resultItems.add(expr);
@@ -421,9 +430,12 @@ public class QueryParserKraken {
 
       resultItems.add(expr);
     }
+    
+    _isAggregate = false;
 
     _token = tailToken;
     _parseIndex = tailOffset;
+    _lexeme = tailLexeme;
 
     token = scanToken();
     
@@ -474,72 +486,40 @@ public class QueryParserKraken {
       */
     }
 
-    /*
-    ArrayList<Expr> groupItems = null;
+    // GROUP, ORDER, BY, ASC and DESC are not reserved, so they remain
+    // valid column names
     token = scanToken();
-    if (token == GROUP) {
-      token = scanToken();
-
-      if (token != BY)
-        throw error(L.l("expected BY at `{0}'", tokenName(token)));
-
-      groupItems = parseGroup(query);
+    
+    if (token == Token.IDENTIFIER && _lexeme.equalsIgnoreCase("group")) {
+      parseBy();
+      
+      query.setGroupBy(parseGroup(resultItems));
     }
-    else
+    else {
       _token = token;
-      */
+    }
 
-    /*
     token = scanToken();
-    if (token == ORDER) {
-      token = scanToken();
-
-      if (token != BY)
-        throw error(L.l("expected BY at `{0}'", tokenName(token)));
-
-      Order order = parseOrder(query, resultItems);
+    
+    if (token == Token.IDENTIFIER && _lexeme.equalsIgnoreCase("order")) {
+      parseBy();
+      
+      parseOrder(query, resultItems);
     }
-    else
+    else {
       _token = token;
-      */
+    }
 
     ExprKraken []resultArray
       = resultItems.toArray(new ExprKraken[resultItems.size()]);
 
     query.setResults(resultArray);
-
-    /*
-    if (query.isGroup()) {
-      Expr []resultList = query.getResults();
-
-      bindGroup(query, groupItems);
-
-      for (int i = 0; i < resultList.length; i++) {
-        Expr subExpr = resultList[i];
-
-        if (! (subExpr instanceof GroupExpr)) {
-          resultList[i] = new GroupResultExpr(i, subExpr);
-        }
-      }
-    }
-    */
     
-    /*
-    token = scanToken();
-    if (token == Token.LIMIT) {
-      parseLimit(query);
-    }
-    else {
-      _token = token;
-    }
-    */
+    parseLimit(query);
     
     token = scanToken();
     
-    if (token != null 
-        && token != Token.EOF
-        && token != Token.LIMIT 
-        && token != Token.OFFSET) {
+    if (token != null && token != Token.EOF) {
       throw error("unexpected token at end '{0}'", token);
     }
 
@@ -800,9 +780,28 @@ public class QueryParserKraken {
     }
     else {
       _token = token;
-
-      return parseExpr();
+      
+      return parseResultExpr();
+    }
+  }
+  
+  /**
+   * Parses a result expression, where an aggregate must be the top-level
+   * expression.
+   */
+  private ExprKraken parseResultExpr()
+  {
+    int aggregateCount = _aggregateCount;
+    
+    ExprKraken expr = parseExpr();
+    
+    if (aggregateCount != _aggregateCount
+        && ! (expr instanceof AggregateExpr)) {
+      throw error("aggregate must be a top-level result expression at '{0}'",
+                  expr);
     }
+    
+    return expr;
   }
 
   /**
@@ -847,136 +846,155 @@ public class QueryParserKraken {
   }
 
   /**
-   * Parses the ORDER BY
+   * Parses the BY after GROUP or ORDER
    */
-  /*
-  private Order parseOrder(SelectQueryBuilder query,
-                           ArrayList<Expr> resultList)
-    throws SQLException
+  private void parseBy()
   {
-    int token;
+    Token token = scanToken();
+    
+    if (token != Token.IDENTIFIER || ! _lexeme.equalsIgnoreCase("by")) {
+      throw error("expected BY at '{0}'", token);
+    }
+  }
 
-    Order order = null;
+  /**
+   * Parses the ORDER BY
+   */
+  private void parseOrder(QueryBuilderKraken query,
+                          ArrayList<ExprKraken> resultItems)
+  {
+    ArrayList<ExprKraken> orderList = new ArrayList<>();
+    ArrayList<Boolean> ascList = new ArrayList<>();
+    
+    Token token;
 
+    _isAggregate = true;
+    
     do {
-      Expr expr = parseExpr();
-
-      expr = expr.bind(query);
+      orderList.add(parseGroupItem(resultItems));
 
       token = scanToken();
-      boolean isAsc = true;
-      if (token == ASC)
-        isAsc = true;
-      else if (token == DESC)
-        isAsc = false;
-      else
-        _token = token;
-
-      int index;
-      for (index = 0; index < resultList.size(); index++) {
-        Expr resultExpr = resultList.get(index);
-
-        if (expr.equals(resultExpr))
-          break;
+      
+      if (token == Token.IDENTIFIER && _lexeme.equalsIgnoreCase("desc")) {
+        ascList.add(false);
       }
-
-      if (resultList.size() <= index) {
-        resultList.add(expr);
+      else if (token == Token.IDENTIFIER && _lexeme.equalsIgnoreCase("asc")) {
+        ascList.add(true);
       }
-
-      Order tailOrder = expr.createOrder(index);
-      tailOrder.setAscending(isAsc);
-
-      order = Order.append(order, tailOrder);
-
-      // ascList.add(isAsc ? Boolean.TRUE : Boolean.FALSE);
-    } while ((token = scanToken()) == ',');
-
-    query.setOrder(order);
+      else {
+        ascList.add(true);
+        _token = token;
+      }
+    } while ((token = scanToken()) == Token.COMMA);
+    
+    _isAggregate = false;
 
     _token = token;
+    
+    boolean []isAscending = new boolean[ascList.size()];
+    
+    for (int i = 0; i < isAscending.length; i++) {
+      isAscending[i] = ascList.get(i);
+    }
 
-    return order;
+    query.setOrderBy(orderList.toArray(new ExprKraken[orderList.size()]),
+                     isAscending);
   }
-  */
 
   /**
    * Parses the GROUP BY
    */
-  /*
-  private ArrayList<Expr> parseGroup(SelectQueryBuilder query)
-    throws SQLException
+  private ExprKraken []parseGroup(ArrayList<ExprKraken> resultItems)
   {
-    query.setGroup(true);
-    int token;
-
-    ArrayList<Expr> groupList = new ArrayList<Expr>();
+    ArrayList<ExprKraken> groupList = new ArrayList<>();
+    
+    Token token;
 
     do {
-      groupList.add(parseExpr());
-    } while ((token = scanToken()) == ',');
+      groupList.add(parseGroupItem(resultItems));
+    } while ((token = scanToken()) == Token.COMMA);
 
     _token = token;
 
-    return groupList;
+    return groupList.toArray(new ExprKraken[groupList.size()]);
   }
-  */
-
+  
   /**
-   * Parses the GROUP BY
+   * Parses a GROUP BY or ORDER BY item, where an integer is the position
+   * of a select result.
    */
-  /*
-  private void bindGroup(SelectQueryBuilder query, 
-                         ArrayList<Expr> groupList)
-    throws SQLException
+  private ExprKraken parseGroupItem(ArrayList<ExprKraken> resultItems)
   {
-    query.setGroup(true);
-
-    Expr []resultList = query.getResults();
-
-    for (int i = 0; i < groupList.size(); i++) {
-      Expr expr = groupList.get(i);
-
-      expr = expr.bind(query);
-
-      int index;
-      for (index = 0; index < resultList.length; index++) {
-        Expr resultExpr = resultList[index];
-
-        if (expr.equals(resultExpr)) {
-          resultList[index] = new GroupResultExpr(index, resultExpr);
-
-          break;
+    Token token = scanToken();
+    
+    if (token == Token.INTEGER) {
+      String lexeme = _lexeme;
+      int parseIndex = _parseIndex;
+      
+      Token next = peekToken();
+      
+      if (next != Token.PLUS && next != Token.MINUS
+          && next != Token.STAR && next != Token.DIV && next != Token.MOD) {
+        int index = Integer.parseInt(lexeme);
+        
+        if (index < 1 || resultItems.size() < index) {
+          throw error("{0} is an invalid result column", index);
         }
+        
+        return resultItems.get(index - 1);
       }
-
-      if (resultList.length <= index) {
-        throw error(L.l("GROUP BY field '{0}' must refer to a result field.",
-                        expr));
-      }
-
-      query.setGroupResult(index);
+      
+      _lexeme = lexeme;
+      _parseIndex = parseIndex;
     }
+    
+    _token = token;
+    
+    return parseResultExpr();
   }
-  */
 
   /**
-   * Parses the LIMIT
+   * Parses the LIMIT and OFFSET
    */
-  /*
-  private void parseLimit(SelectQueryBuilder query)
-    throws SQLException
+  private void parseLimit(QueryBuilderKraken query)
   {
-    int token = scanToken();
+    Token token = scanToken();
 
-    if (token == INTEGER) {
-      query.setLimit(Integer.valueOf(_lexeme));
-      _token = scanToken();
+    if (token == Token.LIMIT) {
+      long limit = parseLimitValue();
+      
+      token = scanToken();
+      
+      if (token == Token.COMMA) {
+        // LIMIT offset, count
+        query.setOffset(limit);
+        
+        limit = parseLimitValue();
+        
+        token = scanToken();
+      }
+      
+      query.setLimit(limit);
+    }
+    
+    if (token == Token.OFFSET) {
+      query.setOffset(parseLimitValue());
+    }
+    else {
+      _token = token;
     }
-    else
-      throw error(L.l("LIMIT expected LIMIT int"));
   }
-  */
+  
+  private long parseLimitValue()
+  {
+    Token token = scanToken();
+    
+    if (token != Token.INTEGER) {
+      throw error("expected integer at '{0}'", token);
+    }
+    
+    return Long.parseLong(_lexeme);
+  }
 
   /**
    * Parses the create.
@@ -987,7 +1005,12 @@ public class QueryParserKraken {
 
     // TableBuilderKraken factory = null;// = _database.createTableFactory();
 
-    if ((token = scanToken()) != Token.TABLE)
+    token = scanToken();
+    
+    if (token == Token.IDENTIFIER && _lexeme.equalsIgnoreCase("index")) {
+      return parseCreateIndex();
+    }
+    else if (token != Token.TABLE)
       throw error("expected TABLE at '{0}'", token);
 
     if ((token = scanToken()) != Token.IDENTIFIER)
@@ -1107,6 +1130,35 @@ public class QueryParserKraken {
     return new CreateQueryBuilder(_tableManager, factory, _sql, propMap);
   }
   
+  /**
+   * Parses CREATE INDEX name ON table (column)
+   */
+  private QueryBuilderKraken parseCreateIndex()
+  {
+    String indexName = parseIdentifier();
+    
+    Token token = scanToken();
+    
+    if (token != Token.IDENTIFIER || ! _lexeme.equalsIgnoreCase("on")) {
+      throw error("expected ON at '{0}'", token);
+    }
+    
+    String tableName = parseTableName();
+    
+    ArrayList<String> columns = parseColumnNames();
+    
+    if (columns.size() != 1) {
+      throw error("CREATE INDEX expects a single column at '{0}'", columns);
+    }
+    
+    if ((token = scanToken()) != Token.EOF) {
+      throw error("Expected end of file at '{0}'", token);
+    }
+    
+    return new CreateIndexQueryBuilder(_tableManager, _sql,
+                                       tableName, indexName, columns.get(0));
+  }
+  
   public String getPodName()
   {
     if (_podName != null) {
@@ -2272,6 +2324,67 @@ public class QueryParserKraken {
   }
   */
 
+  /**
+   * Parses an aggregate function like COUNT(*), or returns null if the name
+   * is not an aggregate.
+   */
+  private AggregateExpr parseAggregate(String name)
+  {
+    String lowerName = name.toLowerCase(Locale.ENGLISH);
+    
+    switch (lowerName) {
+    case "count":
+    case "sum":
+    case "min":
+    case "max":
+    case "avg":
+      break;
+      
+    default:
+      return null;
+    }
+    
+    if (! _isAggregate) {
+      throw error("'{0}' is only allowed as a select result", name);
+    }
+    
+    // lparen
+    scanToken();
+    
+    ExprKraken arg = null;
+    
+    Token token = scanToken();
+    
+    if (token == Token.STAR && lowerName.equals("count")) {
+    }
+    else {
+      _token = token;
+      
+      _isAggregate = false;
+      arg = parseExpr();
+      _isAggregate = true;
+    }
+    
+    if ((token = scanToken()) != Token.RPAREN) {
+      throw error("Expected ')' at '{0}'", token);
+    }
+    
+    _aggregateCount++;
+    
+    switch (lowerName) {
+    case "count":
+      return new CountExpr(arg);
+    case "sum":
+      return new SumExpr(arg);
+    case "min":
+      return new MinExpr(arg);
+    case "max":
+      return new MaxExpr(arg);
+    default:
+      return new AvgExpr(arg);
+    }
+  }
+
   /**
    * Parses a simple term.
    */
@@ -2304,6 +2417,12 @@ public class QueryParserKraken {
           return parsePath(name);
         }
         else if (token == Token.LPAREN) {
+          AggregateExpr aggregate = parseAggregate(name);
+          
+          if (aggregate != null) {
+            return aggregate;
+          }
+          
           FunExpr fun = null;
           
           /*
@@ -2825,6 +2944,7 @@ public class QueryParserKraken {
     _reserved.put("false", Token.FALSE);
     _reserved.put("from", Token.FROM);
     
+    
     _reserved.put("insert", Token.INSERT);
     _reserved.put("into", Token.INTO);
     
@@ -42,6 +42,7 @@ import com.caucho.v5.bartender.ServerBartender;
 import com.caucho.v5.kelp.RowCursor;
 import com.caucho.v5.kelp.query.EnvKelp;
 import com.caucho.v5.kelp.query.ExprKelp;
+import com.caucho.v5.kraken.table.IndexKraken;
 import com.caucho.v5.kraken.table.TableKraken;
 import com.caucho.v5.kraken.table.TablePod;
 import com.caucho.v5.kraken.table.TablePodNodeAmp;
@@ -60,6 +61,8 @@ public class SelectQuery extends SelectQueryBase
   private EnvKelp _whereKelp;
   private ExprKelp [] _results;
   private boolean _isStaticNode;
+  private IndexKraken _index;
+  private SelectReduce _reduce;
   
   private SelectQueryLocal _selectQueryLocal;
   
@@ -69,7 +72,10 @@ public class SelectQuery extends SelectQueryBase
               ExprKraken keyExpr,
               ExprKraken whereKraken,
               EnvKelp envKelp,
-              ExprKelp [] results)
+              ExprKelp [] results,
+              IndexKraken index,
+              ExprKraken indexExpr,
+              SelectReduce reduce)
   {
     super(sql);
     
@@ -78,7 +84,11 @@ public class SelectQuery extends SelectQueryBase
     
     _selectQueryLocal = new SelectQueryLocal(sql, builder, tableKraken,
                                              keyExpr, whereKraken, envKelp,
-                                             results);
+                                             results,
+                                             index, indexExpr, reduce);
+    
+    _index = index;
+    _reduce = reduce;
     
     _table = tableKraken;
     _keyExpr = keyExpr;
@@ -111,6 +121,18 @@ public class SelectQuery extends SelectQueryBase
   {
     return _isStaticNode;
   }
+
+  @Override
+  IndexKraken getIndex()
+  {
+    return _index;
+  }
+
+  @Override
+  SelectReduce getReduce()
+  {
+    return _reduce;
+  }
   
   @Override
   public void fillKey(RowCursor cursor, Object []args)
@@ -154,6 +176,11 @@ public class SelectQuery extends SelectQueryBase
 
   private void findOneImpl(boolean isDirect, Result<Cursor> result, Object ...args)
   {
+    if (_reduce != null && _reduce.isFirstReduced()) {
+      findAll(_reduce.first(), result.then(iter->first(iter)), args);
+      return;
+    }
+    
     //TableKelp tableKelp = _table.getTableKelp();
     TablePod tablePod = _table.getTablePod();
     
@@ -341,6 +368,21 @@ public class SelectQuery extends SelectQueryBase
 
   @Override
   public void findAll(Result<Iterable<Cursor>> result, Object ...args)
+  {
+    findAll(_reduce, result, args);
+  }
+  
+  /**
+   * Finds the matching rows and applies the given reduce to them.
+   *
+   * For GROUP BY and ORDER BY, each pod runs the reduce on its own rows
+   * and answers with partial group states or its top rows, which are
+   * merged here. Otherwise pods answer with the matching keys, and the
+   * rows are read after the keys are merged.
+   */
+  private void findAll(SelectReduce reduce,
+                       Result<Iterable<Cursor>> result,
+                       Object []args)
   {
     //TableKelp tableKelp = _table.getTableKelp();
     TablePod tablePod = _table.getTablePod();
@@ -350,7 +392,7 @@ public class SelectQuery extends SelectQueryBase
       
       fillKey(cursor, args);
       
-      _selectQueryLocal.findAll(result, args);
+      _selectQueryLocal.findAll(reduce, result, args);
       return;
     }
     
@@ -358,7 +400,7 @@ public class SelectQuery extends SelectQueryBase
     int hash = partitionHash(args);
     
     if (hash >= 0 && tablePod.getNode(hash).isSelfDataValid()) {
-      _selectQueryLocal.findAll(result, args);
+      _selectQueryLocal.findAll(reduce, result, args);
       return;
     }
     */
@@ -368,21 +410,36 @@ public class SelectQuery extends SelectQueryBase
     ServerBartender serverSelf = _table.getTablePod().getServerSelf();
 
     if (servers.size() == 0) {
-      _selectQueryLocal.findAll(result, args);
+      _selectQueryLocal.findAll(reduce, result, args);
       // result.completed(new ArrayList<Cursor>());
       return;
     }
 
     if (servers.size() == 1 && servers.get(0).isSameServer(serverSelf)) {
-      _selectQueryLocal.findAll(result, args);
+      _selectQueryLocal.findAll(reduce, result, args);
+      return;
+    }
+    
+    if (reduce != null && (reduce.isGroup() || reduce.isOrder())) {
+      List<Iterable<Object[]>> partials = new ArrayList<>();
+      
+      for (ServerBartender server : servers) {
+        FindAnyReduceResult subResult
+          = new FindAnyReduceResult(result, reduce, servers, server,
+                                    partials);
+        
+        tablePod.findAllReduce(subResult, server, getSql(), args);
+      }
+      
       return;
     }
     
     List<List<byte[]>> partialKeys = new ArrayList<>();
     
     for (ServerBartender server : servers) {
-      FindAnyReduceResult subResult
-        = new FindAnyReduceResult(result, servers, server, args, partialKeys);
+      FindAnyKeysResult subResult
+        = new FindAnyKeysResult(result, reduce, servers, server,
+                                args, partialKeys);
     
       tablePod.findAll(subResult, server, getSql(), args);
     }
@@ -399,6 +456,13 @@ public class SelectQuery extends SelectQueryBase
   {
     _selectQueryLocal.findAllLocalKeys(result, args);
   }
+
+  @Override
+  public void findAllLocalReduce(Result<Iterable<Object[]>> result,
+                                 Object []args)
+  {
+    _selectQueryLocal.findAllLocalReduce(result, args);
+  }
   
   //
   // callbacks
@@ -543,22 +607,81 @@ public class SelectQuery extends SelectQueryBase
   }
   */
   
-  private class FindAnyReduceResult implements Result<Iterable<byte[]>>
+  /**
+   * Merges the partial GROUP BY or ORDER BY results of the pods.
+   */
+  private class FindAnyReduceResult implements Result<Iterable<Object[]>>
+  {
+    private Result<Iterable<Cursor>> _result;
+    private SelectReduce _reduce;
+    private ArrayList<ServerBartender> _servers;
+    private ServerBartender _server;
+    
+    private List<Iterable<Object[]>> _partials;
+    
+    FindAnyReduceResult(Result<Iterable<Cursor>> result,
+                        SelectReduce reduce,
+                        ArrayList<ServerBartender> servers,
+                        ServerBartender server,
+                        List<Iterable<Object[]>> partials)
+    {
+      _result = result;
+      _reduce = reduce;
+      _servers = servers;
+      _server = server;
+      _partials = partials;
+    }
+    
+    @Override
+    public void handle(Iterable<Object[]> partial, Throwable exn)
+    {
+      if (exn != null) {
+        _result.fail(exn);
+        return;
+      }
+      
+      _servers.remove(_server);
+      
+      if (partial != null) {
+        _partials.add(partial);
+      }
+      
+      if (_servers.size() > 0) {
+        return;
+      }
+      
+      _result.ok(_reduce.merge(_partials));
+    }
+
+    @Override
+    public void fail(Throwable exn)
+    {
+      _result.fail(exn);
+    }
+  }
+  
+  /**
+   * Merges the sorted matching keys of the pods and reads the rows.
+   */
+  private class FindAnyKeysResult implements Result<Iterable<byte[]>>
   {
     private Result<Iterable<Cursor>> _result;
+    private SelectReduce _reduce;
     private ArrayList<ServerBartender> _servers;
     private ServerBartender _server;
     private Object []_args;
     
     private List<List<byte[]>> _partialKeys;
     
-    FindAnyReduceResult(Result<Iterable<Cursor>> result,
-                         ArrayList<ServerBartender> servers,
-                         ServerBartender server,
-                         Object []args,
-                         List<List<byte[]>> partialKeys)
+    FindAnyKeysResult(Result<Iterable<Cursor>> result,
+                      SelectReduce reduce,
+                      ArrayList<ServerBartender> servers,
+                      ServerBartender server,
+                      Object []args,
+                      List<List<byte[]>> partialKeys)
     {
       _result = result;
+      _reduce = reduce;
       _servers = servers;
       _server = server;
       _args = args;
@@ -591,7 +714,13 @@ public class SelectQuery extends SelectQueryBase
       
       ArrayList<byte[]> mergeKeys = mergeKeys(_partialKeys);
       
-      _result.ok(new FindAnyIterable(mergeKeys, _args));
+      Iterable<Cursor> cursorIter = new FindAnyIterable(mergeKeys, _args);
+      
+      if (_reduce != null) {
+        cursorIter = _reduce.reduce(cursorIter);
+      }
+      
+      _result.ok(cursorIter);
     }
     
     private ArrayList<byte[]> mergeKeys(List<List<byte[]>> list)
@@ -28,6 +28,9 @@
 
 package com.caucho.v5.kraken.query;
 
+import com.caucho.v5.kraken.table.IndexKraken;
+
+import io.baratine.db.Cursor;
 
 abstract public class SelectQueryBase extends QueryKraken
 {
@@ -47,4 +50,38 @@ abstract public class SelectQueryBase extends QueryKraken
   {
     return false;
   }
+
+  /**
+   * Returns the secondary index used by the query, or null for a key or
+   * table scan.
+   */
+  IndexKraken getIndex()
+  {
+    return null;
+  }
+
+  /**
+   * Returns the GROUP BY, ORDER BY and LIMIT step, or null for a plain
+   * select.
+   */
+  SelectReduce getReduce()
+  {
+    return null;
+  }
+  
+  /**
+   * Returns the first cursor of a result, for findOne of a reduced select.
+   */
+  static Cursor first(Iterable<Cursor> iter)
+  {
+    if (iter == null) {
+      return null;
+    }
+    
+    for (Cursor cursor : iter) {
+      return cursor;
+    }
+    
+    return null;
+  }
 }
@@ -28,6 +28,8 @@
 
 package com.caucho.v5.kraken.query;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.TreeSet;
 
@@ -36,6 +38,7 @@ import com.caucho.v5.kelp.query.EnvKelp;
 import com.caucho.v5.kelp.query.ExprBuilderKelp;
 import com.caucho.v5.kelp.query.ExprKelp;
 import com.caucho.v5.kelp.query.QueryBuilderKelp;
+import com.caucho.v5.kraken.table.IndexKraken;
 import com.caucho.v5.kraken.table.TableKraken;
 import com.caucho.v5.kraken.table.KrakenImpl;
 import com.caucho.v5.util.L10N;
@@ -55,6 +58,12 @@ public class SelectQueryBuilder extends QueryBuilderKraken
   private boolean _isLocal;
 
   private ExprKraken[] _results;
+  
+  private ExprKraken[] _groupBy = new ExprKraken[0];
+  private ExprKraken[] _orderBy = new ExprKraken[0];
+  private boolean[] _isAscending = new boolean[0];
+  private long _offset;
+  private long _limit = -1;
 
   private EnvKelp _whereKelp;
 
@@ -159,22 +168,118 @@ public class SelectQueryBuilder extends QueryBuilderKraken
     
     ExprBuilderKelp whereKelpBuilder = whereExpr.buildKelp(this);
     
-    ExprKelp []resultExprs = new ExprKelp[_results.length];
+    ArrayList<ExprKraken> columns = new ArrayList<>(Arrays.asList(_results));
+    
+    int []groupColumns = columns(columns, _groupBy);
+    int []orderColumns = columns(columns, _orderBy);
     
-    for (int i = 0; i < _results.length; i++) {
-      ExprBuilderKelp resultBuilder = _results[i].buildKelp(this);
+    ExprKelp []resultExprs = new ExprKelp[columns.size()];
+    AggregateExpr []aggregates = new AggregateExpr[columns.size()];
+    boolean isAggregate = false;
+    
+    for (int i = 0; i < resultExprs.length; i++) {
+      ExprKraken column = columns.get(i);
+      
+      ExprBuilderKelp resultBuilder = column.buildKelp(this);
       
       resultExprs[i] = resultBuilder.build(_builderKelp);
+      
+      if (column instanceof AggregateExpr) {
+        aggregates[i] = (AggregateExpr) column;
+        isAggregate = true;
+      }
+    }
+    
+    SelectReduce reduce = null;
+    
+    if (isAggregate || groupColumns.length > 0 || orderColumns.length > 0
+        || _limit >= 0 || _offset > 0) {
+      reduce = new SelectReduce(_results.length, aggregates,
+                                groupColumns, orderColumns, _isAscending,
+                                _offset, _limit);
     }
     
     EnvKelp envKelp = _builderKelp.build(whereKelpBuilder);
     
+    IndexKraken index = findIndex(whereExpr);
+    ExprKraken indexExpr = null;
+    
+    if (index != null) {
+      indexExpr = whereExpr.getIndexExpr(index.getColumn());
+    }
+    
     if (_isLocal) {
-      return new SelectQueryLocal(sql(), this, _table, keyExpr, whereExpr, envKelp, resultExprs);
+      return new SelectQueryLocal(sql(), this, _table, keyExpr, whereExpr, envKelp, resultExprs,
+                                  index, indexExpr, reduce);
     }
     else {
-      return new SelectQuery(sql(), this, _table, keyExpr, whereExpr, envKelp, resultExprs);
+      return new SelectQuery(sql(), this, _table, keyExpr, whereExpr, envKelp, resultExprs,
+                             index, indexExpr, reduce);
+    }
+  }
+  
+  /**
+   * Returns the result column for each expression, appending a hidden
+   * result column when the expression is not already a select result.
+   */
+  private int []columns(ArrayList<ExprKraken> columns, ExprKraken []exprs)
+  {
+    int []indexes = new int[exprs.length];
+    
+    for (int i = 0; i < exprs.length; i++) {
+      int index = findColumn(columns, exprs[i]);
+      
+      if (index < 0) {
+        index = columns.size();
+        columns.add(exprs[i]);
+      }
+      
+      indexes[i] = index;
+    }
+    
+    return indexes;
+  }
+  
+  /**
+   * Returns the result column for an expression, matching a positional
+   * reference by identity and a column name by the column it names.
+   */
+  private static int findColumn(ArrayList<ExprKraken> columns,
+                                ExprKraken expr)
+  {
+    String name = expr.columnName();
+    
+    for (int i = 0; i < columns.size(); i++) {
+      ExprKraken column = columns.get(i);
+      
+      if (column == expr) {
+        return i;
+      }
+      else if (name != null && name.equals(column.columnName())) {
+        return i;
+      }
     }
+    
+    return -1;
+  }
+  
+  /**
+   * Returns an index matching an equality in the where expression, unless
+   * the primary key already selects the row.
+   */
+  private IndexKraken findIndex(ExprKraken whereExpr)
+  {
+    if (isStaticNode(whereExpr)) {
+      return null;
+    }
+    
+    for (IndexKraken index : _table.getIndexes()) {
+      if (whereExpr.getIndexExpr(index.getColumn()) != null) {
+        return index;
+      }
+    }
+    
+    return null;
   }
 
   public boolean isStaticNode(ExprKraken whereExpr)
@@ -237,6 +342,31 @@ public class SelectQueryBuilder extends QueryBuilderKraken
   {
     _results = resultArray;
   }
+  
+  @Override
+  public void setGroupBy(ExprKraken []groupBy)
+  {
+    _groupBy = groupBy;
+  }
+  
+  @Override
+  public void setOrderBy(ExprKraken []orderBy, boolean []isAscending)
+  {
+    _orderBy = orderBy;
+    _isAscending = isAscending;
+  }
+  
+  @Override
+  public void setLimit(long limit)
+  {
+    _limit = limit;
+  }
+  
+  @Override
+  public void setOffset(long offset)
+  {
+    _offset = offset;
+  }
 
   /**
    * @param whereExpr
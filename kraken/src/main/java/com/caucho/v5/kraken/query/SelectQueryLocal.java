@@ -37,6 +37,7 @@ import com.caucho.v5.kelp.RowCursor;
 import com.caucho.v5.kelp.TableKelp;
 import com.caucho.v5.kelp.query.EnvKelp;
 import com.caucho.v5.kelp.query.ExprKelp;
+import com.caucho.v5.kraken.table.IndexKraken;
 import com.caucho.v5.kraken.table.TableKraken;
 
 import io.baratine.db.Cursor;
@@ -52,13 +53,21 @@ public class SelectQueryLocal extends SelectQueryBase
   private ExprKelp[] _results;
   private boolean _isStaticNode;
   
+  private IndexKraken _index;
+  private ExprKraken _indexExpr;
+  
+  private SelectReduce _reduce;
+  
   SelectQueryLocal(String sql,
               SelectQueryBuilder builder,
               TableKraken tableKraken,
               ExprKraken keyExpr,
               ExprKraken whereKraken,
               EnvKelp whereKelp,
-              ExprKelp [] results)
+              ExprKelp [] results,
+              IndexKraken index,
+              ExprKraken indexExpr,
+              SelectReduce reduce)
   {
     super(sql);
     
@@ -71,6 +80,15 @@ public class SelectQueryLocal extends SelectQueryBase
     _whereKelp = whereKelp;
     _results = results;
     
+    if (index != null) {
+      Objects.requireNonNull(indexExpr);
+      
+      _index = index;
+      _indexExpr = indexExpr;
+    }
+    
+    _reduce = reduce;
+    
     _isStaticNode = builder.isStaticNode(whereKraken);
   }
   
@@ -104,6 +122,18 @@ public class SelectQueryLocal extends SelectQueryBase
     return true;
   }
 
+  @Override
+  IndexKraken getIndex()
+  {
+    return _index;
+  }
+
+  @Override
+  SelectReduce getReduce()
+  {
+    return _reduce;
+  }
+
   @Override
   public void fillKey(RowCursor cursor, Object []args)
   {
@@ -135,6 +165,11 @@ public class SelectQueryLocal extends SelectQueryBase
   @Override
   public void findOne(Result<Cursor> result, Object ...args)
   {
+    if (_reduce != null && _reduce.isFirstReduced()) {
+      findAll(_reduce.first(), result.then(iter->first(iter)), args);
+      return;
+    }
+    
     TableKelp tableKelp = _table.getTableKelp();
     
     RowCursor minCursor = _table.cursor();
@@ -160,6 +195,9 @@ public class SelectQueryLocal extends SelectQueryBase
       tableKelp.get(minCursor, 
                     result.then(v->findOneGetResult(v, envKelp, minCursor)));
     }
+    else if (isIndexFilled()) {
+      result.ok(findOneResult(findOneIndex(envKelp, args), envKelp));
+    }
     else {
       // QueryKelp whereKelp = _whereExpr.bind(args);
       // XXX: binding should be with unique
@@ -174,6 +212,11 @@ public class SelectQueryLocal extends SelectQueryBase
   @Override
   public void findOneDirect(Result<Cursor> result, Object ...args)
   {
+    if (_reduce != null && _reduce.isFirstReduced()) {
+      findAll(_reduce.first(), result.then(iter->first(iter)), args);
+      return;
+    }
+    
     TableKelp tableKelp = _table.getTableKelp();
     
     RowCursor minCursor = _table.cursor();
@@ -201,6 +244,9 @@ public class SelectQueryLocal extends SelectQueryBase
                     result.from(v->findOneGetResult(v, envKelp, minCursor)));
                     */
     }
+    else if (isIndexFilled()) {
+      result.ok(findOneResult(findOneIndex(envKelp, args), envKelp));
+    }
     else {
       // QueryKelp whereKelp = _whereExpr.bind(args);
       // XXX: binding should be with unique
@@ -212,6 +258,29 @@ public class SelectQueryLocal extends SelectQueryBase
     }
   }
 
+  /**
+   * True if the index can answer the query. A new index is not used until
+   * its fill completes.
+   */
+  private boolean isIndexFilled()
+  {
+    return _index != null && _index.isFilled();
+  }
+
+  /**
+   * Returns the first row matching the index value.
+   */
+  private RowCursor findOneIndex(EnvKelp envKelp, Object []args)
+  {
+    Object value = _indexExpr.evalObject(null, args);
+    
+    for (RowCursor cursor : _index.findAll(value, envKelp)) {
+      return cursor;
+    }
+    
+    return null;
+  }
+
   public void getDirect(Result<Cursor> result, RowCursor cursor, Object []args)
   {
     TableKelp tableKelp = _table.getTableKelp();
@@ -227,7 +296,7 @@ public class SelectQueryLocal extends SelectQueryBase
                                RowCursor rowCursor)
   {
     if (Boolean.TRUE.equals(value)) {
-      envKelp.test(rowCursor);
+      envKelp.fill(rowCursor);
 
       return new CursorKraken(table(), envKelp, rowCursor, _results);
     }
@@ -241,7 +310,7 @@ public class SelectQueryLocal extends SelectQueryBase
   {
     if (value != null) {
       //envKelp.test(rowCursor);
-      envKelp.test(value);
+      envKelp.fill(value);
       
       return new CursorKraken(table(), envKelp, value, _results);
     }
@@ -265,6 +334,16 @@ public class SelectQueryLocal extends SelectQueryBase
 
   @Override
   public void findAll(Result<Iterable<Cursor>> result, Object ...args)
+  {
+    findAll(_reduce, result, args);
+  }
+  
+  /**
+   * Finds the matching rows and applies the given reduce to them.
+   */
+  void findAll(SelectReduce reduce,
+               Result<Iterable<Cursor>> result,
+               Object []args)
   {
     TableKelp tableKelp = _table.getTableKelp();
     
@@ -280,9 +359,17 @@ public class SelectQueryLocal extends SelectQueryBase
     //QueryKelp whereKelp = _whereExpr.bind(args);
     // XXX: binding should be with unique
     EnvKelp whereKelp = createEnv(args);
+    
+    if (isIndexFilled()) {
+      Object value = _indexExpr.evalObject(null, args);
+      
+      result.ok(onFindAll(reduce, whereKelp,
+                          _index.findAll(value, whereKelp)));
+      return;
+    }
 
     tableKelp.findAll(minCursor, maxCursor, whereKelp,
-                      result.then(x->onFindAll(whereKelp, x)));
+                      result.then(x->onFindAll(reduce, whereKelp, x)));
 
     // result.completed(null);
   }
@@ -304,11 +391,27 @@ public class SelectQueryLocal extends SelectQueryBase
     //QueryKelp whereKelp = _whereExpr.bind(args);
     // XXX: binding should be with unique
     EnvKelp whereKelp = createEnv(args);
+    
+    if (isIndexFilled()) {
+      Object value = _indexExpr.evalObject(null, args);
+      
+      result.ok(onFindAllKeys(_index.findAll(value, whereKelp)));
+      return;
+    }
 
     tableKelp.findAll(minCursor, maxCursor, whereKelp,
                       result.then(x->onFindAllKeys(x)));
   }
   
+  @Override
+  public void findAllLocalReduce(Result<Iterable<Object[]>> result,
+                                 Object []args)
+  {
+    Objects.requireNonNull(_reduce);
+    
+    findAll(null, result.then(iter->_reduce.partial(iter)), args);
+  }
+  
   private EnvKelp createEnv(Object []args)
   {
     EnvKelp env = new EnvKelp(_whereKelp, args);
@@ -381,7 +484,7 @@ public class SelectQueryLocal extends SelectQueryBase
   private Cursor onGet(EnvKelp envKelp, RowCursor rowCursor, Boolean isFound)
   {
     if (Boolean.TRUE.equals(isFound)) {
-      envKelp.test(rowCursor);
+      envKelp.fill(rowCursor);
 
       CursorKraken cursor = new CursorKraken(table(), envKelp, rowCursor, _results);
       
@@ -417,14 +520,22 @@ public class SelectQueryLocal extends SelectQueryBase
   }
   */
   
-  private Iterable<Cursor> onFindAll(EnvKelp envKelp, 
+  private Iterable<Cursor> onFindAll(SelectReduce reduce,
+                                     EnvKelp envKelp, 
                                      Iterable<RowCursor> rowIter)
   {
     if (rowIter == null) {
-      return null;
+      return reduce != null ? reduce.reduce(null) : null;
     }
     
-    return new CursorIterable(envKelp, rowIter, _results);
+    Iterable<Cursor> cursorIter = new CursorIterable(envKelp, rowIter, _results);
+    
+    if (reduce != null) {
+      return reduce.reduce(cursorIter);
+    }
+    else {
+      return cursorIter;
+    }
   }
   
   /*
@@ -0,0 +1,639 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kraken.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import io.baratine.db.Cursor;
+
+/**
+ * Reduce step of a select: GROUP BY with aggregates, ORDER BY and LIMIT.
+ *
+ * The reduce works on the result cursors, so the same step runs for a
+ * local scan and for the merged rows of a cluster query. Group and order
+ * expressions that are not select results are appended as hidden result
+ * columns after the visible ones.
+ *
+ * Groups are collected in a hash map. ORDER BY with a LIMIT keeps only the
+ * top offset + limit rows in a bounded heap instead of sorting every row.
+ *
+ * A cluster query runs the reduce in two steps. Each pod returns its
+ * partial result: the aggregate state of each group, or its own top rows
+ * for an ORDER BY. The caller then merges the partial results.
+ */
+class SelectReduce
+{
+  private final int _columnCount;
+  private final AggregateExpr []_aggregates;
+  private final int []_groupColumns;
+  private final int []_orderColumns;
+  private final boolean []_isAscending;
+  private final long _offset;
+  private final long _limit;
+  
+  private final boolean _isGroup;
+  private final Comparator<CursorValues> _comparator;
+  
+  /**
+   * @param columnCount number of visible result columns
+   * @param aggregates aggregate for each result column, or null
+   * @param groupColumns result column indexes of the GROUP BY
+   * @param orderColumns result column indexes of the ORDER BY
+   * @param isAscending direction of each ORDER BY column
+   * @param offset number of leading rows to skip
+   * @param limit maximum number of rows, or -1 for no limit
+   */
+  SelectReduce(int columnCount,
+               AggregateExpr []aggregates,
+               int []groupColumns,
+               int []orderColumns,
+               boolean []isAscending,
+               long offset,
+               long limit)
+  {
+    _columnCount = columnCount;
+    _aggregates = aggregates;
+    _groupColumns = groupColumns;
+    _orderColumns = orderColumns;
+    _isAscending = isAscending;
+    _offset = offset;
+    _limit = limit;
+    
+    boolean isGroup = groupColumns.length > 0;
+    
+    for (AggregateExpr aggregate : aggregates) {
+      if (aggregate != null) {
+        isGroup = true;
+      }
+    }
+    
+    _isGroup = isGroup;
+    
+    if (orderColumns.length > 0) {
+      _comparator = this::compareRow;
+    }
+    else {
+      _comparator = null;
+    }
+  }
+  
+  boolean isGroup()
+  {
+    return _isGroup;
+  }
+  
+  boolean isOrder()
+  {
+    return _comparator != null;
+  }
+  
+  long getLimit()
+  {
+    return _limit;
+  }
+  
+  /**
+   * True if the reduce can change the first matching row, so findOne must
+   * read every row instead of the first match.
+   */
+  boolean isFirstReduced()
+  {
+    return _isGroup || isOrder() || _offset > 0 || _limit == 0;
+  }
+  
+  /**
+   * Returns the reduce for findOne, which keeps only the first row. An
+   * ORDER BY without groups then needs a heap of offset + 1 rows.
+   */
+  SelectReduce first()
+  {
+    if (_limit == 0 || _limit == 1) {
+      return this;
+    }
+    
+    return new SelectReduce(_columnCount, _aggregates,
+                            _groupColumns, _orderColumns, _isAscending,
+                            _offset, 1);
+  }
+  
+  /**
+   * Returns the reduced results. The rows are read when the result is
+   * first iterated, not when the reduce is created.
+   */
+  Iterable<Cursor> reduce(Iterable<Cursor> rows)
+  {
+    if (rows == null) {
+      rows = Collections.emptyList();
+    }
+    
+    Iterable<Cursor> rowsSource = rows;
+    
+    if (! _isGroup && ! isOrder()) {
+      return ()->new LimitIterator(rowsSource.iterator());
+    }
+    else {
+      return ()->reduceRows(rowsSource).iterator();
+    }
+  }
+  
+  private ArrayList<Cursor> reduceRows(Iterable<Cursor> rows)
+  {
+    RowSink sink = sink();
+    
+    if (_isGroup) {
+      for (GroupRow group : group(rows)) {
+        sink.add(group.toCursor());
+      }
+    }
+    else {
+      for (Cursor cursor : rows) {
+        if (cursor != null) {
+          sink.add(copy(cursor));
+        }
+      }
+    }
+    
+    return result(sink);
+  }
+  
+  /**
+   * Returns a pod's partial result for a cluster query. Each partial row
+   * has the result columns, with the aggregate state in place of an
+   * aggregate's value, followed by the row's version, update time and
+   * timeout.
+   */
+  ArrayList<Object[]> partial(Iterable<Cursor> rows)
+  {
+    if (rows == null) {
+      rows = Collections.emptyList();
+    }
+    
+    ArrayList<Object[]> partials = new ArrayList<>();
+    
+    if (_isGroup) {
+      for (GroupRow group : groupMap(rows).values()) {
+        partials.add(group.toPartial());
+      }
+    }
+    else {
+      RowSink sink = sink();
+      
+      for (Cursor cursor : rows) {
+        if (cursor != null) {
+          sink.add(copy(cursor));
+        }
+      }
+      
+      for (CursorValues row : sink.toList()) {
+        partials.add(row.toPartial());
+      }
+    }
+    
+    return partials;
+  }
+  
+  /**
+   * Merges the partial results of the pods into the reduced result.
+   */
+  Iterable<Cursor> merge(Iterable<Iterable<Object[]>> partialsList)
+  {
+    RowSink sink = sink();
+    int length = _aggregates.length;
+    
+    if (_isGroup) {
+      LinkedHashMap<GroupKey,GroupRow> groupMap = new LinkedHashMap<>();
+      
+      for (Iterable<Object[]> partials : partialsList) {
+        for (Object []partial : partials) {
+          GroupKey key = groupKey(partial);
+          
+          GroupRow group = groupMap.get(key);
+          
+          if (group == null) {
+            group = new GroupRow(Arrays.copyOf(partial, length));
+            groupMap.put(key, group);
+          }
+          
+          group.merge(partial);
+        }
+      }
+      
+      if (groupMap.size() == 0 && _groupColumns.length == 0) {
+        sink.add(new GroupRow(new Object[length]).toCursor());
+      }
+      
+      for (GroupRow group : groupMap.values()) {
+        sink.add(group.toCursor());
+      }
+    }
+    else {
+      for (Iterable<Object[]> partials : partialsList) {
+        for (Object []partial : partials) {
+          sink.add(new CursorValues(Arrays.copyOf(partial, length),
+                                    _columnCount,
+                                    ((Number) partial[length]).longValue(),
+                                    ((Number) partial[length + 1]).longValue(),
+                                    ((Number) partial[length + 2]).longValue()));
+        }
+      }
+    }
+    
+    return result(sink);
+  }
+  
+  private RowSink sink()
+  {
+    if (isOrder() && _limit >= 0) {
+      return new TopSink(_offset + _limit);
+    }
+    else {
+      return new ListSink();
+    }
+  }
+  
+  /**
+   * Sorts the collected rows and applies the offset and limit.
+   */
+  private ArrayList<Cursor> result(RowSink sink)
+  {
+    ArrayList<CursorValues> values = sink.toList();
+    
+    if (isOrder()) {
+      values.sort(_comparator);
+    }
+    
+    ArrayList<Cursor> result = new ArrayList<>();
+    
+    long end = _limit >= 0 ? _offset + _limit : Long.MAX_VALUE;
+    
+    for (int i = 0; i < values.size() && i < end; i++) {
+      if (_offset <= i) {
+        result.add(values.get(i));
+      }
+    }
+    
+    return result;
+  }
+  
+  /**
+   * Hash aggregation of the rows by the group columns.
+   */
+  private Iterable<GroupRow> group(Iterable<Cursor> rows)
+  {
+    LinkedHashMap<GroupKey,GroupRow> groupMap = groupMap(rows);
+    
+    if (groupMap.size() == 0 && _groupColumns.length == 0) {
+      // aggregates without GROUP BY always return a single row
+      
+      return Arrays.asList(new GroupRow(new Object[_aggregates.length]));
+    }
+    
+    return groupMap.values();
+  }
+  
+  private LinkedHashMap<GroupKey,GroupRow> groupMap(Iterable<Cursor> rows)
+  {
+    LinkedHashMap<GroupKey,GroupRow> groupMap = new LinkedHashMap<>();
+    
+    for (Cursor cursor : rows) {
+      if (cursor == null) {
+        continue;
+      }
+      
+      Object []values = values(cursor);
+      
+      GroupKey key = groupKey(values);
+      
+      GroupRow group = groupMap.get(key);
+      
+      if (group == null) {
+        group = new GroupRow(values);
+        groupMap.put(key, group);
+      }
+      
+      group.add(values);
+    }
+    
+    return groupMap;
+  }
+  
+  private GroupKey groupKey(Object []values)
+  {
+    Object []keyValues = new Object[_groupColumns.length];
+    
+    for (int i = 0; i < keyValues.length; i++) {
+      keyValues[i] = values[_groupColumns[i]];
+    }
+    
+    return new GroupKey(keyValues);
+  }
+  
+  private Object []values(Cursor cursor)
+  {
+    Object []values = new Object[_aggregates.length];
+    
+    for (int i = 0; i < values.length; i++) {
+      values[i] = cursor.getObject(i + 1);
+    }
+    
+    return values;
+  }
+  
+  private CursorValues copy(Cursor cursor)
+  {
+    return new CursorValues(values(cursor),
+                            _columnCount,
+                            cursor.getVersion(),
+                            cursor.getUpdateTime(),
+                            cursor.getTimeout());
+  }
+  
+  private int compareRow(CursorValues a, CursorValues b)
+  {
+    for (int i = 0; i < _orderColumns.length; i++) {
+      int column = _orderColumns[i];
+      
+      int cmp = compareValue(a.getValue(column), b.getValue(column));
+      
+      if (cmp != 0) {
+        return _isAscending[i] ? cmp : -cmp;
+      }
+    }
+    
+    return 0;
+  }
+  
+  /**
+   * Compares two result values for ORDER BY, MIN and MAX. Nulls sort first,
+   * and numbers compare by value regardless of their boxed type.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  static int compareValue(Object a, Object b)
+  {
+    if (a == b) {
+      return 0;
+    }
+    else if (a == null) {
+      return -1;
+    }
+    else if (b == null) {
+      return 1;
+    }
+    else if (a instanceof Number && b instanceof Number) {
+      Number numA = (Number) a;
+      Number numB = (Number) b;
+      
+      if (SumExpr.isIntegral(numA) && SumExpr.isIntegral(numB)) {
+        return Long.compare(numA.longValue(), numB.longValue());
+      }
+      else {
+        return Double.compare(numA.doubleValue(), numB.doubleValue());
+      }
+    }
+    else if (a instanceof Comparable && a.getClass() == b.getClass()) {
+      return ((Comparable) a).compareTo(b);
+    }
+    else {
+      return String.valueOf(a).compareTo(String.valueOf(b));
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return (getClass().getSimpleName()
+            + "[group=" + Arrays.toString(_groupColumns)
+            + ",order=" + Arrays.toString(_orderColumns)
+            + ",limit=" + _limit + "]");
+  }
+  
+  private class GroupRow
+  {
+    private final Object []_values;
+    private final AggregateExpr.Accumulator []_accumulators;
+    
+    GroupRow(Object []values)
+    {
+      _values = values;
+      _accumulators = new AggregateExpr.Accumulator[_aggregates.length];
+      
+      for (int i = 0; i < _aggregates.length; i++) {
+        if (_aggregates[i] != null) {
+          _accumulators[i] = _aggregates[i].accumulator();
+        }
+      }
+    }
+    
+    void add(Object []values)
+    {
+      for (int i = 0; i < _accumulators.length; i++) {
+        if (_accumulators[i] != null) {
+          _accumulators[i].add(values[i]);
+        }
+      }
+    }
+    
+    void merge(Object []partial)
+    {
+      for (int i = 0; i < _accumulators.length; i++) {
+        if (_accumulators[i] != null) {
+          _accumulators[i].merge(partial[i]);
+        }
+      }
+    }
+    
+    Object []toPartial()
+    {
+      Object []partial = Arrays.copyOf(_values, _values.length + 3);
+      
+      for (int i = 0; i < _accumulators.length; i++) {
+        if (_accumulators[i] != null) {
+          partial[i] = _accumulators[i].partial();
+        }
+      }
+      
+      partial[_values.length] = 0L;
+      partial[_values.length + 1] = 0L;
+      partial[_values.length + 2] = 0L;
+      
+      return partial;
+    }
+    
+    CursorValues toCursor()
+    {
+      for (int i = 0; i < _accumulators.length; i++) {
+        if (_accumulators[i] != null) {
+          _values[i] = _accumulators[i].result();
+        }
+      }
+      
+      return new CursorValues(_values, _columnCount, 0, 0, 0);
+    }
+  }
+  
+  private static class GroupKey
+  {
+    private final Object []_values;
+    private final int _hash;
+    
+    GroupKey(Object []values)
+    {
+      _values = values;
+      _hash = Arrays.deepHashCode(values);
+    }
+    
+    @Override
+    public int hashCode()
+    {
+      return _hash;
+    }
+    
+    @Override
+    public boolean equals(Object o)
+    {
+      if (! (o instanceof GroupKey)) {
+        return false;
+      }
+      
+      GroupKey key = (GroupKey) o;
+      
+      return _hash == key._hash && Arrays.deepEquals(_values, key._values);
+    }
+  }
+  
+  private interface RowSink
+  {
+    void add(CursorValues row);
+    
+    ArrayList<CursorValues> toList();
+  }
+  
+  private static class ListSink implements RowSink
+  {
+    private final ArrayList<CursorValues> _list = new ArrayList<>();
+    
+    @Override
+    public void add(CursorValues row)
+    {
+      _list.add(row);
+    }
+    
+    @Override
+    public ArrayList<CursorValues> toList()
+    {
+      return _list;
+    }
+  }
+  
+  /**
+   * Bounded heap keeping the first rows in ORDER BY order. The head of the
+   * heap is the largest kept row, which is dropped when a smaller row
+   * arrives.
+   */
+  private class TopSink implements RowSink
+  {
+    private final long _max;
+    private final PriorityQueue<CursorValues> _heap;
+    
+    TopSink(long max)
+    {
+      _max = max;
+      _heap = new PriorityQueue<>(_comparator.reversed());
+    }
+    
+    @Override
+    public void add(CursorValues row)
+    {
+      if (_max <= 0) {
+        return;
+      }
+      else if (_heap.size() < _max) {
+        _heap.add(row);
+      }
+      else if (_comparator.compare(row, _heap.peek()) < 0) {
+        _heap.poll();
+        _heap.add(row);
+      }
+    }
+    
+    @Override
+    public ArrayList<CursorValues> toList()
+    {
+      return new ArrayList<>(_heap);
+    }
+  }
+  
+  /**
+   * OFFSET and LIMIT over unsorted rows, reading the rows lazily.
+   */
+  private class LimitIterator implements Iterator<Cursor>
+  {
+    private final Iterator<Cursor> _iter;
+    private long _count;
+    private boolean _isSkipped;
+    
+    LimitIterator(Iterator<Cursor> iter)
+    {
+      _iter = iter;
+    }
+    
+    @Override
+    public boolean hasNext()
+    {
+      if (! _isSkipped) {
+        _isSkipped = true;
+        
+        for (long i = 0; i < _offset && _iter.hasNext(); i++) {
+          _iter.next();
+        }
+      }
+      
+      return (_limit < 0 || _count < _limit) && _iter.hasNext();
+    }
+    
+    @Override
+    public Cursor next()
+    {
+      if (! hasNext()) {
+        throw new NoSuchElementException();
+      }
+      
+      _count++;
+      
+      return _iter.next();
+    }
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kraken.query;
+
+import com.caucho.v5.util.L10N;
+
+/**
+ * SUM(expr), returning a long for integer values and a double otherwise.
+ */
+public class SumExpr extends AggregateExpr
+{
+  private static final L10N L = new L10N(SumExpr.class);
+  
+  public SumExpr(ExprKraken arg)
+  {
+    super(arg);
+  }
+  
+  @Override
+  Accumulator accumulator()
+  {
+    return new SumAccumulator();
+  }
+  
+  static Number toNumber(Object value)
+  {
+    if (value instanceof Number) {
+      return (Number) value;
+    }
+    else if (value instanceof String) {
+      try {
+        return Double.parseDouble((String) value);
+      } catch (NumberFormatException e) {
+        throw new QueryException(L.l("'{0}' is not a number", value));
+      }
+    }
+    else {
+      throw new QueryException(L.l("'{0}' is not a number", value));
+    }
+  }
+  
+  static boolean isIntegral(Number value)
+  {
+    return (value instanceof Long
+            || value instanceof Integer
+            || value instanceof Short
+            || value instanceof Byte);
+  }
+  
+  private static class SumAccumulator extends Accumulator
+  {
+    private long _sumLong;
+    private double _sumDouble;
+    private boolean _isDouble;
+    private boolean _isValue;
+    
+    @Override
+    void add(Object value)
+    {
+      if (value == null) {
+        return;
+      }
+      
+      Number number = toNumber(value);
+      
+      _isValue = true;
+      
+      if (! _isDouble && isIntegral(number)) {
+        _sumLong += number.longValue();
+      }
+      else {
+        _isDouble = true;
+        _sumDouble += number.doubleValue();
+      }
+    }
+    
+    @Override
+    Object result()
+    {
+      if (! _isValue) {
+        return null;
+      }
+      else if (_isDouble) {
+        return _sumDouble + _sumLong;
+      }
+      else {
+        return _sumLong;
+      }
+    }
+  }
+}
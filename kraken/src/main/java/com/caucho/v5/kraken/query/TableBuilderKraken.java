@@ -60,6 +60,9 @@ public class TableBuilderKraken
 
   private PodHashGenerator _hashGen;
   private HashExprGenerator _hashBuilder;
+  
+  private String _indexTable;
+  private String _indexColumn;
 
   public TableBuilderKraken(String podName,
                             String name, 
@@ -237,6 +240,39 @@ public class TableBuilderKraken
     _hashBuilder = gen;
   }
 
+  /**
+   * Marks the table as a secondary index over a column of another table.
+   */
+  public void setIndex(String tableName, String columnName)
+  {
+    Objects.requireNonNull(tableName);
+    Objects.requireNonNull(columnName);
+    
+    _indexTable = tableName;
+    _indexColumn = columnName;
+  }
+  
+  public boolean isIndex()
+  {
+    return _indexTable != null;
+  }
+
+  /**
+   * The indexed table's full name, when this table is an index.
+   */
+  public String getIndexTable()
+  {
+    return _indexTable;
+  }
+
+  /**
+   * The indexed column name, when this table is an index.
+   */
+  public String getIndexColumn()
+  {
+    return _indexColumn;
+  }
+
   public PodHashGenerator buildHashGenerator(TableKelp tableKelp)
   {
     if (_hashGen != null) {
@@ -121,7 +121,7 @@ public class UpdateQuery extends QueryKraken
     maxCursor.setKeyMax();
     
     _keyExpr.fillMinCursor(minCursor, args);
-    _keyExpr.fillMaxCursor(minCursor, args);
+    _keyExpr.fillMaxCursor(maxCursor, args);
     
     //QueryKelp whereKelp = _whereExpr.bind(args);
     // XXX: binding should be with unique
@@ -306,14 +306,26 @@ public class UpdateQueryBuilder extends QueryBuilderKraken
         ExprKelp expr = _exprs.get(i);
 
         switch (column.type()) {
+        case BOOL:
+          cursor.setInt(column.index(), expr.evalBoolean(env) ? 1 : 0);
+          break;
+          
+        case INT8:
+        case INT16:
         case INT32:
           cursor.setInt(column.index(), expr.evalInt(env));
           break;
           
         case INT64:
+        case TIMESTAMP:
           cursor.setLong(column.index(), expr.evalLong(env));
           break;
           
+        case FLOAT:
+        case DOUBLE:
+          cursor.setDouble(column.index(), expr.evalDouble(env));
+          break;
+          
         case STRING:
           cursor.setString(column.index(), expr.evalString(env));
           break;
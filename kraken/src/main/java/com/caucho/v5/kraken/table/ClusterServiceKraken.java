@@ -80,6 +80,14 @@ public interface ClusterServiceKraken
                byte[] tableKey, 
                String sql,
                Object[] args);
+
+  /**
+   * Returns the partial GROUP BY or ORDER BY result of the pod's rows.
+   */
+  void findAllReduce(Result<Iterable<Object[]>> result, 
+                     byte[] tableKey, 
+                     String sql,
+                     Object[] args);
   
   //
   // watches
@@ -113,5 +121,24 @@ public interface ClusterServiceKraken
                              long delta, 
                              Result<Boolean> cb);
 
+  /**
+   * Returns the table's hash tree leaves for a startup diff, or null if
+   * the requester's root hash already matches.
+   */
+  void requestHashTree(byte []tableKey,
+                       int shardIndex,
+                       long rootHash,
+                       Result<long[]> result);
+
+  /**
+   * Asks for the rows in the hash tree ranges that differ from the
+   * requester's tree.
+   */
+  void requestRangeUpdates(String from,
+                           byte []tableKey,
+                           int shardIndex,
+                           int []ranges,
+                           Result<Boolean> cb);
+
   void start();
 }
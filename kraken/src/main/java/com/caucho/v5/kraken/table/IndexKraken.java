@@ -0,0 +1,603 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kraken.table;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.caucho.v5.kelp.Column;
+import com.caucho.v5.kelp.RowCursor;
+import com.caucho.v5.kelp.TableKelp;
+import com.caucho.v5.kelp.TableListener;
+import com.caucho.v5.kelp.query.EnvKelp;
+import com.caucho.v5.util.BitsUtil;
+import com.caucho.v5.util.HashKey;
+import com.caucho.v5.util.Murmur64;
+
+import io.baratine.service.Result;
+
+/**
+ * Secondary index on a table column.
+ * 
+ * The index is an auxiliary kelp table whose key is the encoded column value
+ * followed by the primary key of the indexed row. Fixed-width values are
+ * stored directly, strings and wide byte columns are stored as an 8-byte
+ * prefix and a 64-bit hash, so a lookup returns candidate rows that are
+ * re-checked against the full where expression.
+ * 
+ * Each indexed row also has a reverse entry, keyed by its primary key,
+ * which holds the row's current index value. The table listener only sees
+ * the key of a put or remove, so the reverse entry is how the old entry is
+ * found and removed when a value changes or the row is removed.
+ * 
+ * Entries are updated by the listener after the row is written, so a
+ * lookup immediately following a put may not see the new row yet. Lookups
+ * re-check each row, and never remove entries themselves.
+ */
+public class IndexKraken implements TableListener
+{
+  private static final Logger log = Logger.getLogger(IndexKraken.class.getName());
+  
+  public static final String TYPE_COLUMN = ":type";
+  public static final String VALUE_COLUMN = ":value";
+  public static final String KEY_COLUMN = ":key";
+  public static final String CURRENT_COLUMN = ":current";
+  
+  public static final int VALUE_LENGTH = 16;
+  
+  private static final byte TYPE_VALUE = 0;
+  private static final byte TYPE_REVERSE = 1;
+  
+  private final TableKraken _table;
+  private final Column _column;
+  private final TableKraken _indexTable;
+  
+  private final Column _typeColumn;
+  private final Column _valueColumn;
+  private final Column _keyColumn;
+  private final Column _currentColumn;
+  
+  private final IndexService _service;
+  
+  private volatile boolean _isFilled;
+  
+  IndexKraken(TableKraken table,
+              Column column,
+              TableKraken indexTable)
+  {
+    Objects.requireNonNull(table);
+    Objects.requireNonNull(column);
+    Objects.requireNonNull(indexTable);
+    
+    _table = table;
+    _column = column;
+    _indexTable = indexTable;
+    
+    _typeColumn = indexTable.getColumn(TYPE_COLUMN);
+    _valueColumn = indexTable.getColumn(VALUE_COLUMN);
+    _keyColumn = indexTable.getColumn(KEY_COLUMN);
+    _currentColumn = indexTable.getColumn(CURRENT_COLUMN);
+    
+    Objects.requireNonNull(_typeColumn);
+    Objects.requireNonNull(_valueColumn);
+    Objects.requireNonNull(_keyColumn);
+    Objects.requireNonNull(_currentColumn);
+    
+    _service = table.getManager().newService(new IndexServiceImpl())
+                                 .as(IndexService.class);
+  }
+  
+  /**
+   * True if the column can be used as an index value.
+   */
+  public static boolean isIndexable(Column column)
+  {
+    switch (column.type()) {
+    case BOOL:
+    case INT8:
+    case INT16:
+    case INT32:
+    case INT64:
+    case FLOAT:
+    case DOUBLE:
+    case TIMESTAMP:
+    case IDENTITY:
+    case BYTES:
+    case STRING:
+      return true;
+      
+    default:
+      return false;
+    }
+  }
+  
+  /**
+   * The index name is the name of the backing table.
+   */
+  public String getName()
+  {
+    return _indexTable.getName();
+  }
+  
+  public TableKraken getTable()
+  {
+    return _table;
+  }
+
+  public Column getColumn()
+  {
+    return _column;
+  }
+  
+  public TableKraken getIndexTable()
+  {
+    return _indexTable;
+  }
+  
+  /**
+   * True once the index covers every row of the table, so queries can use
+   * it. Until then, queries scan the table.
+   */
+  public boolean isFilled()
+  {
+    return _isFilled;
+  }
+  
+  /**
+   * Adds index entries for the current rows of the table. Each owner of the
+   * table fills its own rows when the index is attached.
+   * 
+   * The fill runs on the index service in batches, so a large table blocks
+   * neither the table manager nor the table service, and listener updates
+   * are applied between the batches. The listener is registered before the
+   * fill starts, and both use the same idempotent update, so puts during
+   * the fill are not lost.
+   */
+  void fill()
+  {
+    // the flush completes after the listener registration is processed
+    _table.getTableKelp().flush(Result.of(x->_service.fill(null)));
+  }
+
+  //
+  // index maintenance
+  //
+  
+  @Override
+  public void onPut(byte []key, TypePut type)
+  {
+    _service.update(key);
+  }
+
+  @Override
+  public void onRemove(byte []key, TypePut type)
+  {
+    _service.update(key);
+  }
+  
+  private RowCursor valueCursor(byte []value, byte []key)
+  {
+    RowCursor cursor = _indexTable.cursor();
+    byte []buffer = cursor.buffer();
+    
+    buffer[_typeColumn.offset()] = TYPE_VALUE;
+    System.arraycopy(value, 0, buffer, _valueColumn.offset(), VALUE_LENGTH);
+    System.arraycopy(key, 0, buffer, _keyColumn.offset(), key.length);
+    
+    return cursor;
+  }
+  
+  private RowCursor reverseCursor(byte []key)
+  {
+    RowCursor cursor = _indexTable.cursor();
+    byte []buffer = cursor.buffer();
+    
+    buffer[_typeColumn.offset()] = TYPE_REVERSE;
+    System.arraycopy(key, 0, buffer, _keyColumn.offset(), key.length);
+    
+    return cursor;
+  }
+  
+  //
+  // query
+  //
+  
+  /**
+   * Returns the rows whose indexed column matches the value and which
+   * pass the where expression.
+   */
+  public Iterable<RowCursor> findAll(Object value, EnvKelp whereKelp)
+  {
+    Objects.requireNonNull(whereKelp);
+    
+    RowCursor min = _indexTable.cursor();
+    RowCursor max = _indexTable.cursor();
+    
+    min.clear();
+    max.setKeyMax();
+    
+    min.buffer()[_typeColumn.offset()] = TYPE_VALUE;
+    max.buffer()[_typeColumn.offset()] = TYPE_VALUE;
+    
+    fillValue(min.buffer(), _valueColumn.offset(), value);
+    fillValue(max.buffer(), _valueColumn.offset(), value);
+    
+    return new IndexIterable(min, max, whereKelp);
+  }
+  
+  //
+  // value encoding
+  //
+  
+  /**
+   * Encodes the row's column value into the index value.
+   */
+  private void fillValue(byte []buffer, int offset, RowCursor row)
+  {
+    Arrays.fill(buffer, offset, offset + VALUE_LENGTH, (byte) 0);
+    
+    int length = _column.length();
+    
+    switch (_column.type()) {
+    case STRING:
+      fillHash(buffer, offset, row.getString(_column.index()));
+      break;
+      
+    default:
+      if (length <= VALUE_LENGTH) {
+        System.arraycopy(row.buffer(), _column.offset(), 
+                         buffer, offset, length);
+      }
+      else {
+        fillHash(buffer, offset, row.buffer(), _column.offset(), length);
+      }
+      break;
+    }
+  }
+  
+  /**
+   * Encodes a query value into the index value.
+   */
+  private void fillValue(byte []buffer, int offset, Object value)
+  {
+    if (_column.type() == Column.ColumnType.STRING) {
+      Arrays.fill(buffer, offset, offset + VALUE_LENGTH, (byte) 0);
+      
+      fillHash(buffer, offset, value != null ? String.valueOf(value) : null);
+      return;
+    }
+    
+    RowCursor row = _table.cursor();
+    int index = _column.index();
+    
+    switch (_column.type()) {
+    case BOOL:
+      if (value instanceof Boolean) {
+        row.setInt(index, Boolean.TRUE.equals(value) ? 1 : 0);
+      }
+      else {
+        row.setInt(index, (int) toLong(value));
+      }
+      break;
+      
+    case INT8:
+    case INT16:
+    case INT32:
+      row.setInt(index, (int) toLong(value));
+      break;
+      
+    case INT64:
+    case TIMESTAMP:
+    case IDENTITY:
+      row.setLong(index, toLong(value));
+      break;
+      
+    case FLOAT:
+    case DOUBLE:
+      row.setDouble(index, value != null ? ((Number) value).doubleValue() : 0);
+      break;
+      
+    case BYTES:
+      if (value != null) {
+        byte []bytes = new byte[_column.length()];
+        byte []data = (byte []) value;
+        
+        System.arraycopy(data, 0, bytes, 0, Math.min(data.length, bytes.length));
+        
+        row.setBytes(index, bytes, 0);
+      }
+      break;
+      
+    default:
+      throw new UnsupportedOperationException(String.valueOf(_column));
+    }
+    
+    fillValue(buffer, offset, row);
+  }
+  
+  private static long toLong(Object value)
+  {
+    if (value == null) {
+      return 0;
+    }
+    else if (value instanceof Date) {
+      return ((Date) value).getTime();
+    }
+    else {
+      return ((Number) value).longValue();
+    }
+  }
+  
+  private static void fillHash(byte []buffer, int offset, String value)
+  {
+    if (value == null) {
+      return;
+    }
+    
+    int sublen = Math.min(value.length(), 8);
+    
+    for (int i = 0; i < sublen; i++) {
+      buffer[offset + i] = (byte) value.charAt(i);
+    }
+    
+    long hash = Murmur64.generate(Murmur64.SEED, value);
+    
+    BitsUtil.writeLong(buffer, offset + 8, hash);
+  }
+  
+  private static void fillHash(byte []buffer, int offset,
+                               byte []data, int dataOffset, int length)
+  {
+    System.arraycopy(data, dataOffset, buffer, offset, Math.min(length, 8));
+    
+    long hash = Murmur64.generate(Murmur64.SEED, data, dataOffset, length);
+    
+    BitsUtil.writeLong(buffer, offset + 8, hash);
+  }
+  
+  @Override
+  public String toString()
+  {
+    return (getClass().getSimpleName() 
+            + "[" + _table.getName() + "," + _column.name() + "]");
+  }
+  
+  /**
+   * The index service. The reverse entry is read with getDirect, which
+   * does not see queued index writes, so the values written but not yet
+   * stored are kept in a pending map.
+   */
+  private class IndexServiceImpl implements IndexService
+  {
+    private static final int FILL_BATCH = 1024;
+    
+    private final HashMap<HashKey,byte[]> _pendingMap = new HashMap<>();
+    
+    /**
+     * Updates the index entries for a row from its current value. The
+     * update reads the row again, so the last update for a key sees the
+     * row's final value, whether it comes from the listener or the fill.
+     */
+    @Override
+    public void update(byte []key)
+    {
+      RowCursor row = _table.cursor();
+      
+      row.setKey(key, 0);
+      
+      byte []value = null;
+      
+      if (_table.getTableKelp().getDirect(row)) {
+        value = new byte[VALUE_LENGTH];
+        
+        fillValue(value, 0, row);
+      }
+      
+      byte []oldValue = getCurrentValue(key);
+      
+      if (value != null && oldValue != null && Arrays.equals(value, oldValue)) {
+        return;
+      }
+      else if (value == null && oldValue == null) {
+        return;
+      }
+      
+      TableKelp indexKelp = _indexTable.getTableKelp();
+      
+      if (oldValue != null) {
+        indexKelp.remove(valueCursor(oldValue, key), null, Result.ignore());
+      }
+      
+      HashKey hashKey = HashKey.create(key);
+      
+      // an empty value marks a pending remove of the reverse entry
+      byte []current = value != null ? value : new byte[0];
+      
+      _pendingMap.put(hashKey, current);
+      
+      Result<Boolean> result = Result.of(x->onStored(hashKey, current),
+                                         e->onStored(hashKey, current));
+      
+      if (value != null) {
+        indexKelp.put(valueCursor(value, key), Result.ignore());
+        
+        RowCursor reverse = reverseCursor(key);
+        reverse.setBytes(_currentColumn.index(), value, 0);
+        
+        indexKelp.put(reverse, result);
+      }
+      else {
+        indexKelp.remove(reverseCursor(key), null, result);
+      }
+    }
+    
+    /**
+     * Returns the index value of a row, or null if the row has none.
+     */
+    private byte []getCurrentValue(byte []key)
+    {
+      byte []pending = _pendingMap.get(HashKey.create(key));
+      
+      if (pending != null) {
+        return pending.length > 0 ? pending : null;
+      }
+      
+      RowCursor reverse = reverseCursor(key);
+      
+      if (! _indexTable.getTableKelp().getDirect(reverse)) {
+        return null;
+      }
+      
+      byte []value = new byte[VALUE_LENGTH];
+      
+      reverse.getBytes(_currentColumn.index(), value, 0);
+      
+      return value;
+    }
+    
+    private void onStored(HashKey key, byte []current)
+    {
+      // a later update for the key replaces the pending value
+      if (_pendingMap.get(key) == current) {
+        _pendingMap.remove(key);
+      }
+    }
+    
+    /**
+     * Indexes one batch of rows, then queues the next batch behind any
+     * pending listener updates.
+     */
+    @Override
+    public void fill(byte []minKey)
+    {
+      try {
+        RowCursor min = _table.cursor();
+        RowCursor max = _table.cursor();
+        
+        min.clear();
+        max.setKeyMax();
+        
+        if (minKey != null) {
+          min.setKey(minKey, 0);
+        }
+        
+        int count = 0;
+        
+        for (RowCursor row : _table.getTableKelp().queryRange(min, max, null)) {
+          if (FILL_BATCH <= count++) {
+            _service.fill(row.getKey());
+            return;
+          }
+          
+          update(row.getKey());
+        }
+        
+        _isFilled = true;
+      } catch (Throwable e) {
+        log.log(Level.WARNING, e.toString(), e);
+      }
+    }
+  }
+  
+  private class IndexIterable implements Iterable<RowCursor>
+  {
+    private final RowCursor _min;
+    private final RowCursor _max;
+    private final EnvKelp _whereKelp;
+    
+    IndexIterable(RowCursor min, RowCursor max, EnvKelp whereKelp)
+    {
+      _min = min;
+      _max = max;
+      _whereKelp = whereKelp;
+    }
+
+    @Override
+    public Iterator<RowCursor> iterator()
+    {
+      TableKelp indexKelp = _indexTable.getTableKelp();
+      
+      return new IndexIterator(indexKelp.queryRange(_min, _max, null).iterator(),
+                               _whereKelp);
+    }
+  }
+  
+  private class IndexIterator implements Iterator<RowCursor>
+  {
+    private final Iterator<RowCursor> _indexIter;
+    private final EnvKelp _whereKelp;
+    
+    private RowCursor _row;
+    
+    IndexIterator(Iterator<RowCursor> indexIter, EnvKelp whereKelp)
+    {
+      _indexIter = indexIter;
+      _whereKelp = whereKelp;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+      TableKelp tableKelp = _table.getTableKelp();
+      
+      while (_row == null && _indexIter.hasNext()) {
+        RowCursor indexCursor = _indexIter.next();
+        
+        RowCursor row = _table.cursor();
+        
+        row.setKey(indexCursor.buffer(), _keyColumn.offset());
+        
+        // stale entries are skipped, and removed by the row's next update
+        if (tableKelp.getDirect(row) && _whereKelp.test(row)) {
+          _row = row;
+        }
+      }
+      
+      return _row != null;
+    }
+
+    @Override
+    public RowCursor next()
+    {
+      if (! hasNext()) {
+        return null;
+      }
+      
+      RowCursor row = _row;
+      _row = null;
+      
+      return row;
+    }
+  }
+}
@@ -35,6 +35,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Objects;
 import java.util.function.Predicate;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.caucho.v5.amp.AmpSystem;
@@ -55,6 +56,7 @@ import com.caucho.v5.util.L10N;
 
 import io.baratine.db.Cursor;
 import io.baratine.service.Result;
+import io.baratine.service.Result.Fork;
 
 /**
  * The local file backing for the store
@@ -500,25 +502,11 @@ public class KelpManager
       
       Predicate<RowCursor> ifNew = new IfUpdatePredicate(tableKraken, podIndex, accessTime);
 
-      BackupKelp replCb = tableKraken.getBackupCallback();
+      Fork<Boolean,Boolean> fork = result.fork();
       
-      for (RowCursor cursor : tableKelp.queryRangeForUpdate(minRow, maxRow, ifNew)) {
-        if (cursor.isRemoved()) {
-          // XXX: getVersion()
-          
-          replCb.onRemove(tableKelp.tableKey(), cursor.getKey(), cursor.getVersion(), Result.ignore());
-        }
-        else {
-          // XXX: update when the backup is fixed to return for a single value
-          StreamSource ss = cursor.toStream();
-          
-          replCb.onPut(tableKelp.tableKey(), cursor.getKey(), ss, Result.ignore());
-          
-          // XXX: timing issues with result returning before put completes
-        }
-      }
+      sendUpdates(tableKraken, minRow, maxRow, ifNew, fork);
       
-      result.ok(true);
+      fork.join(x->true);
         
       //onLoad.completed();
     } catch (Throwable e) {
@@ -529,6 +517,75 @@ public class KelpManager
     }
   }
   
+  /**
+   * Sends the rows in the given hash tree ranges to the replicas, used
+   * when a peer's tree diverges from the local tree. The result completes
+   * after the replicas acknowledge every row.
+   */
+  public void getRangeUpdates(TableKraken tableKraken,
+                              int podIndex,
+                              int []ranges,
+                              Result<Boolean> result)
+  {
+    try {
+      TableKelp tableKelp = tableKraken.getTableKelp();
+      TableHashTree tree = tableKraken.getHashTree();
+      
+      RowCursor minRow = tableKelp.cursor();
+      RowCursor maxRow = tableKelp.cursor();
+      
+      Predicate<RowCursor> ifNode = new IfUpdatePredicate(tableKraken, podIndex, 0);
+      
+      Fork<Boolean,Boolean> fork = result.fork();
+      
+      for (int range : ranges) {
+        if (range < 0 || tree.leafCount() <= range) {
+          continue;
+        }
+        
+        tree.fillRange(range, minRow, maxRow);
+        
+        sendUpdates(tableKraken, minRow, maxRow, ifNode, fork);
+      }
+      
+      fork.join(x->true);
+    } catch (Throwable e) {
+      log.log(Level.FINER, e.toString(), e);
+      
+      result.fail(e);
+    }
+  }
+  
+  /**
+   * Sends the matching rows to the replicas, adding a fork branch for
+   * each row's acknowledgement.
+   */
+  private void sendUpdates(TableKraken tableKraken,
+                           RowCursor minRow,
+                           RowCursor maxRow,
+                           Predicate<RowCursor> predicate,
+                           Fork<Boolean,Boolean> fork)
+  {
+    TableKelp tableKelp = tableKraken.getTableKelp();
+    
+    BackupKelp replCb = tableKraken.getBackupCallback();
+    
+    for (RowCursor cursor : tableKelp.queryRangeForUpdate(minRow, maxRow, predicate)) {
+      if (cursor.isRemoved()) {
+        // XXX: getVersion()
+        
+        replCb.onRemove(tableKelp.tableKey(), cursor.getKey(), cursor.getVersion(),
+                        fork.branch());
+      }
+      else {
+        // XXX: update when the backup is fixed to return for a single value
+        StreamSource ss = cursor.toStream();
+        
+        replCb.onPut(tableKelp.tableKey(), cursor.getKey(), ss, fork.branch());
+      }
+    }
+  }
+  
   //
   // SQL
   //
@@ -92,6 +92,15 @@ public class KelpManagerBuilder
     _builder.memorySize(size);
   }
   
+  /**
+   * Sets the off-heap leaf cache size, which lets large tables stay
+   * resident with a small heap.
+   */
+  public void setLeafCacheSize(long size)
+  {
+    _builder.leafCacheSize(size);
+  }
+  
   public long getMemoryMax()
   {
     if (_db != null) {
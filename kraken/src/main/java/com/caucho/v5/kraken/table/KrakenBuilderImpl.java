@@ -49,6 +49,7 @@ public class KrakenBuilderImpl implements KrakenBuilder
   private ServicesAmp _services;
   private ServerBartender _serverSelf;
   private TempStore _tempStore;
+  private long _leafCacheSize;
   
   @Override
   public Path root()
@@ -100,6 +101,20 @@ public class KrakenBuilderImpl implements KrakenBuilder
     return _tempStore;
   }
   
+  /**
+   * Sets the off-heap leaf cache size. Zero disables the cache.
+   */
+  @Override
+  public void leafCacheSize(long size)
+  {
+    _leafCacheSize = size;
+  }
+  
+  long leafCacheSize()
+  {
+    return _leafCacheSize;
+  }
+  
   @Override
   public KrakenImpl get()
   {
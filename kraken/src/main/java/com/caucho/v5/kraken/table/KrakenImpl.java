@@ -53,6 +53,7 @@ import com.caucho.v5.store.temp.TempStore;
 import com.caucho.v5.util.L10N;
 import io.baratine.db.Cursor;
 import io.baratine.db.DatabaseWatch;
+import io.baratine.pipe.PipeSub;
 import io.baratine.service.Cancel;
 import io.baratine.service.Result;
 import io.baratine.service.ResultFuture;
@@ -67,6 +68,8 @@ public final class KrakenImpl implements Kraken
   private static final L10N L = new L10N(KrakenImpl.class);
 
   private static final Logger initLog = Logger.getLogger("com.baratine.init-log");
+  
+  private static final int QUERY_CACHE_SIZE = 1024;
 
   private final Path _root;
   private final ServicesAmp _services;
@@ -99,6 +102,9 @@ public final class KrakenImpl implements Kraken
   private DatabaseKraken _database;
 
   private DatabaseKrakenSync _databaseSync;
+  
+  private final QueryCacheKraken _queryCache
+    = new QueryCacheKraken(QUERY_CACHE_SIZE);
 
   // private boolean _isClusterStarted;
   
@@ -118,6 +124,7 @@ public final class KrakenImpl implements Kraken
     
     
     _kelpManagerBuilder = new KelpManagerBuilder(this);
+    _kelpManagerBuilder.setLeafCacheSize(builder.leafCacheSize());
     
     //_isCluster = BartenderSystem.current() != null;
     _isCluster = false;
@@ -217,6 +224,14 @@ public final class KrakenImpl implements Kraken
     return _kelpBacking;
   }
   
+  /**
+   * Cache of built queries keyed by sql.
+   */
+  public QueryCacheKraken getQueryCache()
+  {
+    return _queryCache;
+  }
+  
   public Path getStorePath()
   {
     return getKelpBacking().getDatabase().getPath();
@@ -366,12 +381,54 @@ public final class KrakenImpl implements Kraken
   
   public QueryKraken query(String sql)
   {
-    return QueryParserKraken.parse(this, sql).build();
+    QueryKraken query = _queryCache.get(sql);
+    
+    if (query != null) {
+      return query;
+    }
+    
+    long version = _queryCache.version();
+    
+    return build(QueryParserKraken.parse(this, sql), sql, version);
   }
   
   public void query(String sql, Result<QueryKraken> result)
   {
-    QueryParserKraken.parse(this, sql).build(result);
+    QueryKraken query = _queryCache.get(sql);
+    
+    if (query != null) {
+      result.ok(query);
+      return;
+    }
+    
+    long version = _queryCache.version();
+    
+    build(QueryParserKraken.parse(this, sql), sql, version, result);
+  }
+  
+  /**
+   * Builds the query and caches it when the schema is unchanged.
+   */
+  private QueryKraken build(QueryBuilderKraken builder,
+                            String sql,
+                            long version)
+  {
+    QueryKraken query = builder.build();
+    
+    _queryCache.put(sql, query, version);
+    
+    return query;
+  }
+  
+  private void build(QueryBuilderKraken builder,
+                     String sql,
+                     long version,
+                     Result<QueryKraken> result)
+  {
+    builder.build(result.then((query,r)->{
+      _queryCache.put(sql, query, version);
+      r.ok(query);
+    }));
   }
   
 
@@ -385,9 +442,18 @@ public final class KrakenImpl implements Kraken
    */
   public void exec(String sql, Object []params, Result<Object> result)
   {
-    QueryBuilderKraken query = QueryParserKraken.parse(this, sql);
+    QueryKraken query = _queryCache.get(sql);
+    
+    if (query != null) {
+      query.exec(result, params);
+      return;
+    }
+    
+    long version = _queryCache.version();
+    
+    QueryBuilderKraken builder = QueryParserKraken.parse(this, sql);
       
-    query.build(result.then((q,r)->q.exec(r, params)));
+    build(builder, sql, version, result.then((q,r)->q.exec(r, params)));
   }
 
   /**
@@ -395,18 +461,25 @@ public final class KrakenImpl implements Kraken
    */
   public Object execSync(String sql, Object []params)
   {
-    QueryBuilderKraken query = QueryParserKraken.parse(this, sql);
-      
     return _services.run(10, TimeUnit.SECONDS,
-                    result->query.build(result.then((q,r)->q.exec(r, params))));
+                         result->exec(sql, params, result));
   }
 
   public void findOne(String sql, Object []args, Result<Cursor> result)
   {
+    QueryKraken query = _queryCache.get(sql);
+    
+    if (query != null) {
+      query.findOne(result, args);
+      return;
+    }
+    
+    long version = _queryCache.version();
+    
     QueryBuilderKraken builder = QueryParserKraken.parse(this, sql);
 
     if (builder.isTableLoaded()) {
-      QueryKraken query = builder.build(); 
+      query = build(builder, sql, version); 
       
       query.findOne(result, args);
     }
@@ -415,7 +488,7 @@ public final class KrakenImpl implements Kraken
       
       // if table is not loaded, load it first, then execute query
       _tableService.loadTable(tableName,
-                              result.then((t,r)->buildAndFindOne(builder, args, r)));
+                              result.then((t,r)->buildAndFindOne(builder, sql, version, args, r)));
       
       return;
     }
@@ -424,10 +497,13 @@ public final class KrakenImpl implements Kraken
   }
   
   private void buildAndFindOne(QueryBuilderKraken builder,
+                               String sql,
+                               long version,
                                Object []args,
                                Result<Cursor> result)
   {
-    builder.build(result.then((query,r)->query.findOne(r, args)));
+    build(builder, sql, version,
+          result.then((query,r)->query.findOne(r, args)));
   }
   
   /**
@@ -435,10 +511,19 @@ public final class KrakenImpl implements Kraken
    */
   public void findAll(String sql, Object []args, Result<Iterable<Cursor>> result)
   {
+    QueryKraken query = _queryCache.get(sql);
+    
+    if (query != null) {
+      findAll(query, args, result);
+      return;
+    }
+    
+    long version = _queryCache.version();
+    
     QueryBuilderKraken builder = QueryParserKraken.parse(this, sql);
     
     if (builder.isTableLoaded()) {
-      QueryKraken query = builder.build(); 
+      query = build(builder, sql, version); 
       
       findAll(query, args, result);
     }
@@ -446,7 +531,7 @@ public final class KrakenImpl implements Kraken
       String tableName = builder.getTableName();
       
       _tableService.loadTable(tableName,
-                              result.then((t,r)->findAll(builder.build(), args, r)));
+                              result.then((t,r)->findAll(build(builder, sql, version), args, r)));
       return;
     }
   }
@@ -494,9 +579,7 @@ public final class KrakenImpl implements Kraken
    */
   public void findAllLocal(String sql, Object []args, Result<Iterable<Cursor>> result)
   {
-    QueryBuilderKraken builder = QueryParserKraken.parse(this, sql);
-    
-    QueryKraken query = builder.build(); 
+    QueryKraken query = query(sql); 
       
     TableKraken table = query.table();
     TableKelp tableKelp = table.getTableKelp();
@@ -518,10 +601,19 @@ public final class KrakenImpl implements Kraken
    */
   public void findStream(String sql, Object []args, ResultStream<Cursor> result)
   {
+    QueryKraken query = _queryCache.get(sql);
+    
+    if (query != null) {
+      findStream(query, args, result);
+      return;
+    }
+    
+    long version = _queryCache.version();
+    
     QueryBuilderKraken builder = QueryParserKraken.parse(this, sql);
     
     if (builder.isTableLoaded()) {
-      QueryKraken query = builder.build(); 
+      query = build(builder, sql, version); 
       
       findStream(query, args, result);
     }
@@ -530,7 +622,7 @@ public final class KrakenImpl implements Kraken
       
       _tableService.loadTable(tableName,
                               result.of((x,r)->{
-                                findStream(builder.build(), args, r); 
+                                findStream(build(builder, sql, version), args, r); 
                               }));
                       //new FindStreamResult(result, builder, args));
     }
@@ -574,6 +666,41 @@ public final class KrakenImpl implements Kraken
     }
   }
   
+  /**
+   * Select query streaming its results into a subscriber's pipe. The table
+   * scan only advances as the subscriber grants credits.
+   *
+   * The scan is lazy for local tables. For a clustered table the pods
+   * return their full key lists, and only the row reads are lazy.
+   */
+  public void findPipe(String sql, Object []args, PipeSub<Cursor> result)
+  {
+    QueryKraken query = _queryCache.get(sql);
+    
+    if (query != null) {
+      query.findPipe(result, args);
+      return;
+    }
+    
+    long version = _queryCache.version();
+    
+    QueryBuilderKraken builder = QueryParserKraken.parse(this, sql);
+    
+    if (builder.isTableLoaded()) {
+      query = build(builder, sql, version); 
+      
+      query.findPipe(result, args);
+    }
+    else {
+      String tableName = builder.getTableName();
+      
+      _tableService.loadTable(tableName,
+                              result.then((x,r)->{
+                                build(builder, sql, version).findPipe(r, args); 
+                              }));
+    }
+  }
+  
   /**
    * Query implementation for multiple result with the parsed query.
    */
@@ -600,10 +727,19 @@ public final class KrakenImpl implements Kraken
    */
   public void map(MethodRef method, String sql, Object []args)
   {
+    QueryKraken query = _queryCache.get(sql);
+    
+    if (query != null) {
+      query.map(method, args);
+      return;
+    }
+    
+    long version = _queryCache.version();
+    
     QueryBuilderKraken builder = QueryParserKraken.parse(this, sql);
     
     if (builder.isTableLoaded()) {
-      QueryKraken query = builder.build(); 
+      query = build(builder, sql, version); 
       
       query.map(method, args);
     }
@@ -611,7 +747,7 @@ public final class KrakenImpl implements Kraken
       String tableName = builder.getTableName();
       
       _tableService.loadTable(tableName,
-                              Result.of(t->builder.build().map(method, args)));
+                              Result.of(t->build(builder, sql, version).map(method, args)));
     }
   }
   
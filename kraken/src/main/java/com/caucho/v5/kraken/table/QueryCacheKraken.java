@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kraken.table;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.caucho.v5.kraken.query.QueryKraken;
+import com.caucho.v5.util.LruCache;
+
+/**
+ * Cache of built queries keyed by the SQL text.
+ * 
+ * Entries are tagged with the schema version at parse time, so a query
+ * built before a schema change (new table or index) is never returned
+ * after the change.
+ */
+public class QueryCacheKraken
+{
+  private final LruCache<String,QueryItem> _cache;
+  
+  private final AtomicLong _version = new AtomicLong();
+  
+  private final AtomicLong _hitCount = new AtomicLong();
+  private final AtomicLong _missCount = new AtomicLong();
+  
+  QueryCacheKraken(int capacity)
+  {
+    _cache = new LruCache<>(capacity);
+  }
+  
+  /**
+   * The current schema version, to be passed back to put().
+   */
+  long version()
+  {
+    return _version.get();
+  }
+  
+  /**
+   * Returns the cached query for the sql or null.
+   */
+  QueryKraken get(String sql)
+  {
+    QueryItem item = _cache.get(sql);
+    
+    if (item != null && item.version() == _version.get()) {
+      _hitCount.incrementAndGet();
+      
+      return item.query();
+    }
+    else {
+      _missCount.incrementAndGet();
+      
+      return null;
+    }
+  }
+  
+  /**
+   * Caches a query built at the given schema version.
+   */
+  void put(String sql, QueryKraken query, long version)
+  {
+    if (query == null 
+        || ! query.isCacheable()
+        || version != _version.get()) {
+      return;
+    }
+    
+    _cache.put(sql, new QueryItem(query, version));
+  }
+  
+  /**
+   * Invalidates all cached queries after a schema change.
+   */
+  void invalidate()
+  {
+    _version.incrementAndGet();
+    
+    _cache.clear();
+  }
+  
+  public int getSize()
+  {
+    return _cache.size();
+  }
+  
+  public long getHitCount()
+  {
+    return _hitCount.get();
+  }
+  
+  public long getMissCount()
+  {
+    return _missCount.get();
+  }
+  
+  @Override
+  public String toString()
+  {
+    return (getClass().getSimpleName()
+            + "[hit=" + getHitCount()
+            + ",miss=" + getMissCount() + "]");
+  }
+  
+  private static class QueryItem
+  {
+    private final QueryKraken _query;
+    private final long _version;
+    
+    QueryItem(QueryKraken query, long version)
+    {
+      _query = query;
+      _version = version;
+    }
+    
+    QueryKraken query()
+    {
+      return _query;
+    }
+    
+    long version()
+    {
+      return _version;
+    }
+  }
+}
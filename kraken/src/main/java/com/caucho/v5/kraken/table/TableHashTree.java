@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kraken.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import com.caucho.v5.kelp.RowCursor;
+import com.caucho.v5.kelp.TableKelp;
+import com.caucho.v5.kelp.TableListener;
+import com.caucho.v5.util.Murmur64;
+
+import io.baratine.service.Result;
+import io.baratine.service.Result.Fork;
+
+/**
+ * Hash tree over the key ranges of a table, used by replicas to find
+ * divergent ranges without exchanging the rows.
+ *
+ * Each leaf covers the keys sharing a prefix, and hashes the key and
+ * version of every row in the range, including removed rows. Puts and
+ * removes mark their leaf dirty, and a dirty leaf is rehashed from a
+ * range scan on the table's thread the next time the tree is read.
+ *
+ * <code><pre>
+ * tree[1]             root
+ * tree[2i], [2i+1]    children of tree[i]
+ * tree[leafCount + k] leaf k
+ * </pre></code>
+ */
+public final class TableHashTree implements TableListener
+{
+  private static final int LEAF_BITS_MAX = 10;
+  private static final int PREFIX_BITS = 16;
+
+  private static final long REMOVED = 0x9e3779b97f4a7c15L;
+
+  private final TableKraken _table;
+
+  private final int _leafBits;
+  private final int _leafCount;
+
+  private final long []_tree;
+
+  // guarded by itself, because listeners run on the table's thread
+  private final BitSet _dirty;
+
+  // non-null while an update is scanning, guarded by this
+  private ArrayList<Result<Void>> _updateWaiters;
+
+  TableHashTree(TableKraken table)
+  {
+    _table = table;
+
+    int keyLength = table.getTableKelp().getKeyLength();
+
+    _leafBits = Math.min(LEAF_BITS_MAX, 8 * keyLength);
+    _leafCount = 1 << _leafBits;
+
+    _tree = new long[2 * _leafCount];
+
+    _dirty = new BitSet(_leafCount);
+    _dirty.set(0, _leafCount);
+
+    table.addListener(this);
+  }
+
+  public int leafCount()
+  {
+    return _leafCount;
+  }
+
+  /**
+   * The root hash, which matches a peer's root when the tables agree.
+   */
+  public void root(Result<Long> result)
+  {
+    update(result.then(x->rootImpl()));
+  }
+
+  private synchronized long rootImpl()
+  {
+    return _tree[1];
+  }
+
+  /**
+   * Returns the leaf hashes, or null if the peer's root already matches.
+   */
+  public void leaves(long peerRoot, Result<long[]> result)
+  {
+    update(result.then(x->leavesImpl(peerRoot)));
+  }
+
+  private synchronized long []leavesImpl(long peerRoot)
+  {
+    if (_tree[1] == peerRoot) {
+      return null;
+    }
+
+    return Arrays.copyOfRange(_tree, _leafCount, 2 * _leafCount);
+  }
+
+  /**
+   * Returns the leaves whose hash differs from the peer's.
+   */
+  public void diff(long []peerLeaves, Result<int[]> result)
+  {
+    update(result.then(x->diffImpl(peerLeaves)));
+  }
+
+  private synchronized int []diffImpl(long []peerLeaves)
+  {
+    if (peerLeaves == null) {
+      return new int[0];
+    }
+
+    if (peerLeaves.length != _leafCount) {
+      // the trees don't line up, so every range is suspect
+      int []ranges = new int[_leafCount];
+
+      for (int i = 0; i < ranges.length; i++) {
+        ranges[i] = i;
+      }
+
+      return ranges;
+    }
+
+    int count = 0;
+    int []ranges = new int[_leafCount];
+
+    for (int i = 0; i < _leafCount; i++) {
+      if (_tree[_leafCount + i] != peerLeaves[i]) {
+        ranges[count++] = i;
+      }
+    }
+
+    return Arrays.copyOf(ranges, count);
+  }
+
+  /**
+   * Sets the cursors to the first and last key of a leaf's range.
+   */
+  void fillRange(int leaf, RowCursor min, RowCursor max)
+  {
+    int keyLength = _table.getTableKelp().getKeyLength();
+
+    int shift = PREFIX_BITS - _leafBits;
+    int minPrefix = leaf << shift;
+    int maxPrefix = minPrefix | ((1 << shift) - 1);
+
+    byte []key = new byte[keyLength];
+
+    fillKey(key, minPrefix, (byte) 0);
+    min.clear();
+    min.setKey(key, 0);
+
+    fillKey(key, maxPrefix, (byte) 0xff);
+    max.setKeyMax();
+    max.setKey(key, 0);
+  }
+
+  private static void fillKey(byte []key, int prefix, byte tail)
+  {
+    Arrays.fill(key, tail);
+
+    key[0] = (byte) (prefix >> 8);
+
+    if (key.length > 1) {
+      key[1] = (byte) prefix;
+    }
+  }
+
+  private int leaf(byte []key)
+  {
+    int prefix = (key[0] & 0xff) << 8;
+
+    if (key.length > 1) {
+      prefix |= key[1] & 0xff;
+    }
+
+    return prefix >>> (PREFIX_BITS - _leafBits);
+  }
+
+  /**
+   * Rehashes the dirty leaves. Each leaf is scanned on the table's thread,
+   * and the result completes after every scan returns. Callers arriving
+   * during an update wait for it instead of starting a second scan.
+   */
+  private void update(Result<Void> result)
+  {
+    int []leaves;
+
+    synchronized (this) {
+      if (_updateWaiters != null) {
+        _updateWaiters.add(result);
+        return;
+      }
+
+      leaves = takeDirty();
+
+      if (leaves.length == 0) {
+        result.ok(null);
+        return;
+      }
+
+      _updateWaiters = new ArrayList<>();
+      _updateWaiters.add(result);
+    }
+
+    TableKelp tableKelp = _table.getTableKelp();
+
+    Result<Void> resultJoin = Result.of(x->afterUpdate(null),
+                                        e->{ markDirty(leaves); afterUpdate(e); });
+
+    Fork<Long,Void> fork = resultJoin.fork();
+
+    for (int leaf : leaves) {
+      RowCursor min = tableKelp.cursor();
+      RowCursor max = tableKelp.cursor();
+
+      fillRange(leaf, min, max);
+
+      tableKelp.hashRange(min, max, this::hashRow, fork.branch());
+    }
+
+    fork.join(hashes->updateLeaves(leaves, hashes));
+  }
+
+  private synchronized Void updateLeaves(int []leaves, List<Long> hashes)
+  {
+    for (int i = 0; i < leaves.length; i++) {
+      _tree[_leafCount + leaves[i]] = hashes.get(i);
+    }
+
+    for (int i = _leafCount - 1; i > 0; i--) {
+      _tree[i] = Murmur64.generate(_tree[2 * i], _tree[2 * i + 1]);
+    }
+
+    return null;
+  }
+
+  private void afterUpdate(Throwable exn)
+  {
+    ArrayList<Result<Void>> waiters;
+
+    synchronized (this) {
+      waiters = _updateWaiters;
+      _updateWaiters = null;
+    }
+
+    for (Result<Void> waiter : waiters) {
+      if (exn != null) {
+        waiter.fail(exn);
+      }
+      else {
+        waiter.ok(null);
+      }
+    }
+  }
+
+  /**
+   * Returns and clears the dirty leaves. The flags are cleared before
+   * the scan, so a put during the scan marks the leaf again.
+   */
+  private int []takeDirty()
+  {
+    synchronized (_dirty) {
+      int []leaves = new int[_dirty.cardinality()];
+      int i = 0;
+
+      for (int leaf = _dirty.nextSetBit(0);
+           leaf >= 0;
+           leaf = _dirty.nextSetBit(leaf + 1)) {
+        leaves[i++] = leaf;
+      }
+
+      _dirty.clear();
+
+      return leaves;
+    }
+  }
+
+  private long hashRow(RowCursor cursor)
+  {
+    TableKelp tableKelp = _table.getTableKelp();
+
+    long hash = Murmur64.generate(Murmur64.SEED, cursor.buffer(),
+                                  tableKelp.getKeyOffset(),
+                                  tableKelp.getKeyLength());
+
+    hash = Murmur64.generate(hash, cursor.getVersion());
+
+    if (cursor.isRemoved()) {
+      hash ^= REMOVED;
+    }
+
+    return hash;
+  }
+
+  @Override
+  public void onPut(byte []key, TypePut type)
+  {
+    markDirty(key);
+  }
+
+  @Override
+  public void onRemove(byte []key, TypePut type)
+  {
+    markDirty(key);
+  }
+
+  private void markDirty(byte []key)
+  {
+    int leaf = leaf(key);
+
+    synchronized (_dirty) {
+      _dirty.set(leaf);
+    }
+  }
+
+  private void markDirty(int []leaves)
+  {
+    synchronized (_dirty) {
+      for (int leaf : leaves) {
+        _dirty.set(leaf);
+      }
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "[" + _table.getName() + "]";
+  }
+}
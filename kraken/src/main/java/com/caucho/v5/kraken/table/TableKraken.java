@@ -33,6 +33,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 import com.caucho.v5.amp.ServicesAmp;
@@ -51,6 +52,7 @@ import com.caucho.v5.kraken.archive.ArchiveKraken;
 import com.caucho.v5.kraken.query.TableBuilderKraken;
 import com.caucho.v5.util.BitsUtil;
 import com.caucho.v5.util.Hex;
+import com.caucho.v5.util.L10N;
 import com.caucho.v5.util.Murmur64;
 
 import io.baratine.db.DatabaseWatch;
@@ -64,6 +66,8 @@ import io.baratine.service.ResultFuture;
  */
 public class TableKraken
 {
+  private static final L10N L = new L10N(TableKraken.class);
+  
   private TableKelp _tableKelp;
   private KelpManager _kelpBacking;
   private TablePod _tablePod;
@@ -74,6 +78,14 @@ public class TableKraken
   private String _sql;
   private OutFactoryH3 _serializerFactory;
   
+  private String _indexTableName;
+  private String _indexColumnName;
+  
+  private final CopyOnWriteArrayList<IndexKraken> _indexList
+    = new CopyOnWriteArrayList<>();
+
+  private TableHashTree _hashTree;
+  
   public TableKraken(KrakenImpl tableManager,
                      String tableName,
                      TableKelp tableKelp,
@@ -98,6 +110,11 @@ public class TableKraken
     
     if (builder != null) {
       _sql = builder.getSql();
+      
+      if (builder.isIndex()) {
+        _indexTableName = builder.getIndexTable();
+        _indexColumnName = builder.getIndexColumn();
+      }
     }
     
     PodHashGenerator hashGen = null;
@@ -209,6 +226,81 @@ public class TableKraken
     return _kelpBacking;
   }
   
+  //
+  // secondary indexes
+  //
+  
+  /**
+   * True if this table is the backing store for an index of another table.
+   */
+  public boolean isIndex()
+  {
+    return _indexTableName != null;
+  }
+  
+  /**
+   * The full name of the indexed table, when this table is an index.
+   */
+  String getIndexTableName()
+  {
+    return _indexTableName;
+  }
+  
+  /**
+   * The indexed column, when this table is an index.
+   */
+  String getIndexColumnName()
+  {
+    return _indexColumnName;
+  }
+  
+  public Iterable<IndexKraken> getIndexes()
+  {
+    return _indexList;
+  }
+  
+  IndexKraken getIndex(String name)
+  {
+    for (IndexKraken index : _indexList) {
+      if (index.getName().equals(name)) {
+        return index;
+      }
+    }
+    
+    return null;
+  }
+  
+  /**
+   * Adds an index, maintained by the put listener, and starts filling it
+   * from the current rows.
+   */
+  IndexKraken addIndex(TableKraken indexTable)
+  {
+    IndexKraken index = getIndex(indexTable.getName());
+    
+    if (index != null) {
+      return index;
+    }
+    
+    Column column = getColumn(indexTable.getIndexColumnName());
+    
+    if (column == null) {
+      throw new IllegalStateException(L.l("'{0}' is an unknown column for index '{1}'",
+                                          indexTable.getIndexColumnName(),
+                                          indexTable.getName()));
+    }
+    
+    index = new IndexKraken(this, column, indexTable);
+    
+    _indexList.add(index);
+    
+    addListener(index);
+    
+    index.fill();
+    
+    return index;
+  }
+  
   /**
    * Convenience for calculating the pod hash for a string.
    */
@@ -337,6 +429,19 @@ public class TableKraken
   {
     return getTablePod().getReplicationCallback();
   }
+
+  /**
+   * Hash tree for replica anti-entropy, created on first use. A new tree
+   * starts with every range dirty, so it doesn't miss earlier updates.
+   */
+  public synchronized TableHashTree getHashTree()
+  {
+    if (_hashTree == null) {
+      _hashTree = new TableHashTree(this);
+    }
+
+    return _hashTree;
+  }
   
   public ExprKelp []getSelectExprs()
   {
@@ -545,7 +650,7 @@ public class TableKraken
       cursor.setKey(key, 0);
       
       if (tableKelp.getDirect(cursor)) {
-        _envKelp.test(cursor);
+        _envKelp.fill(cursor);
         _watch.onChange(new CursorKraken(_envKelp, cursor, _selectExprs));
       }
     }
@@ -77,6 +77,10 @@ public class TableManagerServiceImpl implements TableManagerService
   private TableKraken _metaUpdateTable;
   
   private final HashMap<String,PendingTable> _pendingTableMap = new HashMap<>();
+  
+  // index tables waiting for their indexed table to be created
+  private final HashMap<String,ArrayList<TableKraken>> _pendingIndexMap
+    = new HashMap<>();
 
   // XXX: private ClientKrakenImpl _clusterClient;
 
@@ -330,6 +334,11 @@ public class TableManagerServiceImpl implements TableManagerService
       _tableMap.put(tableKey, tableKraken);
       _tableNameMap.put(tableKelp.getName(), tableKraken);
       
+      addIndexes(tableKelp.getName(), tableKraken);
+      
+      // new tables and indexes change query plans
+      _tableManager.getQueryCache().invalidate();
+      
       if (_isClusterStarted) {
         tableKraken.start();
       }
@@ -338,6 +347,41 @@ public class TableManagerServiceImpl implements TableManagerService
     return tableKraken;
   }
   
+  /**
+   * Attaches a new index table to its indexed table, and any pending
+   * index tables to a new table. Attaching an index fills it from the
+   * local rows, so every owner of the table fills its own index.
+   */
+  private void addIndexes(String name, TableKraken table)
+  {
+    if (table.isIndex()) {
+      String indexedName = table.getIndexTableName();
+      TableKraken indexedTable = _tableNameMap.get(indexedName);
+      
+      if (indexedTable != null) {
+        indexedTable.addIndex(table);
+      }
+      else {
+        ArrayList<TableKraken> pendingList = _pendingIndexMap.get(indexedName);
+        
+        if (pendingList == null) {
+          pendingList = new ArrayList<>();
+          _pendingIndexMap.put(indexedName, pendingList);
+        }
+        
+        pendingList.add(table);
+      }
+    }
+    
+    ArrayList<TableKraken> pendingList = _pendingIndexMap.remove(name);
+    
+    if (pendingList != null) {
+      for (TableKraken indexTable : pendingList) {
+        table.addIndex(indexTable);
+      }
+    }
+  }
+  
   private KelpManager getKelpBacking()
   {
     return _tableManager.getKelpBacking();
@@ -116,6 +116,21 @@ public interface TablePod
   void getUpdatesFromLocal(int podIndex, 
                   long accessTime, 
                   Result<Boolean> result);
+
+  /**
+   * Returns the local hash tree leaves, or null if the peer's root
+   * matches the local root.
+   */
+  void getHashTreeFromLocal(int podIndex,
+                            long rootHash,
+                            Result<long[]> result);
+
+  /**
+   * Sends the local rows in the divergent hash tree ranges.
+   */
+  void getRangeUpdatesFromLocal(int podIndex,
+                                int []ranges,
+                                Result<Boolean> result);
   /**
    * @param tablePodNodeStartup
    * @param i
@@ -148,6 +163,11 @@ public interface TablePod
                ServerBartender server, 
                String sql,
                Object[] args);
+  
+  void findAllReduce(Result<Iterable<Object[]>> subResult, 
+                     ServerBartender server, 
+                     String sql,
+                     Object[] args);
 
   void update(Result<Integer> result, 
               int node,
@@ -162,6 +162,20 @@ public class TablePodLocal implements TablePod
     result.ok(null);
   }
 
+  @Override
+  public void getHashTreeFromLocal(int podIndex, long rootHash,
+                                   Result<long[]> result)
+  {
+    result.ok(null);
+  }
+
+  @Override
+  public void getRangeUpdatesFromLocal(int podIndex, int []ranges,
+                                       Result<Boolean> result)
+  {
+    result.ok(null);
+  }
+
   @Override
   public void notifyWatch(byte[] key)
   {
@@ -202,6 +216,13 @@ public class TablePodLocal implements TablePod
     subResult.ok(null);
   }
 
+  @Override
+  public void findAllReduce(Result<Iterable<Object[]>> subResult,
+                            ServerBartender server, String sql, Object[] args)
+  {
+    subResult.ok(null);
+  }
+
   @Override
   public void update(Result<Integer> result, int node, String sql,
                      Object[] args)
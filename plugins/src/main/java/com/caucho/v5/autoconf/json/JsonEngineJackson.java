@@ -31,9 +31,12 @@ package com.caucho.v5.autoconf.json;
 
 import java.io.CharArrayWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -69,6 +72,7 @@ public class JsonEngineJackson implements JsonEngine
   class JsonWriterJackson implements JsonWriter {
     private ObjectMapper _mapper;
     private Writer _writer;
+    private OutputStream _os;
 
     private CharArrayWriter _charWriter = new CharArrayWriter();
 
@@ -81,6 +85,14 @@ public class JsonEngineJackson implements JsonEngine
     public void init(Writer writer)
     {
       _writer = writer;
+      _os = null;
+    }
+
+    @Override
+    public void init(OutputStream os)
+    {
+      _os = os;
+      _writer = null;
     }
 
     @Override
@@ -90,7 +102,12 @@ public class JsonEngineJackson implements JsonEngine
       try {
         _mapper.writeValue(_charWriter, value);
 
-        _charWriter.writeTo(_writer);
+        if (_os != null) {
+          _os.write(_charWriter.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        else {
+          _charWriter.writeTo(_writer);
+        }
 
         _charWriter.reset();
       }
@@ -110,6 +127,7 @@ public class JsonEngineJackson implements JsonEngine
   static class JsonReaderJackson implements JsonReader {
     private ObjectMapper _mapper;
     private Reader _reader;
+    private InputStream _is;
 
     public JsonReaderJackson(ObjectMapper mapper)
     {
@@ -120,12 +138,24 @@ public class JsonEngineJackson implements JsonEngine
     public void init(Reader reader)
     {
       _reader = reader;
+      _is = null;
+    }
+
+    @Override
+    public void init(InputStream is)
+    {
+      _is = is;
+      _reader = null;
     }
 
     @Override
     public <T> T readObject(Class<T> cls)
       throws IOException
     {
+      if (_is != null) {
+        return _mapper.readValue(_is, cls);
+      }
+
       return _mapper.readValue(_reader, cls);
     }
   }
@@ -0,0 +1,400 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.http.protocol2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.caucho.v5.http.protocol2.HeaderCommon.TableDynamic;
+import com.caucho.v5.http.protocol2.HeaderCommon.TableEntry;
+import com.caucho.v5.io.ReadStream;
+import com.caucho.v5.io.WriteStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * HPACK encoder and decoder against the RFC 7541 appendix C examples.
+ */
+public class QwebHpackTest
+{
+  private static final String []C4_1
+    = { ":method", "GET", ":scheme", "http", ":path", "/",
+        ":authority", "www.example.com" };
+
+  private static final String []C4_2
+    = { ":method", "GET", ":scheme", "http", ":path", "/",
+        ":authority", "www.example.com", "cache-control", "no-cache" };
+
+  private static final String []C4_3
+    = { ":method", "GET", ":scheme", "https", ":path", "/index.html",
+        ":authority", "www.example.com", "custom-key", "custom-value" };
+
+  private static final String C4_1_HEX
+    = "8286 8441 8cf1 e3c2 e5f2 3a6b a0ab 90f4 ff";
+  private static final String C4_2_HEX
+    = "8286 84be 5886 a8eb 1064 9cbf";
+  private static final String C4_3_HEX
+    = "8287 85bf 4088 25a8 49e9 5ba9 7d7f 8925 a849 e95b b8e8 b4bf";
+
+  private static final String []C6_1
+    = { ":status", "302", "cache-control", "private",
+        "date", "Mon, 21 Oct 2013 20:13:21 GMT",
+        "location", "https://www.example.com" };
+
+  private static final String []C6_2
+    = { ":status", "307", "cache-control", "private",
+        "date", "Mon, 21 Oct 2013 20:13:21 GMT",
+        "location", "https://www.example.com" };
+
+  private static final String []C6_3
+    = { ":status", "200", "cache-control", "private",
+        "date", "Mon, 21 Oct 2013 20:13:22 GMT",
+        "location", "https://www.example.com",
+        "content-encoding", "gzip",
+        "set-cookie",
+        "foo=ASDJKHQKBZXOQWEOPIUAXQWEOIU; max-age=3600; version=1" };
+
+  // dynamic table size update to 256, the SETTINGS value used by C.6
+  private static final String TABLE_256_HEX = "3fe1 01";
+
+  private static final String C6_1_HEX
+    = "4882 6402 5885 aec3 771a 4b61 96d0 7abe 9410 54d4 44a8 2005 9504 0b81"
+    + "66e0 82a6 2d1b ff6e 919d 29ad 1718 63c7 8f0b 97c8 e9ae 82ae 43d3";
+  private static final String C6_2_HEX
+    = "4883 640e ffc1 c0bf";
+  private static final String C6_3_HEX
+    = "88c1 6196 d07a be94 1054 d444 a820 0595 040b 8166 e084 a62d 1bff c05a"
+    + "839b d9ab 77ad 94e7 821d d7f2 e6c7 b335 dfdf cd5b 3960 d5af 2708 7f36"
+    + "72c1 ab27 0fb5 291f 9587 3160 65c0 03ed 4ee5 b106 3d50 07";
+
+  @Test
+  public void decodeRequestsHuffman() throws IOException
+  {
+    Decoder in = new Decoder(C4_1_HEX, C4_2_HEX, C4_3_HEX);
+
+    Assert.assertEquals(list(C4_1), in.next());
+    Assert.assertEquals(list(C4_2), in.next());
+    Assert.assertEquals(list(C4_3), in.next());
+  }
+
+  @Test
+  public void decodeResponsesEviction() throws IOException
+  {
+    Decoder in = new Decoder(TABLE_256_HEX + C6_1_HEX, C6_2_HEX, C6_3_HEX,
+                             "be", "bf", "c0", "c1");
+
+    Assert.assertEquals(list(C6_1), in.next());
+    Assert.assertEquals(list(C6_2), in.next());
+    Assert.assertEquals(list(C6_3), in.next());
+
+    // C.6.3 leaves set-cookie, content-encoding and date in the table
+    Assert.assertEquals(list("set-cookie", C6_3[11]), in.next());
+    Assert.assertEquals(list("content-encoding", "gzip"), in.next());
+    Assert.assertEquals(list("date", C6_3[5]), in.next());
+
+    try {
+      in.next();
+      Assert.fail("expected evicted index to fail");
+    } catch (Http2ProtocolException e) {
+    }
+  }
+
+  @Test
+  public void encodeRequestsHuffman() throws IOException
+  {
+    Encoder out = new Encoder();
+
+    Assert.assertEquals(normalize(C4_1_HEX), toHex(out.write(C4_1)));
+    Assert.assertEquals(normalize(C4_2_HEX), toHex(out.write(C4_2)));
+    Assert.assertEquals(normalize(C4_3_HEX), toHex(out.write(C4_3)));
+  }
+
+  @Test
+  public void encodeResponsesEviction() throws IOException
+  {
+    Encoder out = new Encoder();
+
+    Assert.assertEquals(normalize(TABLE_256_HEX + C6_1_HEX),
+                        toHex(out.write(256, C6_1)));
+
+    // "307" is no shorter in Huffman, so the encoder keeps it raw
+    Assert.assertEquals("4803333037c1c0bf", toHex(out.write(C6_2)));
+    Assert.assertEquals(normalize(C6_3_HEX), toHex(out.write(C6_3)));
+  }
+
+  @Test
+  public void roundTripEviction() throws IOException
+  {
+    Encoder out = new Encoder();
+    List<byte[]> blocks = new ArrayList<>();
+    List<List<String>> expected = new ArrayList<>();
+
+    StringBuilder big = new StringBuilder();
+
+    for (int i = 0; i < 300; i++) {
+      big.append((char) ('a' + i % 26));
+    }
+
+    for (int i = 0; i < 200; i++) {
+      String []headers = { ":method", i % 3 == 0 ? "POST" : "GET",
+                           ":path", "/item/" + (i % 7),
+                           "x-big", i % 5 == 0 ? big.toString() : "small",
+                           "x-id", String.valueOf(i) };
+
+      blocks.add(out.write(headers));
+      expected.add(list(headers));
+    }
+
+    Decoder in = new Decoder(blocks);
+
+    for (List<String> headers : expected) {
+      Assert.assertEquals(headers, in.next());
+    }
+  }
+
+  @Test
+  public void tableDynamicEviction()
+  {
+    List<String> evicted = new ArrayList<>();
+
+    TableDynamic table = new TableDynamic(e->evicted.add(e.key()));
+    table.capacity(100);
+
+    // each entry is 32 + 1 + 1 bytes
+    TableEntry a = new TableEntry(0, "a", "1");
+    TableEntry b = new TableEntry(0, "b", "2");
+    TableEntry c = new TableEntry(0, "c", "3");
+
+    Assert.assertTrue(table.add(a));
+    Assert.assertTrue(table.add(b));
+    Assert.assertEquals(68, table.size());
+    Assert.assertEquals(62, table.index(b));
+    Assert.assertEquals(63, table.index(a));
+
+    Assert.assertTrue(table.add(c));
+    Assert.assertEquals(Arrays.asList("a"), evicted);
+    Assert.assertEquals(-1, table.index(a));
+    Assert.assertEquals(2, table.length());
+    Assert.assertSame(c, table.get(0));
+    Assert.assertSame(b, table.get(1));
+    Assert.assertNull(table.get(2));
+
+    // shrinking the capacity evicts from the oldest entry
+    table.capacity(40);
+    Assert.assertEquals(Arrays.asList("a", "b"), evicted);
+    Assert.assertEquals(62, table.index(c));
+
+    // an entry larger than the capacity empties the table
+    Assert.assertFalse(table.add(new TableEntry(0, "big", "0123456789")));
+    Assert.assertEquals(Arrays.asList("a", "b", "c"), evicted);
+    Assert.assertEquals(0, table.length());
+    Assert.assertEquals(0, table.size());
+  }
+
+  @Test
+  public void tableDynamicResize()
+  {
+    TableDynamic table = new TableDynamic(null);
+    table.capacity(100 * 34);
+
+    List<TableEntry> entries = new ArrayList<>();
+
+    // wrap the ring before it grows past its initial length
+    for (int i = 0; i < 200; i++) {
+      TableEntry entry = new TableEntry(0, "k", String.valueOf(i % 10));
+
+      Assert.assertTrue(table.add(entry));
+      entries.add(entry);
+    }
+
+    Assert.assertEquals(100, table.length());
+
+    for (int i = 0; i < 100; i++) {
+      Assert.assertSame(entries.get(199 - i), table.get(i));
+      Assert.assertEquals(62 + i, table.index(entries.get(199 - i)));
+    }
+
+    Assert.assertEquals(-1, table.index(entries.get(99)));
+  }
+
+  private static List<String> list(String ...headers)
+  {
+    List<String> list = new ArrayList<>();
+
+    for (int i = 0; i < headers.length; i += 2) {
+      list.add(headers[i] + ": " + headers[i + 1]);
+    }
+
+    return list;
+  }
+
+  private static String normalize(String hex)
+  {
+    return hex.replace(" ", "");
+  }
+
+  private static String toHex(byte []bytes)
+  {
+    StringBuilder sb = new StringBuilder();
+
+    for (byte b : bytes) {
+      sb.append(String.format("%02x", b & 0xff));
+    }
+
+    return sb.toString();
+  }
+
+  private static byte []hex(String hex)
+  {
+    hex = hex.replace(" ", "");
+
+    byte []bytes = new byte[hex.length() / 2];
+
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+    }
+
+    return bytes;
+  }
+
+  /**
+   * Decodes a sequence of header blocks on a single connection.
+   */
+  private static class Decoder
+  {
+    private final List<String> _headers = new ArrayList<>();
+    private final List<byte[]> _blocks;
+    private final InHeader _in;
+    private int _index;
+
+    Decoder(String ...blocks)
+    {
+      this(toBytes(blocks));
+    }
+
+    Decoder(List<byte[]> blocks)
+    {
+      _blocks = blocks;
+
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+      for (byte []block : blocks) {
+        bos.write(block, 0, block.length);
+      }
+
+      byte []data = bos.toByteArray();
+
+      ReadStream is = new ReadStream(new ByteArrayInputStream(data));
+
+      _in = new InHeaderRequest(is);
+    }
+
+    private static List<byte[]> toBytes(String []blocks)
+    {
+      List<byte[]> list = new ArrayList<>();
+
+      for (String block : blocks) {
+        list.add(hex(block));
+      }
+
+      return list;
+    }
+
+    List<String> next()
+      throws IOException
+    {
+      InRequest request
+        = (InRequest) Proxy.newProxyInstance(InRequest.class.getClassLoader(),
+                                             new Class<?>[] { InRequest.class },
+                                             (proxy, method, args)->{
+          if (method.getName().equals("header")) {
+            _headers.add(args[0] + ": " + args[1]);
+          }
+          return null;
+        });
+
+      _headers.clear();
+
+      byte []block = _blocks.get(_index++);
+
+      _in.readHeaders(request, block.length, Http2Constants.END_HEADERS);
+
+      return new ArrayList<>(_headers);
+    }
+  }
+
+  /**
+   * Encodes header blocks on a single connection, returning each block
+   * without its frame header.
+   */
+  private static class Encoder
+  {
+    private final ByteArrayOutputStream _bos = new ByteArrayOutputStream();
+    private final WriteStream _os = new WriteStream(_bos);
+    private final OutHeader _out = new OutHeaderHuffman(_os);
+
+    byte []write(String ...headers)
+      throws IOException
+    {
+      return write(-1, headers);
+    }
+
+    byte []write(int tableSize, String ...headers)
+      throws IOException
+    {
+      _bos.reset();
+
+      _out.openHeaders(1, FlagsHttp.CONT_STREAM);
+
+      if (tableSize >= 0) {
+        _out.setTableSize(tableSize);
+      }
+
+      for (int i = 0; i < headers.length; i += 2) {
+        _out.header(headers[i], headers[i + 1]);
+      }
+
+      _out.closeHeaders();
+      _os.flush();
+
+      byte []frame = _bos.toByteArray();
+
+      int length = ((frame[0] & 0xff) << 16
+                    | (frame[1] & 0xff) << 8
+                    | (frame[2] & 0xff));
+
+      return Arrays.copyOfRange(frame, 9, 9 + length);
+    }
+  }
+}
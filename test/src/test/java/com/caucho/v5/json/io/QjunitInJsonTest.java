@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.json.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import com.caucho.v5.io.ReadStream;
+import com.caucho.v5.json.io.InJson.Event;
+import com.caucho.v5.json.ser.JsonFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * UTF-8 byte parsing in InJsonImpl, checked against the Reader parser
+ * with the input split at every possible buffer boundary.
+ */
+public class QjunitInJsonTest
+{
+  private static final String DOC
+    = "{\"id\":12345678901,\"name\":\"héllo \\\"x\\\" \\n\\/\","
+    + " \"euro\":\"€ 1\", \"smile\":\"😀\","
+    + " \"escaped\":\"\\u00e9\\ud83d\\ude00\","
+    + " \"list\":[1, -2, 3.5, -1.25e3, 0, true, false, null, \"\"],"
+    + " \"map\":{\"kéy\":{\"a\":[]}}, \"last\":-7}";
+
+  @Test
+  public void bytesMatchReader()
+  {
+    String expected = events(new InJsonImpl(new StringReader(DOC)));
+
+    Assert.assertTrue(expected.contains("VALUE_STRING[😀]"));
+    Assert.assertTrue(expected.contains("VALUE_STRING[é😀]"));
+
+    Assert.assertEquals(expected, events(new InJsonImpl(bytes(DOC, 8192))));
+  }
+
+  @Test
+  public void chunkBoundaries()
+  {
+    String expected = events(new InJsonImpl(new StringReader(DOC)));
+
+    for (int chunk = 1; chunk <= 9; chunk++) {
+      Assert.assertEquals("chunk " + chunk,
+                          expected,
+                          events(new InJsonImpl(bytes(DOC, chunk))));
+    }
+  }
+
+  @Test
+  public void readStreamChunks()
+  {
+    String expected = events(new InJsonImpl(new StringReader(DOC)));
+
+    for (int chunk = 1; chunk <= 9; chunk++) {
+      ReadStream rs = new ReadStream(bytes(DOC, chunk));
+
+      Assert.assertEquals("chunk " + chunk,
+                          expected,
+                          events(new InJsonImpl(rs)));
+    }
+  }
+
+  @Test
+  public void readStreamRemainder() throws Exception
+  {
+    for (String doc : new String[] { "{\"a\":1} tail", "123 tail" }) {
+      ReadStream rs = new ReadStream(bytes(doc, 8192));
+
+      InJsonImpl in = new InJsonImpl(rs);
+
+      if (in.next() == Event.START_OBJECT) {
+        while (in.next() != Event.END_OBJECT) {
+        }
+      }
+
+      in.close();
+
+      // unread bytes, including a peeked delimiter, go back to the stream
+      byte []tail = new byte[16];
+      int len = rs.read(tail, 0, tail.length);
+
+      Assert.assertEquals(doc, " tail", new String(tail, 0, len, "UTF-8"));
+    }
+  }
+
+  @Test
+  public void beanKeysAcrossChunks()
+  {
+    JsonFactory factory = new JsonFactory();
+
+    String doc = "{\"name\":\"café\",\"count\":17,"
+                 + "\"tags\":[\"a\",\"b€\"],\"unknown\":{\"x\":[1]}}";
+
+    for (int chunk = 1; chunk <= 8192; chunk *= 2) {
+      Bean bean = factory.in(bytes(doc, chunk)).readObject(Bean.class);
+
+      Assert.assertEquals("café", bean.name);
+      Assert.assertEquals(17, bean.count);
+      Assert.assertEquals("b€", bean.tags.get(1));
+    }
+  }
+
+  @Test
+  public void untypedBytes()
+  {
+    JsonFactory factory = new JsonFactory();
+
+    String doc = "{\"a\":[true,null,\"😀\"],\"b\":9223372036854775807}";
+
+    Map<?,?> expected
+      = (Map<?,?>) factory.in(new StringReader(doc)).readObject();
+
+    for (int chunk = 1; chunk <= 5; chunk++) {
+      Assert.assertEquals(expected, factory.in(bytes(doc, chunk)).readObject());
+    }
+  }
+
+  private static String events(InJsonImpl in)
+  {
+    StringBuilder sb = new StringBuilder();
+
+    Event event;
+
+    while ((event = in.next()) != null) {
+      sb.append(event);
+
+      switch (event) {
+      case KEY_NAME:
+      case VALUE_STRING:
+        sb.append("[").append(in.getString()).append("]");
+        break;
+
+      case VALUE_LONG:
+      case VALUE_DOUBLE:
+        if (in.isIntegralNumber()) {
+          sb.append("[").append(in.getLong()).append("]");
+        }
+        else {
+          sb.append("[").append(in.getDoubleValue()).append("]");
+        }
+        break;
+
+      default:
+        break;
+      }
+
+      sb.append("\n");
+    }
+
+    return sb.toString();
+  }
+
+  private static InputStream bytes(String doc, int chunk)
+  {
+    byte []data = doc.getBytes(StandardCharsets.UTF_8);
+
+    return new ChunkInputStream(data, chunk);
+  }
+
+  /**
+   * Returns at most chunk bytes from each read.
+   */
+  private static class ChunkInputStream extends ByteArrayInputStream
+  {
+    private final int _chunk;
+
+    ChunkInputStream(byte []data, int chunk)
+    {
+      super(data);
+
+      _chunk = chunk;
+    }
+
+    @Override
+    public synchronized int read(byte []buffer, int offset, int length)
+    {
+      return super.read(buffer, offset, Math.min(length, _chunk));
+    }
+  }
+
+  public static class Bean
+  {
+    public String name;
+    public int count;
+    public List<String> tags;
+  }
+}
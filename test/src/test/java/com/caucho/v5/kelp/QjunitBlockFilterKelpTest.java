@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kelp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.caucho.v5.kelp.query.BinaryOpKelp;
+import com.caucho.v5.kelp.query.ColumnFilterKelp;
+import com.caucho.v5.kelp.query.EnvKelp;
+import com.caucho.v5.kelp.query.ExprBuilderKelp;
+import com.caucho.v5.kelp.query.QueryBuilderKelp;
+
+import io.baratine.service.ResultFuture;
+
+/**
+ * Block-at-a-time column filter compared with row-at-a-time evaluation.
+ */
+public class QjunitBlockFilterKelpTest
+{
+  private static final int COUNT = 2000;
+  
+  private Path _dir;
+  private DatabaseKelp _db;
+  private TableKelp _table;
+  
+  @Before
+  public void before()
+    throws Exception
+  {
+    _dir = Files.createTempDirectory("kelp-filter");
+    
+    _db = new DatabaseKelpBuilder().path(_dir.resolve("test.db")).build();
+    
+    _table = _db.createTable("test")
+                .startKey()
+                .columnInt64("id")
+                .endKey()
+                .columnInt32("a")
+                .columnInt64("b")
+                .columnString("flag")
+                .build();
+  }
+  
+  @After
+  public void after()
+  {
+    if (_db != null) {
+      _db.close();
+    }
+  }
+  
+  /**
+   * The block bitmap agrees with the row-at-a-time column filter for
+   * every row of the scanned blocks.
+   */
+  @Test
+  public void blockLeafFilter()
+  {
+    fill(0);
+    
+    EnvKelp env = query(where("a", BinaryOpKelp.GE, 0)
+                          .op(BinaryOpKelp.AND,
+                              where("b", BinaryOpKelp.LT, 1)),
+                        50, 40);
+    
+    ColumnFilterKelp filter = env.columnFilter();
+    assertNotNull(filter);
+    
+    Row row = _table.row();
+    long []bits = new long[BlockLeaf.BLOCK_SIZE / 64];
+    int []offsets = new int[BlockLeaf.BLOCK_SIZE / row.length() + 1];
+    
+    int rows = 0;
+    int matches = 0;
+    
+    for (RowCursor cursor : _table.queryRange(min(), max(), null)) {
+      BlockLeaf block = cursor.leafBlock();
+      
+      if (block == null) {
+        continue;
+      }
+      
+      int ptr = cursor.leafRowOffset();
+      
+      block.filter(filter, row, offsets, bits);
+      
+      boolean isBit = (bits[ptr >> 6] & (1L << ptr)) != 0;
+      boolean isRow = filter.test(block.getBuffer(), ptr);
+      
+      assertEquals("row " + cursor.getLong(1), isRow, isBit);
+      
+      rows++;
+      
+      if (isRow) {
+        matches++;
+      }
+    }
+    
+    assertTrue(rows > 0);
+    assertTrue(matches > 0 && matches < rows);
+  }
+  
+  /**
+   * Scans with the block filter return the same rows as row-at-a-time
+   * predicates, for terms with and without a residual expression.
+   */
+  @Test
+  public void scanMatchesRowAtATime()
+  {
+    fill(0);
+    
+    assertSame(where("a", BinaryOpKelp.GT, 0), 1500);
+    assertSame(where("a", BinaryOpKelp.EQ, 0), 17);
+    assertSame(where("b", BinaryOpKelp.LE, 0), 300);
+    assertSame(where("a", BinaryOpKelp.LT, 0)
+                 .op(BinaryOpKelp.AND, where("flag", BinaryOpKelp.EQ, 1)),
+               1200, "f1");
+  }
+  
+  /**
+   * Updated rows leave older versions in the blocks, and only the
+   * current version of each key is tested.
+   */
+  @Test
+  public void multiVersion()
+  {
+    fill(0);
+    
+    // odd keys move their 'a' below the range, even keys above it
+    for (int i = 0; i < COUNT; i++) {
+      put(i, (i % 2 == 0) ? 10000 + i : -1, 0);
+    }
+    
+    // a second version for a quarter of the keys moves them back
+    for (int i = 0; i < COUNT; i += 4) {
+      put(i + 1, 5000, 1);
+    }
+    
+    ArrayList<Long> keys = assertSame(where("a", BinaryOpKelp.GE, 0), 0);
+    
+    assertEquals(COUNT / 2 + COUNT / 4, keys.size());
+    
+    for (long key : keys) {
+      assertTrue("key " + key, key % 2 == 0 || key % 4 == 1);
+    }
+    
+    keys = assertSame(where("a", BinaryOpKelp.EQ, 0), 5000);
+    
+    assertEquals(COUNT / 4, keys.size());
+  }
+  
+  private ArrayList<Long> assertSame(ExprBuilderKelp expr, Object... args)
+  {
+    EnvKelp blockEnv = query(expr, args);
+    EnvKelp rowEnv = query(expr, args);
+    
+    // a non-EnvKelp predicate disables the block filter
+    Predicate<RowCursor> rowPredicate = cursor->rowEnv.test(cursor);
+    
+    ArrayList<Long> blockKeys = keys(blockEnv);
+    ArrayList<Long> rowKeys = keys(rowPredicate);
+    
+    assertEquals(rowKeys, blockKeys);
+    
+    return blockKeys;
+  }
+  
+  private ArrayList<Long> keys(Predicate<RowCursor> predicate)
+  {
+    ArrayList<Long> keys = new ArrayList<>();
+    
+    for (RowCursor cursor : _table.queryRange(min(), max(), predicate)) {
+      keys.add(cursor.getLong(1));
+    }
+    
+    return keys;
+  }
+  
+  private void fill(int offset)
+  {
+    for (int i = 0; i < COUNT; i++) {
+      put(i, i % 117 + offset, i % 3);
+    }
+  }
+  
+  private void put(long id, int a, int flag)
+  {
+    RowCursor cursor = _table.cursor();
+    
+    cursor.setLong(1, id);
+    cursor.setInt(2, a);
+    cursor.setLong(3, a - 50);
+    cursor.setString(4, "f" + flag);
+    
+    ResultFuture<Boolean> future = new ResultFuture<>();
+    
+    _table.put(cursor, future);
+    
+    future.get(10, TimeUnit.SECONDS);
+  }
+  
+  private ExprBuilderKelp where(String column, BinaryOpKelp op, int index)
+  {
+    QueryBuilderKelp builder = new QueryBuilderKelp(_table);
+    
+    return builder.field(column).op(op, builder.param(index));
+  }
+  
+  private EnvKelp query(ExprBuilderKelp expr, Object... args)
+  {
+    EnvKelp program = new QueryBuilderKelp(_table).build(expr);
+    
+    return new EnvKelp(program, args);
+  }
+  
+  private RowCursor min()
+  {
+    RowCursor min = _table.cursor();
+    min.clear();
+    
+    return min;
+  }
+  
+  private RowCursor max()
+  {
+    RowCursor max = _table.cursor();
+    max.setKeyMax();
+    
+    return max;
+  }
+}
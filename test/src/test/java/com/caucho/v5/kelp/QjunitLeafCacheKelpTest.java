@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kelp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.baratine.service.ResultFuture;
+
+/**
+ * Off-heap leaf cache reloads after the heap leaves are dropped.
+ */
+public class QjunitLeafCacheKelpTest
+{
+  private static final int COUNT = 20000;
+  
+  private Path _dir;
+  private DatabaseKelp _db;
+  private TableKelp _table;
+  
+  @Before
+  public void before()
+    throws Exception
+  {
+    _dir = Files.createTempDirectory("kelp-cache");
+  }
+  
+  @After
+  public void after()
+  {
+    if (_db != null) {
+      _db.close();
+    }
+  }
+  
+  /**
+   * After a checkpoint and restart, the first read of a leaf fills the
+   * cache. Once the memory gc drops the heap leaf, the next read loads
+   * it from the cache.
+   */
+  @Test
+  public void loadAfterEviction()
+  {
+    open();
+    
+    for (int i = 0; i < COUNT; i++) {
+      put(i, 3 * i);
+    }
+    
+    _table.checkpoint();
+    _db.close();
+    
+    open();
+    
+    LeafCacheKelp cache = _db.getLeafCache();
+    assertNotNull(cache);
+    
+    assertRows();
+    
+    assertEquals(0, cache.getHitCount());
+    assertTrue(cache.getEntryCount() > 1);
+    
+    // the stubs only hold weak references to the loaded leaves
+    for (int i = 0; i < 10 && cache.getHitCount() == 0; i++) {
+      System.gc();
+      
+      assertRows();
+    }
+    
+    assertTrue(cache.getHitCount() > 0);
+  }
+  
+  private void open()
+  {
+    _db = new DatabaseKelpBuilder().path(_dir.resolve("test.db"))
+                                   .leafCacheSize(4 * 1024 * 1024)
+                                   .build();
+    
+    _table = _db.createTable("test")
+                .startKey()
+                .columnInt64("id")
+                .endKey()
+                .columnInt64("value")
+                .build();
+  }
+  
+  private void assertRows()
+  {
+    for (int i = 0; i < COUNT; i += 97) {
+      RowCursor cursor = _table.cursor();
+      
+      cursor.setLong(1, i);
+      
+      assertTrue("row " + i, _table.get(cursor));
+      assertEquals(3 * i, cursor.getLong(2));
+    }
+  }
+  
+  private void put(long id, long value)
+  {
+    RowCursor cursor = _table.cursor();
+    
+    cursor.setLong(1, id);
+    cursor.setLong(2, value);
+    
+    ResultFuture<Boolean> future = new ResultFuture<>();
+    
+    _table.put(cursor, future);
+    
+    future.get(10, TimeUnit.SECONDS);
+  }
+}
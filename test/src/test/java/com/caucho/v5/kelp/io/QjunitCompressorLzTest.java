@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kelp.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.caucho.v5.io.ReadStream;
+import com.caucho.v5.io.WriteStream;
+import com.caucho.v5.kelp.DatabaseKelp;
+import com.caucho.v5.kelp.DatabaseKelpBuilder;
+import com.caucho.v5.kelp.RowCursor;
+import com.caucho.v5.kelp.TableKelp;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * CompressorLz chunk codec, stream framing and Kelp checkpoints.
+ */
+public class QjunitCompressorLzTest
+{
+  private static final int CHUNK_SIZE = 16 * 1024;
+
+  @Test
+  public void roundTripChunks() throws IOException
+  {
+    Random random = new Random(17);
+
+    for (int i = 0; i < 2000; i++) {
+      int length = 1 + random.nextInt(CHUNK_SIZE);
+
+      byte []src = data(random, i % 4, length);
+
+      assertRoundTrip(src, length);
+    }
+  }
+
+  @Test
+  public void roundTripEdges() throws IOException
+  {
+    Random random = new Random(3);
+
+    // short inputs are all literals, and the last bytes are always literals
+    for (int length = 1; length <= 32; length++) {
+      assertRoundTrip(data(random, 1, length), length);
+      assertRoundTrip(new byte[length], length);
+    }
+
+    assertRoundTrip(new byte[CHUNK_SIZE], CHUNK_SIZE);
+    assertRoundTrip(data(random, 2, CHUNK_SIZE), CHUNK_SIZE);
+  }
+
+  @Test
+  public void incompressible()
+  {
+    byte []src = data(new Random(5), 0, CHUNK_SIZE);
+
+    Assert.assertEquals(-1, CompressorLz.compress(src, src.length,
+                                                  new byte[CHUNK_SIZE],
+                                                  new int[4096]));
+  }
+
+  @Test
+  public void streamRoundTrip() throws Exception
+  {
+    CompressorLz lz = new CompressorLz();
+    Random random = new Random(11);
+
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    WriteStream os = new WriteStream(bos);
+
+    byte [][]pages = new byte[6][];
+    long []offsets = new long[pages.length];
+    int []lengths = new int[pages.length];
+
+    // pages with mixed compressible and raw chunks, some spanning chunks
+    int []sizes = { 1, 100, CHUNK_SIZE, CHUNK_SIZE + 1, 3 * CHUNK_SIZE, 5000 };
+
+    for (int i = 0; i < pages.length; i++) {
+      pages[i] = data(random, i % 4, sizes[i]);
+
+      offsets[i] = os.position();
+
+      try (OutputStream out = lz.out(os)) {
+        // odd write sizes cross the chunk boundary mid-write
+        for (int offset = 0; offset < pages[i].length; offset += 777) {
+          int sublen = Math.min(777, pages[i].length - offset);
+
+          out.write(pages[i], offset, sublen);
+        }
+      }
+
+      lengths[i] = (int) (os.position() - offsets[i]);
+    }
+
+    os.flush();
+
+    byte []data = bos.toByteArray();
+
+    for (int i = 0; i < pages.length; i++) {
+      ReadStream is = new ReadStream(new ByteArrayInputStream(data));
+
+      try (InputStream in = lz.in(is, offsets[i], lengths[i])) {
+        Assert.assertArrayEquals("page " + i, pages[i], readAll(in, i));
+      }
+    }
+  }
+
+  @Test
+  public void checkpointReopen() throws Exception
+  {
+    Path dir = Files.createTempDirectory("kelp-lz");
+    Path path = dir.resolve("test.db");
+
+    int count = 20000;
+
+    try {
+      DatabaseKelp db = open(path, new CompressorLz());
+      TableKelp table = table(db);
+
+      for (int i = 0; i < count; i++) {
+        put(table, i, value(i, 0));
+      }
+
+      db.checkpoint();
+
+      // deltas written after the first checkpoint
+      for (int i = 0; i < count; i += 7) {
+        put(table, i, value(i, 1));
+      }
+
+      db.checkpoint();
+      db.close();
+
+      // segments record their codec, so a different default still reads
+      db = open(path, new CompressorNull());
+      table = table(db);
+
+      for (int i = 0; i < count; i++) {
+        RowCursor cursor = table.cursor();
+        cursor.setLong(1, i);
+
+        Assert.assertTrue("row " + i, table.get(cursor));
+        Assert.assertEquals(value(i, i % 7 == 0 ? 1 : 0), cursor.getString(2));
+      }
+
+      db.close();
+    } finally {
+      for (Path file : Files.newDirectoryStream(dir)) {
+        Files.delete(file);
+      }
+
+      Files.delete(dir);
+    }
+  }
+
+  private static void assertRoundTrip(byte []src, int length)
+    throws IOException
+  {
+    byte []compressed = new byte[CHUNK_SIZE];
+
+    int dataLength = CompressorLz.compress(src, length,
+                                           compressed, new int[4096]);
+
+    if (dataLength < 0) {
+      return;
+    }
+
+    Assert.assertTrue(dataLength < length);
+
+    byte []raw = new byte[CHUNK_SIZE];
+
+    Assert.assertEquals(length,
+                        CompressorLz.decompress(compressed, dataLength, raw));
+
+    Assert.assertArrayEquals(Arrays.copyOf(src, length),
+                             Arrays.copyOf(raw, length));
+  }
+
+  private static byte []data(Random random, int mode, int length)
+  {
+    byte []data = new byte[length];
+
+    for (int i = 0; i < length; i++) {
+      switch (mode) {
+      case 0:
+        data[i] = (byte) random.nextInt(256);
+        break;
+
+      case 1:
+        data[i] = (byte) random.nextInt(4);
+        break;
+
+      case 2:
+        data[i] = (byte) ("row value " + (i / 20)).charAt(i % 10);
+        break;
+
+      default:
+        data[i] = (byte) (i % 7 == 0 ? random.nextInt(256) : 0);
+        break;
+      }
+    }
+
+    return data;
+  }
+
+  private static byte []readAll(InputStream in, int mode)
+    throws Exception
+  {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+    if (mode % 2 == 0) {
+      int ch;
+
+      while ((ch = in.read()) >= 0) {
+        bos.write(ch);
+      }
+    }
+    else {
+      byte []buffer = new byte[1000];
+      int len;
+
+      while ((len = in.read(buffer, 0, buffer.length)) > 0) {
+        bos.write(buffer, 0, len);
+      }
+    }
+
+    return bos.toByteArray();
+  }
+
+  private static DatabaseKelp open(Path path, CompressorKelp compressor)
+    throws Exception
+  {
+    return new DatabaseKelpBuilder().path(path)
+                                    .compressor(compressor)
+                                    .memorySize(1024 * 1024)
+                                    .build();
+  }
+
+  private static TableKelp table(DatabaseKelp db)
+  {
+    return db.createTable("test")
+             .startKey()
+             .columnInt64("id")
+             .endKey()
+             .columnString("value")
+             .build();
+  }
+
+  private static void put(TableKelp table, long id, String value)
+  {
+    RowCursor cursor = table.cursor();
+
+    cursor.setLong(1, id);
+    cursor.setString(2, value);
+
+    table.put(cursor);
+  }
+
+  private static String value(int i, int version)
+  {
+    return "value-" + i + "-" + version + " with some repeated row text";
+  }
+}
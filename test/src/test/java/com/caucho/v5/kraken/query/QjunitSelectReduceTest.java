@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.kraken.query;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.baratine.db.Cursor;
+
+/**
+ * Cluster reduce: merging the pods' partial results matches a reduce of
+ * all the rows.
+ */
+public class QjunitSelectReduceTest
+{
+  /**
+   * select g, count(*), sum(v), min(v), max(v), avg(v) group by g
+   */
+  @Test
+  public void groupMerge()
+  {
+    SelectReduce reduce = groupReduce();
+    
+    List<Cursor> rows = rows(100);
+    
+    assertEquals(toList(reduce.reduce(rows)),
+                 toList(reduce.merge(partials(reduce, rows, 3))));
+  }
+  
+  /**
+   * Aggregates without GROUP BY return one row, even when no pod has a
+   * matching row.
+   */
+  @Test
+  public void aggregateEmpty()
+  {
+    SelectReduce reduce = aggregateReduce();
+    
+    List<Cursor> rows = rows(50);
+    
+    assertEquals(toList(reduce.reduce(rows)),
+                 toList(reduce.merge(partials(reduce, rows, 4))));
+    
+    List<Iterable<Object[]>> partials = partials(reduce, new ArrayList<>(), 2);
+    
+    List<List<Object>> empty = toList(reduce.merge(partials));
+    
+    assertEquals(1, empty.size());
+    assertEquals(0L, empty.get(0).get(1));
+    assertEquals(null, empty.get(0).get(2));
+  }
+  
+  /**
+   * ORDER BY with a LIMIT returns only each pod's top rows, and the merge
+   * keeps the overall top rows.
+   */
+  @Test
+  public void orderLimitMerge()
+  {
+    SelectReduce reduce = new SelectReduce(2,
+                                           new AggregateExpr[2],
+                                           new int[0],
+                                           new int[] { 1, 0 },
+                                           new boolean[] { false, true },
+                                           2, 5);
+    
+    List<Cursor> rows = rows(100);
+    
+    List<Iterable<Object[]>> partials = partials(reduce, rows, 3);
+    
+    for (Iterable<Object[]> partial : partials) {
+      assertEquals(7, ((List<Object[]>) partial).size());
+    }
+    
+    List<List<Object>> expect = toList(reduce.reduce(rows));
+    
+    assertEquals(5, expect.size());
+    assertEquals(expect, toList(reduce.merge(partials)));
+  }
+  
+  private SelectReduce groupReduce()
+  {
+    AggregateExpr []aggregates = new AggregateExpr[] {
+      null,
+      new CountExpr(null),
+      new SumExpr(null),
+      new MinExpr(null),
+      new MaxExpr(null),
+      new AvgExpr(null),
+    };
+    
+    return new SelectReduce(6, aggregates,
+                            new int[] { 0 },
+                            new int[] { 0 }, new boolean[] { true },
+                            0, -1);
+  }
+  
+  private SelectReduce aggregateReduce()
+  {
+    AggregateExpr []aggregates = new AggregateExpr[] {
+      null,
+      new CountExpr(null),
+      new SumExpr(null),
+    };
+    
+    return new SelectReduce(3, aggregates,
+                            new int[0], new int[0], new boolean[0],
+                            0, -1);
+  }
+  
+  /**
+   * Rows of a group name and a value in every column after it.
+   */
+  private List<Cursor> rows(int count)
+  {
+    List<Cursor> rows = new ArrayList<>();
+    
+    for (int i = 0; i < count; i++) {
+      Object []values = new Object[6];
+      
+      values[0] = "g" + (i % 7);
+      
+      for (int j = 1; j < values.length; j++) {
+        values[j] = (long) ((i * 37) % 101);
+      }
+      
+      rows.add(new CursorValues(values, values.length, i, 0, 0));
+    }
+    
+    return rows;
+  }
+  
+  /**
+   * Splits the rows among the pods and returns each pod's partial result.
+   */
+  private List<Iterable<Object[]>> partials(SelectReduce reduce,
+                                            List<Cursor> rows,
+                                            int podCount)
+  {
+    List<Iterable<Object[]>> partials = new ArrayList<>();
+    
+    for (int i = 0; i < podCount; i++) {
+      List<Cursor> podRows = new ArrayList<>();
+      
+      for (int j = i; j < rows.size(); j += podCount) {
+        podRows.add(rows.get(j));
+      }
+      
+      partials.add(reduce.partial(podRows));
+    }
+    
+    return partials;
+  }
+  
+  private List<List<Object>> toList(Iterable<Cursor> cursors)
+  {
+    List<List<Object>> list = new ArrayList<>();
+    
+    for (Cursor cursor : cursors) {
+      CursorValues row = (CursorValues) cursor;
+      List<Object> values = new ArrayList<>();
+      
+      for (int i = 0; i < 6 && i < cursor.getColumnCount(); i++) {
+        values.add(row.getValue(i));
+      }
+      
+      values.add(cursor.getVersion());
+      
+      list.add(values);
+    }
+    
+    return list;
+  }
+}
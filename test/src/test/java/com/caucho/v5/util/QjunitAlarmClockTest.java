@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * AlarmClock timing wheel, driven by an explicit test clock.
+ */
+public class QjunitAlarmClockTest
+{
+  private static final long SECOND = 1000L;
+  private static final long MINUTE = 60 * SECOND;
+  private static final long HOUR = 60 * MINUTE;
+  private static final long DAY = 24 * HOUR;
+
+  private AlarmClock _clock;
+
+  // wake times stay ahead of the real clock, so dispatch doesn't log
+  // them as slow alarms
+  private long _start;
+
+  private long _now;
+  private long _next;
+
+  private final Map<String,Long> _fired = new HashMap<>();
+
+  @Before
+  public void before()
+  {
+    _clock = new AlarmClock();
+    _fired.clear();
+
+    _start = CurrentTime.currentTime();
+    _now = _start;
+    _next = _clock.extractAlarm(_now, true);
+  }
+
+  @Test
+  public void fireOnTime()
+  {
+    Alarm a = alarm("a");
+    Alarm b = alarm("b");
+
+    queue(a, 10);
+    queue(b, 900);
+
+    advance(9);
+    Assert.assertFalse(_fired.containsKey("a"));
+
+    advance(1);
+    Assert.assertEquals(_start + 10, fired("a"));
+
+    advance(1000);
+    Assert.assertEquals(_start + 900, fired("b"));
+  }
+
+  @Test
+  public void cascade()
+  {
+    // one alarm for each level of the wheel
+    long []delays = { 500, 5 * SECOND, 3 * MINUTE, 45 * MINUTE,
+                      5 * HOUR, 2 * DAY };
+
+    for (int i = 0; i < delays.length; i++) {
+      queue(alarm("a" + i), delays[i]);
+    }
+
+    advance(3 * DAY);
+
+    for (int i = 0; i < delays.length; i++) {
+      Assert.assertEquals("a" + i, _start + delays[i], fired("a" + i));
+    }
+  }
+
+  @Test
+  public void beyondTopLevel()
+  {
+    // past the top level's span, the alarm is parked and requeued
+    queue(alarm("a"), 10 * DAY + 17);
+
+    advance(10 * DAY);
+    Assert.assertFalse(_fired.containsKey("a"));
+
+    advance(17);
+    Assert.assertEquals(_start + 10 * DAY + 17, fired("a"));
+  }
+
+  @Test
+  public void cancel()
+  {
+    Alarm a = alarm("a");
+    Alarm b = alarm("b");
+    Alarm c = alarm("c");
+
+    queue(a, 100);
+    queue(b, 3 * HOUR);
+    queue(c, 3 * HOUR);
+
+    _clock.dequeue(a);
+    _clock.dequeue(b);
+
+    advance(4 * HOUR);
+
+    Assert.assertFalse(_fired.containsKey("a"));
+    Assert.assertFalse(_fired.containsKey("b"));
+    Assert.assertEquals(_start + 3 * HOUR, fired("c"));
+  }
+
+  @Test
+  public void reschedule()
+  {
+    Alarm a = alarm("a");
+    Alarm b = alarm("b");
+
+    // later, from level 0 to level 2
+    queue(a, 100);
+    queue(a, 10 * MINUTE);
+
+    // earlier, from level 3 to level 0
+    queue(b, 5 * HOUR);
+    queue(b, 200);
+
+    advance(1000);
+    Assert.assertFalse(_fired.containsKey("a"));
+    Assert.assertEquals(_start + 200, fired("b"));
+
+    advance(6 * HOUR);
+    Assert.assertEquals(_start + 10 * MINUTE, fired("a"));
+    Assert.assertEquals(2, _fired.size());
+  }
+
+  @Test
+  public void clockJump()
+  {
+    queue(alarm("a"), 50);
+    queue(alarm("b"), 2 * MINUTE);
+    queue(alarm("c"), 3 * HOUR);
+    queue(alarm("d"), 2 * DAY);
+
+    // a single extract after a long pause fires everything due
+    jump(DAY);
+
+    Assert.assertEquals(_start + DAY, fired("a"));
+    Assert.assertEquals(_start + DAY, fired("b"));
+    Assert.assertEquals(_start + DAY, fired("c"));
+    Assert.assertFalse(_fired.containsKey("d"));
+
+    advance(DAY);
+    Assert.assertEquals(_start + 2 * DAY, fired("d"));
+  }
+
+  @Test
+  public void queuePast()
+  {
+    advance(1000);
+
+    // an alarm already due runs on the next extract
+    Assert.assertTrue(_clock.queueAt(alarm("a"), _now - 10));
+
+    jump(1);
+
+    Assert.assertEquals(_start + 1001, fired("a"));
+  }
+
+  private Alarm alarm(String name)
+  {
+    return new Alarm(name, alarm->{
+      Assert.assertNull(name + " fired twice", _fired.get(name));
+
+      _fired.put(name, _now);
+    });
+  }
+
+  private void queue(Alarm alarm, long delta)
+  {
+    _clock.queueAt(alarm, _now + delta);
+
+    _next = Math.min(_next, _clock.getNextAlarmTime());
+  }
+
+  private long fired(String name)
+  {
+    Long time = _fired.get(name);
+
+    Assert.assertNotNull(name + " did not fire", time);
+
+    return time;
+  }
+
+  /**
+   * Advances the clock, waking at each next alarm time like the alarm
+   * thread.
+   */
+  private void advance(long delta)
+  {
+    long target = _now + delta;
+
+    while (true) {
+      _now = Math.max(_now, Math.min(target, _next));
+      _next = _clock.extractAlarm(_now, true);
+
+      if (target <= _now && _now < _next) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Advances the clock in a single step.
+   */
+  private void jump(long delta)
+  {
+    _now += delta;
+    _next = _clock.extractAlarm(_now, true);
+  }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * LruCacheConcurrent replacement order, capacity, races and counters.
+ */
+public class QjunitLruCacheConcurrentTest
+{
+  @Test
+  public void evictionOrder()
+  {
+    // a small cache has a single segment, so the order is exact
+    LruCacheConcurrent<Integer,String> cache = new LruCacheConcurrent<>(4);
+
+    for (int i = 1; i <= 4; i++) {
+      cache.put(i, "v" + i);
+    }
+
+    // a hit moves 1 to the seen-twice list
+    Assert.assertEquals("v1", cache.get(1));
+
+    cache.put(5, "v5");
+
+    Assert.assertNull(cache.get(2));
+    Assert.assertEquals("v1", cache.get(1));
+
+    cache.put(6, "v6");
+
+    Assert.assertNull(cache.get(3));
+
+    Assert.assertEquals("v1", cache.get(1));
+    Assert.assertEquals("v4", cache.get(4));
+    Assert.assertEquals("v5", cache.get(5));
+    Assert.assertEquals("v6", cache.get(6));
+    Assert.assertEquals(4, cache.size());
+  }
+
+  @Test
+  public void scanResistance()
+  {
+    LruCacheConcurrent<String,String> cache = new LruCacheConcurrent<>(8);
+
+    for (char ch = 'a'; ch <= 'h'; ch++) {
+      cache.put(String.valueOf(ch), "v");
+    }
+
+    cache.get("a");
+    cache.get("b");
+
+    // a scan of new keys only replaces once-seen entries
+    for (int i = 0; i < 100; i++) {
+      cache.put("scan-" + i, "v");
+    }
+
+    Assert.assertEquals("v", cache.get("a"));
+    Assert.assertEquals("v", cache.get("b"));
+    Assert.assertNull(cache.get("c"));
+    Assert.assertEquals(8, cache.size());
+  }
+
+  @Test
+  public void capacityAcrossSegments()
+  {
+    for (int capacity : new int[] { 1, 31, 32, 100, 1000, 4096 }) {
+      LruCacheConcurrent<Integer,Integer> cache
+        = new LruCacheConcurrent<>(capacity);
+
+      int count = 10 * capacity + 100;
+
+      for (int i = 0; i < count; i++) {
+        cache.put(i, i);
+
+        Assert.assertTrue(cache.toString(), cache.size() <= capacity);
+      }
+
+      // every segment has seen enough keys to fill its share
+      Assert.assertEquals(cache.toString(), capacity, cache.size());
+      Assert.assertEquals(count - capacity, cache.getEvictionCount());
+
+      int present = 0;
+
+      for (Iterator<Integer> iter = cache.keys(); iter.hasNext();) {
+        Integer key = iter.next();
+
+        Assert.assertEquals(key, cache.get(key));
+        present++;
+      }
+
+      Assert.assertEquals(capacity, present);
+    }
+  }
+
+  @Test
+  public void removeAndReplace()
+  {
+    LruCacheConcurrent<String,Value> cache = new LruCacheConcurrent<>(4);
+
+    Value a = new Value();
+    Value b = new Value();
+
+    cache.put("k", a);
+
+    Assert.assertSame(a, cache.put("k", b));
+    Assert.assertEquals(1, a.removeCount());
+
+    Assert.assertSame(b, cache.putIfNew("k", new Value()));
+    Assert.assertFalse(cache.compareAndPut(a, "k", new Value()));
+    Assert.assertTrue(cache.compareAndPut(b, "k", a));
+    Assert.assertEquals(1, b.removeCount());
+
+    Assert.assertSame(a, cache.remove("k"));
+    Assert.assertEquals(2, a.removeCount());
+    Assert.assertNull(cache.remove("k"));
+    Assert.assertEquals(0, cache.size());
+
+    // null keys are stored like any other key
+    cache.put(null, b);
+    Assert.assertSame(b, cache.get(null));
+  }
+
+  @Test
+  public void removePutRace() throws Exception
+  {
+    // a single segment, so capacity checks are exact
+    int capacity = 16;
+    int keys = 64;
+
+    LruCacheConcurrent<Integer,Value> cache
+      = new LruCacheConcurrent<>(capacity);
+
+    AtomicInteger created = new AtomicInteger();
+    AtomicInteger removed = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    List<Throwable> errors = new ArrayList<>();
+
+    for (int t = 0; t < 4; t++) {
+      int seed = t;
+
+      Thread thread = new Thread(()->{
+        try {
+          Random random = new Random(seed);
+
+          for (int i = 0; i < 200000; i++) {
+            Integer key = random.nextInt(keys);
+
+            switch (random.nextInt(4)) {
+            case 0:
+              cache.put(key, new Value(removed));
+              created.incrementAndGet();
+              break;
+
+            case 1: {
+              Value value = new Value(removed);
+
+              if (cache.putIfNew(key, value) == value) {
+                created.incrementAndGet();
+              }
+              break;
+            }
+
+            case 2:
+              cache.remove(key);
+              break;
+
+            default:
+              cache.get(key);
+              break;
+            }
+          }
+        } catch (Throwable e) {
+          synchronized (errors) {
+            errors.add(e);
+          }
+        }
+      });
+
+      threads.add(thread);
+      thread.start();
+    }
+
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertEquals(new ArrayList<>(), errors);
+    Assert.assertTrue(cache.size() <= capacity);
+
+    // every stored value is either still cached or was removed once
+    Assert.assertEquals(created.get(), removed.get() + cache.size());
+
+    for (int key = 0; key < keys; key++) {
+      cache.remove(key);
+    }
+
+    Assert.assertEquals(0, cache.size());
+
+    // the LRU lists must be empty too, or new entries would be evicted
+    for (int key = 0; key < capacity; key++) {
+      cache.put(keys + key, new Value());
+    }
+
+    for (int key = 0; key < capacity; key++) {
+      Assert.assertNotNull(cache.get(keys + key));
+    }
+  }
+
+  @Test
+  public void counters()
+  {
+    LruCacheConcurrent<String,String> cache
+      = new LruCacheConcurrent<>(2, true);
+
+    Assert.assertNull(cache.get("a"));
+
+    cache.put("a", "1");
+    cache.get("a");
+    cache.get("a");
+    cache.get("b");
+
+    Assert.assertEquals(2, cache.getHitCount());
+    Assert.assertEquals(2, cache.getMissCount());
+    Assert.assertEquals(0, cache.getEvictionCount());
+
+    cache.put("b", "2");
+    cache.put("c", "3");
+
+    Assert.assertEquals(1, cache.getEvictionCount());
+
+    cache.setEnableStatistics(false);
+    cache.get("a");
+    cache.get("x");
+
+    Assert.assertEquals(2, cache.getHitCount());
+    Assert.assertEquals(2, cache.getMissCount());
+  }
+
+  /**
+   * A cache value counting its remove events.
+   */
+  private static class Value implements CacheListener
+  {
+    private final AtomicInteger _removed;
+    private final AtomicInteger _removeCount = new AtomicInteger();
+
+    Value()
+    {
+      this(new AtomicInteger());
+    }
+
+    Value(AtomicInteger removed)
+    {
+      _removed = removed;
+    }
+
+    int removeCount()
+    {
+      return _removeCount.get();
+    }
+
+    @Override
+    public void removeEvent()
+    {
+      _removeCount.incrementAndGet();
+      _removed.incrementAndGet();
+    }
+  }
+}
@@ -35,7 +35,7 @@ import java.util.Objects;
 import java.util.logging.Logger;
 
 import com.caucho.v5.config.ConfigException;
-import com.caucho.v5.util.LruCache;
+import com.caucho.v5.util.LruCacheConcurrent;
 
 /**
  * The dispatch server is responsible for building Invocations,
@@ -50,7 +50,7 @@ public class InvocationManager<I extends Invocation>
   private final int _maxURILength;
 
   // Cache of uri -> invocation maps
-  private final LruCache<Object,I> _invocationCache;
+  private final LruCacheConcurrent<Object,I> _invocationCache;
 
   private final InvocationDecoder<I> _invocationDecoder;
   
@@ -63,7 +63,7 @@ public class InvocationManager<I extends Invocation>
     
     _invocationCacheSize = builder.getCacheSize();
     
-    _invocationCache = new LruCache<Object,I>(_invocationCacheSize);
+    _invocationCache = new LruCacheConcurrent<Object,I>(_invocationCacheSize);
     _invocationCache.setEnableStatistics(true);
     
     _maxURLLength = builder.getMaxURLLength();
@@ -123,7 +123,7 @@ public class InvocationManager<I extends Invocation>
     I invocation = null;
 
     // XXX: see if can remove this
-    LruCache<Object,I> invocationCache = _invocationCache;
+    LruCacheConcurrent<Object,I> invocationCache = _invocationCache;
 
     if (invocationCache != null) {
       invocation = invocationCache.get(protocolKey);
@@ -162,7 +162,7 @@ public class InvocationManager<I extends Invocation>
     invocation = buildInvocation(invocation);
 
     // XXX: see if can remove this, and rely on the invocation cache existing
-    LruCache<Object,I> invocationCache = _invocationCache;
+    LruCacheConcurrent<Object,I> invocationCache = _invocationCache;
 
     if (invocationCache != null) {
       I oldInvocation;
@@ -196,7 +196,7 @@ public class InvocationManager<I extends Invocation>
   public void clearCache()
   {
     // XXX: see if can remove this, and rely on the invocation cache existing
-    LruCache<Object,I> invocationCache = _invocationCache;
+    LruCacheConcurrent<Object,I> invocationCache = _invocationCache;
 
     if (invocationCache != null) {
       invocationCache.clear();
@@ -208,17 +208,14 @@ public class InvocationManager<I extends Invocation>
    */
   public ArrayList<I> getInvocations()
   {
-    LruCache<Object,I> invocationCache = _invocationCache;
+    LruCacheConcurrent<Object,I> invocationCache = _invocationCache;
 
     ArrayList<I> invocationList = new ArrayList<>();
       
-    synchronized (invocationCache) {
-      Iterator<I> iter;
-      iter = invocationCache.values();
+    Iterator<I> iter = invocationCache.values();
 
-      while (iter.hasNext()) {
-        invocationList.add(iter.next());
-      }
+    while (iter.hasNext()) {
+      invocationList.add(iter.next());
     }
 
     return invocationList;
@@ -229,7 +226,7 @@ public class InvocationManager<I extends Invocation>
    */
   public long getInvocationCacheHitCount()
   {
-    LruCache<Object,I> invocationCache = _invocationCache;
+    LruCacheConcurrent<Object,I> invocationCache = _invocationCache;
 
     if (invocationCache != null) {
       return invocationCache.getHitCount();
@@ -244,7 +241,7 @@ public class InvocationManager<I extends Invocation>
    */
   public long getInvocationCacheMissCount()
   {
-    LruCache<Object,I> invocationCache = _invocationCache;
+    LruCacheConcurrent<Object,I> invocationCache = _invocationCache;
 
     if (invocationCache != null) {
       return invocationCache.getMissCount();
@@ -254,6 +251,21 @@ public class InvocationManager<I extends Invocation>
     }
   }
 
+  /**
+   * Returns the number of invocations evicted from the cache.
+   */
+  public long getInvocationCacheEvictionCount()
+  {
+    LruCacheConcurrent<Object,I> invocationCache = _invocationCache;
+
+    if (invocationCache != null) {
+      return invocationCache.getEvictionCount();
+    }
+    else {
+      return 0;
+    }
+  }
+
   /**
    * Returns true if the server has been modified and needs restarting.
    */
@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.util.Objects;
 
 import com.caucho.v5.io.OutputStreamWithBuffer;
+import com.caucho.v5.io.SendfileBuffer;
 import com.caucho.v5.io.TempBuffer;
 import com.caucho.v5.util.L10N;
 
@@ -245,6 +246,48 @@ public abstract class OutHttpApp
   {
     Objects.requireNonNull(data);
     
+    if (data instanceof SendfileBuffer) {
+      writeSendfile((SendfileBuffer) data);
+      return;
+    }
+    
+    writeCopy(data);
+  }
+  
+  /**
+   * Passes a file region directly to the connection when the protocol
+   * allows it, and copies it into the response buffer otherwise.
+   */
+  private void writeSendfile(SendfileBuffer data)
+  {
+    if (! isClosed() && ! isHead()) {
+      flush(false);
+      
+      if (isSendfile()) {
+        _contentLength += data.length();
+        
+        flush(data, false);
+        return;
+      }
+    }
+    
+    try {
+      writeCopy(data);
+    } finally {
+      data.free();
+    }
+  }
+  
+  /**
+   * True if a file region can be written to the connection as-is.
+   */
+  protected boolean isSendfile()
+  {
+    return false;
+  }
+  
+  private void writeCopy(Buffer data)
+  {
     int length = data.length();
     
     TempBuffer tBuf = TempBuffer.create();
@@ -485,6 +528,9 @@ public abstract class OutHttpApp
       boolean isCommitted() { return true; }
       boolean isClosed() { return true; }
       boolean isClosing() { return true; }
+      
+      // headers for a bodyless response like 304 are written after close
+      State toHead() { return this; }
     };
     
     boolean isHead() { return false; }
@@ -89,6 +89,16 @@ public class OutHttpApp1
     return _isChunked;
   }
   
+  /**
+   * A file region can be sent directly after the headers for a
+   * content-length response.
+   */
+  @Override
+  protected boolean isSendfile()
+  {
+    return _isHeaders && ! _isChunked;
+  }
+
   @Override
   public void upgrade()
   {
@@ -29,89 +29,150 @@
 
 package com.caucho.v5.http.protocol2;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
+import java.util.function.Consumer;
+
+import com.caucho.v5.util.L10N;
 
 /**
  * Header compression/decompression common methods and structures.
  */
 class HeaderCommon
 {
+  private static final L10N L = new L10N(HeaderCommon.class);
+  
+  /**
+   * Index of the first dynamic table entry.
+   */
+  static final int STATIC_TAIL = 62;
+  
   private static final HashMap<String,TableEntry> _tableKeyStatic;
   private static final HashMap<TableEntry,TableEntry> _tableEntryStatic;
   private static final TableEntry []_staticEntryArray;
 
-  private static final HuffmanCode []_huffmanEncoding;
-  private static final char [][]_huffmanDecodeTable;
-
-  private static HuffmanProgram _huffmanDecodeProgram;
-
-  protected Map<String,TableEntry> getTableKeyStatic()
+  private static final int []_huffmanCodes;
+  private static final int []_huffmanLengths;
+  
+  // decode state machine: 16 transitions per state, one for each nibble
+  private static final int []_huffmanDecodeTable;
+  private static final boolean []_huffmanAccept;
+  
+  private static final int HUFFMAN_EMIT = 0x100;
+  private static final int HUFFMAN_FAIL = 0x200;
+
+  /**
+   * Returns the static entry matching both key and value.
+   */
+  protected static TableEntry getEntryStatic(TableEntry key)
   {
-    return _tableKeyStatic;
+    return _tableEntryStatic.get(key);
   }
 
-  protected Map<TableEntry,TableEntry> tableEntryStatic()
+  /**
+   * Returns the first static entry with the given key.
+   */
+  protected static TableEntry getKeyStatic(String key)
   {
-    return _tableEntryStatic;
+    return _tableKeyStatic.get(key);
   }
 
-  protected TableEntry []getEntryArrayStatic()
+  protected static TableEntry []getEntryArrayStatic()
   {
     return _staticEntryArray;
   }
 
-  protected static HuffmanCode []getHuffmanTable()
+  /**
+   * Returns the encoded length of the value in bytes.
+   */
+  protected static int huffmanLength(String value)
   {
-    return _huffmanEncoding;
-  }
-
-  protected int read()
-    throws IOException
-  {
-    return -1;
+    int []lengths = _huffmanLengths;
+    
+    int strlen = value.length();
+    long bits = 0;
+    
+    for (int i = 0; i < strlen; i++) {
+      bits += lengths[value.charAt(i) & 0xff];
+    }
+    
+    return (int) ((bits + 7) >> 3);
   }
 
-  protected static int huffmanEncode(byte []buffer, int head, String value,
-                                     HuffmanCode []table)
+  /**
+   * Encodes the value into the buffer without the length prefix.
+   * 
+   * @return the offset after the encoded data
+   */
+  protected static int huffmanEncode(byte []buffer, int offset, String value)
   {
+    int []codes = _huffmanCodes;
+    int []lengths = _huffmanLengths;
+    
     int strlen = value.length();
 
     long data = 0;
     int bits = 0;
 
-    int offset = head;
-
     for (int i = 0; i < strlen; i++) {
-      int ch = value.charAt(i);
+      int ch = value.charAt(i) & 0xff;
 
-      HuffmanCode entry = table[ch];
-
-      int length = entry.getLength();
-      int code = entry.getCode();
-
-      data = (data << length) | code;
-      bits += length;
+      data = (data << lengths[ch]) | codes[ch];
+      bits += lengths[ch];
 
       while (bits >= 8) {
-        buffer[++offset] = (byte) (data >> (bits - 8));
         bits -= 8;
+        buffer[offset++] = (byte) (data >> bits);
       }
     }
 
     if (bits > 0) {
-      buffer[++offset] = (byte) ((data << (8 - bits))
-                                | (0xff >> bits));
+      // pad with the most significant bits of EOS
+      buffer[offset++] = (byte) ((data << (8 - bits)) | (0xff >> bits));
     }
 
-    int len = offset - head;
-
-    buffer[head] = (byte) (0x80 + len);
+    return offset;
+  }
 
-    return offset + 1;
+  /**
+   * Decodes a huffman string, a nibble at a time.
+   * 
+   * @return the decoded length
+   */
+  protected static int huffmanDecode(byte []src, int length, byte []dst)
+  {
+    int []table = _huffmanDecodeTable;
+    
+    int state = 0;
+    int offset = 0;
+    
+    for (int i = 0; i < length; i++) {
+      int d = src[i] & 0xff;
+      
+      int op = table[(state << 4) | (d >> 4)];
+      
+      if ((op & HUFFMAN_EMIT) != 0) {
+        dst[offset++] = (byte) op;
+      }
+      
+      int op2 = table[((op >>> 16) << 4) | (d & 0xf)];
+      
+      if ((op2 & HUFFMAN_EMIT) != 0) {
+        dst[offset++] = (byte) op2;
+      }
+      
+      if (((op | op2) & HUFFMAN_FAIL) != 0) {
+        throw new Http2ProtocolException(L.l("Invalid huffman code"));
+      }
+      
+      state = op2 >>> 16;
+    }
+    
+    if (! _huffmanAccept[state]) {
+      throw new Http2ProtocolException(L.l("Invalid huffman padding"));
+    }
+    
+    return offset;
   }
 
   private static void addTableStatic(ArrayList<TableEntry> list,
@@ -122,243 +183,23 @@ class HeaderCommon
 
     TableEntryStatic entry = new TableEntryStatic(id, key, value);
 
-    _tableKeyStatic.put(key, entry);
+    _tableKeyStatic.putIfAbsent(key, entry);
     _tableEntryStatic.put(entry, entry);
 
     list.add(entry);
   }
 
-  protected int huffmanDecode(int length, char []chars)
-    throws IOException
-  {
-    long chunk = 0;
-    int bits = 0;
-    int offset = 0;
-    char [][]charTable = _huffmanDecodeTable;
-    HuffmanProgram topProgram = _huffmanDecodeProgram;
-    int tailBits = 0;
-
-    while (true) {
-      while (bits <= 56) {
-        if (length > 0) {
-          int d = read();
-          
-          // System.out.println("  HC: 0x" + Integer.toHexString(d));
-
-          chunk = (chunk << 8) | d;
-          length--;
-
-          bits += 8;
-        }
-        else if (bits <= 0) {
-          return offset;
-        } 
-        else {
-          //int rest = (64 - bits) & ~0x7;
-          int rest = 8;
-
-          //chunk = (chunk << rest) | ((1L << rest) - 1);
-          chunk = (chunk << rest) | 0xff;
-          bits += rest;
-          tailBits += rest;
-          
-          break;
-        }
-      }
-
-      int top = (int) ((chunk >> (bits - 8)) & 0xff);
-      int index;
-
-      if (true) {
-        //System.out.println("  TOP: 0x" + Integer.toHexString(top));
-        HuffmanProgram ptr = topProgram.getChild(top);
-
-        int bitOff = 16;
-
-        while (ptr != null && ! ptr.isFinal()) {
-          int t1 = (int) ((chunk >> (bits - bitOff)) & 0xff);
-
-          ptr = ptr.getChild(t1);
-          bitOff += 8;
-        }
-
-        if (ptr == null || bits - tailBits < ptr.getLength()) {
-          return offset;
-        }
-
-        chars[offset++] = (char) ptr.getChar();
-        bits -= ptr.getLength();
-        continue;
-      }
-
-      switch (top) {
-      case 0x00: case 0x01: case 0x02: case 0x03:
-      case 0x04: case 0x05: case 0x06: case 0x07:
-      case 0x08: case 0x09: case 0x0a: case 0x0b:
-      case 0x0c: case 0x0d: case 0x0e: case 0x0f:
-
-      case 0x10: case 0x11: case 0x12: case 0x13:
-      case 0x14: case 0x15: case 0x16: case 0x17:
-      case 0x18: case 0x19: case 0x1a: case 0x1b:
-      case 0x1c: case 0x1d: case 0x1e: case 0x1f:
-        // [4] '/', 'e'
-        index = (int) (top >> 4);
-        bits -= 4;
-
-        chars[offset++] = charTable[4][index];
-        break;
-
-      case 0x20: case 0x21: case 0x22: case 0x23:
-      case 0x24: case 0x25: case 0x26: case 0x27:
-      case 0x28: case 0x29: case 0x2a: case 0x2b:
-      case 0x2c: case 0x2d: case 0x2e: case 0x2f:
-
-      case 0x30: case 0x31: case 0x32: case 0x33:
-      case 0x34: case 0x35: case 0x36: case 0x37:
-      case 0x38: case 0x39: case 0x3a: case 0x3b:
-      case 0x3c: case 0x3d: case 0x3e: case 0x3f:
-
-      case 0x40: case 0x41: case 0x42: case 0x43:
-      case 0x44: case 0x45: case 0x46: case 0x47:
-      case 0x48: case 0x49: case 0x4a: case 0x4b:
-      case 0x4c: case 0x4d: case 0x4e: case 0x4f:
-
-      case 0x50: case 0x51: case 0x52: case 0x53:
-      case 0x54: case 0x55: case 0x56: case 0x57:
-      case 0x58: case 0x59: case 0x5a: case 0x5b:
-      case 0x5c: case 0x5d: case 0x5e: case 0x5f:
-
-      case 0x60: case 0x61: case 0x62: case 0x63:
-      case 0x64: case 0x65: case 0x66: case 0x67:
-      case 0x68: case 0x69: case 0x6a: case 0x6b:
-      case 0x6c: case 0x6d: case 0x6e: case 0x6f:
-
-      case 0x70: case 0x71: case 0x72: case 0x73:
-      case 0x74: case 0x75: case 0x76: case 0x77:
-      case 0x78: case 0x79: case 0x7a: case 0x7b:
-      case 0x7c: case 0x7d: case 0x7e: case 0x7f:
-
-      case 0x80: case 0x81: case 0x82: case 0x83:
-      case 0x84: case 0x85: case 0x86: case 0x87:
-      case 0x88: case 0x89: case 0x8a: case 0x8b:
-      case 0x8c: case 0x8d: case 0x8e: case 0x8f:
-        // [5] '.', '0', '1', '2',
-        index = (int) ((top - 0x20) >> 3);
-        bits -= 5;
-
-        chars[offset++] = charTable[5][index];
-        break;
-
-      case 0x90: case 0x91: case 0x92: case 0x93:
-      case 0x94: case 0x95: case 0x96: case 0x97:
-      case 0x98: case 0x99: case 0x9a: case 0x9b:
-      case 0x9c: case 0x9d: case 0x9e: case 0x9f:
-
-      case 0xa0: case 0xa1: case 0xa2: case 0xa3:
-      case 0xa4: case 0xa5: case 0xa6: case 0xa7:
-      case 0xa8: case 0xa9: case 0xaa: case 0xab:
-      case 0xac: case 0xad: case 0xae: case 0xaf:
-
-      case 0xb0: case 0xb1: case 0xb2: case 0xb3:
-      case 0xb4: case 0xb5: case 0xb6: case 0xb7:
-      case 0xb8: case 0xb9: case 0xba: case 0xbb:
-      case 0xbc: case 0xbd: case 0xbe: case 0xbf:
-
-      case 0xc0: case 0xc1: case 0xc2: case 0xc3:
-      case 0xc4: case 0xc5: case 0xc6: case 0xc7:
-      case 0xc8: case 0xc9: case 0xca: case 0xcb:
-      case 0xcc: case 0xcd: case 0xce: case 0xcf:
-
-      case 0xd0: case 0xd1: case 0xd2: case 0xd3:
-      case 0xd4: case 0xd5: case 0xd6: case 0xd7:
-      case 0xd8: case 0xd9: case 0xda: case 0xdb:
-        // [6] '%' ... 'w'
-        index = (int) ((top - 0x90) >> 2);
-        bits -= 6;
-
-        chars[offset++] = charTable[6][index];
-        break;
-
-      case 0xdc: case 0xdd: case 0xde: case 0xdf:
-
-      case 0xe0: case 0xe1: case 0xe2: case 0xe3:
-      case 0xe4: case 0xe5: case 0xe6: case 0xe7:
-        // [7]
-        index = (int) ((top - 0xdc) >> 1);
-        bits -= 7;
-
-        chars[offset++] = charTable[7][index];
-        break;
-
-      case 0xe8: case 0xe9: case 0xea: case 0xeb:
-      case 0xec: case 0xed: case 0xee: case 0xef:
-
-      case 0xf0: case 0xf1: case 0xf2: case 0xf3:
-      case 0xf4: case 0xf5:
-        // [8]
-        index = (int) (top - 0xe8);
-        bits -= 8;
-
-        chars[offset++] = charTable[8][index];
-        break;
-
-      case 0xf6: case 0xf7: case 0xf8: case 0xf9:
-      case 0xfa: case 0xfb: case 0xfc: case 0xfd:
-        // [9]
-
-      case 0xfe:
-        // [9-10]
-
-      case 0xff:
-        // [10 - 27]
-
-      {
-        HuffmanProgram ptr = topProgram.getChild(top);
-
-        int bitOff = 16;
-
-        while (ptr != null && ! ptr.isFinal()) {
-          int t1 = (int) ((chunk >> (bits - bitOff)) & 0xff);
-
-          ptr = ptr.getChild(t1);
-          bitOff += 8;
-        }
-
-        if (ptr == null || bits - tailBits < ptr.getLength()) {
-          return offset;
-        }
-
-        chars[offset++] = (char) ptr.getChar();
-        bits -= ptr.getLength();
-        break;
-      }
-      }
-    }
-  }
-
   static class TableEntry {
     private long _sequence;
     private String _key;
     private String _value;
 
     private int _hashCode;
-    
-    //private long _reference;
-    
-    // used for static
-    private TableEntry _next;
 
     public TableEntry()
     {
     }
 
-    public TableEntry(TableEntry next)
-    {
-      update(0, next.key(), next.getValue());
-      
-      _next = next;
-    }
-
     public TableEntry(long sequence, String key, String value)
     {
       update(sequence, key, value);
@@ -374,27 +215,10 @@ class HeaderCommon
       _sequence = sequence;
     }
 
-    /*
-    public final void setReference(long reference)
-    {
-      _reference = reference;
-    }
-
-    public final long reference()
-    {
-      return _reference;
-    }
-    */
-
     public boolean isStatic()
     {
       return false;
     }
-    
-    public TableEntry getNext()
-    {
-      return _next;
-    }
 
     public void update(long sequence, String key, String value)
     {
@@ -455,196 +279,274 @@ class HeaderCommon
       return true;
     }
   }
-
-  abstract private static class HuffmanProgram {
-    private final int _ch;
-    private final int _code;
-    private final int _length;
-
-    HuffmanProgram(int ch, int code, int length)
-    {
-      _ch = ch;
-      _code = code;
-      _length = length;
-    }
-
-    public boolean isFinal()
-    {
-      return false;
-    }
-
-    final int getChar()
-    {
-      return _ch;
-    }
-
-    final int getCode()
-    {
-      return _code;
-    }
-
-    final int getLength()
-    {
-      return _length;
-    }
-
-    HuffmanProgram getChild(int i)
+  
+  /**
+   * The dynamic table as a ring buffer. Entries are addressed by their
+   * insertion sequence, so an index is computed without any search.
+   */
+  static final class TableDynamic
+  {
+    private final Consumer<TableEntry> _onEvict;
+    
+    private TableEntry []_entries = new TableEntry[64];
+    
+    private long _head;
+    private long _tail;
+    
+    private int _size;
+    private int _capacity = 4096;
+    
+    TableDynamic(Consumer<TableEntry> onEvict)
     {
-      throw new UnsupportedOperationException(getClass().getName());
+      _onEvict = onEvict;
     }
-
-    HuffmanProgram addPartial(int code)
+    
+    int capacity()
     {
-      throw new UnsupportedOperationException(getClass().getName());
+      return _capacity;
     }
-
-    void addFinal(int code, HuffmanCode entry)
+    
+    void capacity(int capacity)
     {
-      throw new UnsupportedOperationException(getClass().getName());
+      _capacity = capacity;
+      
+      evict(0);
     }
-  }
-
-  private static final class HuffmanPartial extends HuffmanProgram {
-    private HuffmanProgram []_children = new HuffmanProgram[256];
-
-    HuffmanPartial()
+    
+    int size()
     {
-      super(0, 0, 1);
+      return _size;
     }
-
-    @Override
-    HuffmanProgram getChild(int i)
+    
+    int length()
     {
-      return _children[i];
+      return (int) (_head - _tail);
     }
 
-    @Override
-    HuffmanProgram addPartial(int code)
+    /**
+     * Adds a new entry, evicting older entries as needed. An entry larger
+     * than the capacity empties the table and is not added.
+     * 
+     * @return true if the entry was added
+     */
+    boolean add(TableEntry entry)
     {
-      code = code & 0xff;
-
-      HuffmanProgram child = _children[code];
-
-      if (child == null) {
-        child = new HuffmanPartial();
-        _children[code] = child;
+      int size = entry.getSize();
+      
+      evict(size);
+      
+      if (_capacity < size) {
+        return false;
       }
-      else if (child.isFinal()) {
-        throw new IllegalStateException("0x" + Integer.toHexString(code) + " " + String.valueOf(child));
+      
+      if (_entries.length <= length()) {
+        resize();
       }
-
-      return child;
+      
+      long head = _head;
+      
+      entry.sequence(head);
+      _entries[(int) head & (_entries.length - 1)] = entry;
+      
+      _head = head + 1;
+      _size += size;
+      
+      return true;
     }
-
-    @Override
-    void addFinal(int code, HuffmanCode entry)
+    
+    /**
+     * Returns the entry at the dynamic index, where 0 is the newest entry.
+     */
+    TableEntry get(int index)
     {
-      code = code & 0xff;
-
-      HuffmanProgram child = _children[code];
-
-      if (child == null) {
-        _children[code] = entry;
-      }
-      else {
-        throw new IllegalStateException("0x" + Integer.toHexString(code) + " " + String.valueOf(child));
+      if (index < 0 || length() <= index) {
+        return null;
       }
+      
+      long seq = _head - 1 - index;
+      
+      return _entries[(int) seq & (_entries.length - 1)];
     }
-  }
-
-  static final class HuffmanCode extends HuffmanProgram {
-    HuffmanCode(int ch, int code, int length)
+    
+    /**
+     * Returns the header index of a table entry, or -1 if evicted.
+     */
+    int index(TableEntry entry)
     {
-      super(ch, code, length);
+      long seq = entry.sequence();
+      
+      if (seq < _tail || _head <= seq) {
+        return -1;
+      }
+      
+      return STATIC_TAIL + (int) (_head - 1 - seq);
     }
-
-    @Override
-    public final boolean isFinal()
+    
+    private void evict(int size)
     {
-      return true;
+      TableEntry []entries = _entries;
+      int mask = entries.length - 1;
+      
+      while (_tail < _head && _capacity < _size + size) {
+        int i = (int) _tail & mask;
+        
+        TableEntry entry = entries[i];
+        entries[i] = null;
+        
+        _tail++;
+        _size -= entry.getSize();
+        
+        if (_onEvict != null) {
+          _onEvict.accept(entry);
+        }
+      }
     }
-
-    @Override
-    public String toString()
+    
+    private void resize()
     {
-      return (getClass().getSimpleName()
-          + "[0x" + Integer.toHexString(getChar()) + "(" + (int) getChar() + ")"
-          + ",0x" + Integer.toHexString(getCode())
-          + "," + getLength() + "]");
+      TableEntry []oldEntries = _entries;
+      TableEntry []entries = new TableEntry[2 * oldEntries.length];
+      
+      int oldMask = oldEntries.length - 1;
+      int mask = entries.length - 1;
+      
+      for (long seq = _tail; seq < _head; seq++) {
+        entries[(int) seq & mask] = oldEntries[(int) seq & oldMask];
+      }
+      
+      _entries = entries;
     }
   }
 
+  /**
+   * Builds the huffman encoding table and the nibble-driven decoding
+   * state machine from the code list.
+   */
   static class HuffmanBuilder {
-    private ArrayList<ArrayList<Character>> _decoder = new ArrayList<>();
-    private HuffmanPartial _top = new HuffmanPartial();
-    private HuffmanCode []_encode = new HuffmanCode[256];
+    private int []_codes = new int[256];
+    private int []_lengths = new int[256];
+    
+    // tree nodes: children are a node id, or ~ch for a leaf
+    private ArrayList<int[]> _nodes = new ArrayList<>();
+    private ArrayList<Integer> _depths = new ArrayList<>();
+    private ArrayList<Boolean> _ones = new ArrayList<>();
+    
+    private static final int NONE = Integer.MIN_VALUE;
+    
+    HuffmanBuilder()
+    {
+      addNode(0, true);
+    }
 
     void add(int ch, int code, int length)
     {
-      try {
-        HuffmanCode entry = new HuffmanCode(ch, code, length);
-        _encode[ch] = entry;
-
-        while (_decoder.size() <= length) {
-          _decoder.add(new ArrayList<Character>());
+      _codes[ch] = code;
+      _lengths[ch] = length;
+      
+      int node = 0;
+      
+      for (int i = length - 1; i >= 0; i--) {
+        int bit = (code >> i) & 1;
+        int []children = _nodes.get(node);
+        
+        if (i == 0) {
+          if (children[bit] != NONE) {
+            throw new IllegalStateException(L.l("duplicate huffman code for 0x{0}",
+                                                Integer.toHexString(ch)));
+          }
+          
+          children[bit] = ~ch;
         }
-
-        ArrayList<Character> charList = _decoder.get(length);
-        charList.add((char) ch);
-
-        HuffmanProgram ptr = _top;
-        int codePtr = code;
-
-        while (length > 8) {
-          int op = codePtr >> (length - 8);
-
-          ptr = ptr.addPartial(op);
-          length -= 8;
+        else if (children[bit] == NONE) {
+          int depth = _depths.get(node) + 1;
+          boolean isOnes = _ones.get(node) && bit == 1;
+          
+          int child = addNode(depth, isOnes);
+          
+          _nodes.get(node)[bit] = child;
+          node = child;
         }
-
-        codePtr = (codePtr << (8 - length)) & 0xff;
-
-        int sublen = (1 << (8 - length));
-
-        for (int i = 0; i < sublen; i++) {
-          ptr.addFinal(codePtr + i, entry);
+        else if (children[bit] < 0) {
+          throw new IllegalStateException(L.l("huffman code for 0x{0} conflicts with a shorter code",
+                                              Integer.toHexString(ch)));
+        }
+        else {
+          node = children[bit];
         }
-      } catch (Exception e) {
-        System.out.println("BAD: " + (char) ch + " " + ch + " " + e);
-        try { Thread.sleep(5000); } catch (Exception e1) {}
-        throw new IllegalStateException("ch=" + ch + " (0x" + Integer.toHexString(ch) + ")"
-                                        + ",code=0x" + Integer.toHexString(code)
-                                        + ",len=" + length + ": " + e.getMessage(),
-                                        e);
       }
     }
-
-    public HuffmanCode[] getEncoder()
+    
+    private int addNode(int depth, boolean isOnes)
     {
-      return _encode;
+      _nodes.add(new int[] { NONE, NONE });
+      _depths.add(depth);
+      _ones.add(isOnes);
+      
+      return _nodes.size() - 1;
     }
 
-    public HuffmanProgram getDecodeProgram()
+    int []getCodes()
     {
-      return _top;
+      return _codes;
     }
 
-    public char[][] getDecodeTable()
+    int []getLengths()
     {
-      char [][] table = new char[_decoder.size()][];
-
-      for (int i = 0; i < _decoder.size(); i++) {
-        ArrayList<Character> charList = _decoder.get(i);
-
-        table[i] = new char[charList.size()];
-
-        for (int j = 0; j < charList.size(); j++) {
-          table[i][j] = charList.get(j);
+      return _lengths;
+    }
+    
+    /**
+     * Each transition packs the next state in the high bits, flags in
+     * the second byte and the emitted character in the low byte.
+     */
+    int []getDecodeTable()
+    {
+      int nodeCount = _nodes.size();
+      
+      int []table = new int[16 * nodeCount];
+      
+      for (int state = 0; state < nodeCount; state++) {
+        for (int nibble = 0; nibble < 16; nibble++) {
+          int node = state;
+          int op = 0;
+          
+          for (int i = 3; i >= 0; i--) {
+            int next = _nodes.get(node)[(nibble >> i) & 1];
+            
+            if (next == NONE) {
+              op = HUFFMAN_FAIL;
+              node = 0;
+              break;
+            }
+            else if (next < 0) {
+              op = HUFFMAN_EMIT | ~next;
+              node = 0;
+            }
+            else {
+              node = next;
+            }
+          }
+          
+          table[16 * state + nibble] = (node << 16) | op;
         }
       }
-
+      
       return table;
     }
+    
+    /**
+     * Valid end states: padding is fewer than 8 bits of the EOS prefix.
+     */
+    boolean []getAccept()
+    {
+      boolean []accept = new boolean[_nodes.size()];
+      
+      for (int i = 0; i < accept.length; i++) {
+        accept[i] = _depths.get(i) < 8 && _ones.get(i);
+      }
+      
+      return accept;
+    }
   }
 
   static {
@@ -738,7 +640,7 @@ class HeaderCommon
     _staticEntryArray = new TableEntry[list.size()];
     list.toArray(_staticEntryArray);
     
-    if (_staticEntryArray.length != 62) {
+    if (_staticEntryArray.length != STATIC_TAIL) {
       System.out.println("INVALID STATIC:" + _staticEntryArray);
     }
 
@@ -857,8 +759,9 @@ class HeaderCommon
       builder.add(i, 0x1ffff80 + i - 164, 25);
     }
 
-    _huffmanEncoding = builder.getEncoder();
+    _huffmanCodes = builder.getCodes();
+    _huffmanLengths = builder.getLengths();
     _huffmanDecodeTable = builder.getDecodeTable();
-    _huffmanDecodeProgram = builder.getDecodeProgram();
+    _huffmanAccept = builder.getAccept();
   }
 }
@@ -30,7 +30,7 @@
 package com.caucho.v5.http.protocol2;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
 import java.util.Objects;
 
 import com.caucho.v5.io.ReadStream;
@@ -44,31 +44,26 @@ public class InHeader extends HeaderCommon implements AutoCloseable
 {
   private static final L10N L = new L10N(InHeader.class);
   
-  private HashMap<String,TableEntry> _tableKeyMap;
-  private HashMap<TableEntry,TableEntry> _tableEntryMap;
-    
-  private int _tableCapacity = 4096;
-  private int _tableSize = 0;
+  // decoded strings are reused when the same bytes repeat across requests
+  private static final int STRING_CACHE_SIZE = 128;
+  private static final int STRING_CACHE_MAX = 256;
   
-  private TableEntry []_entries;
+  private final TableDynamic _table = new TableDynamic(null);
   
-  private TableEntry _key = new TableEntry();
+  private final byte [][]_cacheBytes = new byte[STRING_CACHE_SIZE][];
+  private final String []_cacheStrings = new String[STRING_CACHE_SIZE];
   
   private ReadStream _is;
 
   private StateHeaderIn _state;
   
-  private char []_charBuffer = new char[256];
+  private byte []_rawBuffer = new byte[256];
+  private byte []_stringBuffer = new byte[512];
   
   private int _length;
   
   private int _streamId;
   
-  private int _staticTail;
-  
-  private long _sequenceHead;
-  private long _sequenceTail;
-  
   private long _sequenceReference;
 
   private int _pad;
@@ -77,16 +72,6 @@ public class InHeader extends HeaderCommon implements AutoCloseable
   {
     Objects.requireNonNull(is);
     
-    _tableKeyMap = new HashMap<>();
-    _tableKeyMap.putAll(getTableKeyStatic());
-    
-    _tableEntryMap = new HashMap<>();
-    _tableEntryMap.putAll(tableEntryStatic());
-    
-    _staticTail = _tableEntryMap.size() + 1;
-    
-    _entries = new TableEntry[256];
-    
     _is = is;
   }
   
@@ -173,15 +158,11 @@ public class InHeader extends HeaderCommon implements AutoCloseable
       else if ((op & 0x40) != 0) {
         readHeader(request, 6, op, true, seqReference);
       }
-      else if ((op & 0x30) == 0x30) {
-        // clearReferenceSet();
-      }
-      else if ((op & 0x30) == 0x20) {
-        int capacity = readInt(4, op);
-        
-        _tableCapacity = capacity;
+      else if ((op & 0x20) != 0) {
+        // dynamic table size update
+        int capacity = readInt(5, op);
         
-        updateTableSize();
+        updateTableSize(capacity);
       }
       else if ((op & 0x10) != 0) {
         readHeader(request, 4, op, false, seqReference);
@@ -217,59 +198,13 @@ public class InHeader extends HeaderCommon implements AutoCloseable
     request.header(key, value);
     
     if (isUpdateTable) {
-      TableEntry entry = new TableEntry();
-      
-      entry.update(0, key, value);
-      
-      addEntry(entry);
+      _table.add(new TableEntry(0, key, value));
     }
   }
-
-  private void addEntry(TableEntry entry)
-  {
-    long head = _sequenceHead;
-    entry.sequence(head);
-    //entry.setReference(_sequenceReference + 1);
-
-    _sequenceHead = head + 1;
-
-    _tableEntryMap.put(entry, entry);
-
-    if (entry.getNext() == null) {
-      _tableKeyMap.put(entry.key(), entry);
-    }
-
-    _entries[(int) (head % _entries.length)] = entry;
-
-    _tableSize += entry.getSize();
-
-    updateTableSize();
-  }
-  
-  /*
-  private void clearReferenceSet()
-  {
-    for (long i = _sequenceTail; i < _sequenceHead; i++) {
-      TableEntry entry = _entries[(int) (i % _entries.length)];
-      
-      entry.setReference(0);
-    }
-  }
-  */
   
   private void completeHeaders(InRequest request,
                                long reference)
   {
-    /*
-    for (long ptr = _sequenceTail; ptr < _sequenceHead; ptr++) {
-      TableEntry entry = _entries[(int) (ptr % _entries.length)];
-      
-      if (entry.reference() == reference) {
-        entry.setReference(reference + 1);
-        request.header(entry.key(), entry.getValue());
-      }
-    }
-    */
   }
   
   private void readIndex(InRequest request, int op)
@@ -280,21 +215,6 @@ public class InHeader extends HeaderCommon implements AutoCloseable
     TableEntry entry = getEntry(index);
     
     request.header(entry.key(), entry.getValue());
-    /*
-    if (entry.reference() != _sequenceReference) {
-      request.header(entry.getKey(), entry.getValue());
-      
-      if (entry.isStatic()) {
-        TableEntry next = new TableEntry(entry);
-        
-        addEntry(next);
-      }
-    }
-    else {
-      // index entries already in the reference is a deletion.
-      entry.setReference(0);
-    }
-    */
   }
   
   private String readKeyHeader(int index)
@@ -307,60 +227,25 @@ public class InHeader extends HeaderCommon implements AutoCloseable
   
   private TableEntry getEntry(int index)
   {
-    if (index < _staticTail) {
-      return getEntryArrayStatic()[index];
-    }
-    
-    index -= _staticTail;
+    TableEntry entry;
     
-    int length = (int) (_sequenceHead - _sequenceTail);
-    
-    if (length < index) {
-      index -= length;
-
-      TableEntry []entryArray = getEntryArrayStatic();
-      
-      if (index == 0 || entryArray.length <= index) {
-        throw new Http2ProtocolException(L.l("Invalid header index '{0}'", index));
-      }
-    
-      TableEntry entry = entryArray[index];
-      
-      return entry;
+    if (index < STATIC_TAIL) {
+      entry = getEntryArrayStatic()[index];
     }
     else {
-      TableEntry []entryArray = _entries;
-      
-      long i = _sequenceHead - index;
-      
-      TableEntry entry = entryArray[(int) (i % entryArray.length)];
-      
-      return entry;
+      entry = _table.get(index - STATIC_TAIL);
     }
-  }
-  
-  private void updateTableSize()
-  {
-    while (_tableCapacity < _tableSize) {
-      removeTableEntry();
+    
+    if (entry == null) {
+      throw new Http2ProtocolException(L.l("Invalid header index '{0}'", index));
     }
+    
+    return entry;
   }
   
-  private void removeTableEntry()
+  private void updateTableSize(int capacity)
   {
-    long i = _sequenceTail++;
-    
-    TableEntry entry = _entries[(int) (i % _entries.length)];
-    //entry.setReference(0);
-    
-    _tableEntryMap.remove(entry);
-    
-    TableEntry next = entry.getNext();
-    if (next != null) {
-      _tableEntryMap.put(next, next);
-    }
-    
-    _tableSize -= entry.getSize();
+    _table.capacity(capacity);
   }
   
   private int readInt(int bits, int d)
@@ -378,6 +263,10 @@ public class InHeader extends HeaderCommon implements AutoCloseable
     
     do {
       d = read();
+      
+      if (d < 0 || m > 21) {
+        throw new Http2ProtocolException(L.l("Invalid header integer"));
+      }
     
       value += (d & 0x7f) << m;
       
@@ -390,38 +279,111 @@ public class InHeader extends HeaderCommon implements AutoCloseable
   private String readString()
     throws IOException
   {
-    int len = read();
+    int d = read();
+    
+    if (d < 0) {
+      throw new Http2ProtocolException(L.l("Unexpected end of header block"));
+    }
     
-    char []buffer = _charBuffer;
+    int len = readInt(7, d);
     
-    if ((len & 0x80) != 0) {
+    if ((d & 0x80) != 0) {
       // huffman encoded
-      len &= 0x7f;
+      byte []raw = _rawBuffer;
       
-      //System.out.println("HUFF: " + len);
-      while (buffer.length <= 2 * len) {
-        buffer = new char[2 * buffer.length];
-        _charBuffer = buffer;
+      if (raw.length < len) {
+        raw = _rawBuffer = new byte[2 * len];
       }
       
-      int strlen = huffmanDecode(len, buffer);
-      //System.out.println("HUFF2: " + strlen);
+      readAll(raw, len);
+      
+      // shortest code is 5 bits
+      int maxLength = (8 * len) / 5 + 1;
+      
+      byte []buffer = _stringBuffer;
       
-      return new String(buffer, 0, strlen);
+      if (buffer.length < maxLength) {
+        buffer = _stringBuffer = new byte[2 * maxLength];
+      }
+      
+      int strlen = huffmanDecode(raw, len, buffer);
+      
+      return toString(buffer, strlen);
     }
     else {
-      while (buffer.length <= len) {
-        buffer = new char[2 * buffer.length];
-        _charBuffer = buffer;
-      }
+      byte []buffer = _stringBuffer;
       
-      for (int i = 0; i < len; i++) {
-        buffer[i] = (char) read();
+      if (buffer.length < len) {
+        buffer = _stringBuffer = new byte[2 * len];
       }
       
-      return new String(buffer, 0, len);
+      readAll(buffer, len);
+      
+      return toString(buffer, len);
+    }
+  }
+  
+  /**
+   * Returns the string for the decoded bytes, reusing the string from an
+   * earlier request when the bytes match.
+   */
+  private String toString(byte []buffer, int length)
+  {
+    if (STRING_CACHE_MAX < length) {
+      return new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+    }
+    
+    int hash = length;
+    
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + buffer[i];
     }
     
+    int slot = (hash ^ (hash >>> 16)) & (STRING_CACHE_SIZE - 1);
+    
+    byte []cacheBytes = _cacheBytes[slot];
+    
+    if (cacheBytes != null
+        && cacheBytes.length == length
+        && isMatch(cacheBytes, buffer, length)) {
+      return _cacheStrings[slot];
+    }
+    
+    String value = new String(buffer, 0, length, StandardCharsets.ISO_8859_1);
+    
+    byte []bytes = new byte[length];
+    System.arraycopy(buffer, 0, bytes, 0, length);
+    
+    _cacheBytes[slot] = bytes;
+    _cacheStrings[slot] = value;
+    
+    return value;
+  }
+  
+  private static boolean isMatch(byte []a, byte []b, int length)
+  {
+    for (int i = length - 1; i >= 0; i--) {
+      if (a[i] != b[i]) {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  private void readAll(byte []buffer, int len)
+    throws IOException
+  {
+    if (_length < len) {
+      throw new Http2ProtocolException(L.l("Header string length {0} exceeds frame",
+                                           len));
+    }
+    
+    if (len > 0 && _is.readAll(buffer, 0, len) != len) {
+      throw new Http2ProtocolException(L.l("Unexpected end of header block"));
+    }
+    
+    _length -= len;
   }
   
   protected int readInt()
@@ -443,7 +405,6 @@ public class InHeader extends HeaderCommon implements AutoCloseable
     }
   }
   
-  @Override
   protected int read()
     throws IOException
   {
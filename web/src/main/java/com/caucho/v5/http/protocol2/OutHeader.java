@@ -43,13 +43,11 @@ import com.caucho.v5.util.BitsUtil;
  */
 public class OutHeader extends HeaderCommon implements AutoCloseable
 {
-  private HashMap<String,TableEntry> _tableKeyMap;
-  private HashMap<TableEntry,TableEntry> _tableEntryMap;
-    
-  private int _staticTail;
-  private int _tableCapacity = 4096;
+  // dynamic entries only: static entries are looked up in the shared table
+  private final HashMap<String,TableEntry> _tableKeyMap = new HashMap<>();
+  private final HashMap<TableEntry,TableEntry> _tableEntryMap = new HashMap<>();
   
-  private TableEntry []_entries;
+  private final TableDynamic _table = new TableDynamic(this::onEvict);
   
   private TableEntry _key = new TableEntry();
   
@@ -62,13 +60,6 @@ public class OutHeader extends HeaderCommon implements AutoCloseable
   private int _streamId;
   private StateHeader _state;
   
-  private long _sequence;
-  private long _tailSequence;
-  
-  private long _seqReference = 1;
-  
-  private int _tableSize = 0;
-  
   private int _priorityDependency;
   private int _priorityWeight;
   private boolean _isPriorityExclusive;
@@ -79,18 +70,6 @@ public class OutHeader extends HeaderCommon implements AutoCloseable
   {
     Objects.requireNonNull(os);
     
-    _tableKeyMap = new HashMap<>();
-    _tableKeyMap.putAll(getTableKeyStatic());
-    
-    _tableEntryMap = new HashMap<>();
-    _tableEntryMap.putAll(tableEntryStatic());
-    
-    _staticTail = _tableEntryMap.size() + 1;
-    _sequence = _staticTail;
-    _tailSequence = _sequence;
-    
-    _entries = new TableEntry[256];
-    
     _os = os;
   }
   
@@ -115,8 +94,6 @@ public class OutHeader extends HeaderCommon implements AutoCloseable
     _priorityWeight = priorityWeight;
     _isPriorityExclusive = isPriorityExclusive;
     
-    ++_seqReference;
-    
     startChunk();
     
     switch (flags) {
@@ -269,34 +246,10 @@ public class OutHeader extends HeaderCommon implements AutoCloseable
     
     entryKey.update(0, key, value);
     
-    TableEntry entry = _tableEntryMap.get(entryKey);
+    int index = getIndex(entryKey);
     
-    if (entry != null) {
-      int index = getIndex(entry);
-      
-      writeKeyValue(0x80, index);
-      /*
-      if (entry.reference() < _seqReference) {
-
-        if (entry.isStatic()) {
-          // static has a copy added
-          entry = new TableEntry(entry);
-          _tableEntryMap.put(entry, entry);
-          addEntry(entry);
-          
-          return;
-        }
-      }
-      
-      if (entry.reference() <= _seqReference) {
-        if (! entry.isStatic()) {
-          // XXX: Need to add
-          entry.setReference(_seqReference + 1);
-        }
-        
-      }
-      */
-      
+    if (index > 0) {
+      writeInt(0x80, 7, index);
       return;
     }
     
@@ -304,28 +257,12 @@ public class OutHeader extends HeaderCommon implements AutoCloseable
 
     writeString(value);
     
-    _key = new TableEntry();
-    
-    addEntry(entryKey);
-  }
-  
-  private void addEntry(TableEntry entry)
-  {
-    long seq = _sequence++;
-    entry.sequence(seq);
-    //entry.setReference(_seqReference + 1);
-    
-    _tableEntryMap.put(entry, entry);
-    
-    if (entry.getNext() == null) {
-      _tableKeyMap.put(entry.key(), entry);
+    if (_table.add(entryKey)) {
+      _key = new TableEntry();
+      
+      _tableEntryMap.put(entryKey, entryKey);
+      _tableKeyMap.put(key, entryKey);
     }
-    
-    _entries[(int) (seq % _entries.length)] = entry;
-    
-    _tableSize += entry.getSize();
-    
-    updateTableSize();
   }
   
   public void headerUnique(String key, String value)
@@ -338,13 +275,10 @@ public class OutHeader extends HeaderCommon implements AutoCloseable
     
     entryKey.update(0, key, value);
     
-    TableEntry entry = _tableEntryMap.get(entryKey);
+    int index = getIndex(entryKey);
     
-    if (entry != null) {
-      int index = getIndex(entry);
-      
-      writeKeyValue(0x80, index);
-      
+    if (index > 0) {
+      writeInt(0x80, 7, index);
       return;
     }
     
@@ -356,135 +290,147 @@ public class OutHeader extends HeaderCommon implements AutoCloseable
   public void headerNever(String key, String value)
     throws IOException
   {
-    // literal header field without incremental indexing
-    // i.e. don't add to index table
+    // literal header field never indexed
     writeKey(0x10, 4, key);
     
     writeString(value);
   }
   
-  public void clearReferenceSet()
-    throws IOException
-  {
-    write(0x30);
-    
-    /*
-    for (long i = _tailSequence; i < _sequence; i++) {
-      TableEntry entry = _entries[(int) (i % _entries.length)];
-      //entry.setReference(0);
-    }
-    */
-  }
-  
   public void setTableSize(int size)
     throws IOException
   {
     if (size < 0) {
       throw new IllegalArgumentException();
     }
-    _tableCapacity = size;
     
-    writeInt(0x20, 4, size);
+    _table.capacity(size);
     
-    updateTableSize();
+    writeInt(0x20, 5, size);
   }
   
-  private void updateTableSize()
+  private void onEvict(TableEntry entry)
   {
-    while (_tableCapacity < _tableSize) {
-      removeTableEntry();
+    // a newer entry with the same key may have replaced the mapping
+    if (_tableEntryMap.get(entry) == entry) {
+      _tableEntryMap.remove(entry);
+    }
+    
+    if (_tableKeyMap.get(entry.key()) == entry) {
+      _tableKeyMap.remove(entry.key());
     }
   }
   
-  private void removeTableEntry()
+  /**
+   * Returns the index of a matching key and value, or 0 if none.
+   */
+  private int getIndex(TableEntry entryKey)
   {
-    long i = _tailSequence++;
+    TableEntry entry = getEntryStatic(entryKey);
     
-    TableEntry entry = _entries[(int) (i % _entries.length)];
-    //entry.setReference(0);
-    
-    _tableEntryMap.remove(entry);
+    if (entry != null) {
+      return (int) entry.sequence();
+    }
     
-    TableEntry next = entry.getNext();
+    entry = _tableEntryMap.get(entryKey);
     
-    if (next != null) {
-      // restore static
-      _tableEntryMap.put(next, next);
+    if (entry != null) {
+      return _table.index(entry);
     }
     
-    _tableSize -= entry.getSize();
-  }
-  
-  private void writeKeyValue(int opcode, long seq)
-    throws IOException
-  {
-    writeInt(opcode, 7, seq);
+    return 0;
   }
   
   private void writeKey(int opcode, int bits, String key)
     throws IOException
   {
-    TableEntry entry = _tableKeyMap.get(key);
+    TableEntry entry = getKeyStatic(key);
     
-    if (entry != null
-        && (entry.isStatic() || _tailSequence <= entry.sequence())) {
-      int index = getIndex(entry);
-      
+    int index = 0;
+    
+    if (entry != null) {
+      index = (int) entry.sequence();
+    }
+    else if ((entry = _tableKeyMap.get(key)) != null) {
+      index = _table.index(entry);
+    }
+    
+    if (index > 0) {
       writeInt(opcode, bits, index);
     }
     else {
-      write((byte) opcode);
+      write(opcode);
       
       writeString(key);
     }
   }
   
-  private int getIndex(TableEntry entry)
-  {
-    if (entry.isStatic()) {
-      return (int) entry.sequence();
-    }
-    else {
-      return (int) (_sequence - entry.sequence()) + _staticTail; // XXX: need mod
-    }
-  }
-  
-  private void writeString(String value)
+  /**
+   * Writes a string literal with its length prefix.
+   */
+  protected void writeString(String value)
     throws IOException
   {
     int strlen = value.length();
     
+    writeInt(0x00, 7, strlen);
+    
     int offset = _offset;
     byte []buffer = _buffer;
     int bufferLength = buffer.length;
     
-    if (bufferLength < offset + 4 + strlen) {
+    int i = 0;
+    
+    while (true) {
+      int end = Math.min(offset + strlen - i, bufferLength);
+      
+      while (offset < end) {
+        buffer[offset++] = (byte) value.charAt(i++);
+      }
+      
+      if (i == strlen) {
+        _offset = offset;
+        return;
+      }
+      
       offset = flushChunk(offset);
       buffer = _buffer;
     }
-    
-    _offset = writeStringImpl(buffer, offset, value, strlen);
   }
   
-  protected int writeStringImpl(byte []buffer, int offset, 
-                                String value, int strlen)
+  /**
+   * Writes a huffman-encoded string literal with its length prefix.
+   */
+  protected void writeStringHuffman(String value, int length)
     throws IOException
   {
-    int bufferLength = buffer.length;
+    writeInt(0x80, 7, length);
     
-    buffer[offset++] = (byte) strlen;
+    int offset = _offset;
+    byte []buffer = _buffer;
+    
+    if (offset + length <= buffer.length) {
+      _offset = huffmanEncode(buffer, offset, value);
+      return;
+    }
+    
+    // encoding crosses a frame: encode aside and copy in chunks
+    byte []data = new byte[length];
+    
+    huffmanEncode(data, 0, value);
     
     int i = 0;
     
     while (true) {
-      int end = Math.min(offset + strlen - i, bufferLength);
+      int sublen = Math.min(length - i, buffer.length - offset);
       
-      while (offset < end) {
-        buffer[offset++] = (byte) value.charAt(i++);
-      }
+      System.arraycopy(data, i, buffer, offset, sublen);
+      
+      offset += sublen;
+      i += sublen;
       
-      if (offset < bufferLength) {
-        return offset;
+      if (i == length) {
+        _offset = offset;
+        return;
       }
       
       offset = flushChunk(offset);
@@ -497,13 +443,11 @@ public class OutHeader extends HeaderCommon implements AutoCloseable
   {
     int mask = (1 << bits) - 1;
     
-    if ((mask & value) == value) {
-      int d = (int) (opcode + value);
-        
-      write(d);
+    if (value < mask) {
+      write((int) (opcode + value));
     }
     else {
-      write((int) (opcode + mask));
+      write(opcode + mask);
       
       value -= mask;
       while (value >= 0x80) {
@@ -548,26 +492,6 @@ public class OutHeader extends HeaderCommon implements AutoCloseable
   public void flush()
   {
   }
-
-  /**
-   * References that were not used need to be deleted.
-   */
-  /*
-  private void completeReferenceSet()
-    throws IOException
-  {
-    long reference = _seqReference;
-    
-    for (long i = _tailSequence; i < _sequence; i++) {
-      TableEntry entry = _entries[(int) (i % _entries.length)];
-      
-      if (entry.reference() == reference) {
-        int index = getIndex(entry);
-        write(0x80 + index);
-      }
-    }
-  }
-  */
   
   @Override
   public void close()
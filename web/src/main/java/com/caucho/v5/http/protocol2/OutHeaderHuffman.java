@@ -44,11 +44,20 @@ public class OutHeaderHuffman extends OutHeader
     super(os);
   }
   
+  /**
+   * Huffman-encodes the string when the encoding is shorter.
+   */
   @Override
-  protected int writeStringImpl(byte []buffer, int offset, 
-                                String value, int strlen)
+  protected void writeString(String value)
     throws IOException
   {
-    return huffmanEncode(buffer, offset, value, getHuffmanTable());
+    int length = huffmanLength(value);
+    
+    if (length < value.length()) {
+      writeStringHuffman(value, length);
+    }
+    else {
+      super.writeString(value);
+    }
   }
 }
@@ -29,12 +29,20 @@
 
 package com.caucho.v5.http.websocket;
 
+import static com.caucho.v5.websocket.io.WebSocketConstants.FLAG_FIN;
+import static com.caucho.v5.websocket.io.WebSocketConstants.FLAG_RSV1;
+import static com.caucho.v5.websocket.io.WebSocketConstants.MASK_OPCODE;
+import static com.caucho.v5.websocket.io.WebSocketConstants.OP_CLOSE;
+import static com.caucho.v5.websocket.io.WebSocketConstants.OP_CONT;
+
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 
 import com.caucho.v5.io.TempBuffer;
 import com.caucho.v5.util.L10N;
 import com.caucho.v5.util.Utf8Util;
 import com.caucho.v5.websocket.io.MessageState;
+import com.caucho.v5.websocket.io.WebSocketDeflate;
 
 import io.baratine.io.Buffer;
 import io.baratine.web.WebSocketClose;
@@ -50,11 +58,22 @@ public class FrameOut<T,S>
   private TempBuffer _payload = TempBuffer.create();
   private MessageState _state = MessageState.IDLE;
 
+  private WebSocketDeflate _deflate;
+  private boolean _isCompressed;
+
   public FrameOut(WebSocketBase<T,S> ws)
   {
     _ws = ws;
   }
 
+  /**
+   * Enables permessage-deflate for outgoing messages.
+   */
+  public void deflate(WebSocketDeflate deflate)
+  {
+    _deflate = deflate;
+  }
+
   public void write(byte[] buffer, int offset, int length, boolean isFinal)
   {
     int end = offset + length;
@@ -217,7 +236,13 @@ public class FrameOut<T,S>
       _state = _state.toFinal();
     }
 
-    byte[] header = createHeader(_state.code(), isFinal);
+    int code = _state.code();
+
+    if (_deflate != null && (code & MASK_OPCODE) < OP_CLOSE) {
+      code = deflate(code, isFinal);
+    }
+
+    byte[] header = createHeader(code, _payload.length());
 
     if (isFinal) {
       _state = _state.toIdle();
@@ -229,11 +254,79 @@ public class FrameOut<T,S>
     return new FrameOutBuffer(header, _payload);
   }
 
-  private byte[] createHeader(int opCode, boolean isFinal)
+  /**
+   * Compresses the payload of a data frame, returning the frame's code.
+   *
+   * The first frame decides for the whole message and carries RSV1.
+   * Output that overflows a buffer is sent as extra fragments.
+   */
+  private int deflate(int code, boolean isFinal)
   {
-    byte[] header;
+    boolean isFirst = (code & MASK_OPCODE) != OP_CONT;
+
+    if (isFirst) {
+      _isCompressed = ! isFinal || _deflate.isCompress(_payload.length());
+    }
+
+    if (! _isCompressed) {
+      return code;
+    }
+
+    if (isFirst) {
+      code |= FLAG_RSV1;
+    }
+
+    TempBuffer payload = _payload;
+    Deflater deflater = _deflate.deflater();
+
+    deflater.setInput(payload.buffer(), 0, payload.length());
+
+    TempBuffer out = TempBuffer.create();
+
+    while (true) {
+      int length = out.length();
 
-    long len = _payload.length();
+      length += deflater.deflate(out.buffer(), length, out.capacity() - length,
+                                 Deflater.SYNC_FLUSH);
+
+      out.length(length);
+
+      if (length < out.capacity()) {
+        break;
+      }
+
+      // keep the tail in the last buffer, because it's stripped from
+      // the final frame
+      int tail = length - WebSocketDeflate.TAIL_LENGTH;
+
+      TempBuffer next = TempBuffer.create();
+      next.write(out.buffer(), tail, WebSocketDeflate.TAIL_LENGTH);
+      out.length(tail);
+
+      byte []header = createHeader(code & ~FLAG_FIN, tail);
+      _ws.send(new FrameOutBuffer(header, out));
+
+      code = (code & FLAG_FIN) | OP_CONT;
+      out = next;
+    }
+
+    if (isFinal) {
+      out.length(out.length() - WebSocketDeflate.TAIL_LENGTH);
+
+      if (_deflate.isDeflateReset()) {
+        deflater.reset();
+      }
+    }
+
+    payload.free();
+    _payload = out;
+
+    return code;
+  }
+
+  private byte[] createHeader(int opCode, long len)
+  {
+    byte[] header;
 
     if (len <= 0x7d) {
       header = new byte[2];
@@ -48,6 +48,7 @@ import com.caucho.v5.web.webapp.RequestBaratineImpl;
 import com.caucho.v5.websocket.io.FrameIn;
 import com.caucho.v5.websocket.io.WebSocketBaratine;
 import com.caucho.v5.websocket.io.WebSocketConstants;
+import com.caucho.v5.websocket.io.WebSocketDeflate;
 
 import io.baratine.io.Buffer;
 import io.baratine.service.ServiceRef;
@@ -216,6 +217,12 @@ public class WebSocketBaratineImpl<T,S>
       serverExtensionList.add("x-unmasked");
     }
 
+    WebSocketDeflate deflate = WebSocketDeflate.negotiateServer(extensions);
+
+    if (deflate != null) {
+      serverExtensionList.add(deflate.responseHeader());
+    }
+
     req.status(HttpStatus.SWITCHING_PROTOCOLS);//, "Switching Protocols");
     req.header("Upgrade", "websocket");
     req.header("Connection", "Upgrade");
@@ -249,6 +256,10 @@ public class WebSocketBaratineImpl<T,S>
 
     frameInput(fIs);
 
+    if (deflate != null) {
+      deflate(deflate);
+    }
+
     // Endpoint endpoint = _endpointSkeleton.newEndpoint(_factory, paths);
     // Endpoint endpoint = wsCxt.getFactory().get();
 
@@ -394,6 +405,8 @@ public class WebSocketBaratineImpl<T,S>
   @Override
   protected void disconnect()
   {
+    super.disconnect();
+
     ConnectionHttp conn = _request.connHttp();
     
     if (conn != null) {
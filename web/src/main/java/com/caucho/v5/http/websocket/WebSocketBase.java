@@ -41,6 +41,7 @@ import com.caucho.v5.amp.ServiceRefAmp;
 import com.caucho.v5.network.port.StateConnection;
 import com.caucho.v5.util.L10N;
 import com.caucho.v5.web.webapp.RequestBaratine;
+import com.caucho.v5.websocket.io.CloseReason;
 import com.caucho.v5.websocket.io.Frame;
 import com.caucho.v5.websocket.io.Frame.FrameBinary;
 import com.caucho.v5.websocket.io.Frame.FramePing;
@@ -49,6 +50,8 @@ import com.caucho.v5.websocket.io.Frame.FrameText;
 import com.caucho.v5.websocket.io.FrameIn;
 import com.caucho.v5.websocket.io.WebSocketBaratine;
 import com.caucho.v5.websocket.io.WebSocketConstants;
+import com.caucho.v5.websocket.io.WebSocketDeflate;
+import com.caucho.v5.websocket.io.WebSocketProtocolException;
 
 import io.baratine.io.Buffer;
 import io.baratine.io.Buffers;
@@ -93,6 +96,7 @@ abstract public class WebSocketBase<T,S> implements WebSocketBaratine<S>
   private RequestBaratine _request;
 
   private FrameOut<T,S> _frameOut = new FrameOut<>(this);
+  private WebSocketDeflate _deflate;
   //private TempBuffer _tBuf;
 
   private int _opMessage;
@@ -131,6 +135,21 @@ abstract public class WebSocketBase<T,S> implements WebSocketBaratine<S>
     _fIs = fIs;
   }
 
+  /**
+   * Enables the negotiated permessage-deflate extension for both
+   * directions.
+   */
+  protected void deflate(WebSocketDeflate deflate)
+  {
+    Objects.requireNonNull(deflate);
+    Objects.requireNonNull(_fIs);
+
+    _deflate = deflate;
+
+    _fIs.deflate(deflate);
+    _frameOut.deflate(deflate);
+  }
+
   @Override
   public RequestWeb request()
   {
@@ -252,6 +271,12 @@ abstract public class WebSocketBase<T,S> implements WebSocketBaratine<S>
   {
     //_fIs.// asdf
     //_frameOut.dis
+
+    WebSocketDeflate deflate = _deflate;
+
+    if (deflate != null) {
+      deflate.close();
+    }
   }
 
   @Override
@@ -545,6 +570,21 @@ abstract public class WebSocketBase<T,S> implements WebSocketBaratine<S>
       }
 
       return true;
+    } catch (WebSocketProtocolException e) {
+      CloseReason reason = _fIs.closeReason();
+
+      if (reason == null) {
+        log.log(Level.WARNING, e.toString(), e);
+
+        return true;
+      }
+
+      log.log(Level.FINE, e.toString(), e);
+
+      close(WebSocketCloses.of(reason.getCloseCode().getCode()),
+            reason.getReasonPhrase());
+
+      return false;
     } catch (Exception e) {
       log.log(Level.WARNING, e.toString(), e);
       e.printStackTrace();
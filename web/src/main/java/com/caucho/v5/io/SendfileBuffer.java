@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.baratine.io.Buffer;
+
+/**
+ * Read-only buffer over a region of a file. A socket channel stream
+ * writes the region with FileChannel.transferTo, so the file data is not
+ * copied through the heap.
+ *
+ * The buffer owns the file channel, which is closed on free.
+ */
+public class SendfileBuffer implements Buffer
+{
+  private static final Logger log
+    = Logger.getLogger(SendfileBuffer.class.getName());
+  
+  private final FileChannel _channel;
+  private final long _end;
+  
+  private long _position;
+  
+  public SendfileBuffer(FileChannel channel, long position, int length)
+  {
+    _channel = channel;
+    _position = position;
+    _end = position + length;
+  }
+
+  @Override
+  public int length()
+  {
+    return (int) (_end - _position);
+  }
+
+  @Override
+  public Buffer set(int pos, byte[] buffer, int offset, int length)
+  {
+    throw new UnsupportedOperationException(getClass().getName());
+  }
+
+  @Override
+  public Buffer set(int pos, Buffer buffer, int offset, int length)
+  {
+    throw new UnsupportedOperationException(getClass().getName());
+  }
+
+  @Override
+  public Buffer write(byte[] buffer, int offset, int length)
+  {
+    throw new UnsupportedOperationException(getClass().getName());
+  }
+
+  @Override
+  public Buffer write(InputStream is)
+  {
+    throw new UnsupportedOperationException(getClass().getName());
+  }
+
+  @Override
+  public Buffer get(int pos, byte[] buffer, int offset, int length)
+  {
+    read(_position + pos, ByteBuffer.wrap(buffer, offset, length));
+    
+    return this;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length)
+  {
+    int sublen = Math.min(length, length());
+    
+    if (sublen <= 0) {
+      return -1;
+    }
+    
+    read(ByteBuffer.wrap(buffer, offset, sublen));
+    
+    return sublen;
+  }
+
+  @Override
+  public void read(ByteBuffer buffer)
+  {
+    int sublen = Math.min(buffer.remaining(), length());
+    
+    ByteBuffer subBuffer = buffer.slice();
+    subBuffer.limit(sublen);
+    
+    read(_position, subBuffer);
+    
+    buffer.position(buffer.position() + sublen);
+    _position += sublen;
+  }
+
+  @Override
+  public void read(OutputStream os)
+    throws IOException
+  {
+    TempBuffer tBuf = TempBuffer.create();
+    
+    try {
+      byte []buffer = tBuf.buffer();
+      int sublen;
+      
+      while ((sublen = read(buffer, 0, buffer.length)) > 0) {
+        os.write(buffer, 0, sublen);
+      }
+    } finally {
+      tBuf.free();
+    }
+  }
+  
+  /**
+   * Writes the remaining region to the channel without copying.
+   */
+  public void transferTo(WritableByteChannel out)
+    throws IOException
+  {
+    while (_position < _end) {
+      long sublen = _channel.transferTo(_position, _end - _position, out);
+      
+      if (sublen <= 0 && _channel.size() <= _position) {
+        throw new IOException("unexpected end of file: " + this);
+      }
+      
+      _position += sublen;
+    }
+  }
+  
+  private void read(long position, ByteBuffer buffer)
+  {
+    try {
+      while (buffer.hasRemaining()) {
+        int sublen = _channel.read(buffer, position);
+        
+        if (sublen < 0) {
+          throw new IOException("unexpected end of file: " + this);
+        }
+        
+        position += sublen;
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public void free()
+  {
+    try {
+      _channel.close();
+    } catch (IOException e) {
+      log.log(Level.FINER, e.toString(), e);
+    }
+  }
+  
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "[" + _position + "," + _end + "]";
+  }
+}
@@ -384,6 +384,12 @@ public class SocketChannelStream extends StreamImpl
     try {
       _needsFlush = true;
       
+      if (buffer instanceof SendfileBuffer) {
+        _totalWriteBytes += buffer.length();
+        ((SendfileBuffer) buffer).transferTo(_s);
+        return;
+      }
+      
       if (buffer.isDirect()) {
         _totalWriteBytes += buffer.length(); 
         _s.write(buffer.direct());
@@ -8,6 +8,8 @@ package com.caucho.v5.jni;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicReferenceArray;
@@ -27,7 +29,12 @@ import com.caucho.v5.network.port.PortSocket;
 import com.caucho.v5.util.CurrentTime;
 
 /**
- * Manages non-blocking socket connections.
+ * Manages non-blocking socket connections with native epoll.
+ *
+ * Connections are sharded by file descriptor across several poll
+ * threads, each with its own epoll instance, so wakeups for a large
+ * number of idle keepalive and websocket connections aren't serialized
+ * through a single thread.
  */
 public class SelectManagerJni extends PollTcpManagerBase
 {
@@ -45,6 +52,8 @@ public class SelectManagerJni extends PollTcpManagerBase
   private static final ActiveMeter _keepaliveAsyncMeter
     = MeterService.createActiveMeter("Caucho|Port|Keepalive Async");
 
+  private static final int POLL_THREAD_MAX = 8;
+
   private static int _gId;
 
   private static boolean _isEnabled = true;
@@ -58,10 +67,8 @@ public class SelectManagerJni extends PollTcpManagerBase
   // needs to be changed to match.
   private long _timeoutReapInterval;
 
-  private Thread _thread;
+  private final PollShard []_shards;
 
-  // private final long []_fdResults = new long[256];
-  private final long []_fdResults = new long[1024];
   private final AtomicReferenceArray<PollController> _connections;
   private final AtomicInteger _maxConnection = new AtomicInteger();
 
@@ -69,8 +76,6 @@ public class SelectManagerJni extends PollTcpManagerBase
 
   private final AtomicInteger _activeCount = new AtomicInteger();
 
-  private long _fd;
-
   private final Lifecycle _lifecycle = new Lifecycle();
 
   private final AtomicInteger _selectTotal = new AtomicInteger();
@@ -99,6 +104,15 @@ public class SelectManagerJni extends PollTcpManagerBase
     }
 
     _connections = new AtomicReferenceArray<>(fdMax);
+
+    int cpus = Runtime.getRuntime().availableProcessors();
+    int shardCount = Math.max(1, Math.min(POLL_THREAD_MAX, cpus / 4));
+
+    _shards = new PollShard[shardCount];
+
+    for (int i = 0; i < shardCount; i++) {
+      _shards[i] = new PollShard();
+    }
     
     if (CurrentTime.isTest()) {
       _timeoutReapInterval = 500L;
@@ -231,30 +245,47 @@ public class SelectManagerJni extends PollTcpManagerBase
       return false;
     }
 
-    _fd = createNative();
+    for (PollShard shard : _shards) {
+      shard._fd = createNative();
 
-    if (_fd == 0) {
-      _lifecycle.toDestroy();
-      log.finer(this + " is not available on this system.");
-      return false;
+      if (shard._fd == 0) {
+        destroy();
+        log.finer(this + " is not available on this system.");
+        return false;
+      }
     }
 
-    String name = "resin-select-manager-" + _gId++;
-    _thread = new Thread(new SelectTask(), name);
-    _thread.setDaemon(true);
-    _thread.setPriority(Thread.MAX_PRIORITY);
+    CountDownLatch initLatch = new CountDownLatch(_shards.length);
 
-    _thread.start();
+    for (PollShard shard : _shards) {
+      String name = "resin-select-manager-" + _gId++;
+      Thread thread = new Thread(()->runSelectTask(shard, initLatch), name);
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MAX_PRIORITY);
 
-    _lifecycle.waitForActive(2000);
+      shard._thread = thread;
+
+      thread.start();
+    }
+
+    try {
+      initLatch.await(2, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      log.log(Level.FINER, e.toString(), e);
+    }
+
+    if (! _lifecycle.toActive()) {
+      log.warning(this + " invalid starting state");
+      return false;
+    }
 
     if (log.isLoggable(Level.FINER))
       log.finer(this + " active");
 
     log.fine("Async/poll keepalive enabled with max sockets = "
-             + _selectMax);
+             + _selectMax + " poll-threads=" + _shards.length);
 
-    name = "resin-select-manager-timeout-" + _gId++;
+    String name = "resin-select-manager-timeout-" + _gId++;
     Thread timeoutThread = new Thread(new TimeoutTask(), name);
     timeoutThread.setDaemon(true);
     timeoutThread.start();
@@ -344,7 +375,7 @@ public class SelectManagerJni extends PollTcpManagerBase
       _connectionCount.incrementAndGet();
     }
 
-    int result = addNative(_fd, nativeFd, isNew);
+    int result = addNative(shard(nativeFd)._fd, nativeFd, isNew);
 
     // result < 0 would likely be a disconnect
 
@@ -358,43 +389,40 @@ public class SelectManagerJni extends PollTcpManagerBase
   }
 
   /**
-   * Running process accepting connections.
+   * Running process polling a shard's connections.
    */
-  private void runSelectTask()
+  private void runSelectTask(PollShard shard, CountDownLatch initLatch)
   {
-    if (_lifecycle.isActive() || _lifecycle.isAfterStopping()) {
-      log.warning(this + " cannot start because an instance is active");
-      return;
+    try {
+      initNative(shard._fd);
+    } finally {
+      initLatch.countDown();
     }
 
-    initNative(_fd);
-
-    synchronized (_thread) {
-      _thread.notify();
-    }
+    _lifecycle.waitForActive(2000);
 
-    if (! _lifecycle.toActive()) {
+    if (! _lifecycle.isActive()) {
       log.warning(this + " invalid starting state");
       return;
     }
 
-    runImpl();
+    runImpl(shard);
   }
 
-  private void runImpl()
+  private void runImpl(PollShard shard)
   {
     log.finer(this + " active");
 
     int interruptCount = 0;
     int exceptionCount = 0;
 
-    long []fdResults = _fdResults;
+    long []fdResults = shard._fdResults;
 
     while (_lifecycle.isActive()) {
       try {
         long selectWaitTime = 5000L;
 
-        int select = selectNative(_fd, selectWaitTime, fdResults);
+        int select = selectNative(shard._fd, selectWaitTime, fdResults);
 
         _selectTotal.addAndGet(select);
 
@@ -433,7 +461,7 @@ public class SelectManagerJni extends PollTcpManagerBase
       }
     }
 
-    _thread = null;
+    shard._thread = null;
 
     stop();
 
@@ -649,7 +677,7 @@ public class SelectManagerJni extends PollTcpManagerBase
 
     if (nativeFd > 0) {
       try {
-        removeNative(_fd, nativeFd);
+        removeNative(shard(nativeFd)._fd, nativeFd);
       } catch (Throwable e) {
         log.log(Level.WARNING, e.toString(), e);
         _lifecycle.toError();
@@ -663,6 +691,14 @@ public class SelectManagerJni extends PollTcpManagerBase
     }
   }
 
+  /**
+   * Returns the poll shard for a file descriptor.
+   */
+  private PollShard shard(int nativeFd)
+  {
+    return _shards[nativeFd % _shards.length];
+  }
+
   private void setMaxConnection(int newMax)
   {
     int oldMax;
@@ -680,19 +716,21 @@ public class SelectManagerJni extends PollTcpManagerBase
 
     _lifecycle.toDestroy();
 
-    long fd = 0;
-    synchronized (this) {
-      if (_activeCount.get() > 0)
-        return;
+    for (PollShard shard : _shards) {
+      long fd = 0;
+      synchronized (this) {
+        if (_activeCount.get() > 0)
+          return;
 
-      fd = _fd;
-      _fd = 0;
-    }
+        fd = shard._fd;
+        shard._fd = 0;
+      }
 
-    if (fd != 0) {
-      closeNative(fd);
+      if (fd != 0) {
+        closeNative(fd);
 
-      freeNative(fd);
+        freeNative(fd);
+      }
     }
   }
 
@@ -705,14 +743,18 @@ public class SelectManagerJni extends PollTcpManagerBase
   @Override
   public String toString()
   {
-    return getClass().getSimpleName() + "[max=" + _selectMax + "]";
+    return (getClass().getSimpleName()
+            + "[max=" + _selectMax + ",threads=" + _shards.length + "]");
   }
 
-  private class SelectTask implements Runnable {
-    public void run()
-    {
-      runSelectTask();
-    }
+  /**
+   * A poll thread with its own native epoll instance.
+   */
+  private static class PollShard {
+    private volatile long _fd;
+    private volatile Thread _thread;
+
+    private final long []_fdResults = new long[1024];
   }
 
   private class TimeoutTask implements Runnable {
@@ -163,6 +163,12 @@ public class ServiceBuilderWebImpl
     return this;
   }
 
+  @Override
+  public ServiceBuilder virtualWorkers(boolean isVirtual)
+  {
+    return this;
+  }
+
   @Override
   public ServiceBuilder api(Class<?> api)
   {
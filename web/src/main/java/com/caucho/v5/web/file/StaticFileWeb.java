@@ -29,33 +29,60 @@
 
 package com.caucho.v5.web.file;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 
+import com.caucho.v5.io.SendfileBuffer;
 import com.caucho.v5.io.TempBuffer;
 import com.caucho.v5.io.Vfs;
+import com.caucho.v5.util.CurrentTime;
+import com.caucho.v5.util.LruCache;
 
 import io.baratine.config.Config;
+import io.baratine.web.HttpStatus;
 import io.baratine.web.RequestWeb;
 import io.baratine.web.ServiceWeb;
 
 /**
  * Static files.
+ *
+ * Small files are cached in memory with a gzip variant for compressible
+ * types. Large files on the default file system are sent as a file region,
+ * which the connection writes with sendfile when the protocol allows it.
+ * Responses have strong ETags and Last-Modified, and conditional requests
+ * that match return 304.
  */
 public class StaticFileWeb implements ServiceWeb
 {
+  // interval between checks of a cached file for changes
+  private static final long CHECK_INTERVAL = 1000L;
+  
   private @Inject Config _config;
   private @Inject MimeTypeWeb _mimeType;
   
   private boolean _isInit;
   private Path _root;
   
+  private LruCache<String,FileEntry> _cache;
+  private long _cacheMax;
+  
   @PostConstruct
   private void init()
   {
@@ -67,6 +94,14 @@ public class StaticFileWeb implements ServiceWeb
     String root = _config.get("server.file", "classpath:/public");
     
     _root = Vfs.path(root);
+    
+    int cacheSize = _config.get("server.file.cache-size", Integer.class, 1024);
+    
+    if (cacheSize > 0) {
+      _cache = new LruCache<>(cacheSize);
+    }
+    
+    _cacheMax = _config.get("server.file.cache-max", Long.class, 64 * 1024L);
   }
   
   /**
@@ -87,39 +122,221 @@ public class StaticFileWeb implements ServiceWeb
     } else {
       pathInfo = pathInfo.substring(1);
     }
-
-    Path path = _root.resolve(pathInfo);
-    //PathImpl path = Vfs.lookup(root).lookup("./" + pathInfo);
     
-    if (Files.isDirectory(path)) {
-      path = path.resolve(_config.get("server.index", "index.html"));
+    FileEntry entry = lookup(pathInfo);
+    
+    if (entry == null) {
+      req.fail(new FileNotFoundException("file not found: " + req.uri()));
+      return;
+    }
+    
+    boolean isGzip = false;
+    
+    if (entry.gzip() != null) {
+      String acceptEncoding = req.header("accept-encoding");
+      
+      isGzip = acceptEncoding != null && acceptEncoding.indexOf("gzip") >= 0;
+      
+      req.header("vary", "accept-encoding");
     }
     
-    long len;
+    String etag = isGzip ? entry.etagGzip() : entry.etag();
+    
+    req.header("etag", etag);
+    req.header("last-modified", entry.lastModifiedText());
+    
+    if (isNotModified(req, entry, etag)) {
+      req.status(HttpStatus.NOT_MODIFIED);
+      req.ok();
+      return;
+    }
+    
+    req.header("content-type", entry.mimeType());
     
     try {
-      len = Files.size(path);
+      if (entry.data() != null) {
+        byte []data = entry.data();
+        
+        if (isGzip) {
+          data = entry.gzip();
+          req.header("content-encoding", "gzip");
+        }
+        
+        req.length(data.length);
+        req.write(data, 0, data.length);
+      }
+      else if (entry.isSendfile()) {
+        writeSendfile(req, entry);
+      }
+      else {
+        writeStream(req, entry);
+      }
     } catch (IOException e) {
-      
-      req.fail(new FileNotFoundException("file not found: " + req.uri()));
+      req.fail(e);
       return;
     }
     
-    try (InputStream is = Files.newInputStream(path)) {
-      if (is == null) {
-        req.fail(new FileNotFoundException(pathInfo));
-        return;
+    req.ok();
+  }
+  
+  /**
+   * Returns the entry for the path, revalidating a cached entry at most
+   * once per check interval.
+   */
+  private FileEntry lookup(String pathInfo)
+  {
+    LruCache<String,FileEntry> cache = _cache;
+    
+    FileEntry entry = null;
+    
+    if (cache != null) {
+      entry = cache.get(pathInfo);
+    }
+    
+    if (entry != null && entry.isValid(CurrentTime.currentTime())) {
+      return entry;
+    }
+    
+    entry = load(pathInfo);
+    
+    if (cache != null) {
+      if (entry != null) {
+        cache.put(pathInfo, entry);
       }
-
-      String mimeType = mimeType(pathInfo);
+      else {
+        cache.remove(pathInfo);
+      }
+    }
+    
+    return entry;
+  }
+  
+  private FileEntry load(String pathInfo)
+  {
+    Path path = _root.resolve(pathInfo);
+    //PathImpl path = Vfs.lookup(root).lookup("./" + pathInfo);
+    
+    if (Files.isDirectory(path)) {
+      path = path.resolve(_config.get("server.index", "index.html"));
+    }
+    
+    try {
+      long length = Files.size(path);
+      long lastModified = Files.getLastModifiedTime(path).toMillis();
+      
+      String mimeType = mimeType(path.getFileName().toString());
       
-      if (mimeType != null) {
-        req.header("content-type", mimeType);
+      if (length <= _cacheMax) {
+        byte []data = Files.readAllBytes(path);
+        
+        return new FileEntry(path, mimeType, lastModified,
+                             data, gzip(mimeType, data));
       }
       else {
-        req.header("content-type", "text/plain; charset=utf-8");
+        boolean isSendfile
+          = (path.getFileSystem() == FileSystems.getDefault()
+             && length <= Integer.MAX_VALUE);
+        
+        return new FileEntry(path, mimeType, length, lastModified, isSendfile);
+      }
+    } catch (IOException e) {
+      return null;
+    }
+  }
+  
+  /**
+   * Returns the gzip variant for compressible types if it saves space.
+   */
+  private byte []gzip(String mimeType, byte []data)
+    throws IOException
+  {
+    if (! isCompressible(mimeType) || data.length < 256) {
+      return null;
+    }
+    
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    
+    try (GZIPOutputStream gzOut = new GZIPOutputStream(bos)) {
+      gzOut.write(data);
+    }
+    
+    byte []gzip = bos.toByteArray();
+    
+    if (gzip.length < data.length - data.length / 8) {
+      return gzip;
+    }
+    else {
+      return null;
+    }
+  }
+  
+  private boolean isCompressible(String mimeType)
+  {
+    return (mimeType.startsWith("text/")
+            || mimeType.indexOf("javascript") >= 0
+            || mimeType.indexOf("json") >= 0
+            || mimeType.indexOf("xml") >= 0);
+  }
+  
+  /**
+   * Conditional GET. If-None-Match takes precedence over If-Modified-Since.
+   */
+  private boolean isNotModified(RequestWeb req, FileEntry entry, String etag)
+  {
+    String ifNoneMatch = req.header("if-none-match");
+    
+    if (ifNoneMatch != null) {
+      for (String tag : ifNoneMatch.split(",")) {
+        tag = tag.trim();
+        
+        if (tag.startsWith("W/")) {
+          tag = tag.substring(2);
+        }
+        
+        if (tag.equals(etag) || tag.equals("*")) {
+          return true;
+        }
       }
       
+      return false;
+    }
+    
+    String ifModifiedSince = req.header("if-modified-since");
+    
+    if (ifModifiedSince != null) {
+      try {
+        long time = ZonedDateTime.parse(ifModifiedSince,
+                                        DateTimeFormatter.RFC_1123_DATE_TIME)
+                                 .toInstant().toEpochMilli();
+        
+        return entry.lastModified() / 1000 <= time / 1000;
+      } catch (DateTimeParseException e) {
+        return false;
+      }
+    }
+    
+    return false;
+  }
+  
+  /**
+   * Sends a large file as a file region.
+   */
+  private void writeSendfile(RequestWeb req, FileEntry entry)
+    throws IOException
+  {
+    FileChannel channel = FileChannel.open(entry.path(),
+                                           StandardOpenOption.READ);
+    
+    req.length(entry.length());
+    req.write(new SendfileBuffer(channel, 0, (int) entry.length()));
+  }
+  
+  private void writeStream(RequestWeb req, FileEntry entry)
+    throws IOException
+  {
+    try (InputStream is = Files.newInputStream(entry.path())) {
+      long len = entry.length();
+      
       // XXX:
       if (len > 0) {
         req.length(len);
@@ -135,24 +352,25 @@ public class StaticFileWeb implements ServiceWeb
       }
       
       tBuf.free();
-    } catch (IOException e) {
-      req.fail(e);
     }
-    
-    req.ok();
   }
   
   private String mimeType(String pathInfo)
   {
     int p = pathInfo.lastIndexOf('.');
     
-    if (p < 0) {
-      return null;
-    }
+    String mimeType = null;
     
-    String ext = pathInfo.substring(p + 1);
+    if (p >= 0) {
+      mimeType = _mimeType.apply(pathInfo.substring(p + 1));
+    }
     
-    return _mimeType.apply(ext);
+    if (mimeType != null) {
+      return mimeType;
+    }
+    else {
+      return "text/plain; charset=utf-8";
+    }
   }
   
   @Override
@@ -160,4 +378,154 @@ public class StaticFileWeb implements ServiceWeb
   {
     return getClass().getSimpleName() + "[]";
   }
+  
+  /**
+   * Cached metadata for a file, with its contents for small files.
+   */
+  private static class FileEntry
+  {
+    private final Path _path;
+    private final String _mimeType;
+    private final long _length;
+    private final long _lastModified;
+    private final String _lastModifiedText;
+    
+    private final byte []_data;
+    private final byte []_gzip;
+    private final boolean _isSendfile;
+    
+    private final String _etag;
+    private final String _etagGzip;
+    
+    private volatile long _checkTime;
+    
+    FileEntry(Path path,
+              String mimeType,
+              long lastModified,
+              byte []data,
+              byte []gzip)
+    {
+      _path = path;
+      _mimeType = mimeType;
+      _length = data.length;
+      _lastModified = lastModified;
+      _data = data;
+      _gzip = gzip;
+      _isSendfile = false;
+      
+      CRC32 crc = new CRC32();
+      crc.update(data);
+      
+      String tag = Long.toHexString(_length) + "-" + Long.toHexString(crc.getValue());
+      
+      _etag = "\"" + tag + "\"";
+      _etagGzip = "\"" + tag + "-gz\"";
+      
+      _lastModifiedText = formatDate(lastModified);
+      _checkTime = CurrentTime.currentTime();
+    }
+    
+    FileEntry(Path path,
+              String mimeType,
+              long length,
+              long lastModified,
+              boolean isSendfile)
+    {
+      _path = path;
+      _mimeType = mimeType;
+      _length = length;
+      _lastModified = lastModified;
+      _data = null;
+      _gzip = null;
+      _isSendfile = isSendfile;
+      
+      _etag = ("\"" + Long.toHexString(length)
+               + "-" + Long.toHexString(lastModified) + "\"");
+      _etagGzip = _etag;
+      
+      _lastModifiedText = formatDate(lastModified);
+      _checkTime = CurrentTime.currentTime();
+    }
+    
+    private static String formatDate(long time)
+    {
+      ZonedDateTime date = ZonedDateTime.ofInstant(Instant.ofEpochMilli(time),
+                                                   ZoneOffset.UTC);
+      
+      return DateTimeFormatter.RFC_1123_DATE_TIME.format(date);
+    }
+    
+    Path path()
+    {
+      return _path;
+    }
+    
+    String mimeType()
+    {
+      return _mimeType;
+    }
+    
+    long length()
+    {
+      return _length;
+    }
+    
+    long lastModified()
+    {
+      return _lastModified;
+    }
+    
+    String lastModifiedText()
+    {
+      return _lastModifiedText;
+    }
+    
+    byte []data()
+    {
+      return _data;
+    }
+    
+    byte []gzip()
+    {
+      return _gzip;
+    }
+    
+    boolean isSendfile()
+    {
+      return _isSendfile;
+    }
+    
+    String etag()
+    {
+      return _etag;
+    }
+    
+    String etagGzip()
+    {
+      return _etagGzip;
+    }
+    
+    /**
+     * True if the file is unchanged since it was loaded.
+     */
+    boolean isValid(long now)
+    {
+      if (now < _checkTime + CHECK_INTERVAL) {
+        return true;
+      }
+      
+      try {
+        if (Files.size(_path) != _length
+            || Files.getLastModifiedTime(_path).toMillis() != _lastModified) {
+          return false;
+        }
+      } catch (IOException e) {
+        return false;
+      }
+      
+      _checkTime = now;
+      
+      return true;
+    }
+  }
 }
@@ -94,6 +94,17 @@ class FilterBeforeGzipFactory implements FilterFactory<ServiceWeb>
       }
     }
     
+    @Override
+    public void header(RequestWeb request, String key, String value)
+    {
+      // already encoded, e.g. a pre-compressed static file
+      if (key.equalsIgnoreCase("content-encoding")) {
+        _isDisable = true;
+      }
+      
+      request.header(key, value);
+    }
+    
     @Override
     public void type(RequestWeb request, String type)
     {
@@ -29,9 +29,11 @@
 
 package com.caucho.v5.web.webapp;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.caucho.v5.http.dispatch.Invocation;
@@ -59,7 +61,12 @@ public class InvocationBaratine extends Invocation
   private MultiMap<String,String> _queryMap;
 
   private String _path;
-  private String _pathInfo = "";
+  private String _pathInfo;
+  
+  // the matched route, materialized lazily into path and maps
+  private RouteMap _routeMap;
+  private String _routeUri;
+  private int _routeTail;
 
   private ViewResolver<Object> _viewResolver;
   
@@ -78,6 +85,12 @@ public class InvocationBaratine extends Invocation
     if (path != null) {
       return path;
     }
+    else if (_routeMap != null
+             && (path = _routeMap.path(_routeUri, _routeTail)) != null) {
+      _path = path;
+      
+      return path;
+    }
     else {
       return uri();
     }
@@ -99,7 +112,19 @@ public class InvocationBaratine extends Invocation
    */
   public String pathInfo()
   {
-    return _pathInfo;
+    String pathInfo = _pathInfo;
+    
+    if (pathInfo != null) {
+      return pathInfo;
+    }
+    else if (_routeMap != null) {
+      _pathInfo = pathInfo = _routeMap.pathInfo(_routeUri, _routeTail);
+      
+      return pathInfo;
+    }
+    else {
+      return "";
+    }
   }
 
   /**
@@ -117,7 +142,14 @@ public class InvocationBaratine extends Invocation
    */
   public Map<String, String> pathMap()
   {
-    return _pathMap;
+    Map<String,String> pathMap = _pathMap;
+    
+    if (pathMap == null && _routeMap != null) {
+      _pathMap = pathMap
+        = Collections.unmodifiableMap(_routeMap.params(_routeUri));
+    }
+    
+    return pathMap;
   }
   
   public void pathMap(Map<String,String> params)
@@ -129,7 +161,13 @@ public class InvocationBaratine extends Invocation
 
   public MultiMap<String, String> queryMap()
   {
-    return _queryMap;
+    MultiMap<String,String> queryMap = _queryMap;
+    
+    if (queryMap == null) {
+      _queryMap = queryMap = parseQuery(queryString());
+    }
+    
+    return queryMap;
   }
   
   public void queryMap(MultiMap<String,String> queryMap)
@@ -139,6 +177,42 @@ public class InvocationBaratine extends Invocation
     _queryMap = queryMap;
   }
   
+  /**
+   * Records the matched route. The path, path-info and path map are
+   * computed from the uri and tail offset on first use.
+   */
+  void route(RouteMap routeMap, String uri, int tail)
+  {
+    Objects.requireNonNull(routeMap);
+    Objects.requireNonNull(uri);
+    
+    _routeMap = routeMap;
+    _routeUri = uri;
+    _routeTail = tail;
+    
+    _path = null;
+    _pathInfo = null;
+    _pathMap = null;
+    _queryMap = null;
+  }
+  
+  private static MultiMap<String,String> parseQuery(String query)
+  {
+    try {
+      if (query == null) {
+        return MultiMapImpl.EMPTY_MAP;
+      }
+      
+      String enc = "utf-8";
+
+      return FormBaratine.parseQueryString(query, enc);
+    } catch (IOException e) {
+      log.log(Level.FINE, e.toString(), e);
+      
+      return MultiMapImpl.EMPTY_MAP;
+    }
+  }
+  
   public void routes(RouteBaratine []routes)
   {
     Objects.requireNonNull(routes);
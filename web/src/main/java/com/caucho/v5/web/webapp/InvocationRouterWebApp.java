@@ -39,9 +39,16 @@ import com.caucho.v5.http.dispatch.InvocationRouter;
  */
 public class InvocationRouterWebApp implements InvocationRouter<InvocationBaratine>
 {
+  private static final RouteBaratine []NOT_FOUND
+    = new RouteBaratine[] { new RouteNotFound() };
+  
   private final WebApp _webApp;
   
   private final RouteMap []_routeList;
+  private final RouteTrie _trie;
+  
+  // all routes sharing the pattern of each route map, in list order
+  private final RouteBaratine [][]_routeGroups;
   
   InvocationRouterWebApp(WebApp webApp,
                          RouteMap[]routeList)
@@ -51,6 +58,22 @@ public class InvocationRouterWebApp implements InvocationRouter<InvocationBarati
     
     _webApp = webApp;
     _routeList = routeList;
+    
+    _trie = new RouteTrie(routeList);
+    
+    _routeGroups = new RouteBaratine[routeList.length][];
+    
+    for (int i = 0; i < routeList.length; i++) {
+      ArrayList<RouteBaratine> group = new ArrayList<>();
+      
+      for (RouteMap routeMap : routeList) {
+        if (routeList[i].pattern().equals(routeMap.pattern())) {
+          group.add(routeMap.route());
+        }
+      }
+      
+      _routeGroups[i] = group.toArray(new RouteBaratine[group.size()]);
+    }
   }
   
   @Override
@@ -63,35 +86,15 @@ public class InvocationRouterWebApp implements InvocationRouter<InvocationBarati
     String uri = invocation.uri();
     String uriRel = uri.substring(prefix.length());
     
-    ArrayList<RouteBaratine> routeList = new ArrayList<>();
+    int index = _trie.find(uriRel);
     
-    String matchPattern = null;
-
-    for (RouteMap routeMap : _routeList) {
-      if (routeMap.match(invocation, uriRel)) {
-        //routeList.add(routeMap.route());
-        matchPattern = routeMap.pattern();
-        break;
-      }
-    }
-    
-    if (matchPattern != null) {
-      for (RouteMap routeMap : _routeList) {
-        if (matchPattern.equals(routeMap.pattern())) {
-          routeList.add(routeMap.route());
-        }
-      }
+    if (index >= 0 && _routeList[index].match(invocation, uriRel)) {
+      invocation.routes(_routeGroups[index]);
     }
-    
-    if (routeList.isEmpty()) {
-      routeList.add(new RouteNotFound());
+    else {
+      invocation.routes(NOT_FOUND);
     }
     
-    RouteBaratine []routes = new RouteBaratine[routeList.size()];
-    routeList.toArray(routes);
-    
-    invocation.routes(routes);
-    
     return invocation;
   }
 }
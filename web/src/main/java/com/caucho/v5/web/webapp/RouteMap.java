@@ -29,22 +29,22 @@
 
 package com.caucho.v5.web.webapp;
 
-import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import io.baratine.web.MultiMap;
-
 
 
 /**
  * A route item.
+ *
+ * The path pattern is split into '/' segments: static text, a single
+ * segment capture for '*' or '{name}', a '**' tail matching any number of
+ * segments, and a per-segment regexp for mixed segments like 'x{id}.json'.
  */
 public class RouteMap
 {
@@ -52,9 +52,9 @@ public class RouteMap
   private String _pattern;
   private RouteBaratine _route;
   
-  private Pattern _regexp;
-  private HashSet<String> _names = new HashSet<>();
+  private Segment []_segments;
   private boolean _isPathInfo;
+  private boolean _isParams;
   
   RouteMap(String path,
            RouteBaratine route)
@@ -62,65 +62,151 @@ public class RouteMap
     _pattern = path;
     _route = route;
 
-    _regexp = calculateRegexp(path);
+    _segments = parseSegments(path);
   }
 
   public String pattern()
   {
     return _pattern;
   }
+  
+  Segment []segments()
+  {
+    return _segments;
+  }
 
+  /**
+   * Matches the uri against the pattern. The hit path only records the
+   * uri and the tail offset in the invocation, which materializes the
+   * path, path-info and parameter maps on first use.
+   */
   public boolean match(InvocationBaratine invocation, String uri)
   {
-    Matcher matcher = _regexp.matcher(uri);
+    int tail = match(0, uri, 0, null);
     
-    if (matcher.matches()) {
-      Map<String,String> params = Collections.EMPTY_MAP;
-      
-      int count = matcher.groupCount();
+    if (tail < 0) {
+      return false;
+    }
+    
+    invocation.route(this, uri, tail);
+    
+    return true;
+  }
+  
+  /**
+   * The matching path of the uri, given the tail offset from the match,
+   * or null when the pattern has no path-info tail.
+   */
+  String path(String uri, int tail)
+  {
+    if (! _isPathInfo) {
+      return null;
+    }
+    else if (tail > uri.length()) {
+      return uri;
+    }
+    else {
+      return uri.substring(0, tail - 1);
+    }
+  }
+  
+  /**
+   * The path-info suffix of the uri, given the tail offset from the match.
+   */
+  String pathInfo(String uri, int tail)
+  {
+    if (! _isPathInfo || tail > uri.length()) {
+      return "";
+    }
+    else {
+      return uri.substring(tail - 1);
+    }
+  }
+  
+  /**
+   * The captured path parameters for a uri already known to match.
+   */
+  Map<String,String> params(String uri)
+  {
+    if (! _isParams) {
+      return Collections.emptyMap();
+    }
+    
+    Map<String,String> params = new HashMap<>();
+    
+    match(0, uri, 0, params);
+    
+    return params;
+  }
+  
+  /**
+   * Matches the segments starting at index against the uri starting at
+   * offset start. An offset past the uri length means all uri segments
+   * are consumed. A tail is greedy, like the '.*' it replaces.
+   *
+   * @return -1 for no match, otherwise the uri offset where the final
+   *   tail segment starts
+   */
+  private int match(int index,
+                    String uri,
+                    int start,
+                    Map<String,String> params)
+  {
+    int length = uri.length();
+    
+    if (index == _segments.length) {
+      return length < start ? start : -1;
+    }
+    
+    Segment segment = _segments[index];
+    
+    if (segment.isTail()) {
+      int count = 0;
       
-      if (_isPathInfo && count > 1) {
-        String pathInfo = matcher.group(count - 1);
-        String path = uri.substring(0, uri.length() - pathInfo.length());
-        
-        invocation.path(path);
-        invocation.pathInfo(pathInfo);
+      for (int p = start; p <= length; p = nextSegment(uri, p)) {
+        count++;
       }
       
-      if (_names.size() > 0) {
-        params = new HashMap<>();
+      for (; count >= 0; count--) {
+        int p = start;
+        
+        for (int i = 0; i < count; i++) {
+          p = nextSegment(uri, p);
+        }
         
-        for (String name : _names) {
-          params.put(name, matcher.group(name));
+        int tail = match(index + 1, uri, p, params);
+        
+        if (tail >= 0) {
+          return index == _segments.length - 1 ? start : tail;
         }
       }
       
-      invocation.pathMap(params);
-      
-      invocation.queryMap(parseQuery(invocation.queryString()));
-      
-      return true;
+      return -1;
     }
-    else {
-      return false;
+    
+    if (length < start) {
+      return -1;
     }
+    
+    int end = segmentEnd(uri, start);
+    
+    if (! segment.match(uri, start, end, params)) {
+      return -1;
+    }
+    
+    return match(index + 1, uri, end + 1, params);
   }
-
-  private MultiMap<String,String> parseQuery(String query)
+  
+  static int segmentEnd(String uri, int start)
   {
-    try {
-      if (query == null) {
-        return MultiMapImpl.EMPTY_MAP;
-      }
-      
-      String enc = "utf-8";
-
-      return FormBaratine.parseQueryString(query, enc);
-    } catch (IOException e) {
-      log.log(Level.FINE, e.toString(), e);
-      
-      return MultiMapImpl.EMPTY_MAP;
-    }
+    int end = uri.indexOf('/', start);
+    
+    return end < 0 ? uri.length() : end;
+  }
+  
+  static int nextSegment(String uri, int start)
+  {
+    return segmentEnd(uri, start) + 1;
   }
 
   public RouteBaratine route()
@@ -128,67 +214,89 @@ public class RouteMap
     return _route;
   }
   
-  private Pattern calculateRegexp(String path)
+  private Segment []parseSegments(String path)
+  {
+    ArrayList<Segment> segments = new ArrayList<>();
+    
+    int start = 0;
+    
+    while (true) {
+      int end = segmentEnd(path, start);
+      
+      segments.add(parseSegment(path, path.substring(start, end)));
+      
+      if (end == path.length()) {
+        break;
+      }
+      
+      start = end + 1;
+    }
+    
+    Segment last = segments.get(segments.size() - 1);
+    
+    // a final '/**' splits the uri into path and path-info
+    _isPathInfo = last.isTail() && segments.size() > 1;
+    
+    return segments.toArray(new Segment[segments.size()]);
+  }
+  
+  private Segment parseSegment(String path, String text)
   {
+    if (text.equals("**")) {
+      return new Segment(SegmentType.TAIL, text, null, null);
+    }
+    else if (text.indexOf("**") >= 0) {
+      throw new IllegalArgumentException(path);
+    }
+    else if (text.equals("*")) {
+      return new Segment(SegmentType.ANY, text, null, null);
+    }
+    else if (text.indexOf('*') < 0 && text.indexOf('{') < 0) {
+      return new Segment(SegmentType.STATIC, text, null, null);
+    }
+    
+    int p = text.indexOf('}');
+    
+    if (text.startsWith("{") && p == text.length() - 1) {
+      _isParams = true;
+      
+      return new Segment(SegmentType.ANY, text, null,
+                         new String[] { text.substring(1, p) });
+    }
+    
+    ArrayList<String> names = new ArrayList<>();
     StringBuilder sb = new StringBuilder();
     
-    for (int i = 0; i < path.length(); i++) {
-      char ch = path.charAt(i);
+    for (int i = 0; i < text.length(); i++) {
+      char ch = text.charAt(i);
       
       if (ch == '*') {
-        if (i + 1 < path.length() && path.charAt(i + 1) == '*') {
-          if (i > 0 && path.charAt(i - 1) != '/') {
-            throw new IllegalArgumentException(path);
-          }
-          else if (i + 2 < path.length() && path.charAt(i + 2) != '/') {
-            throw new IllegalArgumentException(path);
-          }
-          else {
-            sb.append("(.*)");
-            i++;
-          }
-        }
-        else {
-          sb.append("([^/]*)");
-        }
-      }
-      else if (ch == '/' 
-               && i + 2 < path.length()
-               && path.charAt(i + 1) == '*'
-               && path.charAt(i + 2) == '*'
-               && (i + 3 == path.length() || path.charAt(i + 3) == '/')) {
-        if (i + 3 == path.length()) {
-          sb.append("(|(/.*))");
-          
-          _isPathInfo = true;
-        }
-        else {
-          sb.append("(|(/.*))");
-        }
-        
-        i += 2;
+        sb.append("[^/]*");
       }
       else if (ch == '{') {
-        int start = i + 1;
+        int begin = i + 1;
         
-        for (; i < path.length() && path.charAt(i) != '}'; i++) {
-          
+        for (; i < text.length() && text.charAt(i) != '}'; i++) {
         }
         
-        String name = path.substring(start, i);
+        String name = text.substring(begin, i);
         
         sb.append("(?<" + name + ">[^/]*)");
         
-        _names.add(name);
+        names.add(name);
       }
       else {
-        sb.append(ch);
+        sb.append(Pattern.quote(String.valueOf(ch)));
       }
     }
     
-    String regexp = sb.toString();
+    if (names.size() > 0) {
+      _isParams = true;
+    }
     
-    return Pattern.compile(regexp);
+    return new Segment(SegmentType.REGEXP, text,
+                       Pattern.compile(sb.toString()),
+                       names.toArray(new String[names.size()]));
   }
   
   @Override
@@ -196,4 +304,97 @@ public class RouteMap
   {
     return getClass().getSimpleName() + "[" + _pattern + "," + _route + "]";
   }
+  
+  enum SegmentType {
+    STATIC,
+    ANY,
+    TAIL,
+    REGEXP;
+  }
+  
+  /**
+   * One '/' separated segment of a route pattern.
+   */
+  static final class Segment
+  {
+    private final SegmentType _type;
+    private final String _text;
+    private final Pattern _regexp;
+    private final String []_names;
+    
+    // the matcher is reset per match to keep the hit path allocation-free
+    private final ThreadLocal<Matcher> _matcher;
+    
+    Segment(SegmentType type, String text, Pattern regexp, String []names)
+    {
+      _type = type;
+      _text = text;
+      _regexp = regexp;
+      _names = names;
+      
+      if (regexp != null) {
+        _matcher = ThreadLocal.withInitial(()->regexp.matcher(""));
+      }
+      else {
+        _matcher = null;
+      }
+    }
+    
+    SegmentType type()
+    {
+      return _type;
+    }
+    
+    String text()
+    {
+      return _text;
+    }
+    
+    boolean isTail()
+    {
+      return _type == SegmentType.TAIL;
+    }
+    
+    /**
+     * Matches the uri segment between start and end, without allocating
+     * except for captures. A null params only tests the match.
+     */
+    boolean match(String uri, int start, int end, Map<String,String> params)
+    {
+      switch (_type) {
+      case STATIC:
+        return (end - start == _text.length()
+                && uri.regionMatches(start, _text, 0, _text.length()));
+        
+      case ANY:
+        if (_names != null && params != null) {
+          params.put(_names[0], uri.substring(start, end));
+        }
+        return true;
+        
+      case REGEXP:
+      {
+        Matcher matcher = _matcher.get();
+        
+        matcher.reset(uri);
+        matcher.region(start, end);
+        
+        if (! matcher.matches()) {
+          return false;
+        }
+        
+        if (params != null) {
+          for (String name : _names) {
+            params.put(name, matcher.group(name));
+          }
+        }
+        
+        return true;
+      }
+        
+      default:
+        return false;
+      }
+    }
+  }
 }
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.web.webapp;
+
+import java.util.Arrays;
+
+import com.caucho.v5.web.webapp.RouteMap.Segment;
+
+/**
+ * Segment trie over the webapp's route patterns.
+ *
+ * Static segments are looked up by hash, so a request only visits the
+ * branches its uri can match instead of every route's regexp. The trie
+ * returns the lowest matching route index, preserving the list order
+ * of the linear scan.
+ */
+class RouteTrie
+{
+  private final Node _root = new Node();
+  
+  RouteTrie(RouteMap []routeList)
+  {
+    for (int i = 0; i < routeList.length; i++) {
+      add(routeList[i].segments(), i);
+    }
+  }
+  
+  private void add(Segment []segments, int index)
+  {
+    Node node = _root;
+    node.minIndex(index);
+    
+    for (Segment segment : segments) {
+      node = node.child(segment);
+      node.minIndex(index);
+    }
+    
+    node.routeIndex(index);
+  }
+  
+  /**
+   * Returns the index of the first route matching the uri, or -1.
+   */
+  int find(String uri)
+  {
+    int index = find(_root, uri, 0, Integer.MAX_VALUE);
+    
+    return index < Integer.MAX_VALUE ? index : -1;
+  }
+  
+  private int find(Node node, String uri, int start, int best)
+  {
+    if (best <= node._minIndex) {
+      return best;
+    }
+    
+    int length = uri.length();
+    
+    if (length < start) {
+      best = Math.min(best, node._routeIndex);
+    }
+    
+    Node tail = node._tail;
+    
+    if (tail != null) {
+      // a tail consumes zero or more segments
+      for (int p = start; ; p = RouteMap.nextSegment(uri, p)) {
+        best = find(tail, uri, p, best);
+        
+        if (length < p) {
+          break;
+        }
+      }
+    }
+    
+    if (length < start) {
+      return best;
+    }
+    
+    int end = RouteMap.segmentEnd(uri, start);
+    
+    Node child = node.staticChild(uri, start, end);
+    
+    if (child != null) {
+      best = find(child, uri, end + 1, best);
+    }
+    
+    if (node._any != null) {
+      best = find(node._any, uri, end + 1, best);
+    }
+    
+    for (Node regexp : node._regexps) {
+      if (regexp._segment.match(uri, start, end, null)) {
+        best = find(regexp, uri, end + 1, best);
+      }
+    }
+    
+    return best;
+  }
+  
+  private static int hash(String text, int start, int end)
+  {
+    int hash = 0;
+    
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + text.charAt(i);
+    }
+    
+    return hash;
+  }
+  
+  private static final class Node
+  {
+    private static final Node []EMPTY = new Node[0];
+    
+    private final Segment _segment;
+    
+    private Node []_statics = EMPTY;
+    private int _staticCount;
+    
+    private Node _any;
+    private Node _tail;
+    private Node []_regexps = EMPTY;
+    
+    private int _routeIndex = Integer.MAX_VALUE;
+    private int _minIndex = Integer.MAX_VALUE;
+    
+    Node()
+    {
+      _segment = null;
+    }
+    
+    Node(Segment segment)
+    {
+      _segment = segment;
+    }
+    
+    void minIndex(int index)
+    {
+      _minIndex = Math.min(_minIndex, index);
+    }
+    
+    void routeIndex(int index)
+    {
+      _routeIndex = Math.min(_routeIndex, index);
+    }
+    
+    Node child(Segment segment)
+    {
+      switch (segment.type()) {
+      case STATIC:
+        return staticChild(segment);
+        
+      case ANY:
+        if (_any == null) {
+          _any = new Node(segment);
+        }
+        return _any;
+        
+      case TAIL:
+        if (_tail == null) {
+          _tail = new Node(segment);
+        }
+        return _tail;
+        
+      default:
+        for (Node regexp : _regexps) {
+          if (regexp._segment.text().equals(segment.text())) {
+            return regexp;
+          }
+        }
+        
+        Node regexp = new Node(segment);
+        
+        _regexps = Arrays.copyOf(_regexps, _regexps.length + 1);
+        _regexps[_regexps.length - 1] = regexp;
+        
+        return regexp;
+      }
+    }
+    
+    Node staticChild(String uri, int start, int end)
+    {
+      Node []statics = _statics;
+      
+      if (statics.length == 0) {
+        return null;
+      }
+      
+      int mask = statics.length - 1;
+      int length = end - start;
+      
+      for (int i = hash(uri, start, end) & mask; ; i = (i + 1) & mask) {
+        Node child = statics[i];
+        
+        if (child == null) {
+          return null;
+        }
+        
+        String text = child._segment.text();
+        
+        if (text.length() == length
+            && uri.regionMatches(start, text, 0, length)) {
+          return child;
+        }
+      }
+    }
+    
+    private Node staticChild(Segment segment)
+    {
+      String text = segment.text();
+      
+      Node child = staticChild(text, 0, text.length());
+      
+      if (child != null) {
+        return child;
+      }
+      
+      child = new Node(segment);
+      
+      if (_statics.length <= 2 * _staticCount) {
+        resize(Math.max(4, 4 * _staticCount));
+      }
+      
+      put(_statics, child);
+      _staticCount++;
+      
+      return child;
+    }
+    
+    private void resize(int size)
+    {
+      Node []statics = new Node[Integer.highestOneBit(size - 1) << 1];
+      
+      for (Node child : _statics) {
+        if (child != null) {
+          put(statics, child);
+        }
+      }
+      
+      _statics = statics;
+    }
+    
+    private static void put(Node []statics, Node child)
+    {
+      String text = child._segment.text();
+      int mask = statics.length - 1;
+      
+      int i = hash(text, 0, text.length()) & mask;
+      
+      while (statics[i] != null) {
+        i = (i + 1) & mask;
+      }
+      
+      statics[i] = child;
+    }
+  }
+}
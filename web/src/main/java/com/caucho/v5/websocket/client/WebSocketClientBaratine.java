@@ -51,6 +51,7 @@ import com.caucho.v5.util.L10N;
 import com.caucho.v5.websocket.WebSocketClient;
 import com.caucho.v5.websocket.io.FrameIn;
 import com.caucho.v5.websocket.io.WebSocketConstants;
+import com.caucho.v5.websocket.io.WebSocketDeflate;
 import com.caucho.v5.websocket.io.WebSocketProtocolException;
 
 import io.baratine.io.Buffer;
@@ -380,6 +381,8 @@ public class WebSocketClientBaratine<T,S> extends WebSocketBase<T,S>
     }
     */
 
+    os.print("Sec-WebSocket-Extensions: " + WebSocketDeflate.offerClient() + "\r\n");
+
     if (_preferredSubprotocols != null && _preferredSubprotocols.size() > 0) {
       StringBuilder sb = new StringBuilder();
 
@@ -438,12 +441,19 @@ public class WebSocketClientBaratine<T,S> extends WebSocketBase<T,S>
     //_webSocket = new WebSocketImplClient(_uri.getPath(), os);
 
 
+    WebSocketDeflate deflate
+      = WebSocketDeflate.negotiateClient(_headers.get("Sec-WebSocket-Extensions"));
+
     FrameIn fIs = new FrameIn();
     fIs.init(null, is);
 
     //Objects.requireNonNull(_frameIs);
     frameInput(fIs);
 
+    if (deflate != null) {
+      deflate(deflate);
+    }
+
     _threadTask = new ThreadClientTask(this, is);
 
     // static callbacks must be before the open
@@ -542,6 +552,7 @@ public class WebSocketClientBaratine<T,S> extends WebSocketBase<T,S>
 
   public void disconnect()
   {
+    super.disconnect();
   }
 
   @Override
@@ -31,10 +31,15 @@ package com.caucho.v5.websocket.io;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 import com.caucho.v5.io.ReadStream;
+import com.caucho.v5.io.StreamImpl;
+import com.caucho.v5.io.TempBuffer;
 import com.caucho.v5.util.L10N;
 import com.caucho.v5.util.Utf8Util;
 import com.caucho.v5.websocket.io.CloseReason.CloseCode;
@@ -65,6 +70,11 @@ public class FrameIn
   private static final Logger log = Logger.getLogger(FrameIn.class.getName());
   private static final L10N L = new L10N(FrameIn.class);
 
+  /**
+   * Default limit on the inflated size of a compressed message.
+   */
+  public static final long INFLATE_MAX_DEFAULT = 16L * 1024 * 1024;
+
   private static final char UTF8_ERROR = 0xfeff;
 
   private FrameListener _listener;
@@ -72,6 +82,14 @@ public class FrameIn
   private WebSocketInputStream _binaryIn;
 
   private ReadStream _is;
+  private ReadStream _socketIs;
+
+  private WebSocketDeflate _deflate;
+  private boolean _isCompressed;
+  private ReadStream _inflateIs;
+  private InflateStream _inflateStream;
+  private long _inflateMax = INFLATE_MAX_DEFAULT;
+  private long _inflateTotal;
 
   /*
   private byte []_byteBuffer;
@@ -99,6 +117,7 @@ public class FrameIn
     _listener = listener;
 
     _is = is;
+    _socketIs = is;
     /*
     _byteBuffer = is.getBuffer();
     _bufferOffset = is.getOffset();
@@ -150,6 +169,33 @@ public class FrameIn
   }
   */
 
+  /**
+   * Enables permessage-deflate for incoming messages.
+   */
+  public void deflate(WebSocketDeflate deflate)
+  {
+    _deflate = deflate;
+  }
+
+  /**
+   * Limits the inflated size of a compressed message. A larger message
+   * closes the connection with 1009 (too big).
+   */
+  public void setInflateMax(long max)
+  {
+    if (max <= 0) {
+      throw new IllegalArgumentException(L.l("inflate max must be positive: {0}",
+                                             max));
+    }
+
+    _inflateMax = max;
+  }
+
+  public long getInflateMax()
+  {
+    return _inflateMax;
+  }
+
   public WebSocketInputStream initBinary()
     throws IOException
   {
@@ -165,6 +211,9 @@ public class FrameIn
   public final boolean readFrameHeader()
     throws IOException
   {
+    // the previous frame may have been read from the inflated payload
+    _is = _socketIs;
+
     if (_is.available() <= 0) {
       return false;
     }
@@ -226,10 +275,19 @@ public class FrameIn
 
     int rsv = frame1 & 0x70;
 
-    if (rsv != 0) {
+    if (rsv == FLAG_RSV1 && _deflate != null
+        && (op == OP_TEXT || op == OP_BINARY)) {
+      // permessage-deflate marks only the first frame of a message
+      _isCompressed = true;
+      _inflateTotal = 0;
+    }
+    else if (rsv != 0) {
       fail(CloseCodes.PROTOCOL_ERROR, "illegal request");
       return false;
     }
+    else if (op == OP_TEXT || op == OP_BINARY) {
+      _isCompressed = false;
+    }
 
     _isFinal = isFinal;
 
@@ -257,13 +315,106 @@ public class FrameIn
       mask[3] = (byte) _is.read();
 
       _maskOffset = 0;
+    }
 
+    if (_isCompressed && op < OP_CLOSE) {
+      inflateFrame();
+    }
+    else if (_isMask) {
       fillMask();
     }
 
     return true;
   }
 
+  /**
+   * Inflates the current frame's payload, so the readers see the
+   * uncompressed bytes as the frame.
+   */
+  private void inflateFrame()
+    throws IOException
+  {
+    ReadStream is = _socketIs;
+    Inflater inflater = _deflate.inflater();
+
+    InflateStream inflateStream = _inflateStream;
+
+    if (inflateStream == null) {
+      _inflateStream = inflateStream = new InflateStream();
+      _inflateIs = new ReadStream();
+    }
+
+    inflateStream.clear();
+
+    // the limit covers the whole message, including continuation frames
+    long inflateMax = Math.min(_inflateMax - _inflateTotal,
+                               Integer.MAX_VALUE - 8);
+
+    inflateStream.max((int) Math.max(inflateMax, 0));
+
+    long length = _length;
+
+    try {
+      while (length > 0) {
+        if (is.length() <= is.offset() && is.fillBuffer() <= 0) {
+          throw new IOException(L.l("unexpected eof in compressed websocket frame"));
+        }
+
+        byte []buffer = is.buffer();
+        int offset = is.offset();
+        int sublen = (int) Math.min(length, is.length() - offset);
+
+        if (_isMask) {
+          byte []mask = _mask;
+          int maskOffset = _maskOffset;
+
+          for (int i = 0; i < sublen; i++) {
+            buffer[offset + i] ^= mask[(maskOffset + i) & 0x3];
+          }
+
+          _maskOffset = (maskOffset + sublen) & 0x3;
+        }
+
+        inflater.setInput(buffer, offset, sublen);
+        inflateStream.inflate(inflater);
+
+        is.offset(offset + sublen);
+        length -= sublen;
+      }
+
+      if (_isFinal) {
+        inflater.setInput(WebSocketDeflate.TAIL);
+        inflateStream.inflate(inflater);
+
+        if (_deflate.isInflateReset() || inflater.finished()) {
+          inflater.reset();
+        }
+      }
+    } catch (DataFormatException e) {
+      _length = 0;
+
+      throw new WebSocketProtocolException(L.l("invalid compressed websocket frame: {0}",
+                                               e.getMessage()));
+    } catch (InflateTooBigException e) {
+      _length = 0;
+
+      String msg = L.l("inflated websocket message exceeds {0} bytes",
+                       _inflateMax);
+
+      fail(CloseCodes.TOO_BIG, msg);
+
+      throw new WebSocketProtocolException(msg);
+    }
+
+    _inflateTotal += inflateStream.getAvailable();
+
+    _inflateIs.init(inflateStream);
+    _is = _inflateIs;
+
+    _length = inflateStream.getAvailable();
+    _isMask = false;
+  }
+
   private void fail(CloseCodes protocolError, String string)
   {
     log.warning("WebSocket fail: " + protocolError + " " + string);
@@ -869,6 +1020,100 @@ public class FrameIn
   {
     ReadStream is = _is;
     _is = null;
+    _socketIs = null;
+  }
+
+  /**
+   * Source for the inflated payload of a compressed frame.
+   */
+  private static class InflateStream extends StreamImpl
+  {
+    private byte []_buffer = new byte[TempBuffer.SIZE];
+    private int _offset;
+    private int _length;
+    private int _max = Integer.MAX_VALUE - 8;
+
+    /**
+     * Sets the most bytes the next inflate may produce.
+     */
+    void max(int max)
+    {
+      _max = max;
+    }
+
+    void clear()
+    {
+      _offset = 0;
+      _length = 0;
+
+      // don't pin the buffer from an unusually large message
+      if (_buffer.length > 8 * TempBuffer.SIZE) {
+        _buffer = new byte[TempBuffer.SIZE];
+      }
+    }
+
+    void inflate(Inflater inflater)
+      throws DataFormatException, InflateTooBigException
+    {
+      // a full buffer may hide pending output, even with no input left
+      while (! inflater.needsInput() || _length == _buffer.length) {
+        if (_length == _buffer.length) {
+          // one byte past the max detects an oversized message
+          int size = (int) Math.min(2L * _buffer.length, _max + 1L);
+
+          _buffer = Arrays.copyOf(_buffer, size);
+        }
+
+        int sublen = inflater.inflate(_buffer, _length, _buffer.length - _length);
+
+        _length += sublen;
+
+        if (_max < _length) {
+          throw new InflateTooBigException();
+        }
+
+        if (sublen == 0
+            && (inflater.finished() || inflater.needsDictionary())) {
+          return;
+        }
+      }
+    }
+
+    @Override
+    public boolean canRead()
+    {
+      return true;
+    }
+
+    @Override
+    public int read(byte []buffer, int offset, int length)
+    {
+      int sublen = Math.min(length, _length - _offset);
+
+      if (sublen <= 0) {
+        return -1;
+      }
+
+      System.arraycopy(_buffer, _offset, buffer, offset, sublen);
+
+      _offset += sublen;
+
+      return sublen;
+    }
+
+    @Override
+    public int getAvailable()
+    {
+      return _length - _offset;
+    }
+  }
+
+  /**
+   * Thrown when an inflated message exceeds its limit.
+   */
+  @SuppressWarnings("serial")
+  private static class InflateTooBigException extends Exception
+  {
   }
 
   public interface OutputStreamVisitor
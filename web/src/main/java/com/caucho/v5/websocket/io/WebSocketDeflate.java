@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 1998-2015 Caucho Technology -- all rights reserved
+ *
+ * This file is part of Baratine(TM)
+ *
+ * Each copy or derived work must preserve the copyright notice and this
+ * notice unmodified.
+ *
+ * Baratine is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * Baratine is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE, or any warranty
+ * of NON-INFRINGEMENT.  See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Baratine; if not, write to the
+ *   Free Software Foundation, Inc.
+ *   59 Temple Place, Suite 330
+ *   Boston, MA 02111-1307  USA
+ *
+ * @author Scott Ferguson
+ */
+
+package com.caucho.v5.websocket.io;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.caucho.v5.util.FreeRing;
+import com.caucho.v5.util.L10N;
+
+/**
+ * permessage-deflate extension (RFC 7692) for a single websocket.
+ *
+ * The deflater and inflater belong to the connection while it is open,
+ * because context takeover keeps the LZ77 window between messages. They
+ * return to a shared free list when the connection closes.
+ *
+ * <code><pre>
+ * Sec-WebSocket-Extensions: permessage-deflate; client_no_context_takeover
+ * </pre></code>
+ */
+public class WebSocketDeflate
+{
+  private static final L10N L = new L10N(WebSocketDeflate.class);
+
+  public static final String EXTENSION = "permessage-deflate";
+
+  private static final String SERVER_NO_CONTEXT_TAKEOVER
+    = "server_no_context_takeover";
+  private static final String CLIENT_NO_CONTEXT_TAKEOVER
+    = "client_no_context_takeover";
+  private static final String SERVER_MAX_WINDOW_BITS
+    = "server_max_window_bits";
+  private static final String CLIENT_MAX_WINDOW_BITS
+    = "client_max_window_bits";
+
+  // java.util.zip always compresses with the full 32k window
+  private static final int WINDOW_BITS = 15;
+
+  // single-frame messages smaller than this are sent uncompressed
+  private static final int MIN_LENGTH = 32;
+
+  // empty stored block that SYNC_FLUSH appends to each message
+  static final byte []TAIL = new byte[] { 0, 0, (byte) 0xff, (byte) 0xff };
+  public static final int TAIL_LENGTH = TAIL.length;
+
+  private static final FreeRing<Deflater> _freeDeflater = new FreeRing<>(64);
+  private static final FreeRing<Inflater> _freeInflater = new FreeRing<>(64);
+
+  private final boolean _isServer;
+
+  private boolean _isServerNoContextTakeover;
+  private boolean _isClientNoContextTakeover;
+
+  // accepted window bits parameters, or -1 if not given
+  private int _serverMaxWindowBits = -1;
+  private int _clientMaxWindowBits = -1;
+
+  private Deflater _deflater;
+  private Inflater _inflater;
+
+  private WebSocketDeflate(boolean isServer)
+  {
+    _isServer = isServer;
+  }
+
+  /**
+   * Selects the first acceptable permessage-deflate offer from a client's
+   * Sec-WebSocket-Extensions header, or null if none can be accepted.
+   */
+  public static WebSocketDeflate negotiateServer(String extensions)
+  {
+    if (extensions == null) {
+      return null;
+    }
+
+    for (String offer : extensions.split(",")) {
+      WebSocketDeflate deflate = new WebSocketDeflate(true);
+
+      if (deflate.parse(offer)) {
+        return deflate;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * The extension offer sent by a client.
+   *
+   * client_max_window_bits is not offered, so the server cannot limit
+   * the client's window below what java.util.zip supports.
+   */
+  public static String offerClient()
+  {
+    return EXTENSION;
+  }
+
+  /**
+   * Parses a server's Sec-WebSocket-Extensions response to the client's
+   * offer, returning null if the server declined compression.
+   */
+  public static WebSocketDeflate negotiateClient(String extensions)
+    throws WebSocketProtocolException
+  {
+    if (extensions == null) {
+      return null;
+    }
+
+    for (String response : extensions.split(",")) {
+      if (! EXTENSION.equals(extensionName(response))) {
+        continue;
+      }
+
+      WebSocketDeflate deflate = new WebSocketDeflate(false);
+
+      if (! deflate.parse(response)) {
+        throw new WebSocketProtocolException(L.l("Invalid websocket extension response '{0}'",
+                                                 response.trim()));
+      }
+
+      return deflate;
+    }
+
+    return null;
+  }
+
+  private static String extensionName(String offer)
+  {
+    int p = offer.indexOf(';');
+
+    if (p >= 0) {
+      offer = offer.substring(0, p);
+    }
+
+    return offer.trim();
+  }
+
+  /**
+   * Parses the extension parameters, returning false if the offer names
+   * a different extension or uses parameters this side can't honor.
+   */
+  private boolean parse(String offer)
+  {
+    String []params = offer.split(";");
+
+    if (! EXTENSION.equals(params[0].trim())) {
+      return false;
+    }
+
+    boolean isServerBits = false;
+    boolean isClientBits = false;
+
+    for (int i = 1; i < params.length; i++) {
+      String param = params[i].trim();
+      String value = null;
+
+      int p = param.indexOf('=');
+
+      if (p >= 0) {
+        value = unquote(param.substring(p + 1).trim());
+        param = param.substring(0, p).trim();
+      }
+
+      switch (param) {
+      case SERVER_NO_CONTEXT_TAKEOVER:
+        if (value != null || _isServerNoContextTakeover) {
+          return false;
+        }
+        _isServerNoContextTakeover = true;
+        break;
+
+      case CLIENT_NO_CONTEXT_TAKEOVER:
+        if (value != null || _isClientNoContextTakeover) {
+          return false;
+        }
+        _isClientNoContextTakeover = true;
+        break;
+
+      case SERVER_MAX_WINDOW_BITS:
+        if (isServerBits) {
+          return false;
+        }
+        else if (_isServer) {
+          // the JDK deflater can't write with a window smaller than 32k
+          if (windowBits(value) != WINDOW_BITS) {
+            return false;
+          }
+        }
+        else if (windowBits(value) < 0) {
+          return false;
+        }
+        isServerBits = true;
+        _serverMaxWindowBits = windowBits(value);
+        break;
+
+      case CLIENT_MAX_WINDOW_BITS:
+        if (isClientBits) {
+          return false;
+        }
+        else if (_isServer) {
+          // any client window fits the server's 32k inflater
+          if (value != null && windowBits(value) < 0) {
+            return false;
+          }
+        }
+        else if (windowBits(value) != WINDOW_BITS) {
+          return false;
+        }
+        isClientBits = true;
+        _clientMaxWindowBits = windowBits(value);
+        break;
+
+      default:
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static String unquote(String value)
+  {
+    if (value.length() >= 2
+        && value.charAt(0) == '"'
+        && value.charAt(value.length() - 1) == '"') {
+      return value.substring(1, value.length() - 1);
+    }
+    else {
+      return value;
+    }
+  }
+
+  private static int windowBits(String value)
+  {
+    if (value == null) {
+      return -1;
+    }
+
+    try {
+      int bits = Integer.parseInt(value);
+
+      return 8 <= bits && bits <= WINDOW_BITS ? bits : -1;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * The server's Sec-WebSocket-Extensions response accepting the offer.
+   */
+  public String responseHeader()
+  {
+    StringBuilder sb = new StringBuilder();
+
+    sb.append(EXTENSION);
+
+    if (_isServerNoContextTakeover) {
+      sb.append("; ").append(SERVER_NO_CONTEXT_TAKEOVER);
+    }
+
+    if (_isClientNoContextTakeover) {
+      sb.append("; ").append(CLIENT_NO_CONTEXT_TAKEOVER);
+    }
+
+    // an accepted server_max_window_bits must be echoed (RFC 7692 7.1.2.1)
+    if (_serverMaxWindowBits > 0) {
+      sb.append("; ").append(SERVER_MAX_WINDOW_BITS);
+      sb.append("=").append(_serverMaxWindowBits);
+    }
+
+    if (_clientMaxWindowBits > 0) {
+      sb.append("; ").append(CLIENT_MAX_WINDOW_BITS);
+      sb.append("=").append(_clientMaxWindowBits);
+    }
+
+    return sb.toString();
+  }
+
+  /**
+   * True if the deflater resets after every message sent.
+   */
+  public boolean isDeflateReset()
+  {
+    return _isServer ? _isServerNoContextTakeover : _isClientNoContextTakeover;
+  }
+
+  /**
+   * True if the inflater resets after every message received.
+   */
+  public boolean isInflateReset()
+  {
+    return _isServer ? _isClientNoContextTakeover : _isServerNoContextTakeover;
+  }
+
+  /**
+   * True if a complete message of the given length is worth compressing.
+   */
+  public boolean isCompress(int length)
+  {
+    return MIN_LENGTH <= length;
+  }
+
+  /**
+   * Returns the connection's deflater, allocating from the free list.
+   */
+  public Deflater deflater()
+  {
+    Deflater deflater = _deflater;
+
+    if (deflater == null) {
+      deflater = _freeDeflater.allocate();
+
+      if (deflater == null) {
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+      }
+
+      _deflater = deflater;
+    }
+
+    return deflater;
+  }
+
+  /**
+   * Returns the connection's inflater, allocating from the free list.
+   */
+  public Inflater inflater()
+  {
+    Inflater inflater = _inflater;
+
+    if (inflater == null) {
+      inflater = _freeInflater.allocate();
+
+      if (inflater == null) {
+        inflater = new Inflater(true);
+      }
+
+      _inflater = inflater;
+    }
+
+    return inflater;
+  }
+
+  /**
+   * Returns the deflater and inflater to the free list when the
+   * connection closes.
+   */
+  public void close()
+  {
+    Deflater deflater = _deflater;
+    _deflater = null;
+
+    if (deflater != null) {
+      deflater.reset();
+
+      if (! _freeDeflater.free(deflater)) {
+        deflater.end();
+      }
+    }
+
+    Inflater inflater = _inflater;
+    _inflater = null;
+
+    if (inflater != null) {
+      inflater.reset();
+
+      if (! _freeInflater.free(inflater)) {
+        inflater.end();
+      }
+    }
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "[" + responseHeader() + "]";
+  }
+}